@@ -34,6 +34,7 @@ import java.io.PrintStream;
 
 import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.jmx.LocalStats;
+import com.rtg.jmx.RtgStats;
 import com.rtg.util.Constants;
 import com.rtg.util.License;
 import com.rtg.util.cli.CommandLine;
@@ -96,6 +97,7 @@ public abstract class AbstractCliEntry {
     } else {
       try {
         LocalStats.startRecording();
+        RtgStats.register();
         return module.mainInit(shift(args), out, err);
       } finally {
         LocalStats.stopRecording();
@@ -36,7 +36,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.rtg.mode.DnaUtils;
 import com.rtg.util.MathUtils;
@@ -50,14 +52,34 @@ public class SplitAlleles {
   /** The column of the partitioned result corresponding to the reference allele. */
   public static final int REFERENCE_COLUMN_INDEX = 0;
 
+  private static final int GAP_OPEN_PENALTY = 1;
+  private static final int GAP_EXTEND_PENALTY = 1;
+  // Initial slack either side of the diagonal for the banded alignment attempt
+  private static final int BAND_SLACK = 8;
+  // Allele pairs recur heavily across records, so remember recent alignments
+  private static final int CACHE_SIZE = 4096;
+  private static final int MAX_CACHED_LENGTH = 1000;
+
+  // Aligners are reused by each thread to avoid reallocating the score matrices per record
+  private static final ThreadLocal<GotohEditDistance> ALIGNER = ThreadLocal.withInitial(() -> new GotohEditDistance(GAP_OPEN_PENALTY, GAP_EXTEND_PENALTY, 1, 10, false)); // open, extend, subs, unknowns, stop-template
+  private static final ThreadLocal<Map<String, String>> CACHE = ThreadLocal.withInitial(() -> new LinkedHashMap<String, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  });
+
+  private final String mRefAllele;
   private final byte[] mRef;
+  private final String[] mAltAlleles;
   private final byte[][] mAlts;
-  private final UnidirectionalEditDistance mAligner = new GotohEditDistance(1, 1, 1, 10, false); // open, extend, subs, unknowns, stop-template
   // Map from allele to position in partitioned array; order is ref, alt0, alt1, ...
   private final HashMap<String, Integer> mId = new HashMap<>();
 
   SplitAlleles(final String ref, final String... alts) {
+    mRefAllele = ref;
     mRef = DnaUtils.encodeString(ref);
+    mAltAlleles = alts;
     mId.put(ref, REFERENCE_COLUMN_INDEX);
     mAlts = new byte[alts.length][];
     for (int k = 0; k < alts.length; ++k) {
@@ -85,14 +107,56 @@ public class SplitAlleles {
     return MathUtils.unboxNatural(mId.get(allele));
   }
 
-  private int[] align(final byte[] alt) {
-    return mAligner.calculateEditDistanceFixedBoth(alt, 0, alt.length, mRef, 0, mRef.length, Integer.MAX_VALUE, Math.max(mRef.length, alt.length));
+  /**
+   * Align an allele against a reference allele, giving the same result as an unbanded alignment.
+   * Most alleles are close to the diagonal, so first try the alignment restricted to a narrow
+   * band. Any path that leaves the band and returns to the cells examined by the traceback
+   * incurs at least two gap openings plus an extension for each diagonal crossed, so if the
+   * banded score is strictly less than that bound no cell on or next to the traceback can
+   * differ from the full dynamic program, and the traceback is identical. Otherwise the band
+   * is widened, eventually falling back to the full alignment.
+   * @param aligner the aligner to use
+   * @param ref encoded reference allele
+   * @param alt encoded alternate allele
+   * @return the expanded cigar of the alignment
+   */
+  static String align(final UnidirectionalEditDistance aligner, final byte[] ref, final byte[] alt) {
+    final int fullShift = Math.max(ref.length, alt.length);
+    final int lengthDiff = Math.abs(ref.length - alt.length);
+    int maxShift = lengthDiff + BAND_SLACK;
+    // Matches the band width used by GotohEditDistance for a given maximum shift
+    while (maxShift + maxShift / 2 + 1 < fullShift) {
+      final int[] actions = aligner.calculateEditDistanceFixedBoth(alt, 0, alt.length, ref, 0, ref.length, Integer.MAX_VALUE, maxShift);
+      final int bandWidth = maxShift + maxShift / 2 + 1;
+      final long outsideBound = 2L * GAP_OPEN_PENALTY + (long) GAP_EXTEND_PENALTY * (2 * bandWidth + 1 - maxShift);
+      final int score = ActionsHelper.alignmentScore(actions);
+      if (score < outsideBound) {
+        return ActionsHelper.toString(actions);
+      }
+      maxShift *= 2;
+    }
+    return ActionsHelper.toString(aligner.calculateEditDistanceFixedBoth(alt, 0, alt.length, ref, 0, ref.length, Integer.MAX_VALUE, fullShift));
+  }
+
+  private String getCigarString(final String allele, final byte[] encoded) {
+    if (mRefAllele.length() + allele.length() > MAX_CACHED_LENGTH) {
+      return align(ALIGNER.get(), mRef, encoded);
+    }
+    final Map<String, String> cache = CACHE.get();
+    final String key = mRefAllele + '\t' + allele;
+    String cigar = cache.get(key);
+    if (cigar == null) {
+      cigar = align(ALIGNER.get(), mRef, encoded);
+      cache.put(key, cigar);
+    }
+    return cigar;
   }
 
   private String[] getCigarStrings(final byte[][] sequences) {
+    assert sequences == mAlts;
     final String[] expandedCigars = new String[sequences.length];
     for (int k = 0; k < sequences.length; ++k) {
-      expandedCigars[k] = ActionsHelper.toString(align(sequences[k]));
+      expandedCigars[k] = getCigarString(mAltAlleles[k], sequences[k]);
     }
     return expandedCigars;
   }
@@ -100,7 +164,7 @@ public class SplitAlleles {
   private String[] getCigarStrings(final String[] sequences) {
     final String[] expandedCigars = new String[sequences.length];
     for (int k = 0; k < sequences.length; ++k) {
-      expandedCigars[k] = ActionsHelper.toString(align(DnaUtils.encodeString(sequences[k])));
+      expandedCigars[k] = getCigarString(sequences[k], DnaUtils.encodeString(sequences[k]));
     }
     return expandedCigars;
   }
@@ -106,7 +106,7 @@ public class BedReader implements IOIterator<BedRecord> {
       if (FileUtils.isStdio(f)) {
         throw new IOException("Cannot apply region restrictions when reading BED from stdin");
       }
-      bedr = new BedReader(new TabixLineReader(f, TabixIndexer.indexFileName(f), ranges), f, minAnnotations);
+      bedr = new BedReader(new TabixLineReader(f, TabixIndexer.existingIndexFileName(f), ranges), f, minAnnotations);
     }
     return bedr;
   }
@@ -127,7 +127,7 @@ public class BedReader implements IOIterator<BedRecord> {
       if (FileUtils.isStdio(f)) {
         throw new IOException("Cannot apply region restriction when reading BED from stdin");
       }
-      bedr = new BedReader(new TabixLineReader(f, TabixIndexer.indexFileName(f), region), f, minAnnotations);
+      bedr = new BedReader(new TabixLineReader(f, TabixIndexer.existingIndexFileName(f), region), f, minAnnotations);
     }
     return bedr;
   }
@@ -54,6 +54,9 @@ public final class LocalStats {
      -Drtg.jmxmon=stdout   sends monitor output to stdout
      -Drtg.jmxmon=filename sends monitor output to the specified file
 
+  Expose live progress as a platform MBean (com.rtg:type=RtgStats) for jconsole or a JMX exporter by setting:
+     -Drtg.jmxbean=true
+
   Disk monitoring (requires /usr/bin/iostat): use -Drtg.jxmmon.disk=sda,sdb etc to customize the disks to monitor
 
   Ethernet monitoring (requires /sbin/ifconfig): use -Drtg.jxmmon.disk=eth0,eth1 etc to customize the network interfaces to monitor
@@ -132,6 +135,7 @@ public final class LocalStats {
         for (String n : net.split(",")) {
           rs.addStats(new NetworkStats(n));
         }
+        rs.addStats(new SpyStats());
         rs.addStats(new ProgressStats());
       } catch (IOException e) {
         // Do nothing
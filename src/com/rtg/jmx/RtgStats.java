@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.rtg.util.SimpleThreadPool;
+import com.rtg.util.cli.CommandLine;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.diagnostic.Spy;
+import com.rtg.util.diagnostic.SpyCounter;
+import com.rtg.util.io.ConcurrentByteQueue;
+
+/**
+ * Platform MBean exposing the live progress of an RTG command, for polling by
+ * <code>jconsole</code> or a JMX exporter. Counts are taken from the registered spies.
+ *
+ * Enable registration by setting <code>-Drtg.jmxbean=true</code> (e.g. via RTG_JAVA_OPTS).
+ */
+public class RtgStats implements RtgStatsMBean {
+
+  /** Name of property enabling registration of the MBean */
+  public static final String MBEAN_ENABLE = "rtg.jmxbean";
+
+  /** Name under which the MBean is registered */
+  public static final String OBJECT_NAME = "com.rtg:type=RtgStats";
+
+  private static final String[] RECORDS_READ = {"VcfReader.records", "SequencesWriter.sequences"};
+  private static final String[] RECORDS_WRITTEN = {"VcfWriter.records"};
+  private static final String[] INFLATED = {"GzipAsynchInputStream.inflated-bytes"};
+  private static final String[] DEFLATED = {"GzipAsynchOutputStream.deflated-bytes"};
+
+  // Rates are recomputed at most this often, so that several pollers see consistent values
+  private static final long MIN_INTERVAL_NANOS = 1000000000L;
+
+  private static boolean sRegistered = false;
+
+  private static final class Rate {
+    private long mTime;
+    private long mValue;
+    private double mRate = 0;
+
+    Rate(long time, long value) {
+      mTime = time;
+      mValue = value;
+    }
+  }
+
+  private final Map<String, Rate> mRates = new HashMap<>();
+
+  /**
+   * Register the MBean with the platform MBean server if it has been enabled and is not already registered.
+   */
+  public static synchronized void register() {
+    if (sRegistered || !Boolean.getBoolean(MBEAN_ENABLE)) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new RtgStats(), new ObjectName(OBJECT_NAME));
+      sRegistered = true;
+    } catch (final JMException e) {
+      Diagnostic.developerLog("Could not register MBean: " + e.getMessage());
+    }
+  }
+
+  static long count(String... names) {
+    long total = 0;
+    for (final Object spy : Spy.spies()) {
+      if (spy instanceof SpyCounter) {
+        final SpyCounter counter = (SpyCounter) spy;
+        for (final String name : names) {
+          if (name.equals(counter.name())) {
+            total += counter.count();
+          }
+        }
+      }
+    }
+    return total;
+  }
+
+  synchronized double rate(String key, long value, long now) {
+    final Rate r = mRates.get(key);
+    if (r == null) {
+      mRates.put(key, new Rate(now, value));
+      return 0;
+    }
+    if (now - r.mTime >= MIN_INTERVAL_NANOS) {
+      r.mRate = (value - r.mValue) * 1e9 / (now - r.mTime);
+      r.mTime = now;
+      r.mValue = value;
+    }
+    return r.mRate;
+  }
+
+  private double rate(String[] names) {
+    return rate(names[0], count(names), System.nanoTime());
+  }
+
+  @Override
+  public String getCommandLine() {
+    return CommandLine.getCommandLine();
+  }
+
+  @Override
+  public String getProgress() {
+    return Diagnostic.lastProgress();
+  }
+
+  @Override
+  public long getRecordsRead() {
+    return count(RECORDS_READ);
+  }
+
+  @Override
+  public double getRecordsReadPerSecond() {
+    return rate(RECORDS_READ);
+  }
+
+  @Override
+  public long getRecordsWritten() {
+    return count(RECORDS_WRITTEN);
+  }
+
+  @Override
+  public double getRecordsWrittenPerSecond() {
+    return rate(RECORDS_WRITTEN);
+  }
+
+  @Override
+  public long getInflatedBytes() {
+    return count(INFLATED);
+  }
+
+  @Override
+  public double getInflatedBytesPerSecond() {
+    return rate(INFLATED);
+  }
+
+  @Override
+  public long getDeflatedBytes() {
+    return count(DEFLATED);
+  }
+
+  @Override
+  public double getDeflatedBytesPerSecond() {
+    return rate(DEFLATED);
+  }
+
+  @Override
+  public int getActiveJobs() {
+    int total = 0;
+    for (final SimpleThreadPool pool : SimpleThreadPool.livePools()) {
+      total += pool.activeJobs();
+    }
+    return total;
+  }
+
+  @Override
+  public int getQueuedJobs() {
+    int total = 0;
+    for (final SimpleThreadPool pool : SimpleThreadPool.livePools()) {
+      total += pool.queuedJobs();
+    }
+    return total;
+  }
+
+  @Override
+  public long getPipeBufferedBytes() {
+    long total = 0;
+    for (final ConcurrentByteQueue queue : ConcurrentByteQueue.liveQueues()) {
+      total += queue.available();
+    }
+    return total;
+  }
+
+  @Override
+  public long getPipeCapacityBytes() {
+    long total = 0;
+    for (final ConcurrentByteQueue queue : ConcurrentByteQueue.liveQueues()) {
+      total += queue.maxSize();
+    }
+    return total;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.jmx;
+
+/**
+ * Management interface exposing the live progress of an RTG command.
+ */
+public interface RtgStatsMBean {
+
+  /** @return the command line being run, if known */
+  String getCommandLine();
+
+  /** @return the most recent progress message */
+  String getProgress();
+
+  /** @return number of records read so far */
+  long getRecordsRead();
+
+  /** @return records read per second over the most recent sampling interval */
+  double getRecordsReadPerSecond();
+
+  /** @return number of records written so far */
+  long getRecordsWritten();
+
+  /** @return records written per second over the most recent sampling interval */
+  double getRecordsWrittenPerSecond();
+
+  /** @return number of uncompressed bytes produced by decompression so far */
+  long getInflatedBytes();
+
+  /** @return uncompressed bytes produced by decompression per second over the most recent sampling interval */
+  double getInflatedBytesPerSecond();
+
+  /** @return number of uncompressed bytes passed to compression so far */
+  long getDeflatedBytes();
+
+  /** @return uncompressed bytes passed to compression per second over the most recent sampling interval */
+  double getDeflatedBytesPerSecond();
+
+  /** @return number of jobs currently running across all thread pools */
+  int getActiveJobs();
+
+  /** @return number of jobs waiting for a thread across all thread pools */
+  int getQueuedJobs();
+
+  /** @return number of bytes currently held in asynchronous input and output pipes */
+  long getPipeBufferedBytes();
+
+  /** @return total capacity in bytes of the open asynchronous input and output pipes */
+  long getPipeCapacityBytes();
+}
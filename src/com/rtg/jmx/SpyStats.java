@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.jmx;
+
+import static com.rtg.jmx.MonUtils.NF1;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.rtg.util.diagnostic.Spy;
+import com.rtg.util.diagnostic.SpyCounter;
+import com.rtg.util.diagnostic.SpyHistogram;
+import com.rtg.util.diagnostic.SpyTimer;
+
+/**
+ * Current values of the registered spy counters, timers and histograms. Spies are registered
+ * as the classes using them are loaded, so the set of columns is refreshed each time the column
+ * labels are output.
+ */
+public class SpyStats implements MonStats {
+
+  private static final int MIN_WIDTH = 8;
+
+  private List<Object> mSpies = Collections.emptyList();
+
+  private static String name(Object spy) {
+    if (spy instanceof SpyCounter) {
+      return ((SpyCounter) spy).name();
+    } else if (spy instanceof SpyTimer) {
+      return ((SpyTimer) spy).name();
+    } else {
+      return ((SpyHistogram) spy).name();
+    }
+  }
+
+  private static String units(Object spy) {
+    if (spy instanceof SpyTimer) {
+      return "secs";
+    } else if (spy instanceof SpyHistogram) {
+      return "max-bin";
+    } else {
+      return "count";
+    }
+  }
+
+  private static String value(Object spy) {
+    if (spy instanceof SpyCounter) {
+      return String.valueOf(((SpyCounter) spy).count());
+    } else if (spy instanceof SpyTimer) {
+      return NF1.format(((SpyTimer) spy).seconds());
+    } else {
+      return String.valueOf(((SpyHistogram) spy).maxIndex());
+    }
+  }
+
+  private static int width(Object spy) {
+    return Math.max(MIN_WIDTH, name(spy).length());
+  }
+
+  @Override
+  public void addHeader(Appendable out) {
+  }
+
+  @Override
+  public void addColumnLabelsTop(Appendable out) throws IOException {
+    final List<Object> spies = new ArrayList<>();
+    for (final Object spy : Spy.spies()) {
+      if (spy instanceof SpyCounter || spy instanceof SpyTimer || spy instanceof SpyHistogram) {
+        spies.add(spy);
+      }
+    }
+    mSpies = spies;
+    for (final Object spy : mSpies) {
+      out.append(' ');
+      MonUtils.pad(out, name(spy), width(spy), '-');
+    }
+  }
+
+  @Override
+  public void addColumnLabelsBottom(Appendable out) throws IOException {
+    for (final Object spy : mSpies) {
+      out.append(' ');
+      MonUtils.pad(out, units(spy), width(spy));
+    }
+  }
+
+  @Override
+  public void addColumnData(Appendable out) throws IOException {
+    for (final Object spy : mSpies) {
+      out.append(' ');
+      MonUtils.pad(out, value(spy), width(spy));
+    }
+  }
+}
@@ -158,7 +158,7 @@ public class CommandLineFiles {
   public static final FileConstraint TABIX = new FileConstraint() {
     @Override
     public boolean validate(File f, CommandLineFiles files) {
-      if (!TabixIndexer.indexFileName(f).exists()) {
+      if (!TabixIndexer.existingIndexFileName(f).exists()) {
         files.error(ErrorType.INFO_ERROR, "The file \"" + f.getPath() + "\" does not have a tabix index");
         return false;
       }
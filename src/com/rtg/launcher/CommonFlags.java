@@ -361,7 +361,7 @@ public final class CommonFlags {
   }
 
   private static boolean validateTabixedInputFile(CFlags flags, File file) {
-    final File index = TabixIndexer.indexFileName(file);
+    final File index = TabixIndexer.existingIndexFileName(file);
     final boolean blockCompressed;
     try {
       blockCompressed = TabixIndexer.isBlockCompressed(file);
@@ -483,7 +483,16 @@ public final class CommonFlags {
    * @param flags flags to register with
    */
   public static void initThreadsFlag(CFlags flags) {
-      flags.registerOptional('T', THREADS_FLAG, Integer.class, INT, "number of threads (Default is the number of available cores)").setCategory(CommonFlagCategories.UTILITY);
+    initThreadsFlag(flags, "number of threads");
+  }
+
+  /**
+   * initialize flag to read number of threads, with a command specific description.
+   * @param flags flags to register with
+   * @param description description of what the threads are used for, the default is appended
+   */
+  public static void initThreadsFlag(CFlags flags, String description) {
+    flags.registerOptional('T', THREADS_FLAG, Integer.class, INT, description + " (Default is the number of available cores)").setCategory(CommonFlagCategories.UTILITY);
   }
 
   /**
@@ -39,6 +39,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.rtg.jmx.LocalStats;
+import com.rtg.launcher.globals.GlobalFlags;
+import com.rtg.launcher.globals.ToolsGlobalFlags;
 import com.rtg.util.cli.CommandLine;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.DiagnosticListener;
@@ -135,7 +137,9 @@ public abstract class LoggedCli extends AbstractCli {
         throw e;
       }
     } finally {
-      Spy.report();
+      if (GlobalFlags.isSet(ToolsGlobalFlags.SPY_REPORT)) {
+        Spy.report();
+      }
       final String time = getDuration(startTime, successful);
       Diagnostic.userLog(time);
       Diagnostic.progress(time);
@@ -50,18 +50,42 @@ public class ToolsGlobalFlags extends GlobalFlagsInitializer {
   /** Level of gzip compression to use. */
   public static final String GZIP_LEVEL = "com.rtg.utils.gzip-level";
 
+  /** Number of threads to use when block compressing output. */
+  public static final String GZIP_THREADS = "com.rtg.utils.gzip-threads";
+
+  /** Read ahead and decompress block compressed inputs in parallel, using the number of gzip threads. */
+  public static final String GZIP_READ_AHEAD = "com.rtg.utils.gzip-read-ahead";
+
+  /** Report spy counters, timers and histograms to the log at the end of each command. */
+  public static final String SPY_REPORT = "com.rtg.utils.spy-report";
+
+  /** Maximum number of file handles kept open for reuse by streams that would otherwise reopen their file on each read, 0 to disable */
+  public static final String OPEN_FILE_HANDLES = "com.rtg.utils.open-file-handles";
+
   /** When writing VCFs asynchronously, the maximum number of records to buffer (per VCF) */
   public static final String VCF_ASYNC_BUFFER_SIZE = "com.rtg.vcf.async-buffer-size";
 
   /** Specify properties file to configure allele-based format field adjustment behaviour */
   public static final String VCF_FIELD_ADJUSTMENT_CONFIG = "com.rtg.vcf.field-adjustment";
 
+  /** Evaluate simple <code>vcffilter --keep-expr</code> expressions natively rather than via javascript */
+  public static final String VCFFILTER_COMPILED_EXPRESSIONS = "com.rtg.vcf.filter.compiled-expressions";
+
   /** When looking at chromosomes declared as polyploid, treat as though they were actually the given ploidy */
   public static final String TREAT_POLYPLOID_AS = "com.rtg.reference.polyploid-as";
 
+  /** Memory map SDFs that are read by random access, rather than reading them through file streams */
+  public static final String MAPPED_SDF = "com.rtg.reader.mapped-sdf";
+
+  /** Write a hash index of sequence names when creating SDFs, allowing lookup by name without loading all names */
+  public static final String SDF_NAME_INDEX = "com.rtg.reader.name-index";
+
   /** When formatting SDF from mapped paired-end SAM, should we drop or keep alignments without a mate */
   public static final String FORMAT_SAMPE_KEEP_SINGLETONS = "com.rtg.format.sampe-keep-singletons";
 
+  /** When formatting SDF from mapped paired-end SAM, the approximate memory in MB used to hold reads awaiting their mate before spilling them to disk */
+  public static final String FORMAT_SAMPE_BUFFER_MB = "com.rtg.format.sampe-buffer-mb";
+
   /** Which strand simulated reads are sequenced from: 0 = random, -1 = reverse, 1 = forward */
   public static final String READ_STRAND = "com.rtg.simulation.reads.read-strand";
   /** Supply explicit sequence used for fragment read-through */
@@ -99,6 +123,10 @@ public class ToolsGlobalFlags extends GlobalFlagsInitializer {
   public static final String VCFEVAL_DECOMPOSE_INDELS = "com.rtg.vcf.eval.decompose.break-indels";
   /** Whether to apply ROC sub-category baseline rescaling to adjust for representation bias */
   public static final String VCFEVAL_ROC_SUBSET_RESCALE = "com.rtg.vcf.eval.roc-subset-rescale";
+  /** Split path finding within each sequence into independent windows that are evaluated in parallel */
+  public static final String VCFEVAL_WINDOWED_PATHS = "com.rtg.vcf.eval.windowed-paths";
+  /** Retain the records parsed while loading variants for use when writing output, rather than reading the inputs again */
+  public static final String VCFEVAL_RETAIN_RECORDS = "com.rtg.vcf.eval.retain-records";
 
   /** Add labels to interpolated points */
   public static final String ROCPLOT_INTERPOLATE_LABEL = "com.rtg.vcf.eval.rocplot-interpolate-label";
@@ -116,13 +144,21 @@ public class ToolsGlobalFlags extends GlobalFlagsInitializer {
     registerFlag(SAM_IGNORE_SORT_ORDER_FLAG);
     registerFlag(LENIENT_SDF_ID_MISMATCH_FLAG, Boolean.class, Boolean.TRUE);
     registerFlag(FORMAT_SAMPE_KEEP_SINGLETONS, Boolean.class, Boolean.FALSE);
+    registerFlag(FORMAT_SAMPE_BUFFER_MB, Integer.class, (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 4 / 1024 / 1024));
+    registerFlag(MAPPED_SDF, Boolean.class, Boolean.TRUE);
+    registerFlag(SDF_NAME_INDEX, Boolean.class, Boolean.FALSE);
     registerFlag(GZIP_LEVEL, Integer.class, 2);
+    registerFlag(GZIP_THREADS, Integer.class, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    registerFlag(GZIP_READ_AHEAD, Boolean.class, Boolean.FALSE);
+    registerFlag(OPEN_FILE_HANDLES, Integer.class, 64);
+    registerFlag(SPY_REPORT);
 
     registerFlag(TREAT_POLYPLOID_AS, Ploidy.class, Ploidy.HAPLOID);
 
     registerFlag(VCF_ASYNC_BUFFER_SIZE, Integer.class, 2000);
 
     registerFlag(VCF_FIELD_ADJUSTMENT_CONFIG, String.class, "");
+    registerFlag(VCFFILTER_COMPILED_EXPRESSIONS, Boolean.class, Boolean.TRUE);
 
     // Simulation
     registerFlag(READ_THROUGH, String.class, "default");
@@ -145,6 +181,8 @@ public class ToolsGlobalFlags extends GlobalFlagsInitializer {
     registerFlag(VCFEVAL_DECOMPOSE_MNPS, Boolean.class, Boolean.FALSE);
     registerFlag(VCFEVAL_DECOMPOSE_INDELS, Boolean.class, Boolean.FALSE);
     registerFlag(VCFEVAL_ROC_SUBSET_RESCALE, Boolean.class, Boolean.FALSE);
+    registerFlag(VCFEVAL_WINDOWED_PATHS, Boolean.class, Boolean.FALSE);
+    registerFlag(VCFEVAL_RETAIN_RECORDS, Boolean.class, Boolean.FALSE);
 
     registerFlag(ROCPLOT_INTERPOLATE_LABEL, Boolean.class, Boolean.FALSE);
     registerFlag(ROCPLOT_INTERPOLATION_GAP, Integer.class, 1);
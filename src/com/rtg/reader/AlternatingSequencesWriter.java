@@ -146,6 +146,8 @@ public class AlternatingSequencesWriter extends SequencesWriter {
     final File outputDirRight = new File(mOutputDir, "right");
     final SdfWriter sdfWriterLeft = new SdfWriter(outputDirLeft, mSizeLimit, mPrereadType, mDataSource.hasQualityData() && includeQuality, includeNames, mCompressed, mDataSource.type());
     final SdfWriter sdfWriterRight = new SdfWriter(outputDirRight, mSizeLimit, mPrereadType, mDataSource.hasQualityData() && includeQuality, includeNames, mCompressed, mDataSource.type());
+    sdfWriterLeft.setNameIndex(mNameIndex);
+    sdfWriterRight.setNameIndex(mNameIndex);
     processSequences(sdfWriterLeft, sdfWriterRight, null);
   }
 
@@ -422,6 +422,7 @@ public final class FormatCli extends LoggedCli {
         }
       }
       writer.setReadTrimmer(mReadTrimmer);
+      writer.setNameIndex(GlobalFlags.getBooleanValue(ToolsGlobalFlags.SDF_NAME_INDEX));
       writer.setReadGroup(mReadGroupRecord == null ? null : mReadGroupRecord.getSAMString());
       // perform the actual work
       writer.processSequences(mIncludeQuality, mIncludeNames);
@@ -438,35 +439,39 @@ public final class FormatCli extends LoggedCli {
         try (SequencesReader reader = SequencesReaderFactory.createDefaultSequencesReader(mOutDir)) {
           final Map<String, Long> sequenceNameMap = ReferenceDetector.getSequenceNameMap(reader);
           if (sequenceNameMap != null) {
-            boolean installed = false;
-            for (ReferenceDetector referenceDetector : ReferenceManifest.getReferenceDetectors()) {
-              if (referenceDetector.checkReference(reader, sequenceNameMap)) {
-                Diagnostic.info("");
-                Diagnostic.info("Detected: '" + referenceDetector.getDesc() + "', installing reference.txt");
-                Diagnostic.info("");
-                referenceDetector.installReferenceConfiguration(reader);
-                installed = true;
-                break;
-              }
-            }
-            if (!installed) {
-              boolean numbers = false;
-              for (ReferenceDetector detector : ReferenceManifest.getChromosomeNumberDetectors()) {
-                if (detector.checkReference(reader, sequenceNameMap)) {
-                  numbers = true;
+            try {
+              boolean installed = false;
+              for (ReferenceDetector referenceDetector : ReferenceManifest.getReferenceDetectors()) {
+                if (referenceDetector.checkReference(reader, sequenceNameMap)) {
+                  Diagnostic.info("");
+                  Diagnostic.info("Detected: '" + referenceDetector.getDesc() + "', installing reference.txt");
+                  Diagnostic.info("");
+                  referenceDetector.installReferenceConfiguration(reader);
+                  installed = true;
+                  break;
                 }
               }
-              boolean sex = false;
-              for (ReferenceDetector detector : ReferenceManifest.getChromosomeSexDetectors()) {
-                if (detector.checkReference(reader, sequenceNameMap)) {
-                  sex = true;
+              if (!installed) {
+                boolean numbers = false;
+                for (ReferenceDetector detector : ReferenceManifest.getChromosomeNumberDetectors()) {
+                  if (detector.checkReference(reader, sequenceNameMap)) {
+                    numbers = true;
+                  }
+                }
+                boolean sex = false;
+                for (ReferenceDetector detector : ReferenceManifest.getChromosomeSexDetectors()) {
+                  if (detector.checkReference(reader, sequenceNameMap)) {
+                    sex = true;
+                  }
+                }
+                if (numbers && sex) {
+                  Diagnostic.info("");
+                  Diagnostic.info("This looks like a genome reference, but is not recognized. You should enable sex-aware processing by manually installing an appropriate reference.txt containing chromosome metadata.  See the user manual for more information.");
+                  Diagnostic.info("");
                 }
               }
-              if (numbers && sex) {
-                Diagnostic.info("");
-                Diagnostic.info("This looks like a genome reference, but is not recognized. You should enable sex-aware processing by manually installing an appropriate reference.txt containing chromosome metadata.  See the user manual for more information.");
-                Diagnostic.info("");
-              }
+            } finally {
+              ReaderUtils.closeSequenceNameMap(sequenceNameMap);
             }
           }
         }
@@ -609,6 +614,7 @@ public final class FormatCli extends LoggedCli {
         mWriter.setReadTrimmer(trimmer);
         mWriter.setPrereadArm(arm);
         mWriter.setSdfId(sdfId);
+        mWriter.setNameIndex(GlobalFlags.getBooleanValue(ToolsGlobalFlags.SDF_NAME_INDEX));
       }
 
       void setIncludeQuality(boolean value) {
@@ -36,6 +36,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.rtg.launcher.globals.GlobalFlags;
+import com.rtg.launcher.globals.ToolsGlobalFlags;
 import com.rtg.sam.SamFilter;
 import com.rtg.util.diagnostic.Diagnostic;
 
@@ -48,9 +50,16 @@ public class MappedSamBamSequenceDataSource extends SamBamSequenceDataSource {
 
   private final boolean mKeepSingletons;
   private final Map<String, SamSequence> mRecordMap;
+  private final long mMaxBufferBytes;
+  private long mBufferBytes = 0;
+  private SpillingMatePairer mSpilled = null;
   private long mDuplicates = 0;
 
   MappedSamBamSequenceDataSource(FileStreamIterator inputs, boolean paired, boolean flattenPaired, boolean keepSingletons, SamFilter filter) {
+    this(inputs, paired, flattenPaired, keepSingletons, filter, GlobalFlags.getIntegerValue(ToolsGlobalFlags.FORMAT_SAMPE_BUFFER_MB) * 1024L * 1024L);
+  }
+
+  MappedSamBamSequenceDataSource(FileStreamIterator inputs, boolean paired, boolean flattenPaired, boolean keepSingletons, SamFilter filter, long maxBufferBytes) {
     super(inputs, paired, flattenPaired, filter);
     if (paired) {
       mRecordMap = new LinkedHashMap<>();
@@ -58,6 +67,7 @@ public class MappedSamBamSequenceDataSource extends SamBamSequenceDataSource {
       mRecordMap = null;
     }
     mKeepSingletons = keepSingletons;
+    mMaxBufferBytes = maxBufferBytes;
   }
 
   /**
@@ -79,38 +89,40 @@ public class MappedSamBamSequenceDataSource extends SamBamSequenceDataSource {
   @Override
   protected boolean nextRecords() throws IOException {
     if (mPaired) {
+      if (mSpilled != null) {
+        return nextSpilledRecords();
+      }
       SamSequence rec;
       while ((rec = nextRecord()) != null) {
         checkRecordPaired(rec);
         final SamSequence pair = mRecordMap.remove(rec.getReadName());
-        if (pair == null) {
+        if (pair != null) {
+          mBufferBytes -= SpillingMatePairer.size(pair);
+        }
+        if (pair == null || rec.getFirstOfPairFlag() == pair.getFirstOfPairFlag()) {
+          if (pair != null) {
+            duplicate(rec.getReadName());
+          }
           mRecordMap.put(rec.getReadName(), rec);
-        } else {
-          if (rec.getFirstOfPairFlag() == pair.getFirstOfPairFlag()) {
-            if (mDuplicates < 5) {
-              Diagnostic.warning("Read " + rec.getReadName() + " is duplicated in SAM input.");
-              if (mDuplicates == 4) {
-                Diagnostic.warning("Subsequent warnings of this type will not be shown.");
-              }
-            }
-            mRecordMap.put(rec.getReadName(), rec);
-            ++mDuplicates;
-            continue;
+          mBufferBytes += SpillingMatePairer.size(rec);
+          if (mBufferBytes > mMaxBufferBytes) {
+            spill();
+            return nextSpilledRecords();
           }
-
-          placePairedRecord(rec);
-          placePairedRecord(pair);
-          assert haveNextRecords();
-          return true;
+          continue;
         }
+
+        placePairedRecord(rec);
+        placePairedRecord(pair);
+        assert haveNextRecords();
+        return true;
       }
       if (!mRecordMap.isEmpty()) {
         if (mKeepSingletons) {
           // Grab any one out of the map and return it with a dummy. Eventually we'll empty the whole map.
           final SamSequence singleton = mRecordMap.remove(mRecordMap.keySet().iterator().next());
-          final SamSequence dummy = new SamSequence(singleton.getReadName(), EMPTY, EMPTY, (byte) (SamSequence.READ_PAIRED_FLAG | (singleton.getFirstOfPairFlag() ? 0 : SamSequence.FIRST_OF_PAIR_FLAG)), 0);
           placePairedRecord(singleton);
-          placePairedRecord(dummy);
+          placePairedRecord(mateless(singleton));
           assert haveNextRecords();
           return true;
         }
@@ -124,4 +136,63 @@ public class MappedSamBamSequenceDataSource extends SamBamSequenceDataSource {
       return super.nextRecords();
     }
   }
+
+  private static SamSequence mateless(SamSequence singleton) {
+    return new SamSequence(singleton.getReadName(), EMPTY, EMPTY, (byte) (SamSequence.READ_PAIRED_FLAG | (singleton.getFirstOfPairFlag() ? 0 : SamSequence.FIRST_OF_PAIR_FLAG)), 0);
+  }
+
+  private void duplicate(String readName) {
+    if (mDuplicates < 5) {
+      Diagnostic.warning("Read " + readName + " is duplicated in SAM input.");
+      if (mDuplicates == 4) {
+        Diagnostic.warning("Subsequent warnings of this type will not be shown.");
+      }
+    }
+    ++mDuplicates;
+  }
+
+  // Too many reads are awaiting their mate, hand them and the rest of the input over to be paired on disk
+  private void spill() throws IOException {
+    Diagnostic.userLog("Reads awaiting their mate exceed " + mMaxBufferBytes + " bytes, pairing remaining reads on disk");
+    mSpilled = new SpillingMatePairer(mMaxBufferBytes, mKeepSingletons, this::duplicate);
+    for (final SamSequence rec : mRecordMap.values()) {
+      mSpilled.add(rec);
+    }
+    mRecordMap.clear();
+    mBufferBytes = 0;
+    SamSequence rec;
+    while ((rec = nextRecord()) != null) {
+      checkRecordPaired(rec);
+      mSpilled.add(rec);
+    }
+    mSpilled.finish();
+  }
+
+  private boolean nextSpilledRecords() throws IOException {
+    final SamSequence[] pair = mSpilled.next();
+    if (pair == null) {
+      if (!mKeepSingletons && mSpilled.singletons() > 0) {
+        Diagnostic.warning(mSpilled.singletons() + " reads missing a pair when processing paired end SAM input.");
+      }
+      if (mDuplicates > 0) {
+        Diagnostic.warning(mDuplicates + " records ignored as duplicates in input");
+      }
+      return false;
+    }
+    placePairedRecord(pair[0]);
+    placePairedRecord(pair[1] == null ? mateless(pair[0]) : pair[1]);
+    assert haveNextRecords();
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      if (mSpilled != null) {
+        mSpilled.close();
+      }
+    }
+  }
 }
@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.mode.SequenceType;
+import com.rtg.util.bytecompression.CompressedByteArray;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.intervals.LongRange;
+
+/**
+ * SequencesReader which memory maps the SDF pointer, sequence and quality files rather than loading
+ * them onto the heap, and decodes values on access. Startup time does not depend on the size of the
+ * SDF, and concurrent processes reading the same SDF share the operating system page cache.
+ * Reads do not modify any state, so a single instance may be used by many threads.
+ */
+@TestClass("com.rtg.reader.MappedSequencesReaderTest")
+public final class MappedSequencesReader extends AbstractSequencesReader {
+
+  private static final int BITS_PER_LONG = 64;
+  private static final int WHICH_LONG = 6;
+  private static final long WITHIN_LONG = (1L << WHICH_LONG) - 1;
+
+  private final File mDirectory;
+  private final IndexFile mIndex;
+  private final LongRange mRegion;
+  private final long mStart;
+  private final long mEnd;
+
+  private final int mEntrySize;
+  private final int mChecksumSize;
+  // Cumulative number of sequences and data values preceding each data file, with the totals in the final entry
+  private final long[] mFileSequenceStart;
+  private final long[] mFileDataStart;
+  private final MappedFile[] mPointers;
+  private final MappedFile[] mSequenceData;
+  private final MappedFile[] mQualityData;
+
+  // Bits per value for bitwise packed sequence data, or 0 if stored as bytes
+  private final int mSequenceBits;
+  private final QualityDecoder mQualityDecoder;
+
+  private NamesInterface mNames = null;
+  private NamesInterface mNameSuffixes = null;
+
+  /**
+   * @param dir directory containing the SDF
+   * @param region restriction on part of SDF to be read
+   * @throws IOException if the SDF files could not be mapped
+   */
+  public MappedSequencesReader(File dir, LongRange region) throws IOException {
+    mDirectory = dir;
+    mIndex = new IndexFile(dir);
+    if (mIndex.getSequenceType() < 0 || mIndex.getSequenceType() > SequenceType.values().length) {
+      throw new CorruptSdfException(dir);
+    }
+    mRegion = SequencesReaderFactory.resolveRange(mIndex, region);
+    mStart = mRegion.getStart();
+    mEnd = mRegion.getEnd();
+    mChecksumSize = mIndex.getVersion() >= IndexFile.PER_SEQUENCE_CHECKSUM_VERSION ? (mIndex.hasQuality() ? 2 : 1) : 0;
+    mEntrySize = mChecksumSize + 4;
+    final SequenceType type = SequenceType.values()[mIndex.getSequenceType()];
+    mSequenceBits = mIndex.getSequenceEncoding() == IndexFile.SEQUENCE_ENCODING_COMPRESSED ? CompressedByteArray.minBits(type.numberCodes()) : 0;
+    mQualityDecoder = mIndex.getQualityEncoding() == IndexFile.QUALITY_ENCODING_COMPRESSED ? new QualityDecoder(CompressedMemorySequencesReader.MAX_QUAL_VALUE) : null;
+
+    final int numFiles;
+    final DataFileIndex dataIndex;
+    if (mIndex.getNumberSequences() > 0) {
+      dataIndex = DataFileIndex.loadSequenceDataFileIndex(mIndex.dataIndexVersion(), dir);
+      if (dataIndex.getTotalNumberSequences() != mIndex.getNumberSequences()) {
+        throw new CorruptSdfException(dir);
+      }
+      numFiles = dataIndex.numberEntries();
+    } else {
+      dataIndex = null;
+      numFiles = 0;
+    }
+    mFileSequenceStart = new long[numFiles + 1];
+    mFileDataStart = new long[numFiles + 1];
+    mPointers = new MappedFile[numFiles];
+    mSequenceData = new MappedFile[numFiles];
+    mQualityData = mIndex.hasQuality() ? new MappedFile[numFiles] : null;
+    for (int i = 0; i < numFiles; ++i) {
+      mFileSequenceStart[i + 1] = mFileSequenceStart[i] + dataIndex.numberSequences(i);
+      mFileDataStart[i + 1] = mFileDataStart[i] + dataIndex.dataSize(i);
+      mPointers[i] = new MappedFile(SdfFileUtils.sequencePointerFile(dir, i));
+      // The final pointer file is followed by the checksums of the last sequence
+      final long pointerSize = dataIndex.numberSequences(i) * mEntrySize + (i == numFiles - 1 ? mChecksumSize : 0);
+      if (mPointers[i].length() != pointerSize) {
+        throw new CorruptSdfException(dir);
+      }
+      mSequenceData[i] = new MappedFile(SdfFileUtils.sequenceDataFile(dir, i));
+      if (mQualityData != null) {
+        mQualityData[i] = new MappedFile(SdfFileUtils.qualityDataFile(dir, i));
+      }
+    }
+  }
+
+  @Override
+  public IndexFile index() {
+    return mIndex;
+  }
+
+  @Override
+  public File path() {
+    return mDirectory;
+  }
+
+  @Override
+  public long numberSequences() {
+    return mEnd - mStart;
+  }
+
+  private static int fileFor(long[] starts, long pos) {
+    // Last file starting at or before pos, skipping over empty files
+    int lo = 0;
+    int hi = starts.length - 2;
+    while (lo < hi) {
+      final int mid = (lo + hi + 1) >>> 1;
+      if (starts[mid] <= pos) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  private long checkIndex(long sequenceIndex) {
+    if (sequenceIndex < 0 || sequenceIndex >= numberSequences()) {
+      throw new IllegalArgumentException("Invalid sequence index: " + sequenceIndex + ", maximum is: " + numberSequences());
+    }
+    return sequenceIndex + mStart;
+  }
+
+  // Offset of the start of the given (internal) sequence across the concatenated data files
+  private long dataStart(long seq) {
+    if (seq == mFileSequenceStart[mFileSequenceStart.length - 1]) {
+      return mFileDataStart[mFileDataStart.length - 1];
+    }
+    final int file = fileFor(mFileSequenceStart, seq);
+    return mFileDataStart[file] + (mPointers[file].getInt((seq - mFileSequenceStart[file]) * mEntrySize + mChecksumSize) & 0xFFFFFFFFL);
+  }
+
+  // Checksums are written ahead of the pointer of the following sequence
+  private byte checksum(long seq, int which) {
+    if (mChecksumSize == 0) {
+      throw new NoTalkbackSlimException("The SDF " + mDirectory + " was created with an older version of RTG and does not contain per sequence checksums. Regenerate the SDF with this version of RTG.");
+    }
+    final long next = seq + 1;
+    if (next == mFileSequenceStart[mFileSequenceStart.length - 1]) {
+      final MappedFile last = mPointers[mPointers.length - 1];
+      return last.get(last.length() - mChecksumSize + which);
+    }
+    final int file = fileFor(mFileSequenceStart, next);
+    return mPointers[file].get((next - mFileSequenceStart[file]) * mEntrySize + which);
+  }
+
+  @Override
+  public int length(long sequenceIndex) {
+    final long seq = checkIndex(sequenceIndex);
+    return (int) (dataStart(seq + 1) - dataStart(seq));
+  }
+
+  @Override
+  public byte sequenceDataChecksum(long sequenceIndex) {
+    return checksum(checkIndex(sequenceIndex), 0);
+  }
+
+  @Override
+  public int read(long sequenceIndex, byte[] dataOut) {
+    return readValues(sequenceIndex, dataOut, 0, -1, false);
+  }
+
+  @Override
+  public int read(long sequenceIndex, byte[] dataOut, int start, int length) {
+    return readValues(sequenceIndex, dataOut, start, length, false);
+  }
+
+  @Override
+  public int readQuality(long sequenceIndex, byte[] dest) {
+    if (mQualityData == null) {
+      return 0;
+    }
+    return readValues(sequenceIndex, dest, 0, -1, true);
+  }
+
+  @Override
+  public int readQuality(long sequenceIndex, byte[] dest, int start, int length) {
+    if (mQualityData == null) {
+      return 0;
+    }
+    return readValues(sequenceIndex, dest, start, length, true);
+  }
+
+  // A negative length requests the whole sequence
+  private int readValues(long sequenceIndex, byte[] dest, int start, int length, boolean quality) {
+    final long seq = checkIndex(sequenceIndex);
+    final long seqStart = dataStart(seq);
+    final int seqLength = (int) (dataStart(seq + 1) - seqStart);
+    final int count = length < 0 ? seqLength : length;
+    if (start < 0 || start + count > seqLength) {
+      throw new IllegalArgumentException("Requested data not a subset of sequence data.");
+    }
+    if (count > dest.length) {
+      throw new IllegalArgumentException("Array too small got: " + dest.length + " required: " + count);
+    }
+    // Sequences may span data files
+    long pos = seqStart + start;
+    int done = 0;
+    int file = fileFor(mFileDataStart, pos);
+    while (done < count) {
+      while (pos >= mFileDataStart[file + 1]) {
+        ++file;
+      }
+      final int n = (int) Math.min(count - done, mFileDataStart[file + 1] - pos);
+      final long offset = pos - mFileDataStart[file];
+      if (quality) {
+        if (mQualityDecoder != null) {
+          mQualityDecoder.get(mQualityData[file], offset, dest, done, n);
+        } else {
+          mQualityData[file].get(offset, dest, done, n);
+        }
+      } else if (mSequenceBits > 0) {
+        getBitwise(mSequenceData[file], mSequenceBits, offset, dest, done, n);
+      } else {
+        mSequenceData[file].get(offset, dest, done, n);
+      }
+      done += n;
+      pos += n;
+    }
+    return count;
+  }
+
+  // Decode values in the layout written by <code>BitwiseByteArray</code>
+  private static void getBitwise(MappedFile data, int bits, long offset, byte[] dest, int destOffset, int length) {
+    long whichLong = (offset >>> WHICH_LONG) * bits;
+    int whichBit = (int) (offset & WITHIN_LONG);
+    final long[] words = new long[bits];
+    for (int b = 0; b < bits; ++b) {
+      words[b] = data.getLong((whichLong + b) * 8);
+    }
+    for (int pos = 0; pos < length; ++pos) {
+      int value = 0;
+      for (int b = 0; b < bits; ++b) {
+        value = (value << 1) | (int) ((words[b] >>> whichBit) & 1);
+      }
+      dest[destOffset + pos] = (byte) value;
+      if (++whichBit == BITS_PER_LONG && pos < length - 1) {
+        whichBit = 0;
+        whichLong += bits;
+        for (int b = 0; b < bits; ++b) {
+          words[b] = data.getLong((whichLong + b) * 8);
+        }
+      }
+    }
+  }
+
+  @Override
+  public synchronized String name(long sequenceIndex) throws IOException {
+    if (!mIndex.hasNames()) {
+      throw new IllegalStateException("SDF has no names");
+    }
+    return names().name(sequenceIndex);
+  }
+
+  @Override
+  public synchronized String nameSuffix(long sequenceIndex) throws IOException {
+    if (!mIndex.hasNames()) {
+      throw new IllegalStateException("SDF has no names");
+    }
+    if (mNameSuffixes == null) {
+      mNameSuffixes = mIndex.hasSequenceNameSuffixes() ? new Names(mDirectory, mRegion, true) : new EmptyStringNames(numberSequences());
+    }
+    return mNameSuffixes.name(sequenceIndex);
+  }
+
+  /**
+   * Names are not mapped, but are loaded onto the heap the first time they are required.
+   * @return the names of the sequences in the region
+   * @throws IOException if the names could not be loaded
+   */
+  @Override
+  public synchronized NamesInterface names() throws IOException {
+    if (mNames == null && mIndex.hasNames()) {
+      final Names names = new Names(mDirectory, mRegion, false);
+      if (mIndex.getVersion() >= IndexFile.SEPARATE_CHECKSUM_VERSION && mStart == 0 && mEnd == mIndex.getNumberSequences()
+        && names.calcChecksum() != mIndex.getNameChecksum()) {
+        throw new CorruptSdfException("Sequence names failed checksum - SDF may be corrupt: \"" + mDirectory + "\"");
+      }
+      mNames = names;
+    }
+    return mNames;
+  }
+
+  @Override
+  public long lengthBetween(long start, long end) {
+    if (start < 0 || end < start || end > numberSequences()) {
+      throw new IndexOutOfBoundsException("range " + start + ":" + end + " not available in SDF of size: " + numberSequences());
+    }
+    return dataStart(end + mStart) - dataStart(start + mStart);
+  }
+
+  @Override
+  public int[] sequenceLengths(long start, long end) {
+    final int[] lengths = new int[(int) (end - start)];
+    long prev = dataStart(start + mStart);
+    for (int i = 0; i < lengths.length; ++i) {
+      final long next = dataStart(start + mStart + i + 1);
+      lengths[i] = (int) (next - prev);
+      prev = next;
+    }
+    return lengths;
+  }
+
+  /**
+   * The mapped data is never modified, so the copy shares it.
+   * @return this reader
+   */
+  @Override
+  public SequencesReader copy() {
+    return this;
+  }
+
+  /**
+   * Mappings are released when the reader is garbage collected.
+   */
+  @Override
+  public void close() {
+  }
+
+  // A read only file mapped in chunks, since a single mapping is limited to 2GB
+  static final class MappedFile {
+    // Multiple of 8 so that longs never straddle chunks
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final ByteBuffer[] mChunks;
+    private final long mLength;
+
+    MappedFile(File file) throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+        mLength = channel.size();
+        mChunks = new ByteBuffer[(int) ((mLength + CHUNK_MASK) >>> CHUNK_BITS)];
+        for (int i = 0; i < mChunks.length; ++i) {
+          final long pos = (long) i << CHUNK_BITS;
+          mChunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(CHUNK_MASK + 1, mLength - pos));
+        }
+      }
+    }
+
+    long length() {
+      return mLength;
+    }
+
+    byte get(long pos) {
+      return mChunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
+    }
+
+    int getInt(long pos) {
+      final ByteBuffer chunk = mChunks[(int) (pos >>> CHUNK_BITS)];
+      final int offset = (int) (pos & CHUNK_MASK);
+      if (offset + 4 <= chunk.limit()) {
+        return chunk.getInt(offset);
+      }
+      return ((get(pos) & 0xFF) << 24) | ((get(pos + 1) & 0xFF) << 16) | ((get(pos + 2) & 0xFF) << 8) | (get(pos + 3) & 0xFF);
+    }
+
+    long getLong(long pos) {
+      return mChunks[(int) (pos >>> CHUNK_BITS)].getLong((int) (pos & CHUNK_MASK));
+    }
+
+    void get(long pos, byte[] dest, int destOffset, int length) {
+      for (int i = 0; i < length; ++i) {
+        dest[destOffset + i] = get(pos + i);
+      }
+    }
+  }
+
+  // Decodes values in the layout written by <code>CompressedByteArray</code>
+  static final class QualityDecoder {
+    private final int mPerBitfield;
+    private final int mBits;
+    private final int mMask;
+    private final int mPerLong;
+    private final byte[][] mValue;
+
+    QualityDecoder(int range) {
+      mPerBitfield = range == 5 ? 3 : range == 22 ? 2 : 1;
+      mBits = range == 5 ? 7 : range == 22 ? 9 : CompressedByteArray.minBits(range);
+      mMask = (1 << mBits) - 1;
+      mPerLong = mPerBitfield * (64 / mBits);
+      mValue = new byte[mPerBitfield][mMask + 1];
+      for (int withinBitfield = 0, divisor = 1; withinBitfield < mPerBitfield; ++withinBitfield, divisor *= range) {
+        for (int i = 0; i <= mMask; ++i) {
+          mValue[withinBitfield][i] = (byte) (i / divisor % range);
+        }
+      }
+    }
+
+    void get(MappedFile data, long offset, byte[] dest, int destOffset, int length) {
+      long whichLong = offset / mPerLong;
+      final int withinLong = (int) (offset % mPerLong);
+      int withinBitfield = withinLong % mPerBitfield;
+      long longValue = data.getLong(whichLong * 8) >>> ((withinLong / mPerBitfield) * mBits);
+      int remainingInLong = mPerLong - withinLong;
+      for (int i = 0; i < length; ++i) {
+        dest[destOffset + i] = mValue[withinBitfield][(int) (longValue & mMask)];
+        if (--remainingInLong == 0) {
+          if (i < length - 1) {
+            ++whichLong;
+            longValue = data.getLong(whichLong * 8);
+            remainingInLong = mPerLong;
+            withinBitfield = 0;
+          }
+        } else if (++withinBitfield == mPerBitfield) {
+          withinBitfield = 0;
+          longValue >>>= mBits;
+        }
+      }
+    }
+  }
+}
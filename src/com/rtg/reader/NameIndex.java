@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.rtg.util.array.longindex.LongHashSet;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.intervals.LongRange;
+
+/**
+ * An optional SDF file mapping sequence names to sequence ids, so that sequences can be looked up by
+ * name without first reading every name into memory. The file is an open addressing hash table of
+ * <code>long</code> slots which is memory mapped when read. Each slot holds a fingerprint of the name
+ * hash in its high bits and one more than the sequence id in its low bits, with zero marking an empty
+ * slot. Candidate names are confirmed against the SDF name data, so a fingerprint collision costs only
+ * an extra name read. Where names are duplicated the largest id is returned, which matches a map built
+ * by inserting names in id order.
+ */
+public final class NameIndex implements Closeable {
+
+  private static final long MAGIC = 0x52544753444e4d48L; // RTGSDNMH
+  private static final long VERSION = 1;
+  // Magic, version, number of sequences, name checksum, table size
+  private static final int HEADER_BYTES = 5 * 8;
+
+  private static final int ID_BITS = 40;
+  private static final long ID_MASK = (1L << ID_BITS) - 1;
+  /** Largest number of sequences that can be indexed. */
+  static final long MAX_SEQUENCES = ID_MASK;
+
+  private static final int CHUNK_BITS = 27;
+  private static final long CHUNK_SLOTS = 1L << CHUNK_BITS;
+  private static final long CHUNK_MASK = CHUNK_SLOTS - 1;
+
+  private final File mDir;
+  private final MappedByteBuffer[] mChunks;
+  private final long mMask;
+  private final long mNumberSequences;
+  private DefaultSequencesReader mNames = null;
+
+  private NameIndex(File dir, MappedByteBuffer[] chunks, long tableSize, long numberSequences) {
+    mDir = dir;
+    mChunks = chunks;
+    mMask = tableSize - 1;
+    mNumberSequences = numberSequences;
+  }
+
+  /**
+   * Open the name index of an SDF.
+   * @param dir the SDF directory
+   * @return the name index, or null if the SDF does not have a usable name index
+   * @throws IOException if the index could not be read
+   */
+  public static NameIndex open(File dir) throws IOException {
+    final File file = SdfFileUtils.nameHashIndexFile(dir);
+    if (!file.isFile()) {
+      return null;
+    }
+    final IndexFile index = new IndexFile(dir);
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      if (raf.length() < HEADER_BYTES) {
+        Diagnostic.warning("Ignoring invalid name index in SDF: " + dir);
+        return null;
+      }
+      final FileChannel channel = raf.getChannel();
+      final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      final long magic = header.getLong();
+      final long version = header.getLong();
+      final long numberSequences = header.getLong();
+      final long checksum = header.getLong();
+      final long tableSize = header.getLong();
+      if (magic != MAGIC || version != VERSION || Long.bitCount(tableSize) != 1 || raf.length() != HEADER_BYTES + 8 * tableSize) {
+        Diagnostic.warning("Ignoring invalid name index in SDF: " + dir);
+        return null;
+      }
+      if (numberSequences != index.getNumberSequences() || checksum != index.getNameChecksum()) {
+        Diagnostic.warning("Ignoring out of date name index in SDF: " + dir);
+        return null;
+      }
+      Diagnostic.developerLog("Using name index for SDF: " + dir);
+      return new NameIndex(dir, map(channel, FileChannel.MapMode.READ_ONLY, tableSize), tableSize, numberSequences);
+    }
+  }
+
+  /**
+   * @return the number of sequences in the indexed SDF
+   */
+  public long numberSequences() {
+    return mNumberSequences;
+  }
+
+  /**
+   * Look up a sequence by name.
+   * @param name the sequence name
+   * @return the id of the last sequence with the given name, or -1 if there is no such sequence
+   * @throws IOException if the name data could not be read
+   */
+  public synchronized long sequenceId(String name) throws IOException {
+    final long hash = hash(name);
+    final long fingerprint = hash >>> ID_BITS;
+    long best = -1;
+    long entry;
+    for (long pos = hash & mMask; (entry = slot(mChunks, pos)) != 0; pos = (pos + 1) & mMask) {
+      final long id = (entry & ID_MASK) - 1;
+      if ((entry >>> ID_BITS) == fingerprint && id > best && name.equals(names().name(id))) {
+        best = id;
+      }
+    }
+    return best;
+  }
+
+  // Names are confirmed through a streaming reader, so that they are never all loaded.
+  // The reader is opened on the first lookup and stays open until the index is closed
+  private DefaultSequencesReader names() throws IOException {
+    if (mNames == null) {
+      mNames = new DefaultSequencesReader(mDir, LongRange.NONE);
+    }
+    return mNames;
+  }
+
+  /**
+   * Release the name files opened by lookups.
+   * @throws IOException if the files could not be closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (mNames != null) {
+      mNames.close();
+      mNames = null;
+    }
+  }
+
+  static long hash(String name) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < name.length(); ++i) {
+      h ^= name.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return LongHashSet.mix(h);
+  }
+
+  // At most half the slots are occupied
+  static long tableSize(long numberSequences) {
+    return Math.max(2, Long.highestOneBit(Math.max(1, numberSequences)) << 2);
+  }
+
+  private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long tableSize) throws IOException {
+    final MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((tableSize + CHUNK_SLOTS - 1) >>> CHUNK_BITS)];
+    for (int k = 0; k < chunks.length; ++k) {
+      final long start = (long) k << CHUNK_BITS;
+      chunks[k] = channel.map(mode, HEADER_BYTES + 8 * start, 8 * Math.min(CHUNK_SLOTS, tableSize - start));
+    }
+    return chunks;
+  }
+
+  private static long slot(MappedByteBuffer[] chunks, long pos) {
+    return chunks[(int) (pos >>> CHUNK_BITS)].getLong((int) (pos & CHUNK_MASK) << 3);
+  }
+
+  /**
+   * Accumulates name hashes while an SDF is written, then builds the index once the number of
+   * sequences is known. Hashes are spooled to a temporary file and the table is filled through a
+   * memory mapping, so the heap used does not depend on the number of sequences.
+   */
+  static final class Builder implements Closeable {
+    private final File mDir;
+    private final File mSpool;
+    private final DataOutputStream mOut;
+    private long mCount = 0;
+
+    Builder(File dir) throws IOException {
+      mDir = dir;
+      mSpool = new File(dir, SdfFileUtils.NAME_HASH_INDEX_FILENAME + ".tmp");
+      mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mSpool), 1 << 16));
+    }
+
+    /**
+     * Add the name of the next sequence.
+     * @param name the name as stored in the SDF
+     * @throws IOException if the name could not be spooled
+     */
+    void add(String name) throws IOException {
+      mOut.writeLong(hash(name));
+      ++mCount;
+    }
+
+    /**
+     * Write the index file.
+     * @param numberSequences number of sequences in the SDF
+     * @param nameChecksum checksum of the SDF names
+     * @throws IOException if the index could not be written
+     */
+    void finish(long numberSequences, long nameChecksum) throws IOException {
+      mOut.close();
+      if (mCount != numberSequences) {
+        throw new IllegalStateException("Name index has " + mCount + " names for " + numberSequences + " sequences");
+      }
+      if (numberSequences > MAX_SEQUENCES) {
+        Diagnostic.warning("Too many sequences to create name index");
+        return;
+      }
+      final long tableSize = tableSize(numberSequences);
+      final long mask = tableSize - 1;
+      try (RandomAccessFile raf = new RandomAccessFile(SdfFileUtils.nameHashIndexFile(mDir), "rw")) {
+        raf.setLength(0);
+        raf.setLength(HEADER_BYTES + 8 * tableSize);
+        final FileChannel channel = raf.getChannel();
+        final MappedByteBuffer[] chunks = map(channel, FileChannel.MapMode.READ_WRITE, tableSize);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mSpool), 1 << 16))) {
+          for (long id = 0; id < numberSequences; ++id) {
+            final long hash = in.readLong();
+            long pos = hash & mask;
+            while (slot(chunks, pos) != 0) {
+              pos = (pos + 1) & mask;
+            }
+            chunks[(int) (pos >>> CHUNK_BITS)].putLong((int) (pos & CHUNK_MASK) << 3, (hash >>> ID_BITS) << ID_BITS | (id + 1));
+          }
+        }
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putLong(MAGIC).putLong(VERSION).putLong(numberSequences).putLong(nameChecksum).putLong(tableSize);
+        header.flip();
+        channel.write(header, 0);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      mOut.close();
+      if (mSpool.exists() && !mSpool.delete()) {
+        throw new IOException("Could not delete temporary file: " + mSpool);
+      }
+    }
+  }
+}
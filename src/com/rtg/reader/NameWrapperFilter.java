@@ -49,6 +49,11 @@ class NameWrapperFilter extends WrapperFilter {
     mNames = ReaderUtils.getSequenceNameMap(reader.isPaired() ? reader.left() : reader.single());
   }
 
+  @Override
+  public void close() throws IOException {
+    ReaderUtils.closeSequenceNameMap(mNames);
+  }
+
   @Override
   protected void warnInvalidSequence(String seqid) {
     if (mWarnCount < 5) {
@@ -30,11 +30,14 @@
 package com.rtg.reader;
 
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import com.rtg.util.InvalidParamsException;
@@ -43,6 +46,8 @@ import com.rtg.util.diagnostic.ErrorType;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.intervals.ReferenceRegions;
 
+import htsjdk.samtools.util.RuntimeIOException;
+
 /**
  * Utility functions for manipulating files that are not provided in the File
  * class.
@@ -134,12 +139,35 @@ public final class ReaderUtils {
   }
 
   /**
-   * Construct a mapping from sequence name to sequence id.
+   * Construct a mapping from sequence name to sequence id. If the SDF has a name index then lookups
+   * are answered from the index, and the names are only all read if the map is iterated. Such a map
+   * holds the name files open, so release it with <code>closeSequenceNameMap</code> once lookups are done.
    * @param sequences the sequences reader to construct the map from
    * @return the map from sequence name to sequence id
    * @throws IOException if an error occurs during reading
    */
   public static Map<String, Long> getSequenceNameMap(final SequencesReader sequences) throws IOException {
+    if (sequences.path() != null) {
+      final NameIndex index = NameIndex.open(sequences.path());
+      if (index != null && index.numberSequences() == sequences.numberSequences()) {
+        return new IndexedNameMap(index, sequences);
+      }
+    }
+    return buildSequenceNameMap(sequences);
+  }
+
+  /**
+   * Release any files held open by a map obtained from <code>getSequenceNameMap</code>.
+   * @param map the name map, may be null
+   * @throws IOException if the files could not be closed
+   */
+  public static void closeSequenceNameMap(final Map<String, Long> map) throws IOException {
+    if (map instanceof Closeable) {
+      ((Closeable) map).close();
+    }
+  }
+
+  private static Map<String, Long> buildSequenceNameMap(final SequencesReader sequences) throws IOException {
     if (sequences.numberSequences() > Integer.MAX_VALUE) {
       throw new UnsupportedOperationException();
     }
@@ -150,6 +178,53 @@ public final class ReaderUtils {
     return map;
   }
 
+  // Name to id map backed by an SDF name index
+  private static final class IndexedNameMap extends AbstractMap<String, Long> implements Closeable {
+    private final NameIndex mIndex;
+    private final SequencesReader mSequences;
+    private Map<String, Long> mMap = null;
+
+    IndexedNameMap(final NameIndex index, final SequencesReader sequences) {
+      mIndex = index;
+      mSequences = sequences;
+    }
+
+    @Override
+    public Long get(final Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      try {
+        final long id = mIndex.sequenceId((String) key);
+        return id < 0 ? null : id;
+      } catch (final IOException e) {
+        throw new RuntimeIOException(e);
+      }
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public synchronized Set<Entry<String, Long>> entrySet() {
+      if (mMap == null) {
+        try {
+          mMap = buildSequenceNameMap(mSequences);
+        } catch (final IOException e) {
+          throw new RuntimeIOException(e);
+        }
+      }
+      return mMap.entrySet();
+    }
+
+    @Override
+    public void close() throws IOException {
+      mIndex.close();
+    }
+  }
+
   /**
    * Construct a mapping from sequence name to sequence id.
    * @param names the sequences reader to construct the map from
@@ -217,7 +292,12 @@ public final class ReaderUtils {
    */
   public static void validateRegions(SequencesReader reader, ReferenceRegions regions) throws IOException {
     final Map<String, Long> nameMap = getSequenceNameMap(reader);
-    final List<String> missingChromosomes = regions.sequenceNames().stream().filter(chr -> !nameMap.containsKey(chr)).collect(Collectors.toList());
+    final List<String> missingChromosomes;
+    try {
+      missingChromosomes = regions.sequenceNames().stream().filter(chr -> !nameMap.containsKey(chr)).collect(Collectors.toList());
+    } finally {
+      closeSequenceNameMap(nameMap);
+    }
     if (missingChromosomes.size() > 0) {
       throw new InvalidParamsException("The following sequences specified in the regions list are not present in the template: " + StringUtils.join(", ", missingChromosomes));
     }
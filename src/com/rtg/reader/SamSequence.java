@@ -107,6 +107,10 @@ public class SamSequence {
     return flags;
   }
 
+  byte getFlags() {
+    return mFlags;
+  }
+
   /**
    * Return true if record was paired.
    * @return true if paired record.
@@ -124,21 +124,25 @@ public final class Sdf2Fastq extends AbstractCli {
             filter = new WrapperFilter(reader, writer);
           }
 
-          boolean doAll = true;
-          if (mFlags.getAnonymousFlag(0).isSet()) {
-            doAll = false;
-            for (final Object oi : mFlags.getAnonymousValues(0)) {
-              filter.transfer((String) oi);
+          try {
+            boolean doAll = true;
+            if (mFlags.getAnonymousFlag(0).isSet()) {
+              doAll = false;
+              for (final Object oi : mFlags.getAnonymousValues(0)) {
+                filter.transfer((String) oi);
+              }
             }
-          }
-          if (mFlags.isSet(ID_FILE_FLAG)) {
-            doAll = false;
-            filter.transferFromFile((File) mFlags.getValue(ID_FILE_FLAG));
-          }
-          if (doAll || mFlags.isSet(START_SEQUENCE) || mFlags.isSet(END_SEQUENCE)) {
-            final long startId = mFlags.isSet(START_SEQUENCE) ? (Long) mFlags.getValue(START_SEQUENCE) : LongRange.MISSING;
-            final long endId = mFlags.isSet(END_SEQUENCE) ? (Long) mFlags.getValue(END_SEQUENCE) : LongRange.MISSING;
-            filter.transfer(new LongRange(startId, endId));
+            if (mFlags.isSet(ID_FILE_FLAG)) {
+              doAll = false;
+              filter.transferFromFile((File) mFlags.getValue(ID_FILE_FLAG));
+            }
+            if (doAll || mFlags.isSet(START_SEQUENCE) || mFlags.isSet(END_SEQUENCE)) {
+              final long startId = mFlags.isSet(START_SEQUENCE) ? (Long) mFlags.getValue(START_SEQUENCE) : LongRange.MISSING;
+              final long endId = mFlags.isSet(END_SEQUENCE) ? (Long) mFlags.getValue(END_SEQUENCE) : LongRange.MISSING;
+              filter.transfer(new LongRange(startId, endId));
+            }
+          } finally {
+            filter.close();
           }
         }
       } catch (InvalidParamsException e) {
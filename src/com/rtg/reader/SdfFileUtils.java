@@ -53,6 +53,11 @@ public final class SdfFileUtils {
   static final String SEQUENCE_INDEX_FILENAME = "sequenceIndex0";
   static final String LABEL_INDEX_FILENAME = "nameIndex0";
   static final String LABEL_SUFFIX_INDEX_FILENAME = "suffixIndex0";
+  static final String NAME_HASH_INDEX_FILENAME = "namehash";
+
+  static File nameHashIndexFile(final File dir) {
+    return new File(dir, NAME_HASH_INDEX_FILENAME);
+  }
 
   static File sequenceDataFile(final File dir, final int fileNo) {
     return new File(dir, SEQUENCE_DATA_FILENAME + fileNo);
@@ -55,7 +55,7 @@ public final class SdfReaderWrapper implements Closeable {
     if (useMem) {
       return SequencesReaderFactory.createMemorySequencesReaderCheckEmpty(sdf, true, true, LongRange.NONE);
     } else {
-      return SequencesReaderFactory.createDefaultSequencesReaderCheckEmpty(sdf);
+      return SequencesReaderFactory.createRandomAccessSequencesReaderCheckEmpty(sdf);
     }
   }
 
@@ -142,7 +142,7 @@ public final class SdfSubseq extends AbstractCli {
   @Override
   protected int mainExec(final OutputStream out, final PrintStream err) throws IOException {
     final boolean reverseComplement = mFlags.isSet(REVERSE_FLAG);
-    try (SequencesReader reader = SequencesReaderFactory.createDefaultSequencesReaderCheckEmpty((File) mFlags.getValue(INPUT_FLAG))) {
+    try (SequencesReader reader = SequencesReaderFactory.createRandomAccessSequencesReaderCheckEmpty((File) mFlags.getValue(INPUT_FLAG))) {
       if (!mFlags.isSet(SEQ_ID_FLAG) && !reader.hasNames()) {
         throw new NoTalkbackSlimException(ErrorType.INFO_ERROR, "The input SDF does not have name data.");
       }
@@ -155,12 +155,16 @@ public final class SdfSubseq extends AbstractCli {
         mNames = ReaderUtils.getSequenceNameMap(reader);
       }
 
-      for (Object o : mFlags.getAnonymousValues(0)) {
-        final RegionRestriction restriction = new RegionRestriction((String) o);
-        final int result = extractSubseq(reader, restriction, reverseComplement, out, err);
-        if (result != 0) {
-          return result;
+      try {
+        for (Object o : mFlags.getAnonymousValues(0)) {
+          final RegionRestriction restriction = new RegionRestriction((String) o);
+          final int result = extractSubseq(reader, restriction, reverseComplement, out, err);
+          if (result != 0) {
+            return result;
+          }
         }
+      } finally {
+        ReaderUtils.closeSequenceNameMap(mNames);
       }
       out.flush();
     }
@@ -43,6 +43,8 @@ import java.util.Collection;
 
 import com.rtg.launcher.CommonFlags;
 import com.rtg.launcher.LoggedCli;
+import com.rtg.launcher.globals.GlobalFlags;
+import com.rtg.launcher.globals.ToolsGlobalFlags;
 import com.rtg.util.cli.CFlags;
 import com.rtg.util.cli.CommonFlagCategories;
 import com.rtg.util.diagnostic.Diagnostic;
@@ -96,6 +98,7 @@ public final class SdfSubset extends LoggedCli {
   protected int mainExec(OutputStream out, LogStream log) throws IOException {
     try (final SdfReaderWrapper reader = new SdfReaderWrapper((File) mFlags.getValue(INPUT), false, false)) {
       try (final SdfWriterWrapper writer = new SdfWriterWrapper((File) mFlags.getValue(CommonFlags.OUTPUT_FLAG), reader, false)) {
+        writer.setNameIndex(GlobalFlags.getBooleanValue(ToolsGlobalFlags.SDF_NAME_INDEX));
         final WrapperFilter filter;
         if (mFlags.isSet(NAMES_FLAG)) {
           filter = new NameWrapperFilter(reader, writer);
@@ -103,19 +106,23 @@ public final class SdfSubset extends LoggedCli {
           filter = new WrapperFilter(reader, writer);
         }
 
-        if (mFlags.getAnonymousFlag(0).isSet()) {
-          final Collection<?> seqs = mFlags.getAnonymousValues(0);
-          for (final Object oi : seqs) {
-            filter.transfer((String) oi);
+        try {
+          if (mFlags.getAnonymousFlag(0).isSet()) {
+            final Collection<?> seqs = mFlags.getAnonymousValues(0);
+            for (final Object oi : seqs) {
+              filter.transfer((String) oi);
+            }
           }
-        }
-        if (mFlags.isSet(ID_FILE_FLAG)) {
-          filter.transferFromFile((File) mFlags.getValue(ID_FILE_FLAG));
-        }
-        if (mFlags.isSet(START_SEQUENCE) || mFlags.isSet(END_SEQUENCE)) {
-          final long startId = mFlags.isSet(START_SEQUENCE) ? (Long) mFlags.getValue(START_SEQUENCE) : LongRange.MISSING;
-          final long endId = mFlags.isSet(END_SEQUENCE) ? (Long) mFlags.getValue(END_SEQUENCE) : LongRange.MISSING;
-          filter.transfer(new LongRange(startId, endId));
+          if (mFlags.isSet(ID_FILE_FLAG)) {
+            filter.transferFromFile((File) mFlags.getValue(ID_FILE_FLAG));
+          }
+          if (mFlags.isSet(START_SEQUENCE) || mFlags.isSet(END_SEQUENCE)) {
+            final long startId = mFlags.isSet(START_SEQUENCE) ? (Long) mFlags.getValue(START_SEQUENCE) : LongRange.MISSING;
+            final long endId = mFlags.isSet(END_SEQUENCE) ? (Long) mFlags.getValue(END_SEQUENCE) : LongRange.MISSING;
+            filter.transfer(new LongRange(startId, endId));
+          }
+        } finally {
+          filter.close();
         }
 
         Diagnostic.progress("Extracted " + filter.getWritten() + " sequences");
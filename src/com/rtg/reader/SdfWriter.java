@@ -76,6 +76,8 @@ public class SdfWriter extends AbstractSdfWriter {
 
   private long mCurrentLength;
 
+  private NameIndex.Builder mNameIndex = null;
+
   /**
    * Creates a writer for processing sequences from provided data source.
    * @param outputDir Destination of output files
@@ -101,6 +103,24 @@ public class SdfWriter extends AbstractSdfWriter {
     }
   }
 
+  /**
+   * Set whether a hash index of the sequence names is written. Must be set before any sequences are written.
+   * @param nameIndex true if the name index should be written
+   * @throws IOException if the index could not be created
+   */
+  public void setNameIndex(boolean nameIndex) throws IOException {
+    if (mNumberOfSequences != 0) {
+      throw new IllegalStateException("Name index must be set before writing sequences");
+    }
+    if (mNameIndex != null) {
+      mNameIndex.close();
+      mNameIndex = null;
+    }
+    if (nameIndex && mHasNames) {
+      mNameIndex = new NameIndex.Builder(mOutputDir);
+    }
+  }
+
   private void setSizeLimit(final long limit) {
     if (limit < MIN_SIZE_LIMIT || limit > MAX_SIZE_LIMIT) {
       throw new IllegalArgumentException("Size limit of: " + limit + " is not within bounds of: " + MIN_SIZE_LIMIT + " and " + MAX_SIZE_LIMIT);
@@ -351,6 +371,9 @@ public class SdfWriter extends AbstractSdfWriter {
     }
     mNameHashFunction.irvineHash(label);
     mNameHashFunction.irvineHash(label.length());
+    if (mNameIndex != null) {
+      mNameIndex.add(label);
+    }
     mNameSuffixHashFunction.irvineHash(suffix);
     mNameSuffixHashFunction.irvineHash(suffix.length());
   }
@@ -395,6 +418,13 @@ public class SdfWriter extends AbstractSdfWriter {
     mIndexFile = super.finish(mSizeLimit, mNumberOfSequences);
     mIndexFile.setHasSuffixes(hasSuffixes);
     mIndexFile.save(mOutputDir);
+    if (mNameIndex != null) {
+      try {
+        mNameIndex.finish(mNumberOfSequences, mIndexFile.getNameChecksum());
+      } finally {
+        mNameIndex.close();
+      }
+    }
     if (!hasSuffixes) {
       //done here so we have access to mIndexFile.dataIndexVersion()
       removeSuffixFiles();
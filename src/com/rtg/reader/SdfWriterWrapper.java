@@ -116,6 +116,20 @@ public final class SdfWriterWrapper implements WriterWrapper {
     }
   }
 
+  /**
+   * Convenience method.
+   * @param nameIndex true if a name index should be written
+   * @throws IOException if the index could not be created
+   */
+  public void setNameIndex(boolean nameIndex) throws IOException {
+    if (mIsPaired) {
+      mLeft.setNameIndex(nameIndex);
+      mRight.setNameIndex(nameIndex);
+    } else {
+      mSingle.setNameIndex(nameIndex);
+    }
+  }
+
   @Override
   public void writeSequence(long seqId, byte[] dataBuffer, byte[] qualityBuffer) throws IOException {
     if (mIsPaired) {
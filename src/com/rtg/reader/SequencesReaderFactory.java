@@ -33,6 +33,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
+import com.rtg.launcher.globals.GlobalFlags;
+import com.rtg.launcher.globals.ToolsGlobalFlags;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.intervals.LongRange;
@@ -60,14 +62,64 @@ public final class SequencesReaderFactory {
       logSDF(r);
       return r;
     } catch (final FileNotFoundException e) {
-      // Slightly better I/O reporting than the default provided by AbstractCli
-      if (dir.isDirectory()) {
-        throw new IOException("The specified SDF, \"" + dir.getPath() + "\", does not seem to contain a valid SDF index", e);
-      } else if (dir.exists()) {
-        throw new IOException("The specified file, \"" + dir.getPath() + "\", is not an SDF.", e);
-      } else {
-        throw new IOException("The specified SDF, \"" + dir.getPath() + "\", does not exist.", e);
-      }
+      throw notFound(dir, e);
+    }
+  }
+
+  /**
+   * Constructs a <code>MappedSequencesReader</code>.
+   *
+   * @param dir the SDF directory
+   * @param region the sequences of the SDF to include
+   * @return a <code>SequencesReader</code>
+   * @throws IOException if another I/O related error occurs
+   */
+  public static AnnotatedSequencesReader createMappedSequencesReader(final File dir, LongRange region) throws IOException {
+    try {
+      final MappedSequencesReader r = new MappedSequencesReader(dir, region);
+      logSDF(r);
+      return r;
+    } catch (final FileNotFoundException e) {
+      throw notFound(dir, e);
+    }
+  }
+
+  /**
+   * Constructs a reader for random access to an SDF without loading its data onto the heap. This is a
+   * <code>MappedSequencesReader</code> unless memory mapping has been disabled, in which case it is a
+   * <code>DefaultSequencesReader</code>.
+   *
+   * @param dir the SDF directory
+   * @param region the sequences of the SDF to include
+   * @return a <code>SequencesReader</code>
+   * @throws IOException if another I/O related error occurs
+   */
+  public static AnnotatedSequencesReader createRandomAccessSequencesReader(final File dir, LongRange region) throws IOException {
+    return GlobalFlags.getBooleanValue(ToolsGlobalFlags.MAPPED_SDF) ? createMappedSequencesReader(dir, region) : createDefaultSequencesReader(dir, region);
+  }
+
+  /**
+   * Constructs a reader for random access to an SDF without loading its data onto the heap.
+   * Checks if the resulting reader has no sequences.
+   * @param dir the SDF directory
+   * @return a <code>SequencesReader</code>
+   * @throws IOException if another I/O related error occurs
+   * @throws NoTalkbackSlimException if the reader has not sequences.
+   */
+  public static AnnotatedSequencesReader createRandomAccessSequencesReaderCheckEmpty(final File dir) throws IOException {
+    final AnnotatedSequencesReader result = createRandomAccessSequencesReader(dir, LongRange.NONE);
+    ReaderUtils.validateNotEmpty(result);
+    return result;
+  }
+
+  // Slightly better I/O reporting than the default provided by AbstractCli
+  private static IOException notFound(File dir, FileNotFoundException e) {
+    if (dir.isDirectory()) {
+      return new IOException("The specified SDF, \"" + dir.getPath() + "\", does not seem to contain a valid SDF index", e);
+    } else if (dir.exists()) {
+      return new IOException("The specified file, \"" + dir.getPath() + "\", is not an SDF.", e);
+    } else {
+      return new IOException("The specified SDF, \"" + dir.getPath() + "\", does not exist.", e);
     }
   }
 
@@ -40,6 +40,7 @@ import com.rtg.util.Constants;
 import com.rtg.util.cli.CommandLine;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.diagnostic.SpyCounter;
 import com.rtg.util.diagnostic.WarningType;
 import com.rtg.util.intervals.LongRange;
 import com.rtg.util.io.FileUtils;
@@ -50,6 +51,8 @@ import com.rtg.util.io.FileUtils;
  */
 public class SequencesWriter {
 
+  private static final SpyCounter SEQUENCES = new SpyCounter("SequencesWriter.sequences");
+
   final SequenceDataSource mDataSource;
   final File mOutputDir;
   long mSizeLimit = SdfWriter.DEFAULT_SIZE_LIMIT;
@@ -69,6 +72,9 @@ public class SequencesWriter {
   /** Set to true when input source is sorted on read name and you want to check no consecutive reads or pairs of reads have the same name */
   protected boolean mCheckDuplicateNames;
 
+  /** Set to true to write a hash index of sequence names */
+  protected boolean mNameIndex;
+
   long mTotalLength = 0;
   long mMinLength = Long.MAX_VALUE;
   long mMaxLength = Long.MIN_VALUE;
@@ -151,6 +157,14 @@ public class SequencesWriter {
     mCheckDuplicateNames = val;
   }
 
+  /**
+   * Set to true to write a hash index of sequence names, allowing sequences to be looked up by name without loading all names.
+   * @param val true if the output SDF should contain a name index
+   */
+  public void setNameIndex(boolean val) {
+    mNameIndex = val;
+  }
+
   /**
    * Returns the size limit
    * @return the size limit of the file
@@ -160,6 +174,7 @@ public class SequencesWriter {
   }
 
   void processSingleSequence(final AbstractSdfWriter sdfWriter) throws IOException {
+    SEQUENCES.increment();
     final String label = mDataSource.name();
     final int length = mDataSource.currentLength();
 
@@ -252,6 +267,7 @@ public class SequencesWriter {
    */
   public void processSequences(boolean includeQuality, boolean includeNames) throws IOException {
     final SdfWriter sdfWriter = new SdfWriter(mOutputDir, mSizeLimit, mPrereadType, mDataSource.hasQualityData() && includeQuality, includeNames, mCompressed, mDataSource.type());
+    sdfWriter.setNameIndex(mNameIndex);
     processSequences(sdfWriter, null);
   }
 
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.io.FileUtils;
+
+/**
+ * Pairs mates from SAM input that is not sorted by read name using a bounded amount of memory.
+ * Reads are sorted by name in runs that are spilled to temporary files, and the runs are merged
+ * to bring mates together once all the input has been seen. The resulting pairs are then sorted
+ * back into the order in which they would have been completed had every read been held in memory,
+ * so the output is the same as unbounded pairing.
+ */
+@TestClass("com.rtg.reader.MappedSamBamSequenceDataSourceTest")
+final class SpillingMatePairer implements Closeable {
+
+  private static final int IO_BUFFER_SIZE = 65536;
+
+  /**
+   * Approximate heap used by a read
+   * @param read the read
+   * @return the number of bytes
+   */
+  static long size(SamSequence read) {
+    return 64 + 2L * read.getReadName().length() + read.getReadLength() + (read.getBaseQualities() == null ? 0 : read.getBaseQualities().length);
+  }
+
+  private static void writeRead(DataOutputStream out, SamSequence read) throws IOException {
+    out.writeUTF(read.getReadName());
+    out.writeByte(read.getFlags());
+    out.writeInt(read.getProjectedPosition());
+    out.writeInt(read.getReadLength());
+    out.write(read.getReadBases());
+    final byte[] quals = read.getBaseQualities();
+    if (quals == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(quals.length);
+      out.write(quals);
+    }
+  }
+
+  private static SamSequence readRead(DataInputStream in) throws IOException {
+    final String name = in.readUTF();
+    final byte flags = in.readByte();
+    final int projected = in.readInt();
+    final byte[] bases = new byte[in.readInt()];
+    in.readFully(bases);
+    final int qualsLength = in.readInt();
+    final byte[] quals;
+    if (qualsLength < 0) {
+      quals = null;
+    } else {
+      quals = new byte[qualsLength];
+      in.readFully(quals);
+    }
+    return new SamSequence(name, bases, quals, flags, projected);
+  }
+
+  private interface Codec<T> {
+    void write(DataOutputStream out, T value) throws IOException;
+    T read(DataInputStream in) throws IOException;
+  }
+
+  // A read and its position in the input
+  private static final class IndexedRead {
+    final long mIndex;
+    final SamSequence mRead;
+    IndexedRead(long index, SamSequence read) {
+      mIndex = index;
+      mRead = read;
+    }
+  }
+
+  private static final Codec<IndexedRead> INDEXED_READ_CODEC = new Codec<IndexedRead>() {
+    @Override
+    public void write(DataOutputStream out, IndexedRead value) throws IOException {
+      out.writeLong(value.mIndex);
+      writeRead(out, value.mRead);
+    }
+    @Override
+    public IndexedRead read(DataInputStream in) throws IOException {
+      final long index = in.readLong();
+      return new IndexedRead(index, readRead(in));
+    }
+  };
+
+  // A completed pair, or a read without a mate, and the position at which it is output
+  private static final class Output {
+    final boolean mSingleton;
+    final long mIndex;
+    final SamSequence mFirst;
+    final SamSequence mSecond;
+    Output(boolean singleton, long index, SamSequence first, SamSequence second) {
+      mSingleton = singleton;
+      mIndex = index;
+      mFirst = first;
+      mSecond = second;
+    }
+  }
+
+  private static final Codec<Output> OUTPUT_CODEC = new Codec<Output>() {
+    @Override
+    public void write(DataOutputStream out, Output value) throws IOException {
+      out.writeBoolean(value.mSingleton);
+      out.writeLong(value.mIndex);
+      writeRead(out, value.mFirst);
+      if (!value.mSingleton) {
+        writeRead(out, value.mSecond);
+      }
+    }
+    @Override
+    public Output read(DataInputStream in) throws IOException {
+      final boolean singleton = in.readBoolean();
+      final long index = in.readLong();
+      final SamSequence first = readRead(in);
+      return new Output(singleton, index, first, singleton ? null : readRead(in));
+    }
+  };
+
+  // Reads back values from a spilled run
+  private static final class RunReader<T> implements Closeable {
+    private final DataInputStream mIn;
+    private final Codec<T> mCodec;
+    private long mRemaining;
+    private T mHead;
+
+    RunReader(File run, Codec<T> codec) throws IOException {
+      mIn = new DataInputStream(new BufferedInputStream(new FileInputStream(run), IO_BUFFER_SIZE));
+      mCodec = codec;
+      mRemaining = mIn.readLong();
+      advance();
+    }
+
+    void advance() throws IOException {
+      if (mRemaining > 0) {
+        mHead = mCodec.read(mIn);
+        --mRemaining;
+      } else {
+        mHead = null;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      mIn.close();
+    }
+  }
+
+  // Sorts values, spilling sorted runs to disk when the buffer is full
+  private final class RunSorter<T> {
+    private final String mName;
+    private final Comparator<T> mComparator;
+    private final Codec<T> mCodec;
+    private final ToLongFunction<T> mSize;
+    private final List<T> mBuffer = new ArrayList<>();
+    private final List<File> mRuns = new ArrayList<>();
+    private long mBufferBytes = 0;
+    private PriorityQueue<RunReader<T>> mMerge = null;
+    private int mNext = 0;
+
+    RunSorter(String name, Comparator<T> comparator, Codec<T> codec, ToLongFunction<T> size) {
+      mName = name;
+      mComparator = comparator;
+      mCodec = codec;
+      mSize = size;
+    }
+
+    void add(T value) throws IOException {
+      mBuffer.add(value);
+      mBufferBytes += mSize.applyAsLong(value);
+      if (mBufferBytes > mMaxBytes) {
+        spill();
+      }
+    }
+
+    private void spill() throws IOException {
+      mBuffer.sort(mComparator);
+      final File run = new File(tempDir(), mName + mRuns.size());
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), IO_BUFFER_SIZE))) {
+        out.writeLong(mBuffer.size());
+        for (final T value : mBuffer) {
+          mCodec.write(out, value);
+        }
+      }
+      mRuns.add(run);
+      mBuffer.clear();
+      mBufferBytes = 0;
+    }
+
+    // Called once all values have been added
+    void finish() throws IOException {
+      if (mRuns.isEmpty()) {
+        mBuffer.sort(mComparator);
+      } else {
+        if (!mBuffer.isEmpty()) {
+          spill();
+        }
+        Diagnostic.developerLog("Merging " + mRuns.size() + " " + mName + " runs");
+        mMerge = new PriorityQueue<>(mRuns.size(), (a, b) -> mComparator.compare(a.mHead, b.mHead));
+        for (final File run : mRuns) {
+          final RunReader<T> reader = new RunReader<>(run, mCodec);
+          if (reader.mHead == null) {
+            reader.close();
+          } else {
+            mMerge.add(reader);
+          }
+        }
+      }
+    }
+
+    // Next value in sorted order, or null if there are no more
+    T next() throws IOException {
+      if (mMerge == null) {
+        if (mNext < mBuffer.size()) {
+          final T value = mBuffer.get(mNext);
+          mBuffer.set(mNext++, null);
+          return value;
+        }
+        return null;
+      }
+      final RunReader<T> reader = mMerge.poll();
+      if (reader == null) {
+        return null;
+      }
+      final T value = reader.mHead;
+      reader.advance();
+      if (reader.mHead == null) {
+        reader.close();
+      } else {
+        mMerge.add(reader);
+      }
+      return value;
+    }
+
+    void close() throws IOException {
+      if (mMerge != null) {
+        for (final RunReader<T> reader : mMerge) {
+          reader.close();
+        }
+        mMerge.clear();
+      }
+    }
+  }
+
+  private final long mMaxBytes;
+  private final boolean mKeepSingletons;
+  private final Consumer<String> mDuplicateHandler;
+  private final RunSorter<IndexedRead> mReads;
+  private final RunSorter<Output> mOutputs;
+  private File mTempDir = null;
+  private long mIndex = 0;
+  private long mSingletons = 0;
+
+  /**
+   * @param maxBytes approximate number of bytes of reads to hold in memory
+   * @param keepSingletons if true, reads without a mate are output after all pairs, otherwise they are dropped
+   * @param duplicateHandler called with the name of a read when a second read with the same arm is seen
+   */
+  SpillingMatePairer(long maxBytes, boolean keepSingletons, Consumer<String> duplicateHandler) {
+    mMaxBytes = maxBytes;
+    mKeepSingletons = keepSingletons;
+    mDuplicateHandler = duplicateHandler;
+    mReads = new RunSorter<>("reads", (a, b) -> {
+      final int c = a.mRead.getReadName().compareTo(b.mRead.getReadName());
+      return c != 0 ? c : Long.compare(a.mIndex, b.mIndex);
+    }, INDEXED_READ_CODEC, r -> size(r.mRead));
+    mOutputs = new RunSorter<>("pairs", (a, b) -> {
+      final int c = Boolean.compare(a.mSingleton, b.mSingleton);
+      return c != 0 ? c : Long.compare(a.mIndex, b.mIndex);
+    }, OUTPUT_CODEC, o -> size(o.mFirst) + (o.mSecond == null ? 0 : size(o.mSecond)));
+  }
+
+  private File tempDir() throws IOException {
+    if (mTempDir == null) {
+      mTempDir = FileUtils.createTempDir("sampe", null);
+    }
+    return mTempDir;
+  }
+
+  /**
+   * Add the next read of the input.
+   * @param read the read
+   * @throws IOException if the read could not be spilled to disk
+   */
+  void add(SamSequence read) throws IOException {
+    mReads.add(new IndexedRead(mIndex++, read));
+  }
+
+  /**
+   * Pair up all the reads that have been added, after which no more reads may be added.
+   * @throws IOException if the spilled reads could not be read
+   */
+  void finish() throws IOException {
+    mReads.finish();
+    // Each name's reads arrive in input order, play them through in the same way as in-memory pairing
+    IndexedRead waiting = null;
+    IndexedRead read;
+    while ((read = mReads.next()) != null) {
+      if (waiting != null && !waiting.mRead.getReadName().equals(read.mRead.getReadName())) {
+        singleton(waiting);
+        waiting = null;
+      }
+      if (waiting == null) {
+        waiting = read;
+      } else if (waiting.mRead.getFirstOfPairFlag() == read.mRead.getFirstOfPairFlag()) {
+        mDuplicateHandler.accept(read.mRead.getReadName());
+        waiting = read;
+      } else {
+        mOutputs.add(new Output(false, read.mIndex, read.mRead, waiting.mRead));
+        waiting = null;
+      }
+    }
+    if (waiting != null) {
+      singleton(waiting);
+    }
+    mReads.close();
+    mOutputs.finish();
+  }
+
+  private void singleton(IndexedRead read) throws IOException {
+    ++mSingletons;
+    if (mKeepSingletons) {
+      mOutputs.add(new Output(true, read.mIndex, read.mRead, null));
+    }
+  }
+
+  /**
+   * @return the next pair of reads in output order, with a null second read if the first has no mate, or null if there are no more
+   * @throws IOException if the spilled pairs could not be read
+   */
+  SamSequence[] next() throws IOException {
+    final Output output = mOutputs.next();
+    return output == null ? null : new SamSequence[] {output.mFirst, output.mSecond};
+  }
+
+  /**
+   * @return the number of reads that had no mate
+   */
+  long singletons() {
+    return mSingletons;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      mReads.close();
+      mOutputs.close();
+    } finally {
+      if (mTempDir != null && !FileUtils.deleteFiles(mTempDir)) {
+        Diagnostic.warning("Could not delete temporary directory " + mTempDir.getPath());
+      }
+      mTempDir = null;
+    }
+  }
+}
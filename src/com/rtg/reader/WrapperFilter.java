@@ -30,6 +30,7 @@
 package com.rtg.reader;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -42,7 +43,7 @@ import com.rtg.util.intervals.LongRange;
  * Facilitates transferring sequences by ID from a SdfReaderWrapper to a WriterWrapper.
  */
 @TestClass("com.rtg.reader.SdfSubsetTest")
-class WrapperFilter {
+class WrapperFilter implements Closeable {
 
   private final SdfReaderWrapper mReader;
   private final WriterWrapper mWriter;
@@ -64,6 +65,14 @@ class WrapperFilter {
     return mWritten;
   }
 
+  /**
+   * Release any resources held for interpreting sequence specifiers. The reader and writer are not closed.
+   * @throws IOException if the resources could not be released
+   */
+  @Override
+  public void close() throws IOException {
+  }
+
   protected void warnInvalidSequence(String seqid) {
     if (mWarnCount < 5) {
       Diagnostic.warning("Invalid sequence id " + seqid + ", must be from 0 to " + (mReader.numberSequences() - 1));
@@ -127,16 +127,20 @@ public class GenerateReferenceManifest extends AbstractCli {
             for (int i = 0; i < CHECKS.length - 1; ++i) {
               getters[i] = checkValueFactory(CHECKS[i + 1]);
             }
-            for (ReferenceSequence sequence : ref.sequences()) {
-              if (sequence.isSpecified()) {
-                final long seqId = names.get(sequence.name());
-                writer.write(sequence.name());
-                for (final GetCheckValue getter : getters) {
-                  writer.write("\t");
-                  writer.write(getter.getValue(reader, seqId));
+            try {
+              for (ReferenceSequence sequence : ref.sequences()) {
+                if (sequence.isSpecified()) {
+                  final long seqId = names.get(sequence.name());
+                  writer.write(sequence.name());
+                  for (final GetCheckValue getter : getters) {
+                    writer.write("\t");
+                    writer.write(getter.getValue(reader, seqId));
+                  }
+                  writer.write("\n");
                 }
-                writer.write("\n");
               }
+            } finally {
+              ReaderUtils.closeSequenceNameMap(names);
             }
           }
         }
@@ -200,7 +200,11 @@ public final class ReferenceDetector {
   public boolean checkReference(SequencesReader sr) throws IOException {
     final Map<String, Long> sequenceNameMap = getSequenceNameMap(sr);
     if (sequenceNameMap != null) {
-      return checkReference(sr, sequenceNameMap);
+      try {
+        return checkReference(sr, sequenceNameMap);
+      } finally {
+        ReaderUtils.closeSequenceNameMap(sequenceNameMap);
+      }
     }
     return false;
   }
@@ -29,6 +29,7 @@
  */
 package com.rtg.sam;
 
+import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -37,6 +38,8 @@ import java.io.InputStream;
 import java.util.HashMap;
 
 import com.rtg.tabix.AbstractIndexReader;
+import com.rtg.tabix.IndexBinning;
+import com.rtg.util.gzip.GzipUtils;
 import com.rtg.util.io.ByteArrayIOUtils;
 import com.rtg.util.io.FileUtils;
 import com.rtg.util.io.IOUtils;
@@ -44,13 +47,15 @@ import com.rtg.util.io.IOUtils;
 import htsjdk.samtools.SAMSequenceDictionary;
 
 /**
- * Used for reading file block compressed file coordinates from BAM indexes
+ * Used for reading file block compressed file coordinates from BAM indexes, either in
+ * <code>BAI</code> or block compressed <code>CSI</code> format.
  */
 public class BamIndexReader extends AbstractIndexReader {
 
   /** Size of fixed portion of header */
   private static final int FIXED_HEADER_SIZE = 8;
   private static final byte[] BAI_MAGIC = {'B', 'A', 'I', 1};
+  private static final byte[] CSI_MAGIC = {'C', 'S', 'I', 1};
 
   /**
    * @param indexFile BAM index file to open
@@ -59,17 +64,37 @@ public class BamIndexReader extends AbstractIndexReader {
    */
   public BamIndexReader(File indexFile, SAMSequenceDictionary dict) throws IOException {
     super(indexFile);
-    try (InputStream is = new FileInputStream(indexFile)) {
+    try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(indexFile))) {
+      mCsi = FileUtils.isGzipFile(bis);
+    }
+    try (InputStream is = openIndexFile()) {
       final byte[] buf = new byte[FIXED_HEADER_SIZE];
       final int len = IOUtils.readAmount(is, buf, 0, FIXED_HEADER_SIZE);
       if (len != FIXED_HEADER_SIZE) {
         throw new EOFException("File: " + indexFile.getPath() + " is not a valid BAM index. (index does not have a complete header)");
       }
-      for (int i = 0; i < BAI_MAGIC.length; ++i) {
-        if (BAI_MAGIC[i] != buf[i]) {
-          throw new IOException("File: " + indexFile.getPath() + " is not a valid BAI index. (index does not have a valid header)");
+      final byte[] magic = mCsi ? CSI_MAGIC : BAI_MAGIC;
+      for (int i = 0; i < magic.length; ++i) {
+        if (magic[i] != buf[i]) {
+          throw new IOException("File: " + indexFile.getPath() + " is not a valid " + (mCsi ? "CSI" : "BAI") + " index. (index does not have a valid header)");
         }
       }
+      long pos = FIXED_HEADER_SIZE;
+      if (mCsi) {
+        // Header continues with depth and auxiliary data, which are followed by the number of references
+        final int minShift = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 4);
+        final int depth = readInt(is, buf);
+        try {
+          mBinning = new IndexBinning(minShift, depth);
+        } catch (final IllegalArgumentException e) {
+          throw new IOException("File: " + indexFile.getPath() + " is not a valid CSI index. (" + e.getMessage() + ")", e);
+        }
+        final int auxLength = readInt(is, buf);
+        FileUtils.skip(is, auxLength);
+        pos += 8 + auxLength;
+        IOUtils.readFully(is, buf, 4, 4); // Number of references, in the same place as for BAI
+        pos += 4;
+      }
       final int numRefs = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 4);
       if (numRefs != dict.size()) {
         throw new IllegalArgumentException("Index file: " + indexFile.getPath() + " does not contain the same number of sequences as given sequence dictionary");
@@ -84,21 +109,24 @@ public class BamIndexReader extends AbstractIndexReader {
       int seqNo = 0;
       mBinPositions = new long[numRefs];
       mLinearIndexPositions = new long[numRefs];
-      long pos = FIXED_HEADER_SIZE;
-      final byte[] bBuf = new byte[8];
+      final byte[] bBuf = new byte[16];
+      final int binHeaderSize = mCsi ? 16 : 8; // CSI bins also include a minimum offset
       for (; seqNo < numRefs; ++seqNo) {
         mBinPositions[seqNo] = pos;
         IOUtils.readFully(is, bBuf, 0, 4);
         pos += 4;
         final int numBins = ByteArrayIOUtils.bytesToIntLittleEndian(bBuf, 0);
         for (int i = 0; i < numBins; ++i) {
-          IOUtils.readFully(is, bBuf, 0, 8);
-          pos += 8;
-          final int numChunks = ByteArrayIOUtils.bytesToIntLittleEndian(bBuf, 4);
+          IOUtils.readFully(is, bBuf, 0, binHeaderSize);
+          pos += binHeaderSize;
+          final int numChunks = ByteArrayIOUtils.bytesToIntLittleEndian(bBuf, binHeaderSize - 4);
           FileUtils.skip(is, numChunks * 16L);
           pos += numChunks * 16L;
         }
         mLinearIndexPositions[seqNo] = pos;
+        if (mCsi) {
+          continue;
+        }
         IOUtils.readFully(is, bBuf, 0, 4);
         pos += 4;
         final int numLinear = ByteArrayIOUtils.bytesToIntLittleEndian(bBuf, 0);
@@ -108,8 +136,16 @@ public class BamIndexReader extends AbstractIndexReader {
     }
   }
 
+  private static int readInt(InputStream is, byte[] buf) throws IOException {
+    IOUtils.readFully(is, buf, 0, 4);
+    return ByteArrayIOUtils.bytesToIntLittleEndian(buf, 0);
+  }
+
   @Override
   public InputStream openIndexFile() throws IOException {
+    if (mCsi) {
+      return GzipUtils.createGzipInputStream(new BufferedInputStream(new FileInputStream(mIndexFile)));
+    }
     return new FileInputStream(mIndexFile);
   }
 }
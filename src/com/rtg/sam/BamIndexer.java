@@ -40,6 +40,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.rtg.tabix.BlockCompressedPositionReader;
+import com.rtg.tabix.IndexBinning;
 import com.rtg.tabix.SequenceIndex;
 import com.rtg.tabix.SequenceIndex.SequenceIndexChunk;
 import com.rtg.tabix.SequenceIndexContainer;
@@ -48,6 +49,8 @@ import com.rtg.tabix.UnindexableDataException;
 import com.rtg.util.io.ByteArrayIOUtils;
 import com.rtg.util.io.FileUtils;
 
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+
 /**
  * Methods for use with BAM index file.
  */
@@ -72,8 +75,12 @@ public final class BamIndexer {
    * @throws UnindexableDataException If data cannot be indexed because of properties of the data
    */
   public static SequenceIndexContainer createBamIndex(final InputStream bam) throws IOException, UnindexableDataException {
+    return createBamIndex(bam, null);
+  }
+
+  private static SequenceIndexContainer createBamIndex(final InputStream bam, IndexBinning csiBinning) throws IOException, UnindexableDataException {
     final BamReader input = new BamReader(bam);
-    return createBamIndexInternal(input, input.numReferences(), true);
+    return createBamIndexInternal(input, input.numReferences(), true, csiBinning);
   }
 
   /**
@@ -87,7 +94,7 @@ public final class BamIndexer {
    */
   public static SequenceIndexContainer createBamIndexNoHeader(final InputStream bam, boolean expectHeader, int numReferences) throws IOException, UnindexableDataException {
     final BamReader input = new BamReader(new BgzfInputStream(bam), expectHeader);
-    return createBamIndexInternal(input, numReferences, false);
+    return createBamIndexInternal(input, numReferences, false, null);
   }
 
   private static SequenceIndexContainer createBamIndex(File bamFile) throws IOException, UnindexableDataException {
@@ -102,14 +109,14 @@ public final class BamIndexer {
     }
   }
 
-  private static SequenceIndexContainer createBamIndexInternal(BamReader input, int numReferences, boolean refLengths) throws IOException, UnindexableDataException {
+  private static SequenceIndexContainer createBamIndexInternal(BamReader input, int numReferences, boolean refLengths, IndexBinning csiBinning) throws IOException, UnindexableDataException {
     final SequenceIndex[] indexs = new SequenceIndex[numReferences];
     for (int i = 0; i < indexs.length; ++i) {
       indexs[i] = refLengths ? new SequenceIndex(input.referenceLength(i)) : new SequenceIndex();
     }
     final List<SequenceIndex> indexList = Arrays.asList(indexs);
-    final long unmapped = TabixIndexer.populateIndex(indexList, new BamPositionReader(input), true);
-    TabixIndexer.mergeChunks(indexList);
+    final long unmapped = TabixIndexer.populateIndex(indexList, new BamPositionReader(input), true, csiBinning);
+    TabixIndexer.mergeChunks(indexList, (csiBinning == null ? IndexBinning.TABIX : csiBinning).metaBin());
     return new SequenceIndexContainer(indexList, unmapped);
   }
 
@@ -163,6 +170,25 @@ public final class BamIndexer {
     saveBamIndex(indexs, bamIndex);
   }
 
+  /**
+   * Writes a <code>CSI</code> format index for the given BAM file, suitable for references longer than can be handled by
+   * a BAM index
+   * @param bamFile BAM file to index
+   * @param csiIndex file to write index to
+   * @param binning the binning scheme of the index
+   * @throws IOException If an IO error occurs
+   * @throws UnindexableDataException If data cannot be indexed because of properties of the data
+   */
+  public static void saveBamCsiIndex(final File bamFile, final File csiIndex, IndexBinning binning) throws IOException, UnindexableDataException {
+    final SequenceIndexContainer indexs;
+    try (FileInputStream in = new FileInputStream(bamFile)) {
+      indexs = createBamIndex(in, binning);
+    }
+    try (OutputStream indexOut = new BlockCompressedOutputStream(FileUtils.createOutputStream(csiIndex), (File) null)) {
+      TabixIndexer.writeCsiIndex(indexs.getIndexes(), binning, new byte[0], indexs.numUnmappedNoCoordinates(), indexOut);
+    }
+  }
+
   private static void saveBamIndex(SequenceIndexContainer bic, File bamIndex) throws IOException {
     try (OutputStream indexOut = FileUtils.createOutputStream(bamIndex)) {
       writeIndex(bic, indexOut);
@@ -314,6 +340,15 @@ public final class BamIndexer {
     return new File(data.getParentFile(), data.getName() + BAM_INDEX_EXTENSION);
   }
 
+  /**
+   * Get the name a <code>CSI</code> index should have for a given data file
+   * @param data the file we want to index
+   * @return the file name the index should have.
+   */
+  public static File csiIndexFileName(File data) {
+    return new File(data.getParentFile(), data.getName() + TabixIndexer.CSI_EXTENSION);
+  }
+
   /**
    * Get the secondary possible name for an index to have for a given data file
    * (Will return same as indexFileName if there is no file extension)
@@ -29,29 +29,67 @@
  */
 package com.rtg.sam;
 
+import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.CRC32;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.launcher.globals.GlobalFlags;
+import com.rtg.launcher.globals.ToolsGlobalFlags;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.io.ByteArrayIOUtils;
+import com.rtg.util.io.FileUtils;
+import com.rtg.util.io.IOUtils;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
 
 /**
- * Simple BAM reader
+ * Simple BGZF reader. When more than one thread is requested, the next few blocks are read ahead
+ * and inflated concurrently on a pool of worker threads, while block offsets are still reported
+ * exactly as for serial reading. Read-ahead is only used by default when enabled by flag.
  */
+@TestClass("com.rtg.sam.BgzfInputStreamTest")
 public class BgzfInputStream extends InputStream {
   private static final int MAX_BGZF_BLOCK = 65535;
+  private static final int MAX_INFLATED_BLOCK = MAX_BGZF_BLOCK + 1;
+
+  /** Default number of threads to use for block decompression, 1 unless read-ahead is enabled */
+  public static final int DEFAULT_THREADS = GlobalFlags.getBooleanValue(ToolsGlobalFlags.GZIP_READ_AHEAD) ? GlobalFlags.getIntegerValue(ToolsGlobalFlags.GZIP_THREADS) : 1;
+
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+    final Thread t = new Thread(r, "BgzfInputStream");
+    t.setDaemon(true);
+    return t;
+  });
+
+  // Inflaters are reused by each worker thread
+  private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
 
   private final byte[] mIOBuf;
   private byte[] mUncompressBuf;
   private final InputStream mInputStream;
 
+  // Read-ahead state, only used when more than one thread is requested
+  private final int mMaxPending;
+  private final ArrayDeque<Future<InflatedBlock>> mPending;
+  // Buffers no longer in use by the reader or the workers, for reuse by later blocks
+  private final ArrayDeque<BgzfBlock> mFreeBlocks;
+  private final ArrayDeque<byte[]> mFreeBuffers;
+  private long mRawEndPos;
+  private boolean mRawEof;
+
   private long mBlockStartPos;
   private long mBlockEndPos;
   private final BgzfBlock mCurrentBlock;
@@ -62,18 +100,42 @@ public class BgzfInputStream extends InputStream {
   private int mDataLength;
 
   /**
-   * Constructs from stream
+   * Constructs from stream, using the default number of decompression threads
    * @param input the stream to read from
    */
   public BgzfInputStream(InputStream input) {
+    this(input, DEFAULT_THREADS);
+  }
+
+  /**
+   * Constructs from stream
+   * @param input the stream to read from
+   * @param threads number of blocks to inflate concurrently, 1 for serial decompression in the calling thread
+   */
+  public BgzfInputStream(InputStream input, int threads) {
+    this(input, threads, 0);
+  }
+
+  /**
+   * Constructs from a stream positioned part way through a file
+   * @param input the stream to read from, positioned at the start of a block
+   * @param threads number of blocks to inflate concurrently, 1 for serial decompression in the calling thread
+   * @param offset the offset in the file of the first block of the stream, used when reporting block offsets
+   */
+  public BgzfInputStream(InputStream input, int threads, long offset) {
     mInputStream = input;
+    mMaxPending = threads > 1 ? 2 * threads : 0;
+    mPending = threads > 1 ? new ArrayDeque<>() : null;
+    mFreeBlocks = threads > 1 ? new ArrayDeque<>() : null;
+    mFreeBuffers = threads > 1 ? new ArrayDeque<>() : null;
     mCurrentBlock = new BgzfBlock();
     mCurrentBlock.mData = new byte[MAX_BGZF_BLOCK];
     mInflater = new Inflater(true);
     mIOBuf = new byte[4096];
     mUncompressBuf = new byte[MAX_BGZF_BLOCK * 2];
-    mBlockEndPos = 0;
-    mBlockStartPos = 0;
+    mBlockEndPos = offset;
+    mBlockStartPos = offset;
+    mRawEndPos = offset;
     mCrc = new CRC32();
   }
 
@@ -83,7 +145,38 @@ public class BgzfInputStream extends InputStream {
    * @throws FileNotFoundException if file not found
    */
   public BgzfInputStream(File bamFile) throws FileNotFoundException {
-    this(new FileInputStream(bamFile));
+    this(bamFile, DEFAULT_THREADS);
+  }
+
+  /**
+   * Constructs from file
+   * @param bamFile file to read from
+   * @param threads number of blocks to inflate concurrently, 1 for serial decompression in the calling thread
+   * @throws FileNotFoundException if file not found
+   */
+  public BgzfInputStream(File bamFile, int threads) throws FileNotFoundException {
+    this(new BufferedInputStream(new FileInputStream(bamFile), FileUtils.BUFFERED_STREAM_SIZE), threads);
+  }
+
+  /**
+   * Open a file for streaming decompression. Block compressed files are read with parallel
+   * block read-ahead when the default number of decompression threads is more than one,
+   * otherwise the file is opened as for <code>FileUtils.createInputStream</code>.
+   * @param file the file to read, or '-' for standard input
+   * @return the uncompressed input stream
+   * @throws IOException if an IO error occurs
+   */
+  public static InputStream createInputStream(File file) throws IOException {
+    if (DEFAULT_THREADS > 1 && !FileUtils.isStdio(file) && FileUtils.isGzipFilename(file) && isBlockCompressed(file)) {
+      return new BgzfInputStream(file, DEFAULT_THREADS);
+    }
+    return FileUtils.createInputStream(file, true);
+  }
+
+  private static boolean isBlockCompressed(File file) throws IOException {
+    try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file))) {
+      return BlockCompressedInputStream.isValidFile(bis);
+    }
   }
 
   /**
@@ -108,6 +201,30 @@ public class BgzfInputStream extends InputStream {
     return mDataPosition;
   }
 
+  /**
+   * Virtual offset of the current read pointer, as used in tabix and BAM indexes
+   * @return the virtual offset
+   */
+  public long getFilePointer() {
+    return (blockStart() << 16) | dataOffset();
+  }
+
+  /**
+   * Returns the number of bytes remaining in the current block, reading the next
+   * non-empty block if the current one has been exhausted.
+   * @return the number of bytes that can be read without inflating another block, 0 at end of stream
+   * @throws IOException if an IO error occurs
+   */
+  @Override
+  public int available() throws IOException {
+    while (mDataPosition == mDataLength) {
+      if (!readBlock()) {
+        return 0;
+      }
+    }
+    return mDataLength - mDataPosition;
+  }
+
   @Override
   public int read() throws IOException {
     final int remaining = mDataLength - mDataPosition;
@@ -146,6 +263,9 @@ public class BgzfInputStream extends InputStream {
   }
 
   private boolean readBlock() throws IOException {
+    if (mPending != null) {
+      return readBlockAhead();
+    }
     mBlockStartPos = mBlockEndPos;
     mDataPosition = 0;
     final int len = readBgzfBlock(mInputStream, mIOBuf, mCurrentBlock);
@@ -155,19 +275,77 @@ public class BgzfInputStream extends InputStream {
       return false;
     }
     mBlockEndPos += len;
-    mUncompressBuf = inflate(mInflater, mCurrentBlock.mData, mUncompressBuf, mCurrentBlock.mInputSize);
-    mCrc.reset();
-    if (mCurrentBlock.mInputSize < 0) {
+    mUncompressBuf = inflateBlock(mInflater, mCrc, mCurrentBlock, mUncompressBuf, mBlockStartPos, len);
+    mDataLength = mCurrentBlock.mInputSize;
+    return true;
+  }
+
+  // Keep the queue of blocks being inflated topped up, then take the next block in file order
+  private boolean readBlockAhead() throws IOException {
+    while (!mRawEof && mPending.size() < mMaxPending) {
+      final BgzfBlock block = freeBlock();
+      final long start = mRawEndPos;
+      final int len = readBgzfBlock(mInputStream, mIOBuf, block);
+      if (len == -1) {
+        mRawEof = true;
+        mFreeBlocks.add(block);
+      } else {
+        mRawEndPos += len;
+        final byte[] dest = freeBuffer();
+        mPending.add(EXECUTOR.submit(() -> new InflatedBlock(block, inflateBlock(INFLATERS.get(), new CRC32(), block, dest, start, len), block.mInputSize, len)));
+      }
+    }
+    mBlockStartPos = mBlockEndPos;
+    mDataPosition = 0;
+    if (mPending.isEmpty()) {
+      mDataLength = 0;
+      return false;
+    }
+    final InflatedBlock next;
+    try {
+      next = mPending.remove().get();
+    } catch (final ExecutionException e) {
+      IOUtils.rethrow(e.getCause());
+      throw new IllegalStateException(e); // Not reached, rethrow always throws
+    } catch (final InterruptedException e) {
+      throw new IOException("BgzfInputStream interrupted during read", e);
+    }
+    mBlockEndPos += next.mCompressedLength;
+    mFreeBlocks.add(next.mBlock);
+    mFreeBuffers.add(mUncompressBuf); // The reader has finished with the previous block
+    mUncompressBuf = next.mData;
+    mDataLength = next.mLength;
+    return true;
+  }
+
+  private BgzfBlock freeBlock() {
+    final BgzfBlock block = mFreeBlocks.poll();
+    if (block != null) {
+      return block;
+    }
+    final BgzfBlock res = new BgzfBlock();
+    res.mData = new byte[MAX_BGZF_BLOCK];
+    return res;
+  }
+
+  private byte[] freeBuffer() {
+    final byte[] buf = mFreeBuffers.poll();
+    return buf != null ? buf : new byte[MAX_INFLATED_BLOCK];
+  }
+
+  private static byte[] inflateBlock(Inflater inflater, CRC32 crc, BgzfBlock block, byte[] dest, long startPos, int len) throws IOException {
+    if (block.mInputSize < 0) {
       // See Bug#1630, a customer observed this, file corruption?
-      Diagnostic.userLog("Possible input corruption: startPos=" + mBlockStartPos + " length=" + len + " size=" + mCurrentBlock.mInputSize);
-      throw new IOException("Input file had a block with negative length " + mCurrentBlock.mInputSize + " (possible corruption of input file)");
+      Diagnostic.userLog("Possible input corruption: startPos=" + startPos + " length=" + len + " size=" + block.mInputSize);
+      throw new IOException("Input file had a block with negative length " + block.mInputSize + " (possible corruption of input file)");
     }
-    mCrc.update(mUncompressBuf, 0, mCurrentBlock.mInputSize);
-    if (((long) mCurrentBlock.mCrc & 0xFFFFFFFFL) != mCrc.getValue()) {
+    final byte[] res = inflate(inflater, block.mData, dest, block.mInputSize);
+    crc.reset();
+    crc.update(res, 0, block.mInputSize);
+    if (((long) block.mCrc & 0xFFFFFFFFL) != crc.getValue()) {
       throw new IOException("CRC doesn't match block (probable corruption of input file)");
     }
-    mDataLength = mCurrentBlock.mInputSize;
-    return true;
+    return res;
   }
 
   private static byte[] inflate(Inflater inf, byte[] input, byte[] dest, int size) throws IOException {
@@ -246,9 +424,29 @@ public class BgzfInputStream extends InputStream {
   }
   @Override
   public void close() throws IOException {
+    if (mPending != null) {
+      for (final Future<InflatedBlock> f : mPending) {
+        f.cancel(true);
+      }
+      mPending.clear();
+    }
     mInputStream.close();
   }
 
+  private static final class InflatedBlock {
+    final BgzfBlock mBlock;
+    final byte[] mData;
+    final int mLength;
+    final int mCompressedLength;
+
+    InflatedBlock(BgzfBlock block, byte[] data, int length, int compressedLength) {
+      mBlock = block;
+      mData = data;
+      mLength = length;
+      mCompressedLength = compressedLength;
+    }
+  }
+
   private static class BgzfBlock {
     //section 1, 12 bytes long
     //byte mGzId1;
@@ -29,7 +29,7 @@
  */
 package com.rtg.sam;
 
-import java.util.HashSet;
+import com.rtg.util.array.longindex.LongHashSet;
 
 import htsjdk.samtools.SAMRecord;
 
@@ -42,7 +42,7 @@ import htsjdk.samtools.SAMRecord;
 public class DuplicateSamFilter implements SamFilter {
 
   /* set contains hashes of read names (with left/right arm-ness taken into account as well) */
-  private final HashSet<Long> mReadNameSet = new HashSet<>();
+  private final LongHashSet mReadNameSet = new LongHashSet();
 
   @Override
   public boolean acceptRecord(SAMRecord rec) {
@@ -53,11 +53,7 @@ public class DuplicateSamFilter implements SamFilter {
       return true;
     }
     final long hash = internalHash(rec.getReadName(), !rec.getReadPairedFlag() || rec.getFirstOfPairFlag());
-    if (mReadNameSet.contains(hash)) {
-      return false;
-    }
-    mReadNameSet.add(hash);
-    return true;
+    return mReadNameSet.add(hash);
   }
 
   private static long internalHash(final String data, boolean firstOrSingleEnd) {
@@ -53,6 +53,7 @@ import htsjdk.samtools.SamInputResource;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeIOException;
 
 /**
  * Utility methods for getting a <code>SAMRecord</code> iterator that is backed by a {@link ClosedFileInputStream}. Note there is no
@@ -103,7 +104,15 @@ public final class SamClosedFileReader extends AbstractSamRecordIterator {
   public void close() {
     if (!mIsClosed) {
       mIsClosed = true;
-      mIterator.close();
+      try {
+        mIterator.close();
+      } finally {
+        try {
+          mStream.close();
+        } catch (final IOException e) {
+          throw new RuntimeIOException(e);
+        }
+      }
     }
   }
 
@@ -138,7 +147,7 @@ public final class SamClosedFileReader extends AbstractSamRecordIterator {
 
     final LocusIndex index;
     if (mType == SamReader.Type.SAM_TYPE) {
-      final File indexFileName = TabixIndexer.indexFileName(mFile);
+      final File indexFileName = TabixIndexer.existingIndexFileName(mFile);
       if (!TabixIndexer.isBlockCompressed(mFile) || !indexFileName.exists()) {
         throw new NoTalkbackSlimException("File " + mFile.getPath() + " is not tabix indexed");
       }
@@ -147,6 +156,9 @@ public final class SamClosedFileReader extends AbstractSamRecordIterator {
       File indexFileName = BamIndexer.indexFileName(mFile);
       if (!indexFileName.exists()) {
         indexFileName = BamIndexer.secondaryIndexFileName(mFile);
+        if (!indexFileName.exists()) {
+          indexFileName = BamIndexer.csiIndexFileName(mFile);
+        }
         if (!indexFileName.exists()) {
           throw new NoTalkbackSlimException("File " + mFile.getPath() + " is not indexed for " + mType.fileExtension());
         }
@@ -565,7 +565,7 @@ public final class SamUtils {
     if (t == null) {
       return false;
     } else if (t == SamReader.Type.SAM_TYPE) { // We support tabixed block-compressed SAM
-      return TabixIndexer.indexFileName(file).exists();
+      return TabixIndexer.existingIndexFileName(file).exists();
     } else {
       return SamFiles.findIndex(file) != null;
     }
@@ -48,7 +48,8 @@ import com.rtg.util.io.FileUtils;
 import com.rtg.util.io.IOUtils;
 
 /**
- * Common implementation between Tabix and BAM index readers.
+ * Common implementation between Tabix and BAM index readers. Both also support reading
+ * the equivalent <code>CSI</code> format indexes, which allow a configurable binning scheme.
  *
  */
 @TestClass("com.rtg.tabix.TabixIndexReaderTest")
@@ -65,6 +66,10 @@ public abstract class AbstractIndexReader implements LocusIndex {
 
   protected final File mIndexFile;
 
+  /** True if the index is in <code>CSI</code> format, in which case subclasses must also set the binning scheme */
+  protected boolean mCsi = false;
+  protected IndexBinning mBinning = IndexBinning.TABIX;
+
   protected long[] mBinPositions;
   protected long[] mLinearIndexPositions;
 
@@ -137,6 +142,10 @@ public abstract class AbstractIndexReader implements LocusIndex {
     final byte[] binsBuf = new byte[binsSize];
     //read number of bins
     IOUtils.readFully(indexStream, binsBuf, 0, binsBuf.length);
+    if (mCsi) {
+      getCsiFilePointers(seqName, intervals, binsBuf, results);
+      return;
+    }
     final int numBins = ByteArrayIOUtils.bytesToIntLittleEndian(binsBuf, 0);
 
     final byte[] tinyBuf = new byte[4];
@@ -221,6 +230,90 @@ public abstract class AbstractIndexReader implements LocusIndex {
   }
 
 
+  // For CSI the bins section contains everything, each bin has a minimum offset rather than there being a separate linear index.
+  // The number of possible bins grows rapidly with depth, so bins are looked up in a sorted array of those present in the index
+  private void getCsiFilePointers(String seqName, List<? extends Interval> intervals, byte[] binsBuf, VirtualOffsets results) {
+    final int numBins = ByteArrayIOUtils.bytesToIntLittleEndian(binsBuf, 0);
+    final int numBinIds = mBinning.metaBin() + 1;
+    final long[] binOrder = new long[numBins];
+    final long[] binMinOffset = new long[numBins];
+    final long[][] binChunkBounds = new long[numBins][];
+    int binStart = 4;
+    for (int i = 0; i < numBins; ++i) {
+      final int binNo = ByteArrayIOUtils.bytesToIntLittleEndian(binsBuf, binStart);
+      if (binNo < 0 || binNo >= numBinIds) {
+        throw new IllegalArgumentException("File: " + mIndexFile.getPath() + " is not a valid index. (bin = " + binNo + ")");
+      }
+      binOrder[i] = ((long) binNo << 32) | i;
+      binMinOffset[i] = ByteArrayIOUtils.bytesToLongLittleEndian(binsBuf, binStart + 4);
+      final int numChunks = ByteArrayIOUtils.bytesToIntLittleEndian(binsBuf, binStart + 12);
+      final int chunkStart = binStart + 16;
+      final int chunkSize = numChunks * 16;
+      if (chunkSize < 0 || numChunks * 2 < 0) {
+        throw new IllegalArgumentException("File: " + mIndexFile.getPath() + " is not a valid index. (numChunks = " + numChunks + ")");
+      }
+      final long[] chunkBounds = binChunkBounds[i] = new long[numChunks * 2];
+      for (int k = 0, j = 0; k < numChunks; ++k) {
+        chunkBounds[j++] = ByteArrayIOUtils.bytesToLongLittleEndian(binsBuf, chunkStart + k * 16);
+        chunkBounds[j++] = ByteArrayIOUtils.bytesToLongLittleEndian(binsBuf, chunkStart + k * 16 + 8);
+      }
+      binStart = chunkStart + chunkSize;
+    }
+    Arrays.sort(binOrder);
+    final int[] sortedBins = new int[numBins];
+    final int[] sortedBinIndex = new int[numBins];
+    for (int i = 0; i < numBins; ++i) {
+      sortedBins[i] = (int) (binOrder[i] >>> 32);
+      sortedBinIndex[i] = (int) binOrder[i];
+    }
+
+    final long maxCoord = Math.min(mBinning.maxCoordinate(), Integer.MAX_VALUE);
+    for (Interval interval : intervals) {
+      final SequenceNameLocus region = new SequenceNameLocusSimple(seqName, interval.getStart(), interval.getEnd());
+      final int beg = (region.getStart() <= -1 || region.getStart() == Integer.MIN_VALUE) ? 0 : region.getStart();
+      final int end = (region.getEnd() <= -1 || region.getEnd() == Integer.MAX_VALUE) ? (int) maxCoord : region.getEnd();
+      if (end > maxCoord || beg > maxCoord) {
+        throw new NoTalkbackSlimException("The requested region " + region + " contains coordinates greater than can be addressed by the index");
+      }
+
+      // Find the minimum offset from the closest bin at or preceding the start position at the lowest level
+      int bin = mBinning.leafBin(beg);
+      while (bin > 0 && Arrays.binarySearch(sortedBins, bin) < 0) {
+        final int first = (IndexBinning.parentBin(bin) << 3) + 1;
+        bin = bin > first ? bin - 1 : IndexBinning.parentBin(bin);
+      }
+      final int minBin = Arrays.binarySearch(sortedBins, bin);
+      final long minOffset = minBin < 0 ? 0 : binMinOffset[sortedBinIndex[minBin]];
+
+      long begFilePointer = -1;
+      long endFilePointer = -1;
+      final int actualEnd = Math.max(beg, end - 1);
+      for (int level = 0; level <= mBinning.depth(); ++level) {
+        // Bins overlapping the region at each level are consecutive
+        final int lastBin = mBinning.bin(level, actualEnd);
+        final int firstPos = Arrays.binarySearch(sortedBins, mBinning.bin(level, beg));
+        for (int p = firstPos < 0 ? -firstPos - 1 : firstPos; p < numBins && sortedBins[p] <= lastBin; ++p) {
+          final long[] chunkBounds = binChunkBounds[sortedBinIndex[p]];
+          for (int j = 0; j < chunkBounds.length; j += 2) {
+            final long chunkBeg = chunkBounds[j];
+            final long chunkEnd = chunkBounds[j + 1];
+            if (isLessThanUnsigned(minOffset, chunkEnd)) {
+              if (begFilePointer == -1 || isLessThanUnsigned(chunkBeg, begFilePointer)) {
+                begFilePointer = chunkBeg;
+              }
+              if (endFilePointer == -1 || isLessThanUnsigned(endFilePointer, chunkEnd)) {
+                endFilePointer = chunkEnd;
+              }
+            }
+          }
+        }
+      }
+      if (begFilePointer != -1) {
+        results.add(begFilePointer, endFilePointer, region);
+      }
+    }
+  }
+
   /**
    * comparison function to compare two longs as if they were unsigned
    * @param n1 first long
@@ -45,6 +45,7 @@ import com.rtg.launcher.CommonFlags;
 import com.rtg.util.cli.CommonFlagCategories;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.io.FileUtils;
+import com.rtg.util.io.GzipAsynchOutputStream;
 
 import htsjdk.samtools.util.BlockCompressedOutputStream;
 
@@ -80,8 +81,10 @@ public class BgZip extends AbstractCli {
     mFlags.registerOptional('f', FORCE_FLAG, "force overwrite of existing output file").setCategory(INPUT_OUTPUT);
     mFlags.registerOptional(NO_TERMINATE_FLAG, "if set, do not add the block gzip termination block").setCategory(INPUT_OUTPUT);
     mFlags.registerOptional('l', LEVEL_FLAG, Integer.class, CommonFlags.INT, "the compression level to use, between 1 (least but fast) and 9 (highest but slow)", BlockCompressedOutputStream.getDefaultCompressionLevel()).setCategory(INPUT_OUTPUT);
+    CommonFlags.initThreadsFlag(mFlags);
 
     mFlags.setValidator(flags -> flags.checkInRange(LEVEL_FLAG, 1, 9)
+      && CommonFlags.validateThreads(flags)
       && flags.checkNand(STDOUT_FLAG, FORCE_FLAG)
       && flags.checkNand(DECOMPRESS_FLAG, NO_TERMINATE_FLAG)
       && flags.checkNand(DECOMPRESS_FLAG, LEVEL_FLAG));
@@ -155,9 +158,8 @@ public class BgZip extends AbstractCli {
       os = stdout ? out : new FileOutputStream(outputFilename);
     } else {
       final File file = new File(f.getPath() + FileUtils.GZ_SUFFIX);
-      os = stdout
-        ? new BlockCompressedOutputStream(out, null, (Integer) mFlags.getValue(LEVEL_FLAG), !mFlags.isSet(NO_TERMINATE_FLAG))
-        : new BlockCompressedOutputStream(new FileOutputStream(file), file, (Integer) mFlags.getValue(LEVEL_FLAG), !mFlags.isSet(NO_TERMINATE_FLAG));
+      final int threads = CommonFlags.parseThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG));
+      os = GzipAsynchOutputStream.createBlockCompressedOutputStream(stdout ? out : new FileOutputStream(file), (Integer) mFlags.getValue(LEVEL_FLAG), threads, !mFlags.isSet(NO_TERMINATE_FLAG));
     }
     return os;
   }
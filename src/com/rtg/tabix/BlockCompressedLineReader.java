@@ -32,6 +32,8 @@ package com.rtg.tabix;
 import java.io.IOException;
 import java.util.Arrays;
 
+import com.rtg.sam.BgzfInputStream;
+
 import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.BlockCompressedStreamConstants;
 import htsjdk.samtools.util.LineReader;
@@ -40,11 +42,21 @@ import htsjdk.samtools.util.RuntimeIOException;
 /**
  * This class relies on implementation details of {@link BlockCompressedInputStream} namely
  * that {@link BlockCompressedInputStream#available()} returns the number of bytes remaining
- * in the current block.
+ * in the current block. {@link BgzfInputStream} behaves the same way, and is used within
+ * this package for sequential reading with parallel block decompression, but does not support seeking.
  */
 public class BlockCompressedLineReader implements LineReader {
 
-  private final BlockCompressedInputStream mStream;
+  /** The subset of block compressed stream operations needed by this reader */
+  interface BlockStream {
+    int available() throws IOException;
+    int read(byte[] buf, int offset, int length) throws IOException;
+    long getFilePointer();
+    void seek(long filePointer) throws IOException;
+    void close() throws IOException;
+  }
+
+  private final BlockStream mStream;
 
   private byte[] mBuffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE * 2];
   private byte[] mLineBuffer = new byte[1024];
@@ -55,12 +67,70 @@ public class BlockCompressedLineReader implements LineReader {
   private long mLineFilePointer;
   private long mFilePointer;
   private int mLineNumber;
-  private boolean mInit;
 
   /**
    * @param stream create reader from given stream
    */
   public BlockCompressedLineReader(BlockCompressedInputStream stream) {
+    this(new BlockStream() {
+      @Override
+      public int available() throws IOException {
+        return stream.available();
+      }
+      @Override
+      public int read(byte[] buf, int offset, int length) throws IOException {
+        return stream.read(buf, offset, length);
+      }
+      @Override
+      public long getFilePointer() {
+        return stream.getFilePointer();
+      }
+      @Override
+      public void seek(long filePointer) throws IOException {
+        stream.seek(filePointer);
+      }
+      @Override
+      public void close() throws IOException {
+        stream.close();
+      }
+    });
+  }
+
+  /**
+   * Create a reader for sequential reading only, with block decompression as configured for the stream.
+   * The reader does not support {@link #seek(long)}, so is only available to the indexing code in this package.
+   * @param stream create reader from given stream
+   */
+  BlockCompressedLineReader(BgzfInputStream stream) {
+    this(new BlockStream() {
+      @Override
+      public int available() throws IOException {
+        return stream.available();
+      }
+      @Override
+      public int read(byte[] buf, int offset, int length) throws IOException {
+        return stream.read(buf, offset, length);
+      }
+      @Override
+      public long getFilePointer() {
+        return stream.getFilePointer();
+      }
+      @Override
+      public void seek(long filePointer) {
+        throw new UnsupportedOperationException("Cannot seek when reading a block compressed stream sequentially");
+      }
+      @Override
+      public void close() throws IOException {
+        stream.close();
+      }
+    });
+  }
+
+  /**
+   * Create a reader over any source of blocks.
+   * @param stream create reader from given stream
+   */
+  BlockCompressedLineReader(BlockStream stream) {
     mLineNumber = 0;
     mStream = stream;
     mLineFilePointer = 0;
@@ -68,7 +138,6 @@ public class BlockCompressedLineReader implements LineReader {
     mPos = 0;
     mBufferUsed = 0;
     mLineBufferUsed = 0;
-    mInit = false;
   }
 
   @Override
@@ -141,8 +210,7 @@ public class BlockCompressedLineReader implements LineReader {
     final int stash = mBufferUsed - start;
     copyToLineBuffer(start, stash);
     mPos = 0 - mLineBufferUsed;
-    mBufferFilePointer = mInit ? mStream.getFilePointer() : 0;
-    mInit = true;
+    mBufferFilePointer = mStream.getFilePointer();
     try {
       final int avail = mStream.available();
       while (avail > mBuffer.length) {
@@ -208,7 +276,6 @@ public class BlockCompressedLineReader implements LineReader {
     mPos = 0;
     mBufferUsed = 0;
     mLineBufferUsed = 0;
-    mInit = true;
   }
 
 }
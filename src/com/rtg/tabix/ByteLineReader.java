@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.tabix;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.util.io.FileUtils;
+
+/**
+ * Reads lines from a byte stream without decoding them into characters, so that callers
+ * can tokenize lines directly from the underlying buffer. As with <code>BufferedReader</code>,
+ * lines may be terminated by <code>\n</code>, <code>\r</code>, or <code>\r\n</code>.
+ */
+@TestClass("com.rtg.tabix.ByteLineReaderTest")
+public class ByteLineReader implements LineReader {
+
+  private final InputStream mIn;
+  private byte[] mBuf;
+  private int mBufStart = 0; // Start of unconsumed data
+  private int mBufEnd = 0; // End of valid data
+  private int mLineStart = 0;
+  private int mLineEnd = 0;
+  private boolean mSkipLf = false;
+  private boolean mEof = false;
+
+  /**
+   * @param in the stream to read lines from
+   */
+  public ByteLineReader(InputStream in) {
+    this(in, FileUtils.BUFFERED_STREAM_SIZE);
+  }
+
+  /**
+   * @param in the stream to read lines from
+   * @param initialSize initial buffer size, which will grow as needed to hold long lines
+   */
+  ByteLineReader(InputStream in, int initialSize) {
+    mIn = in;
+    mBuf = new byte[Math.max(1, initialSize)];
+  }
+
+  /**
+   * Advance to the next line. The line contents are available via <code>buffer()</code>,
+   * <code>lineStart()</code> and <code>lineEnd()</code> until the next call to this method.
+   * @return true if a line was read, false at the end of input
+   * @throws IOException if there was a problem reading from the stream
+   */
+  public boolean nextLine() throws IOException {
+    int scan = mBufStart;
+    while (true) {
+      if (mSkipLf && scan < mBufEnd) {
+        mSkipLf = false;
+        if (mBuf[scan] == '\n') {
+          mBufStart = ++scan;
+        }
+      }
+      for (; scan < mBufEnd; ++scan) {
+        final byte b = mBuf[scan];
+        if (b == '\n' || b == '\r') {
+          mLineStart = mBufStart;
+          mLineEnd = scan;
+          mBufStart = scan + 1;
+          mSkipLf = b == '\r';
+          return true;
+        }
+      }
+      if (mEof) {
+        mSkipLf = false;
+        if (mBufStart < mBufEnd) {
+          mLineStart = mBufStart;
+          mLineEnd = mBufEnd;
+          mBufStart = mBufEnd;
+          return true;
+        }
+        return false;
+      }
+      // Make room for more data, retaining the partial line
+      if (mBufStart > 0) {
+        final int pending = mBufEnd - mBufStart;
+        System.arraycopy(mBuf, mBufStart, mBuf, 0, pending);
+        scan -= mBufStart;
+        mBufStart = 0;
+        mBufEnd = pending;
+      }
+      if (mBufEnd == mBuf.length) {
+        mBuf = Arrays.copyOf(mBuf, mBuf.length * 2);
+      }
+      final int read = mIn.read(mBuf, mBufEnd, mBuf.length - mBufEnd);
+      if (read < 0) {
+        mEof = true;
+      } else {
+        mBufEnd += read;
+      }
+    }
+  }
+
+  /**
+   * @return the buffer containing the current line
+   */
+  public byte[] buffer() {
+    return mBuf;
+  }
+
+  /**
+   * @return the offset within the buffer of the start of the current line
+   */
+  public int lineStart() {
+    return mLineStart;
+  }
+
+  /**
+   * @return the offset within the buffer of the end of the current line (exclusive, not including line terminator)
+   */
+  public int lineEnd() {
+    return mLineEnd;
+  }
+
+  /**
+   * @return the current line as a string
+   */
+  public String line() {
+    return toString(mBuf, mLineStart, mLineEnd);
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    return nextLine() ? line() : null;
+  }
+
+  /**
+   * Decode a region of a byte array as UTF-8 (which the JVM handles particularly quickly for plain ASCII).
+   * @param buf the buffer
+   * @param start start offset
+   * @param end end offset (exclusive)
+   * @return the string
+   */
+  public static String toString(byte[] buf, int start, int end) {
+    return new String(buf, start, end - start, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() throws IOException {
+    mIn.close();
+  }
+}
@@ -160,7 +160,7 @@ public class ExtractCli extends AbstractCli {
       extractSamBam(input, regions, out, printHeader, headerOnly); // BAM
 
     } else {
-      final File index = TabixIndexer.indexFileName(input);
+      final File index = TabixIndexer.existingIndexFileName(input);
       if (!index.exists()) {
         throw new NoTalkbackSlimException("Index not found for file: " + input.getPath() + " expected index called: " + index.getPath());
       }
@@ -46,7 +46,16 @@ public class GenericPositionReader extends AbstractPositionReader {
    * @param options the options to use while reading positions
    */
   public GenericPositionReader(BlockCompressedLineReader reader, TabixIndexer.TabixOptions options) {
-    super(reader, noColsNeeded(options), (char) options.mMeta, options.mSkip);
+    this(reader, options, options.mSkip);
+  }
+
+  /**
+   * @param reader read positions out of this reader
+   * @param options the options to use while reading positions
+   * @param skip number of lines to skip at beginning of reader, overriding that of the options
+   */
+  GenericPositionReader(BlockCompressedLineReader reader, TabixIndexer.TabixOptions options, int skip) {
+    super(reader, noColsNeeded(options), (char) options.mMeta, skip);
     mOneBased = !options.mZeroBased;
     mStartCol = options.mStartCol;
     mEndCol = options.mEndCol;
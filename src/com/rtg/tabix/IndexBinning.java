@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2014. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.tabix;
+
+import com.reeltwo.jumble.annotations.TestClass;
+
+/**
+ * Describes the hierarchical binning scheme used by an index. <code>TABIX</code> and BAM indexes always
+ * use a minimum shift of 14 and a depth of 5, which limits positions to 512Mbp. <code>CSI</code> indexes
+ * record the scheme in the index, so a larger depth allows longer sequences to be indexed.
+ */
+@TestClass("com.rtg.tabix.IndexBinningTest")
+public final class IndexBinning {
+
+  /** Default minimum shift (the size of the smallest bins, and of linear index windows) */
+  public static final int DEFAULT_MIN_SHIFT = 14;
+
+  /** Largest supported coordinate shift, positions are stored in signed 32 bit integers */
+  private static final int MAX_SHIFT = 31;
+
+  /** Largest supported depth, keeps bin numbers within a signed 32 bit integer */
+  public static final int MAX_DEPTH = 9;
+
+  /** The fixed binning scheme of <code>TABIX</code> and BAM indexes */
+  public static final IndexBinning TABIX = new IndexBinning(DEFAULT_MIN_SHIFT, 5);
+
+  private final int mMinShift;
+  private final int mDepth;
+
+  /**
+   * @param minShift number of bits in the size of the smallest bins
+   * @param depth number of levels below the root bin
+   */
+  public IndexBinning(int minShift, int depth) {
+    if (minShift < 0 || minShift > MAX_SHIFT || depth < 0 || depth > MAX_DEPTH) {
+      throw new IllegalArgumentException("Invalid binning scheme, min shift " + minShift + " depth " + depth);
+    }
+    mMinShift = minShift;
+    mDepth = depth;
+  }
+
+  /**
+   * Create a binning scheme with a depth sufficient to index any sequence position.
+   * @param minShift number of bits in the size of the smallest bins
+   * @return the binning scheme
+   */
+  public static IndexBinning csi(int minShift) {
+    return new IndexBinning(minShift, defaultDepth(minShift));
+  }
+
+  /**
+   * @param minShift number of bits in the size of the smallest bins
+   * @return the depth used by default, which can index positions up to the maximum 32 bit signed integer
+   */
+  public static int defaultDepth(int minShift) {
+    return (MAX_SHIFT - minShift + 2) / 3;
+  }
+
+  /**
+   * @return number of bits in the size of the smallest bins
+   */
+  public int minShift() {
+    return mMinShift;
+  }
+
+  /**
+   * @return number of levels below the root bin
+   */
+  public int depth() {
+    return mDepth;
+  }
+
+  /**
+   * @return the maximum position (exclusive) that can be indexed
+   */
+  public long maxCoordinate() {
+    return 1L << (mMinShift + 3 * mDepth);
+  }
+
+  /**
+   * @return the number of distinct bins (excluding the pseudo bin holding meta data)
+   */
+  public int numBins() {
+    return ((1 << (3 * mDepth + 3)) - 1) / 7;
+  }
+
+  /**
+   * @return the bin number used for per-sequence meta data
+   */
+  public int metaBin() {
+    return numBins() + 1;
+  }
+
+  /**
+   * @param level level in the tree, 0 for the root
+   * @return the number of the first bin at the given level
+   */
+  private static int firstBin(int level) {
+    return ((1 << (3 * level)) - 1) / 7;
+  }
+
+  /**
+   * @param bin a bin number
+   * @return the bin number of the parent of the given bin
+   */
+  static int parentBin(int bin) {
+    return (bin - 1) >> 3;
+  }
+
+  /**
+   * @param bin a bin number
+   * @return the level in the tree of the given bin
+   */
+  private static int level(int bin) {
+    int level = 0;
+    while (bin >= firstBin(level + 1)) {
+      ++level;
+    }
+    return level;
+  }
+
+  /**
+   * @param pos a 0-based position
+   * @return the number of the smallest bin containing the position
+   */
+  int leafBin(int pos) {
+    return firstBin(mDepth) + (pos >> mMinShift);
+  }
+
+  /**
+   * @param level level in the tree, 0 for the root
+   * @param pos a 0-based position
+   * @return the number of the bin at the given level containing the position
+   */
+  int bin(int level, int pos) {
+    return firstBin(level) + (int) ((long) pos >> (mMinShift + 3 * (mDepth - level)));
+  }
+
+  /**
+   * @param bin a bin number
+   * @return the linear index window containing the first position of the bin
+   */
+  int firstWindow(int bin) {
+    final int level = level(bin);
+    return (bin - firstBin(level)) << (3 * (mDepth - level));
+  }
+
+  /**
+   * Calculate the smallest bin wholly containing <code>[beg, end)</code>
+   * @param beg start position (0-based)
+   * @param end end position (0-based exclusive)
+   * @return bin number
+   */
+  public int reg2bin(int beg, int end) {
+    final int actualEnd = Math.max(beg, end - 1);
+    int shift = mMinShift;
+    for (int level = mDepth; level > 0; --level, shift += 3) {
+      if (beg >> shift == actualEnd >> shift) {
+        return firstBin(level) + (beg >> shift);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Store all bins overlapping <code>[beg, end)</code> in the given array
+   * @param bins destination for bin numbers, must be of length at least <code>numBins()</code>
+   * @param beg start position (0-based)
+   * @param end end position (0-based exclusive)
+   * @return the number of bins stored
+   */
+  public int reg2bins(int[] bins, int beg, int end) {
+    final int actualEnd = Math.max(beg, end - 1);
+    int n = 0;
+    int shift = mMinShift + 3 * mDepth;
+    for (int level = 0; level <= mDepth; ++level, shift -= 3) {
+      final int first = firstBin(level);
+      for (int b = first + (int) ((long) beg >> shift), e = first + (int) ((long) actualEnd >> shift); b <= e; ++b) {
+        bins[n++] = b;
+      }
+    }
+    return n;
+  }
+}
@@ -62,6 +62,9 @@ public class IndexerCli extends AbstractCli {
 
   private static final String INPUT_FORMAT = "format";
   private static final String TEST_EOF = "Xtest-eof";
+  private static final String CSI_FLAG = "csi";
+  private static final String MIN_SHIFT_FLAG = "min-shift";
+  private static final String DEPTH_FLAG = "depth";
 
   /**
    * Supported formats for indexer
@@ -123,6 +126,10 @@ public class IndexerCli extends AbstractCli {
     final Flag<File> listFlag = flags.registerOptional('I', CommonFlags.INPUT_LIST_FLAG, File.class, CommonFlags.FILE, "file containing a list of block compressed files (1 per line) containing genome position data").setCategory(CommonFlagCategories.INPUT_OUTPUT);
     flags.registerOptional('f', INPUT_FORMAT, IndexFormat.class, "FORMAT", "format of input to index", IndexFormat.AUTO).setCategory(CommonFlagCategories.INPUT_OUTPUT);
     flags.registerOptional(TEST_EOF, "if set, check that compressed files contain a termination block").setCategory(CommonFlagCategories.UTILITY);
+    flags.registerOptional(CSI_FLAG, "create a CSI index rather than a Tabix or BAM index, allowing sequences longer than 512 million bases to be indexed").setCategory(CommonFlagCategories.UTILITY);
+    flags.registerOptional(MIN_SHIFT_FLAG, Integer.class, CommonFlags.INT, "when creating a CSI index, the number of bits in the size of the smallest bins", IndexBinning.DEFAULT_MIN_SHIFT).setCategory(CommonFlagCategories.UTILITY);
+    flags.registerOptional(DEPTH_FLAG, Integer.class, CommonFlags.INT, "when creating a CSI index, the number of levels of bins (Default is sufficient for any sequence length)").setCategory(CommonFlagCategories.UTILITY);
+    CommonFlags.initThreadsFlag(flags, "number of threads used to index block compressed TAB-delimited files. Has no effect when indexing BAM or CRAM files");
     flags.addRequiredSet(inFlag);
     flags.addRequiredSet(listFlag);
   }
@@ -130,7 +137,12 @@ public class IndexerCli extends AbstractCli {
   private static class IndexerValidator implements Validator {
     @Override
     public boolean isValid(CFlags flags) {
-      return CommonFlags.checkFileList(flags, CommonFlags.INPUT_LIST_FLAG, null, Integer.MAX_VALUE);
+      return CommonFlags.checkFileList(flags, CommonFlags.INPUT_LIST_FLAG, null, Integer.MAX_VALUE)
+        && flags.checkIf(MIN_SHIFT_FLAG, CSI_FLAG)
+        && flags.checkIf(DEPTH_FLAG, CSI_FLAG)
+        && flags.checkInRange(MIN_SHIFT_FLAG, 8, 24)
+        && flags.checkInRange(DEPTH_FLAG, 1, IndexBinning.MAX_DEPTH)
+        && CommonFlags.validateThreads(flags);
     }
   }
 
@@ -166,6 +178,17 @@ public class IndexerCli extends AbstractCli {
       Diagnostic.warning("Could not automatically determine file format type, please use --" + INPUT_FORMAT);
       return 1;
     }
+    final IndexBinning csiBinning;
+    if (mFlags.isSet(CSI_FLAG)) {
+      if (format == IndexFormat.CRAM) {
+        throw new NoTalkbackSlimException("CSI indexes are not supported for CRAM files");
+      }
+      final int minShift = (Integer) mFlags.getValue(MIN_SHIFT_FLAG);
+      csiBinning = mFlags.isSet(DEPTH_FLAG) ? new IndexBinning(minShift, (Integer) mFlags.getValue(DEPTH_FLAG)) : IndexBinning.csi(minShift);
+    } else {
+      csiBinning = null;
+    }
+    final int threads = CommonFlags.parseThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG));
     for (final File f : inputFiles) {
       if (format != IndexFormat.CRAM && !TabixIndexer.isBlockCompressed(f)) {
         Diagnostic.warning("Cannot create index for " + f.getPath() + " as it is not in bgzip format.");
@@ -177,7 +200,9 @@ public class IndexerCli extends AbstractCli {
       }
 
       final File indexFile;
-      if (format == IndexFormat.BAM || format == IndexFormat.CRAM) {
+      if (csiBinning != null) {
+        indexFile = TabixIndexer.csiIndexFileName(f);
+      } else if (format == IndexFormat.BAM || format == IndexFormat.CRAM) {
         indexFile = BamIndexer.indexFileName(f);
       } else {
         indexFile = TabixIndexer.indexFileName(f);
@@ -190,7 +215,7 @@ public class IndexerCli extends AbstractCli {
               Diagnostic.warning("File: " + f.getPath() + " does not have any headers, are you sure it is a SAM file?");
             }
             Diagnostic.info("Creating index for: " + f.getPath() + " (" + indexFile.getName() + ")");
-            new TabixIndexer(f, indexFile).saveSamIndex();
+            new TabixIndexer(f, indexFile, csiBinning, threads).saveSamIndex();
             break;
           case SV:
             if (!Utils.isSvOutput(f)) {
@@ -199,7 +224,7 @@ public class IndexerCli extends AbstractCli {
               continue;
             }
             Diagnostic.info("Creating index for: " + f.getPath() + " (" + indexFile.getName() + ")");
-            new TabixIndexer(f, indexFile).saveTsvIndex();
+            new TabixIndexer(f, indexFile, csiBinning, threads).saveTsvIndex();
             break;
           case VCF:
             if (!VcfUtils.isVcfFormat(f)) {
@@ -208,7 +233,7 @@ public class IndexerCli extends AbstractCli {
               continue;
             }
             Diagnostic.info("Creating index for: " + f.getPath() + " (" + indexFile.getName() + ")");
-            new TabixIndexer(f, indexFile).saveVcfIndex();
+            new TabixIndexer(f, indexFile, csiBinning, threads).saveVcfIndex();
             break;
           case COVERAGETSV:
             if (!Utils.isCoverageOutput(f)) {
@@ -217,11 +242,11 @@ public class IndexerCli extends AbstractCli {
               continue;
             }
             Diagnostic.info("Creating index for: " + f.getPath() + " (" + indexFile.getName() + ")");
-            new TabixIndexer(f, indexFile).saveBedIndex();
+            new TabixIndexer(f, indexFile, csiBinning, threads).saveBedIndex();
             break;
           case BED:
             Diagnostic.info("Creating index for: " + f.getPath() + " (" + indexFile.getName() + ")");
-            new TabixIndexer(f, indexFile).saveBedIndex();
+            new TabixIndexer(f, indexFile, csiBinning, threads).saveBedIndex();
             break;
           case CRAM:
             final SamReader.Type samType = SamUtils.getSamType(f);
@@ -231,7 +256,9 @@ public class IndexerCli extends AbstractCli {
               continue;
             }
             Diagnostic.info("Creating index for: " + f.getPath() + " (" + indexFile.getName() + ")");
-            CRAMBAIIndexer.createIndex(new ClosedFileInputStream(f), indexFile, null, ValidationStringency.SILENT);
+            try (ClosedFileInputStream cramStream = new ClosedFileInputStream(f)) {
+              CRAMBAIIndexer.createIndex(cramStream, indexFile, null, ValidationStringency.SILENT);
+            }
             break;
           case BAM:
             if (!SamUtils.isBAMFile(f)) {
@@ -240,7 +267,11 @@ public class IndexerCli extends AbstractCli {
               continue;
             }
             Diagnostic.info("Creating index for: " + f.getPath() + " (" + indexFile.getName() + ")");
-            BamIndexer.saveBamIndex(f, indexFile);
+            if (csiBinning != null) {
+              BamIndexer.saveBamCsiIndex(f, indexFile, csiBinning);
+            } else {
+              BamIndexer.saveBamIndex(f, indexFile);
+            }
             break;
           default:
             throw new RuntimeException();
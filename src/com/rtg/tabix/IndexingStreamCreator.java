@@ -41,6 +41,7 @@ import com.rtg.sam.BamIndexer;
 import com.rtg.util.IORunnable;
 import com.rtg.util.IORunnableProxy;
 import com.rtg.util.io.FileUtils;
+import com.rtg.util.io.GzipAsynchOutputStream;
 
 /**
  * Gets an output stream that has a parallel thread performing tabix/BAM indexing
@@ -52,6 +53,7 @@ public final class IndexingStreamCreator implements Closeable {
   private final boolean mCreateIndexIfPossible;
   private final TabixIndexer.IndexerFactory mIndexerFactory;
 
+  private InlineTabixIndexer mInlineIndexer;
   private IORunnableProxy mProxy;
   private Thread mIndexThread;
   private OutputStream mOutputStream;
@@ -95,6 +97,9 @@ public final class IndexingStreamCreator implements Closeable {
     } finally {
       if (mIndexThread != null) {
         try {
+          if (mInlineIndexer != null) {
+            mInlineIndexer.close(); // In case the output stream failed before closing it
+          }
           mIndexThread.join();
         } catch (InterruptedException e) {
           throw new IOException("Execution was interrupted", e);
@@ -129,18 +134,20 @@ public final class IndexingStreamCreator implements Closeable {
     if (mOutputStream == null) {
       final boolean bam = mIndexerFactory == null;
       final boolean gzonly = !bam && mCompress;
-      if (mCreateIndexIfPossible && mCompress) {
+      if (mCreateIndexIfPossible && gzonly) {
+        // Index the blocks as they are written, rather than decompressing the output again
+        mInlineIndexer = new InlineTabixIndexer(FileUtils.createOutputStream(TabixIndexer.indexFileName(mOutputFile)), mIndexerFactory, mOutputFile.toString());
+        mOutputStream = new GzipAsynchOutputStream(FileUtils.createOutputStream(mOutputFile, false), terminateBlockGzip, mInlineIndexer);
+        mProxy = new IORunnableProxy(mInlineIndexer);
+        mIndexThread = new Thread(mProxy);
+        mIndexThread.start();
+      } else if (mCreateIndexIfPossible && mCompress) {
+        assert bam;
         final PipedInputStream pipeToIndexIn = new PipedInputStream(); //closed by IndexRunner
         final PipedOutputStream pipeToIndexOut = new PipedOutputStream(pipeToIndexIn);
-        mOutputStream = FileUtils.createTeedOutputStream(mOutputFile, pipeToIndexOut, gzonly, false, terminateBlockGzip);
-        final OutputStream indexOutputStream;
-        if (bam) {
-          indexOutputStream = FileUtils.createOutputStream(BamIndexer.indexFileName(mOutputFile));
-        } else {
-          assert mCompress;
-          indexOutputStream = FileUtils.createOutputStream(TabixIndexer.indexFileName(mOutputFile));
-        }
-        final IndexRunner indexRunner = new IndexRunner(pipeToIndexIn, indexOutputStream, mIndexerFactory, expectHeader, numberReferences, mOutputFile.toString());
+        mOutputStream = FileUtils.createTeedOutputStream(mOutputFile, pipeToIndexOut, false, false, terminateBlockGzip);
+        final OutputStream indexOutputStream = FileUtils.createOutputStream(BamIndexer.indexFileName(mOutputFile));
+        final IndexRunner indexRunner = new IndexRunner(pipeToIndexIn, indexOutputStream, expectHeader, numberReferences, mOutputFile.toString());
         mProxy = new IORunnableProxy(indexRunner);
         mIndexThread = new Thread(mProxy);
         mIndexThread.start();
@@ -152,32 +159,28 @@ public final class IndexingStreamCreator implements Closeable {
   }
 
   /**
-   * Runner for producing the tabix index or BAM file index from an input stream.
+   * Runner for producing the BAM file index from an input stream. Tabix indexes are produced inline
+   * from the written blocks instead.
    */
   public static class IndexRunner implements IORunnable {
 
     private final String mFilename;
     private final InputStream mStreamToIndex;
     private final OutputStream mIndexOut;
-    private final boolean mBam;
     private final boolean mExpectHeader;
     private final int mNumReferences;
-    private final TabixIndexer.IndexerFactory mIndexerFactory;
 
     /**
      * Constructor for index runner.
      * @param streamToIndex the input stream of the file to be indexed.
      * @param indexOut the output stream for the index file.
-     * @param indexerFactory the indexer factory corresponding to the output format. Set this to null to indicate BAM indexing.
      * @param expectHeader true if BAM indexing is expecting the input file to have a header, false otherwise
      * @param numReferences the number of reference sequences, used with BAM input with no header
      * @param filename the name of the file being indexed
      */
-    public IndexRunner(InputStream streamToIndex, OutputStream indexOut, TabixIndexer.IndexerFactory indexerFactory, boolean expectHeader, int numReferences, String filename) {
+    public IndexRunner(InputStream streamToIndex, OutputStream indexOut, boolean expectHeader, int numReferences, String filename) {
       mStreamToIndex = streamToIndex;
       mIndexOut = indexOut;
-      mIndexerFactory = indexerFactory;
-      mBam = indexerFactory == null;
       mExpectHeader = expectHeader;
       mNumReferences = numReferences;
       mFilename = filename;
@@ -187,11 +190,7 @@ public final class IndexingStreamCreator implements Closeable {
     @SuppressWarnings("try")
     public void run() throws IOException {
       try (InputStream ignored = mStreamToIndex; OutputStream ignored2 = mIndexOut) {
-        if (mBam) {
-          BamIndexer.saveBamIndexNoHeader(mStreamToIndex, mIndexOut, mExpectHeader, mNumReferences);
-        } else {
-          new TabixIndexer(mStreamToIndex, mIndexOut).saveIndex(mIndexerFactory);
-        }
+        BamIndexer.saveBamIndexNoHeader(mStreamToIndex, mIndexOut, mExpectHeader, mNumReferences);
       } catch (final UnindexableDataException e) {
         throw new IOException("Cannot produce index for: " + mFilename + " (try disabling indexing)", e);
       }
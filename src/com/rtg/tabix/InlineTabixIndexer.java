@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.tabix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.rtg.util.IORunnable;
+import com.rtg.util.io.ParallelBgzfOutputStream;
+
+/**
+ * Creates a <code>TABIX</code> index from the blocks of a block compressed file as they are written,
+ * rather than decompressing the finished output again. The indexing thread runs the position reader for
+ * the format being written over the uncompressed blocks, which are presented with the same block offsets
+ * as when reading the file, so the index is identical to one created from the finished file.
+ */
+final class InlineTabixIndexer implements ParallelBgzfOutputStream.BlockListener, IORunnable {
+
+  // Number of blocks that may be waiting to be indexed before the writer is held up
+  private static final int MAX_QUEUED_BLOCKS = 64;
+
+  private static final Block END = new Block(new byte[0], 0, 0);
+
+  private final BlockingQueue<Block> mQueue = new ArrayBlockingQueue<>(MAX_QUEUED_BLOCKS);
+  private final OutputStream mIndexOut;
+  private final TabixIndexer.IndexerFactory mFactory;
+  private final String mFilename;
+  private volatile boolean mClosed = false;
+
+  /**
+   * @param indexOut the output stream for the index file
+   * @param factory the indexer factory corresponding to the output format
+   * @param filename the name of the file being indexed
+   */
+  InlineTabixIndexer(OutputStream indexOut, TabixIndexer.IndexerFactory factory, String filename) {
+    mIndexOut = indexOut;
+    mFactory = factory;
+    mFilename = filename;
+  }
+
+  private void put(Block block) throws IOException {
+    try {
+      mQueue.put(block);
+    } catch (final InterruptedException e) {
+      throw new IOException("Interrupted while indexing " + mFilename, e);
+    }
+  }
+
+  @Override
+  public void blockWritten(byte[] data, int length, int compressedLength) throws IOException {
+    if (!mClosed) {
+      put(new Block(data, length, compressedLength));
+    }
+  }
+
+  /**
+   * Signals that no more blocks will be written. This may be called more than once.
+   * @throws IOException if interrupted
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!mClosed) {
+      mClosed = true;
+      put(END);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("try")
+  public void run() throws IOException {
+    final BlockQueueStream blocks = new BlockQueueStream();
+    try (OutputStream ignored = mIndexOut) {
+      try (BlockCompressedPositionReader in = mFactory.getReader(new BlockCompressedLineReader(blocks), mFactory.mSkip)) {
+        TabixIndexer.saveTabixIndex(in, mIndexOut, mFactory.getOptions());
+      }
+    } catch (final UnindexableDataException e) {
+      throw new IOException("Cannot produce index for: " + mFilename + " (try disabling indexing)", e);
+    } finally {
+      // Keep taking blocks so that the writer is never held up after indexing has stopped
+      blocks.drain();
+    }
+  }
+
+  private static final class Block {
+    private final byte[] mData;
+    private final int mLength;
+    private final int mCompressedLength;
+
+    Block(byte[] data, int length, int compressedLength) {
+      mData = data;
+      mLength = length;
+      mCompressedLength = compressedLength;
+    }
+  }
+
+  /** Presents queued blocks with the same block offsets as <code>BgzfInputStream</code> reading the written file */
+  private final class BlockQueueStream implements BlockCompressedLineReader.BlockStream {
+    private byte[] mData = END.mData;
+    private int mLength = 0;
+    private int mPosition = 0;
+    private long mBlockStart = 0;
+    private long mBlockEnd = 0;
+    private boolean mEnd = false;
+
+    private boolean nextBlock() throws IOException {
+      if (mEnd) {
+        return false;
+      }
+      final Block block;
+      try {
+        block = mQueue.take();
+      } catch (final InterruptedException e) {
+        throw new IOException("Interrupted while indexing " + mFilename, e);
+      }
+      mBlockStart = mBlockEnd;
+      mPosition = 0;
+      if (block == END) {
+        mEnd = true;
+        mLength = 0;
+        return false;
+      }
+      mBlockEnd += block.mCompressedLength;
+      mData = block.mData;
+      mLength = block.mLength;
+      return true;
+    }
+
+    void drain() throws IOException {
+      while (nextBlock()) {
+        // Discard
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      while (mPosition == mLength) {
+        if (!nextBlock()) {
+          return 0;
+        }
+      }
+      return mLength - mPosition;
+    }
+
+    @Override
+    public int read(byte[] buf, int offset, int length) throws IOException {
+      int ret = 0;
+      while (ret < length) {
+        if (mPosition < mLength) {
+          final int len = Math.min(length - ret, mLength - mPosition);
+          System.arraycopy(mData, mPosition, buf, offset + ret, len);
+          mPosition += len;
+          ret += len;
+        } else if (!nextBlock()) {
+          break;
+        }
+      }
+      return ret == 0 ? -1 : ret;
+    }
+
+    @Override
+    public long getFilePointer() {
+      return mPosition == mLength ? mBlockEnd << 16 : mBlockStart << 16 | mPosition;
+    }
+
+    @Override
+    public void seek(long filePointer) {
+      throw new UnsupportedOperationException("Blocks are indexed once in the order they are written, seeking is not supported");
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
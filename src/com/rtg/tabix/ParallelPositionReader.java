@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.tabix;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.rtg.sam.BgzfInputStream;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.io.ByteArrayIOUtils;
+import com.rtg.util.io.FileUtils;
+import com.rtg.util.io.IOUtils;
+
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.RuntimeIOException;
+
+/**
+ * Presents the records of a block compressed file for indexing, where the file is split at block
+ * boundaries into ranges which are read and parsed concurrently on a pool of worker threads.
+ * Records are presented in file order with the same virtual offsets and reference ids as the
+ * sequential reader, so the index populated from them is identical.
+ */
+final class ParallelPositionReader implements BlockCompressedPositionReader {
+
+  /** Default approximate compressed size of each range of the file */
+  static final long RANGE_SIZE = 4 * 1024 * 1024;
+
+  private static final byte UNMAPPED = 1;
+  private static final byte HAS_REFERENCE = 2;
+  private static final byte HAS_COORDINATES = 4;
+
+  private final File mFile;
+  private final TabixIndexer.IndexerFactory mFactory;
+  // Offset of the block at which reading of each range starts
+  private final long[] mBlockStarts;
+  // Virtual offsets bounding the records of each range, one more entry than the number of ranges
+  private final long[] mBounds;
+  private final ExecutorService mExecutor;
+  private final int mMaxPending;
+  private final ArrayDeque<Future<RangeRecords>> mPending = new ArrayDeque<>();
+  private int mNextRange = 0;
+
+  private final HashMap<String, Integer> mSequenceNames = new HashMap<>();
+  private final ArrayList<String> mNamesList = new ArrayList<>();
+  private RangeRecords mRecords = null;
+  private int[] mRefIds = null;
+  private int mIndex = -1;
+
+  /**
+   * @param file the block compressed file to read
+   * @param factory supplies the reader used to parse the records of each range
+   * @param threads the number of worker threads reading ranges
+   * @throws IOException if an IO error occurs while locating block boundaries
+   */
+  ParallelPositionReader(File file, TabixIndexer.IndexerFactory factory, int threads) throws IOException {
+    this(file, factory, threads, RANGE_SIZE);
+  }
+
+  ParallelPositionReader(File file, TabixIndexer.IndexerFactory factory, int threads, long rangeSize) throws IOException {
+    mFile = file;
+    mFactory = factory;
+    final int workers = Math.max(1, threads);
+    mExecutor = Executors.newFixedThreadPool(workers, r -> {
+      final Thread t = new Thread(r, "ParallelPositionReader");
+      t.setDaemon(true);
+      return t;
+    });
+    // Allow some ranges to queue up so that workers stay busy while completed ranges are consumed
+    mMaxPending = 2 * workers;
+    final List<long[]> splits = splitPoints(file, rangeSize, skipEnd(file, factory.mSkip));
+    mBlockStarts = new long[splits.size() + 1];
+    mBounds = new long[splits.size() + 2];
+    for (int i = 0; i < splits.size(); ++i) {
+      mBlockStarts[i + 1] = splits.get(i)[0];
+      mBounds[i + 1] = splits.get(i)[1] << 16;
+    }
+    mBounds[mBounds.length - 1] = Long.MAX_VALUE;
+    Diagnostic.userLog("Indexing " + file.getPath() + " in " + mBlockStarts.length + " ranges using " + threads + " threads");
+  }
+
+  // Virtual offset of the first line following the lines skipped at the start of the file
+  private static long skipEnd(File file, int skip) throws IOException {
+    if (skip == 0) {
+      return 0;
+    }
+    try (BlockCompressedLineReader reader = new BlockCompressedLineReader(new BgzfInputStream(file, 1))) {
+      for (int i = 0; i < skip; ++i) {
+        reader.readLine();
+      }
+      return reader.getFilePointer();
+    }
+  }
+
+  /**
+   * Find places at which a block compressed file can be split for reading. Each split is at the start of a non-empty
+   * block that follows another non-empty block, so that a reader starting at the preceding block sees the same block
+   * offsets as a sequential reader by the time it reaches the split.
+   * @param file the block compressed file
+   * @param rangeSize approximate compressed size of the ranges between splits
+   * @param minVirtualOffset virtual offsets of splits must be at least this
+   * @return for each split, the offsets of the preceding block and of the block starting the range
+   * @throws IOException if an IO error occurs
+   */
+  static List<long[]> splitPoints(File file, long rangeSize, long minVirtualOffset) throws IOException {
+    final List<long[]> splits = new ArrayList<>();
+    final byte[] header = new byte[BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+    final byte[] inputSize = new byte[4];
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      final long length = raf.length();
+      long target = rangeSize;
+      long prevBlock = 0;
+      int prevSize = 0;
+      long block = 0;
+      while (block < length) {
+        raf.seek(block);
+        raf.readFully(header);
+        if (!isBgzfHeader(header)) {
+          // Unusual block layout, read the file as a single range
+          return new ArrayList<>();
+        }
+        final int blockSize = ByteArrayIOUtils.bytesToShortLittleEndian(header, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
+        raf.seek(block + blockSize - inputSize.length);
+        raf.readFully(inputSize);
+        final int size = ByteArrayIOUtils.bytesToIntLittleEndian(inputSize, 0);
+        if (block >= target && prevSize > 0 && size > 0 && block << 16 >= minVirtualOffset) {
+          splits.add(new long[] {prevBlock, block});
+          target = block + rangeSize;
+        }
+        prevBlock = block;
+        prevSize = size;
+        block += blockSize;
+      }
+    } catch (final EOFException e) {
+      // Truncated file, the final range will report the problem when it is read
+    }
+    return splits;
+  }
+
+  private static boolean isBgzfHeader(byte[] header) {
+    return header[0] == BlockCompressedStreamConstants.GZIP_ID1
+      && header[1] == (byte) BlockCompressedStreamConstants.GZIP_ID2
+      && header[3] == BlockCompressedStreamConstants.GZIP_FLG
+      && ByteArrayIOUtils.bytesToShortLittleEndian(header, 10) == BlockCompressedStreamConstants.GZIP_XLEN
+      && header[12] == BlockCompressedStreamConstants.BGZF_ID1
+      && header[13] == BlockCompressedStreamConstants.BGZF_ID2;
+  }
+
+  private RangeRecords readRange(int range) {
+    final RangeRecords records = new RangeRecords();
+    final long blockStart = mBlockStarts[range];
+    final long begin = mBounds[range];
+    final long end = mBounds[range + 1];
+    try (FileInputStream fis = new FileInputStream(mFile)) {
+      fis.getChannel().position(blockStart);
+      final BlockCompressedLineReader lines = new BlockCompressedLineReader(new BgzfInputStream(new BufferedInputStream(fis, FileUtils.BUFFERED_STREAM_SIZE), 1, blockStart));
+      // Discard the lines (the first possibly partial) that start before this range
+      while (lines.getFilePointer() < begin) {
+        if (lines.readLine() == null) {
+          break;
+        }
+      }
+      final BlockCompressedPositionReader reader = mFactory.getReader(lines, range == 0 ? mFactory.mSkip : 0);
+      while (reader.hasNext() && reader.getNextVirtualOffset() < end) {
+        reader.next();
+        records.add(reader);
+      }
+      records.mNextVirtualOffset = reader.getNextVirtualOffset();
+    } catch (final IOException | RuntimeException e) {
+      // Reported once the records preceding the failure have been consumed, as for sequential reading
+      records.mError = e;
+    }
+    return records;
+  }
+
+  private boolean nextRange() {
+    while (mNextRange < mBlockStarts.length && mPending.size() < mMaxPending) {
+      final int range = mNextRange++;
+      mPending.add(mExecutor.submit(() -> readRange(range)));
+    }
+    if (mPending.isEmpty()) {
+      return false;
+    }
+    try {
+      mRecords = mPending.remove().get();
+    } catch (final ExecutionException e) {
+      IOUtils.rethrowWrapIO(e.getCause());
+    } catch (final InterruptedException e) {
+      throw new RuntimeIOException("Interrupted while indexing " + mFile.getPath(), e);
+    }
+    mRefIds = new int[mRecords.mNames.size()];
+    for (int i = 0; i < mRefIds.length; ++i) {
+      final String name = mRecords.mNames.get(i);
+      final Integer id = mSequenceNames.get(name);
+      if (id != null) {
+        mRefIds[i] = id;
+      } else {
+        mRefIds[i] = mSequenceNames.size();
+        mSequenceNames.put(name, mSequenceNames.size());
+        mNamesList.add(name);
+      }
+    }
+    mIndex = -1;
+    return true;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (mRecords == null || mIndex + 1 >= mRecords.mSize) {
+      if (mRecords != null && mRecords.mError != null) {
+        return true; // Reported by next()
+      }
+      if (!nextRange()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void next() throws IOException {
+    if (mIndex + 1 >= mRecords.mSize) {
+      IOUtils.rethrow(mRecords.mError);
+    }
+    ++mIndex;
+  }
+
+  @Override
+  public String getRecord() {
+    throw new UnsupportedOperationException("Only record positions are retained when reading ranges in parallel");
+  }
+
+  @Override
+  public void seek(long virtualOffset) {
+    throw new UnsupportedOperationException("Ranges are read in parallel in file order, seeking is not supported");
+  }
+
+  @Override
+  public int getStartPosition() {
+    return mRecords.mStart[mIndex];
+  }
+
+  @Override
+  public int getLengthOnReference() {
+    return mRecords.mLength[mIndex];
+  }
+
+  @Override
+  public String getReferenceName() {
+    final int name = mRecords.mName[mIndex];
+    return name == -1 ? null : mRecords.mNames.get(name);
+  }
+
+  @Override
+  public int getReferenceId() {
+    final int name = mRecords.mName[mIndex];
+    return name == -1 ? -1 : mRefIds[name];
+  }
+
+  @Override
+  public long getVirtualOffset() {
+    return mRecords.mVirtualOffset[mIndex];
+  }
+
+  @Override
+  public long getNextVirtualOffset() {
+    return mIndex + 1 < mRecords.mSize ? mRecords.mVirtualOffset[mIndex + 1] : mRecords.mNextVirtualOffset;
+  }
+
+  @Override
+  public int getBinNum() {
+    return mRecords.mBin[mIndex];
+  }
+
+  @Override
+  public boolean isUnmapped() {
+    return (mRecords.mFlags[mIndex] & UNMAPPED) != 0;
+  }
+
+  @Override
+  public boolean hasReference() {
+    return (mRecords.mFlags[mIndex] & HAS_REFERENCE) != 0;
+  }
+
+  @Override
+  public boolean hasCoordinates() {
+    return (mRecords.mFlags[mIndex] & HAS_COORDINATES) != 0;
+  }
+
+  @Override
+  public List<String> getSequenceNames() {
+    return mNamesList;
+  }
+
+  @Override
+  public void close() {
+    for (final Future<RangeRecords> f : mPending) {
+      f.cancel(true);
+    }
+    mPending.clear();
+    mExecutor.shutdownNow();
+  }
+
+  /** The parsed positions of the records within one range of the file */
+  private static final class RangeRecords {
+    private final HashMap<String, Integer> mNameIds = new HashMap<>();
+    private final ArrayList<String> mNames = new ArrayList<>();
+    private int mSize = 0;
+    private int[] mName = new int[1024];
+    private int[] mStart = new int[1024];
+    private int[] mLength = new int[1024];
+    private int[] mBin = new int[1024];
+    private long[] mVirtualOffset = new long[1024];
+    private byte[] mFlags = new byte[1024];
+    private long mNextVirtualOffset;
+    private Exception mError = null;
+
+    void add(BlockCompressedPositionReader reader) {
+      if (mSize == mName.length) {
+        final int capacity = mSize * 3 / 2;
+        mName = Arrays.copyOf(mName, capacity);
+        mStart = Arrays.copyOf(mStart, capacity);
+        mLength = Arrays.copyOf(mLength, capacity);
+        mBin = Arrays.copyOf(mBin, capacity);
+        mVirtualOffset = Arrays.copyOf(mVirtualOffset, capacity);
+        mFlags = Arrays.copyOf(mFlags, capacity);
+      }
+      final String name = reader.getReferenceName();
+      if (name == null) {
+        mName[mSize] = -1;
+      } else {
+        final Integer id = mNameIds.get(name);
+        if (id != null) {
+          mName[mSize] = id;
+        } else {
+          mName[mSize] = mNames.size();
+          mNameIds.put(name, mNames.size());
+          mNames.add(name);
+        }
+      }
+      mStart[mSize] = reader.getStartPosition();
+      mLength[mSize] = reader.getLengthOnReference();
+      mBin[mSize] = reader.getBinNum();
+      mVirtualOffset[mSize] = reader.getVirtualOffset();
+      mFlags[mSize] = (byte) ((reader.isUnmapped() ? UNMAPPED : 0) | (reader.hasReference() ? HAS_REFERENCE : 0) | (reader.hasCoordinates() ? HAS_COORDINATES : 0));
+      ++mSize;
+    }
+  }
+}
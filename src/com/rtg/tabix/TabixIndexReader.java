@@ -42,7 +42,8 @@ import com.rtg.util.gzip.GzipUtils;
 import com.rtg.util.io.ByteArrayIOUtils;
 
 /**
- * Reads a <code>Tabix</code> index to retrieve appropriate information
+ * Reads a <code>Tabix</code> index to retrieve appropriate information. <code>CSI</code> indexes
+ * containing <code>Tabix</code> configuration are also supported.
  */
 public class TabixIndexReader extends AbstractIndexReader {
 
@@ -56,6 +57,11 @@ public class TabixIndexReader extends AbstractIndexReader {
   /** Size of fixed portion of header */
   private static final int FIXED_HEADER_SIZE = 36;
   private static final byte[] TBI_MAGIC = {'T', 'B', 'I', 1};
+  private static final byte[] CSI_MAGIC = {'C', 'S', 'I', 1};
+  /** Size of fixed portion of <code>CSI</code> header, preceding the auxiliary data */
+  private static final int CSI_FIXED_HEADER_SIZE = 16;
+  /** Size of fixed portion of <code>Tabix</code> configuration, following the number of sequences */
+  private static final int TABIX_FIELDS_SIZE = FIXED_HEADER_SIZE - 8;
 
   /**
    * @param tabixFile <code>TABIX</code> file to open
@@ -78,21 +84,37 @@ public class TabixIndexReader extends AbstractIndexReader {
       if (len < FIXED_HEADER_SIZE) {
         throw new EOFException("File: " + tabixFile.getPath() + " is not a valid TABIX index. (index does not have a complete header)");
       }
-      for (int i = 0; i < TBI_MAGIC.length; ++i) {
-        if (TBI_MAGIC[i] != buf[i]) {
-          throw new IOException("File: " + tabixFile.getPath() + " is not a valid TABIX index. (index does not have a valid header)");
+      mCsi = hasMagic(buf, CSI_MAGIC);
+      if (!mCsi && !hasMagic(buf, TBI_MAGIC)) {
+        throw new IOException("File: " + tabixFile.getPath() + " is not a valid TABIX index. (index does not have a valid header)");
+      }
+      final int numberReferences;
+      final int fields; // Start of the tabix configuration fields
+      if (mCsi) {
+        try {
+          mBinning = new IndexBinning(ByteArrayIOUtils.bytesToIntLittleEndian(buf, 4), ByteArrayIOUtils.bytesToIntLittleEndian(buf, 8));
+        } catch (final IllegalArgumentException e) {
+          throw new IOException("File: " + tabixFile.getPath() + " is not a valid CSI index. (" + e.getMessage() + ")", e);
+        }
+        final int auxLength = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 12);
+        if (auxLength < TABIX_FIELDS_SIZE || len < CSI_FIXED_HEADER_SIZE + auxLength + 4) {
+          throw new IOException("File: " + tabixFile.getPath() + " is not a valid TABIX CSI index. (index does not contain TABIX configuration)");
         }
+        fields = CSI_FIXED_HEADER_SIZE;
+        numberReferences = ByteArrayIOUtils.bytesToIntLittleEndian(buf, CSI_FIXED_HEADER_SIZE + auxLength);
+      } else {
+        fields = 8;
+        numberReferences = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 4);
       }
-      final int numberReferences = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 4);
-      final int format = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 8);
+      final int format = ByteArrayIOUtils.bytesToIntLittleEndian(buf, fields);
 //      mSam = (format & FORMAT_MASK) == 1;
 //      mVcf = (format & FORMAT_MASK) == 2;
 //      mGeneric = (format & FORMAT_MASK) == 0;
-      final int seqCol = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 12) - 1;
-      final int begCol = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 16) - 1;
-      final int endCol = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 20) - 1;
-      final int meta = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 24);
-      final int skip = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 28);
+      final int seqCol = ByteArrayIOUtils.bytesToIntLittleEndian(buf, fields + 4) - 1;
+      final int begCol = ByteArrayIOUtils.bytesToIntLittleEndian(buf, fields + 8) - 1;
+      final int endCol = ByteArrayIOUtils.bytesToIntLittleEndian(buf, fields + 12) - 1;
+      final int meta = ByteArrayIOUtils.bytesToIntLittleEndian(buf, fields + 16);
+      final int skip = ByteArrayIOUtils.bytesToIntLittleEndian(buf, fields + 20);
       if (seqCol < 0) {
         throw new IOException("File: " + tabixFile.getPath() + " is not a valid TABIX index. (invalid col_seq)");
       }
@@ -100,11 +122,12 @@ public class TabixIndexReader extends AbstractIndexReader {
         throw new IOException("File: " + tabixFile.getPath() + " is not a valid TABIX index. (invalid col_beg)");
       }
       mOptions = new TabixIndexer.TabixOptions(format, seqCol, begCol, endCol, meta, skip);
-      final int nameLength = ByteArrayIOUtils.bytesToIntLittleEndian(buf, 32);
-      if (buf.length < FIXED_HEADER_SIZE + nameLength) {
+      final int nameLength = ByteArrayIOUtils.bytesToIntLittleEndian(buf, fields + 24);
+      final int namesStart = fields + TABIX_FIELDS_SIZE;
+      if (buf.length < namesStart + nameLength) {
         throw new IOException("File: " + tabixFile.getPath() + " is not a valid TABIX index. (sequence names truncated)");
       }
-      final byte[] nameBuf = Arrays.copyOfRange(buf, FIXED_HEADER_SIZE, FIXED_HEADER_SIZE + nameLength);
+      final byte[] nameBuf = Arrays.copyOfRange(buf, namesStart, namesStart + nameLength);
       mSequenceNames = new String[numberReferences];
       mSequenceLookup = new HashMap<>();
       int seqNo = 0;
@@ -126,22 +149,40 @@ public class TabixIndexReader extends AbstractIndexReader {
       seqNo = 0;
       mBinPositions = new long[numberReferences];
       mLinearIndexPositions = new long[numberReferences];
-      long pos = FIXED_HEADER_SIZE + nameLength;
+      long pos = mCsi ? CSI_FIXED_HEADER_SIZE + ByteArrayIOUtils.bytesToIntLittleEndian(buf, 12) + 4 : FIXED_HEADER_SIZE + nameLength;
       for (; seqNo < numberReferences; ++seqNo) {
         mBinPositions[seqNo] = pos;
         final int numBins = ByteArrayIOUtils.bytesToIntLittleEndian(buf, (int) pos);
         pos += 4;
         for (int i = 0; i < numBins; ++i) {
-          final int numChunks = ByteArrayIOUtils.bytesToIntLittleEndian(buf, (int) pos + 4);
-          pos += 8;
-          pos += numChunks * 16L;
+          if (mCsi) {
+            // bin, minimum offset, number of chunks
+            final int numChunks = ByteArrayIOUtils.bytesToIntLittleEndian(buf, (int) pos + 12);
+            pos += 16;
+            pos += numChunks * 16L;
+          } else {
+            final int numChunks = ByteArrayIOUtils.bytesToIntLittleEndian(buf, (int) pos + 4);
+            pos += 8;
+            pos += numChunks * 16L;
+          }
         }
         mLinearIndexPositions[seqNo] = pos;
-        final int numLinear = ByteArrayIOUtils.bytesToIntLittleEndian(buf, (int) pos);
-        pos += 4;
-        pos += numLinear * 8L;
+        if (!mCsi) {
+          final int numLinear = ByteArrayIOUtils.bytesToIntLittleEndian(buf, (int) pos);
+          pos += 4;
+          pos += numLinear * 8L;
+        }
+      }
+    }
+  }
+
+  private static boolean hasMagic(byte[] buf, byte[] magic) {
+    for (int i = 0; i < magic.length; ++i) {
+      if (magic[i] != buf[i]) {
+        return false;
       }
     }
+    return true;
   }
 
   /**
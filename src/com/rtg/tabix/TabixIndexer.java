@@ -31,6 +31,7 @@
 package com.rtg.tabix;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -42,6 +43,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
+import com.rtg.sam.BgzfInputStream;
 import com.rtg.tabix.SequenceIndex.SequenceIndexChunk;
 import com.rtg.util.io.ByteArrayIOUtils;
 
@@ -59,6 +61,9 @@ public final class TabixIndexer {
   /** Extension used on tabix files */
   public static final String TABIX_EXTENSION = ".tbi";
 
+  /** Extension used on CSI index files */
+  public static final String CSI_EXTENSION = ".csi";
+
   private static final boolean DEBUG = false; //Boolean.valueOf(System.getProperty("dave.debug.index", "false"));
 
   private static final Pattern BED_SKIP_LINES = Pattern.compile("^(#|track\\s|browser\\s).*$");
@@ -66,6 +71,8 @@ public final class TabixIndexer {
   static final int META_BIN = 37450;
 
   private final IndexerInputHandler mInputHandler;
+  private final IndexBinning mCsiBinning;
+  private final int mThreads;
 
   /**
    * @param input file to index must be a BGZIP compressed file
@@ -79,7 +86,26 @@ public final class TabixIndexer {
    * @param index output file for index
    */
   public TabixIndexer(File input, File index) {
-    this(new FileIndexerInputHandler(input, index));
+    this(input, index, null);
+  }
+
+  /**
+   * @param input file to index must be a BGZIP compressed file
+   * @param index output file for index
+   * @param csiBinning if non-null, create a <code>CSI</code> index using this binning scheme rather than a <code>TABIX</code> index
+   */
+  public TabixIndexer(File input, File index, IndexBinning csiBinning) {
+    this(input, index, csiBinning, 1);
+  }
+
+  /**
+   * @param input file to index must be a BGZIP compressed file
+   * @param index output file for index
+   * @param csiBinning if non-null, create a <code>CSI</code> index using this binning scheme rather than a <code>TABIX</code> index
+   * @param threads if more than one, ranges of the input are read concurrently using this many threads
+   */
+  public TabixIndexer(File input, File index, IndexBinning csiBinning, int threads) {
+    this(new FileIndexerInputHandler(input, index), csiBinning, threads);
   }
 
   /**
@@ -91,7 +117,17 @@ public final class TabixIndexer {
   }
 
   TabixIndexer(IndexerInputHandler handler) {
+    this(handler, null);
+  }
+
+  TabixIndexer(IndexerInputHandler handler, IndexBinning csiBinning) {
+    this(handler, csiBinning, 1);
+  }
+
+  TabixIndexer(IndexerInputHandler handler, IndexBinning csiBinning, int threads) {
     mInputHandler = handler;
+    mCsiBinning = csiBinning;
+    mThreads = threads;
   }
 
   /**
@@ -173,13 +209,20 @@ public final class TabixIndexer {
    * @throws UnindexableDataException If data cannot be indexed because of properties of the data
    */
   public void saveIndex(IndexerFactory factory) throws IOException, UnindexableDataException {
-    saveIndex(mInputHandler, factory);
+    saveIndex(mInputHandler, factory, mCsiBinning, mThreads);
   }
 
-  static void saveIndex(IndexerInputHandler handler, IndexerFactory fact) throws IOException, UnindexableDataException {
+  static void saveIndex(IndexerInputHandler handler, IndexerFactory fact, IndexBinning csiBinning, int threads) throws IOException, UnindexableDataException {
     try {
       handler.start(false);
-      saveIndex(handler.getInputStream(), handler.getOutputStream(), fact);
+      final File input = handler.getInputFile();
+      if (threads > 1 && input != null) {
+        try (BlockCompressedPositionReader in = new ParallelPositionReader(input, fact, threads)) {
+          saveIndex(in, handler.getOutputStream(), fact.getOptions(), csiBinning);
+        }
+      } else {
+        saveIndex(handler.getInputStream(), handler.getOutputStream(), fact, csiBinning);
+      }
     } catch (final UnindexableDataException e) {
       handler.unindexable();
       throw e;
@@ -189,12 +232,18 @@ public final class TabixIndexer {
     handler.finish();
   }
 
-  static void saveIndex(InputStream is, OutputStream os, IndexerFactory fact) throws IOException, UnindexableDataException {
-    final TabixOptions ops = fact.getOptions();
+  static void saveIndex(InputStream is, OutputStream os, IndexerFactory fact, IndexBinning csiBinning) throws IOException, UnindexableDataException {
     try (BlockCompressedPositionReader in = fact.getReader(is)) {
-      saveTabixIndex(in, os, ops);
+      saveIndex(in, os, fact.getOptions(), csiBinning);
     }
+  }
 
+  private static void saveIndex(BlockCompressedPositionReader in, OutputStream os, TabixOptions ops, IndexBinning csiBinning) throws IOException, UnindexableDataException {
+    if (csiBinning == null) {
+      saveTabixIndex(in, os, ops);
+    } else {
+      saveCsiIndex(in, os, ops, csiBinning);
+    }
   }
 
   static void saveTabixIndex(BlockCompressedPositionReader in, final OutputStream samIndex, TabixOptions ops) throws IOException, UnindexableDataException {
@@ -206,6 +255,15 @@ public final class TabixIndexer {
     }
   }
 
+  static void saveCsiIndex(BlockCompressedPositionReader in, final OutputStream index, TabixOptions ops, IndexBinning binning) throws IOException, UnindexableDataException {
+    final ArrayList<SequenceIndex> indexs = new ArrayList<>();
+    populateIndex(indexs, in, false, binning);
+    mergeChunks(indexs, binning.metaBin());
+    try (BlockCompressedOutputStream indexOut = new BlockCompressedOutputStream(index, (File) null)) {
+      writeCsiIndex(indexs, binning, tabixAuxData(ops, in.getSequenceNames()), -1, indexOut);
+    }
+  }
+
   /**
    * Populate the index
    * @param indexes sequence index list to read into
@@ -216,6 +274,24 @@ public final class TabixIndexer {
    * @throws UnindexableDataException if the data wasn't able to be indexed (unsorted, sequence too long)
    */
   public static long populateIndex(final List<SequenceIndex> indexes, final BlockCompressedPositionReader input, boolean addExtraFields) throws IOException, UnindexableDataException {
+    return populateIndex(indexes, input, addExtraFields, null);
+  }
+
+  /**
+   * Populate the index
+   * @param indexes sequence index list to read into
+   * @param input input reader to read from
+   * @param addExtraFields true to add... meta bin chunks?
+   * @param csiBinning if non-null, compute bins and linear index windows for a <code>CSI</code> index with this binning
+   * scheme, otherwise use the bins supplied by the input for a <code>TABIX</code> or BAM index
+   * @return the total number of unmapped input records
+   * @throws IOException if an exception occurs while reading
+   * @throws UnindexableDataException if the data wasn't able to be indexed (unsorted, sequence too long)
+   */
+  public static long populateIndex(final List<SequenceIndex> indexes, final BlockCompressedPositionReader input, boolean addExtraFields, IndexBinning csiBinning) throws IOException, UnindexableDataException {
+    final IndexBinning binning = csiBinning == null ? IndexBinning.TABIX : csiBinning;
+    final long maxLength = csiBinning == null ? MAXIMUM_REFERENCE_LENGTH : binning.maxCoordinate();
+    final int metaBin = binning.metaBin();
     long chunkBegin = -1;
     int lastRefId = -2; //-2 for beginning since -1 -> record with no reference
     int lastBin = -1;
@@ -246,8 +322,8 @@ public final class TabixIndexer {
             final long chunkEnd = input.getVirtualOffset();
             indexes.get(lastRefId).addChunk(lastBin, chunkBegin, chunkEnd);
             if (addExtraFields) {
-              indexes.get(lastRefId).addChunk(META_BIN, refBegin, chunkEnd);
-              indexes.get(lastRefId).addChunk(META_BIN, refMapped, refUnmapped);
+              indexes.get(lastRefId).addChunk(metaBin, refBegin, chunkEnd);
+              indexes.get(lastRefId).addChunk(metaBin, refMapped, refUnmapped);
             }
           }
           refBegin = input.getVirtualOffset();
@@ -272,24 +348,24 @@ public final class TabixIndexer {
           final long chunkEnd = input.getVirtualOffset();
           indexes.get(lastRefId).addChunk(lastBin, chunkBegin, chunkEnd);
           if (addExtraFields) {
-            indexes.get(lastRefId).addChunk(META_BIN, refBegin, chunkEnd);
-            indexes.get(lastRefId).addChunk(META_BIN, refMapped, refUnmapped);
+            indexes.get(lastRefId).addChunk(metaBin, refBegin, chunkEnd);
+            indexes.get(lastRefId).addChunk(metaBin, refMapped, refUnmapped);
           }
           lastRefId = -1;
         }
       }
       if (!unmapped || input.hasCoordinates()) {
-        final int bin = input.getBinNum();
         final int pos = input.getStartPosition();
         final int len = input.getLengthOnReference();
         if (lastPos > pos) {
           throw new UnindexableDataException("File is not sorted");
         }
         lastPos = pos;
-        if (pos > MAXIMUM_REFERENCE_LENGTH || pos + len > MAXIMUM_REFERENCE_LENGTH) {
-          throw new UnindexableDataException("maximum reference sequence length is exceeded");
+        if (pos > maxLength || (long) pos + len > maxLength) {
+          throw new UnindexableDataException("maximum reference sequence length is exceeded" + (csiBinning == null ? " (a CSI index may be used for long sequences)" : ""));
         }
-        final int linearLastBin = setLinearIndex(indexes.get(lastRefId), pos, len, input.getVirtualOffset(), minBin);
+        final int bin = csiBinning == null ? input.getBinNum() : csiBinning.reg2bin(pos, pos + len);
+        final int linearLastBin = setLinearIndex(indexes.get(lastRefId), pos, len, input.getVirtualOffset(), minBin, binning.minShift());
         if (first) {
           minBin = linearLastBin;
         }
@@ -307,18 +383,16 @@ public final class TabixIndexer {
     if (lastRefId >= 0) {
       indexes.get(lastRefId).addChunk(lastBin, chunkBegin, input.getNextVirtualOffset());
       if (addExtraFields) {
-        indexes.get(lastRefId).addChunk(META_BIN, refBegin, input.getNextVirtualOffset());
-        indexes.get(lastRefId).addChunk(META_BIN, refMapped, refUnmapped);
+        indexes.get(lastRefId).addChunk(metaBin, refBegin, input.getNextVirtualOffset());
+        indexes.get(lastRefId).addChunk(metaBin, refMapped, refUnmapped);
       }
     }
     return totalUnmapped;
   }
 
-  private static final int LINEAR_SHIFT = 14;
-
-  private static int setLinearIndex(final SequenceIndex index, final int begin, final int len, final long virtualOffset, int minBin) {
-    final int b = begin >> LINEAR_SHIFT;
-    final int e = (begin + len - 1) >> LINEAR_SHIFT;
+  private static int setLinearIndex(final SequenceIndex index, final int begin, final int len, final long virtualOffset, int minBin, int linearShift) {
+    final int b = begin >> linearShift;
+    final int e = (int) (((long) begin + len - 1) >> linearShift);
     for (int i = b; i <= e; ++i) {
       index.setLinearIndex(i, virtualOffset, minBin);
     }
@@ -330,10 +404,19 @@ public final class TabixIndexer {
    * @param indexes the index containing chunks to merge
    */
   public static void mergeChunks(final List<SequenceIndex> indexes) {
+    mergeChunks(indexes, META_BIN);
+  }
+
+  /**
+   * Merge chunks
+   * @param indexes the index containing chunks to merge
+   * @param metaBin the bin number holding meta data, which is left untouched
+   */
+  public static void mergeChunks(final List<SequenceIndex> indexes, int metaBin) {
     for (final SequenceIndex index : indexes) {
       for (final Map.Entry<Integer, ArrayList<SequenceIndexChunk>> entry : index.getBins().entrySet()) {
         final ArrayList<SequenceIndexChunk> list = entry.getValue();
-        if (entry.getKey() == META_BIN) {
+        if (entry.getKey() == metaBin) {
           continue;
         }
         int current = 0;
@@ -371,6 +454,44 @@ public final class TabixIndexer {
     //no of sequences
     ByteArrayIOUtils.intToBytesLittleEndian(indexs.size(), buf, 0);
     output.write(buf, 0, 4);
+    writeTabixHeaderFields(ops, names, output);
+
+    for (final SequenceIndex bai : indexs) {
+      ByteArrayIOUtils.intToBytesLittleEndian(bai.getBins().size(), buf, 0);
+      output.write(buf, 0, 4);
+      for (final Map.Entry<Integer, ArrayList<SequenceIndexChunk>> entry : bai.getBins().entrySet()) {
+        ByteArrayIOUtils.intToBytesLittleEndian(entry.getKey(), buf, 0);
+        output.write(buf, 0, 4);
+        final ArrayList<SequenceIndexChunk> chunks = entry.getValue();
+        ByteArrayIOUtils.intToBytesLittleEndian(chunks.size(), buf, 0);
+        output.write(buf, 0, 4);
+        writeChunks(output, chunks, buf);
+      }
+      ByteArrayIOUtils.intToBytesLittleEndian(bai.getLinearSize(), buf, 0);
+      output.write(buf, 0, 4);
+      for (int j = 0; j < bai.getLinearSize(); ++j) {
+        ByteArrayIOUtils.longToBytesLittleEndian(bai.getLinearIndex(j), buf, 0);
+        output.write(buf, 0, 8);
+      }
+    }
+  }
+
+  /**
+   * The <code>TABIX</code> configuration and sequence names, as stored in the auxiliary data of a <code>CSI</code> index
+   * @param ops supplies the tabix indexing configuration
+   * @param names the list of sequence names
+   * @return the auxiliary data
+   * @throws IOException if an IO Error occurs
+   */
+  static byte[] tabixAuxData(TabixOptions ops, List<String> names) throws IOException {
+    final ByteArrayOutputStream aux = new ByteArrayOutputStream();
+    writeTabixHeaderFields(ops, names, aux);
+    return aux.toByteArray();
+  }
+
+  // The portion of the tabix header following the number of sequences
+  private static void writeTabixHeaderFields(TabixOptions ops, List<String> names, OutputStream output) throws IOException {
+    final byte[] buf = new byte[4];
     //format
     ByteArrayIOUtils.intToBytesLittleEndian(ops.mFormat, buf, 0);
     output.write(buf, 0, 4);
@@ -401,24 +522,53 @@ public final class TabixIndexer {
       output.write(s.getBytes());
       output.write(0);
     }
+  }
 
-    for (final SequenceIndex bai : indexs) {
-      ByteArrayIOUtils.intToBytesLittleEndian(bai.getBins().size(), buf, 0);
+  /**
+   * Saves given index to given stream in <code>CSI</code> format. Rather than a separate linear index, each
+   * bin records the smallest virtual offset of records overlapping the first linear window in the bin.
+   * @param indexs index to write
+   * @param binning the binning scheme used when populating the index
+   * @param aux auxiliary data, for <code>TABIX</code> style indexes contains the configuration and sequence names
+   * @param numUnmappedNoCoordinates number of unplaced unmapped records to record at the end of the index, or -1 to omit
+   * @param output destination, the caller is responsible for block compression
+   * @throws IOException if an IO Error occurs
+   */
+  public static void writeCsiIndex(final List<SequenceIndex> indexs, IndexBinning binning, byte[] aux, long numUnmappedNoCoordinates, final OutputStream output) throws IOException {
+    final byte[] buf = new byte[1024];
+    final byte[] header = {(byte) 'C', (byte) 'S', (byte) 'I', 1};
+    output.write(header);
+    ByteArrayIOUtils.intToBytesLittleEndian(binning.minShift(), buf, 0);
+    ByteArrayIOUtils.intToBytesLittleEndian(binning.depth(), buf, 4);
+    ByteArrayIOUtils.intToBytesLittleEndian(aux.length, buf, 8);
+    output.write(buf, 0, 12);
+    output.write(aux);
+    ByteArrayIOUtils.intToBytesLittleEndian(indexs.size(), buf, 0);
+    output.write(buf, 0, 4);
+    final int metaBin = binning.metaBin();
+    for (final SequenceIndex csi : indexs) {
+      ByteArrayIOUtils.intToBytesLittleEndian(csi.getBins().size(), buf, 0);
       output.write(buf, 0, 4);
-      for (final Map.Entry<Integer, ArrayList<SequenceIndexChunk>> entry : bai.getBins().entrySet()) {
-        ByteArrayIOUtils.intToBytesLittleEndian(entry.getKey(), buf, 0);
-        output.write(buf, 0, 4);
+      for (final Map.Entry<Integer, ArrayList<SequenceIndexChunk>> entry : csi.getBins().entrySet()) {
+        final int bin = entry.getKey();
+        long loffset = 0;
+        if (bin != metaBin) {
+          final int window = binning.firstWindow(bin);
+          if (window < csi.getLinearSize()) {
+            loffset = csi.getLinearIndex(window);
+          }
+        }
+        ByteArrayIOUtils.intToBytesLittleEndian(bin, buf, 0);
+        ByteArrayIOUtils.longToBytesLittleEndian(loffset, buf, 4);
         final ArrayList<SequenceIndexChunk> chunks = entry.getValue();
-        ByteArrayIOUtils.intToBytesLittleEndian(chunks.size(), buf, 0);
-        output.write(buf, 0, 4);
+        ByteArrayIOUtils.intToBytesLittleEndian(chunks.size(), buf, 12);
+        output.write(buf, 0, 16);
         writeChunks(output, chunks, buf);
       }
-      ByteArrayIOUtils.intToBytesLittleEndian(bai.getLinearSize(), buf, 0);
-      output.write(buf, 0, 4);
-      for (int j = 0; j < bai.getLinearSize(); ++j) {
-        ByteArrayIOUtils.longToBytesLittleEndian(bai.getLinearIndex(j), buf, 0);
-        output.write(buf, 0, 8);
-      }
+    }
+    if (numUnmappedNoCoordinates >= 0) {
+      ByteArrayIOUtils.longToBytesLittleEndian(numUnmappedNoCoordinates, buf, 0);
+      output.write(buf, 0, 8);
     }
   }
 
@@ -553,6 +703,15 @@ public final class TabixIndexer {
     }
   }
 
+  /**
+   * Create a line reader for a single sequential pass over block compressed data, with parallel block decompression
+   * @param is underlying input stream
+   * @return the line reader
+   */
+  static BlockCompressedLineReader sequentialLineReader(InputStream is) {
+    return new BlockCompressedLineReader(new BgzfInputStream(new BufferedInputStream(is)));
+  }
+
   /** A factory used encapsulate tabix indexer options for a particular file format */
   public abstract static class IndexerFactory {
     protected final int mSkip;
@@ -574,7 +733,16 @@ public final class TabixIndexer {
      * @param is underlying input stream
      * @return the reader capable of returning genomic positions for each entry
      */
-    public abstract BlockCompressedPositionReader getReader(InputStream is);
+    public BlockCompressedPositionReader getReader(InputStream is) {
+      return getReader(sequentialLineReader(is), mSkip);
+    }
+
+    /**
+     * @param reader line reader positioned at the start of a line
+     * @param skip the number of initial lines to skip
+     * @return the reader capable of returning genomic positions for each entry
+     */
+    public abstract BlockCompressedPositionReader getReader(BlockCompressedLineReader reader, int skip);
   }
 
   static class BedIndexerFactory extends IndexerFactory {
@@ -589,8 +757,8 @@ public final class TabixIndexer {
     }
 
     @Override
-    public BlockCompressedPositionReader getReader(InputStream is) {
-      return new GenericPositionReader(new BlockCompressedLineReader(new BlockCompressedInputStream(is)), getOptions());
+    public BlockCompressedPositionReader getReader(BlockCompressedLineReader reader, int skip) {
+      return new GenericPositionReader(reader, getOptions(), skip);
     }
   }
 
@@ -604,8 +772,8 @@ public final class TabixIndexer {
     }
 
     @Override
-    public BlockCompressedPositionReader getReader(InputStream is) {
-      return new GenericPositionReader(new BlockCompressedLineReader(new BlockCompressedInputStream(is)), getOptions());
+    public BlockCompressedPositionReader getReader(BlockCompressedLineReader reader, int skip) {
+      return new GenericPositionReader(reader, getOptions(), skip);
     }
   }
 
@@ -621,8 +789,8 @@ public final class TabixIndexer {
     }
 
     @Override
-    public BlockCompressedPositionReader getReader(InputStream is) {
-      return new VcfPositionReader(new BlockCompressedLineReader(new BlockCompressedInputStream(is)), mSkip);
+    public BlockCompressedPositionReader getReader(BlockCompressedLineReader reader, int skip) {
+      return new VcfPositionReader(reader, skip);
     }
   }
 
@@ -638,8 +806,8 @@ public final class TabixIndexer {
     }
 
     @Override
-    public BlockCompressedPositionReader getReader(InputStream is) {
-      return new SamPositionReader(new BlockCompressedLineReader(new BlockCompressedInputStream(is)), mSkip);
+    public BlockCompressedPositionReader getReader(BlockCompressedLineReader reader, int skip) {
+      return new SamPositionReader(reader, skip);
     }
   }
 
@@ -653,8 +821,8 @@ public final class TabixIndexer {
     }
 
     @Override
-    public BlockCompressedPositionReader getReader(InputStream is) {
-      return new AlleleCountsPositionReader(new BlockCompressedLineReader(new BlockCompressedInputStream(is)), mSkip);
+    public BlockCompressedPositionReader getReader(BlockCompressedLineReader reader, int skip) {
+      return new AlleleCountsPositionReader(reader, skip);
     }
   }
 
@@ -667,6 +835,32 @@ public final class TabixIndexer {
     return new File(data.getParentFile(), data.getName() + TABIX_EXTENSION);
   }
 
+  /**
+   * Get the name a <code>CSI</code> index should have for a given data file
+   * @param data the file we want to index
+   * @return the file name the index should have.
+   */
+  public static File csiIndexFileName(File data) {
+    return new File(data.getParentFile(), data.getName() + CSI_EXTENSION);
+  }
+
+  /**
+   * Get the index to use when reading a given data file. This is the <code>TABIX</code> index if present, otherwise
+   * the <code>CSI</code> index if present.
+   * @param data the data file
+   * @return the index file, if neither index exists this is the (non-existent) <code>TABIX</code> index file name
+   */
+  public static File existingIndexFileName(File data) {
+    final File tbi = indexFileName(data);
+    if (!tbi.exists()) {
+      final File csi = csiIndexFileName(data);
+      if (csi.exists()) {
+        return csi;
+      }
+    }
+    return tbi;
+  }
+
   static boolean isBedSkipLine(String line) {
     return BED_SKIP_LINES.matcher(line).matches();
   }
@@ -679,6 +873,8 @@ public final class TabixIndexer {
      */
     void start(boolean prelim) throws IOException;
     InputStream getInputStream();
+    /** @return the file being indexed, or null if the input is only available as a stream */
+    File getInputFile();
     OutputStream getOutputStream();
     void close() throws IOException;
     void finish();
@@ -729,6 +925,11 @@ public final class TabixIndexer {
       return mDataStream;
     }
 
+    @Override
+    public File getInputFile() {
+      return mDataFile;
+    }
+
     @Override
     public OutputStream getOutputStream() {
       return mIndexStream;
@@ -768,6 +969,11 @@ public final class TabixIndexer {
       return mDataStream;
     }
 
+    @Override
+    public File getInputFile() {
+      return null;
+    }
+
     @Override
     public OutputStream getOutputStream() {
       return mIndexStream;
@@ -108,11 +108,15 @@ public final class TaxonomyUtils {
     final Map<String, Integer> sequenceLookupMap = loadTaxonomyMapping(reader);
     // Invert the map and convert target to IDs
     final MultiMap<Integer, Long> result = new MultiMap<>();
-    for (Map.Entry<String, Integer> entry : sequenceLookupMap.entrySet()) {
-      final Long id = names.get(handler.handleSequenceName(entry.getKey()).label());
-      if (id != null) {
-        result.put(entry.getValue(), id);
+    try {
+      for (Map.Entry<String, Integer> entry : sequenceLookupMap.entrySet()) {
+        final Long id = names.get(handler.handleSequenceName(entry.getKey()).label());
+        if (id != null) {
+          result.put(entry.getValue(), id);
+        }
       }
+    } finally {
+      ReaderUtils.closeSequenceNameMap(names);
     }
     return result;
   }
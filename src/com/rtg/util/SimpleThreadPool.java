@@ -31,9 +31,13 @@ package com.rtg.util;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.io.IOUtils;
@@ -62,6 +66,10 @@ import com.rtg.util.io.IOUtils;
 public final class SimpleThreadPool {
 
   private static final int NOT_DONE_SLEEP_TIME = 500;
+
+  // Pools that have not yet been terminated, for monitoring
+  private static final Set<SimpleThreadPool> LIVE = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
   private final int mMaxThreads;
 
   private final Queue<Runnable> mJobs = new LinkedList<>();
@@ -70,6 +78,7 @@ public final class SimpleThreadPool {
   private long mTotalJobs;
   private long mTotalJobsFinished = 0;
   private boolean mBasicProgress = false;
+  private final AtomicInteger mActiveJobs = new AtomicInteger();
 
   private boolean mQueueDone = false;
 
@@ -181,6 +190,7 @@ public final class SimpleThreadPool {
 
     @Override
     public void run() {
+      mActiveJobs.incrementAndGet();
       try {
         mRun.run();
         updateProgress();
@@ -199,6 +209,8 @@ public final class SimpleThreadPool {
             }
           }
         }
+      } finally {
+        mActiveJobs.decrementAndGet();
       }
     }
 
@@ -218,6 +230,7 @@ public final class SimpleThreadPool {
     mQueueThread = new QueueThread("SimpleThreadPool-" + mThreadPoolName + "-Queue", subname, logLifecycleEvents);
     mQueueThread.setDaemon(true);
     mQueueThread.start();
+    LIVE.add(this);
     Diagnostic.developerLog(mThreadPoolName + ": Starting SimpleThreadPool with maximum " + numberThreads + " threads");
   }
 
@@ -259,6 +272,24 @@ public final class SimpleThreadPool {
     return false;
   }
 
+  /**
+   * Enqueue a helper job to run in pool. Helper jobs are pieces of work that the submitting job runs itself
+   * if no worker takes them first, such as a <code>FutureTask</code>. They are not counted towards progress
+   * and must handle their own failures.
+   * @param run job to run
+   * @return true if the job was added, false if it was not added due to pool being in an error state.
+   */
+  public boolean executeHelper(final Runnable run) {
+    synchronized (mJobs) {
+      if (mProcessJobs && !ProgramState.isAbort()) {
+        mJobs.add(run);
+        mJobs.notifyAll();
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Blocks until all tasks have completed execution after a shutdown request,
    * or the current thread is interrupted, whichever happens first.
@@ -283,6 +314,7 @@ public final class SimpleThreadPool {
       }
       rethrow();
     } finally {
+      LIVE.remove(this);
       ProgramState.clearAbort();
       try {
         synchronized (mQueueThread) {
@@ -297,6 +329,31 @@ public final class SimpleThreadPool {
     }
   }
 
+  /**
+   * @return the number of jobs currently running in this pool
+   */
+  public int activeJobs() {
+    return mActiveJobs.get();
+  }
+
+  /**
+   * @return the number of jobs waiting for a thread in this pool
+   */
+  public int queuedJobs() {
+    synchronized (mJobs) {
+      return mJobs.size();
+    }
+  }
+
+  /**
+   * @return the pools that have been created but not yet terminated
+   */
+  public static List<SimpleThreadPool> livePools() {
+    synchronized (LIVE) {
+      return new ArrayList<>(LIVE);
+    }
+  }
+
   void rethrow() throws IOException {
     if (mThrown != null) {
       IOUtils.rethrow(mThrown);
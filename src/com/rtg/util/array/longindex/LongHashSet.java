@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.util.array.longindex;
+
+/**
+ * An open addressing hash set of primitive longs. Keys are held in a <code>LongIndex</code>, so the
+ * set can grow beyond 2^31 entries, and each entry costs 8 bytes divided by the load factor rather
+ * than the 50 or so bytes of a boxed <code>HashSet&lt;Long&gt;</code> entry.
+ */
+public final class LongHashSet {
+
+  static final int DEFAULT_INITIAL_CAPACITY = 1 << 10;
+  // Resize when the table is more than 3/4 full, the minimum table size ensures an empty slot always remains
+  private static final int LOAD_SHIFT = 2;
+
+  // Zero marks an empty slot, so membership of zero itself is tracked separately
+  private LongIndex mKeys;
+  private long mMask;
+  private long mResizeThreshold;
+  private boolean mHasZero = false;
+  private long mSize = 0;
+
+  /**
+   * Create a set with the default initial capacity.
+   */
+  public LongHashSet() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /**
+   * Create a set.
+   * @param expectedSize number of entries the set should hold before needing to grow
+   */
+  public LongHashSet(long expectedSize) {
+    allocate(tableSize(expectedSize));
+  }
+
+  /**
+   * @param expectedSize number of entries to be held
+   * @return a power of two table size able to hold that many entries without resizing
+   */
+  static long tableSize(long expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Negative size=" + expectedSize);
+    }
+    // Smallest table whose resize threshold of 3/4 full is at least the expected size
+    final long minimum = Math.max(4, expectedSize + (expectedSize + 2) / 3);
+    return Long.highestOneBit(minimum - 1) << 1;
+  }
+
+  /**
+   * Scramble the bits of a key so that similar keys are spread across the table.
+   * @param key the key
+   * @return the mixed value
+   */
+  public static long mix(long key) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private void allocate(long tableSize) {
+    mKeys = LongCreate.createIndex(tableSize);
+    mMask = tableSize - 1;
+    mResizeThreshold = tableSize - (tableSize >> LOAD_SHIFT);
+  }
+
+  // Slot holding the key, or the empty slot where it would be inserted
+  private long slot(long key) {
+    long pos = mix(key) & mMask;
+    long current;
+    while ((current = mKeys.get(pos)) != 0 && current != key) {
+      pos = (pos + 1) & mMask;
+    }
+    return pos;
+  }
+
+  /**
+   * @param key the key to look for
+   * @return true if the key is in the set
+   */
+  public boolean contains(long key) {
+    if (key == 0) {
+      return mHasZero;
+    }
+    return mKeys.get(slot(key)) != 0;
+  }
+
+  /**
+   * Add a key to the set.
+   * @param key the key to add
+   * @return true if the key was not already in the set
+   */
+  public boolean add(long key) {
+    if (key == 0) {
+      if (mHasZero) {
+        return false;
+      }
+      mHasZero = true;
+      ++mSize;
+      return true;
+    }
+    final long pos = slot(key);
+    if (mKeys.get(pos) != 0) {
+      return false;
+    }
+    mKeys.set(pos, key);
+    ++mSize;
+    if (mSize > mResizeThreshold) {
+      resize();
+    }
+    return true;
+  }
+
+  private void resize() {
+    final LongIndex old = mKeys;
+    allocate(old.length() << 1);
+    for (long i = 0; i < old.length(); ++i) {
+      final long key = old.get(i);
+      if (key != 0) {
+        mKeys.set(slot(key), key);
+      }
+    }
+  }
+
+  /**
+   * @return the number of keys in the set
+   */
+  public long size() {
+    return mSize;
+  }
+
+  /**
+   * @return the number of bytes used by the table
+   */
+  public long bytes() {
+    return mKeys.bytes();
+  }
+}
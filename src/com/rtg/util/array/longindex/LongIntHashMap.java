@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.util.array.longindex;
+
+import com.rtg.util.array.intindex.IntCreate;
+import com.rtg.util.array.intindex.IntIndex;
+
+/**
+ * An open addressing hash map from primitive longs to ints. Keys and values are held in
+ * <code>LongIndex</code> and <code>IntIndex</code> storage, so the map can grow beyond 2^31 entries.
+ */
+public final class LongIntHashMap {
+
+  // Resize when the table is more than 3/4 full
+  private static final int LOAD_SHIFT = 2;
+
+  private final int mMissingValue;
+  // Zero marks an empty slot, so the mapping for zero itself is held separately
+  private LongIndex mKeys;
+  private IntIndex mValues;
+  private long mMask;
+  private long mResizeThreshold;
+  private boolean mHasZero = false;
+  private int mZeroValue;
+  private long mSize = 0;
+
+  /**
+   * Create a map with the default initial capacity.
+   * @param missingValue value returned when looking up a key that is not in the map
+   */
+  public LongIntHashMap(int missingValue) {
+    this(LongHashSet.DEFAULT_INITIAL_CAPACITY, missingValue);
+  }
+
+  /**
+   * Create a map.
+   * @param expectedSize number of entries the map should hold before needing to grow
+   * @param missingValue value returned when looking up a key that is not in the map
+   */
+  public LongIntHashMap(long expectedSize, int missingValue) {
+    mMissingValue = missingValue;
+    allocate(LongHashSet.tableSize(expectedSize));
+  }
+
+  private void allocate(long tableSize) {
+    mKeys = LongCreate.createIndex(tableSize);
+    mValues = IntCreate.createIndex(tableSize);
+    mMask = tableSize - 1;
+    mResizeThreshold = tableSize - (tableSize >> LOAD_SHIFT);
+  }
+
+  // Slot holding the key, or the empty slot where it would be inserted
+  private long slot(long key) {
+    long pos = LongHashSet.mix(key) & mMask;
+    long current;
+    while ((current = mKeys.get(pos)) != 0 && current != key) {
+      pos = (pos + 1) & mMask;
+    }
+    return pos;
+  }
+
+  /**
+   * @param key the key to look for
+   * @return true if the map contains the key
+   */
+  public boolean containsKey(long key) {
+    if (key == 0) {
+      return mHasZero;
+    }
+    return mKeys.get(slot(key)) != 0;
+  }
+
+  /**
+   * @param key the key to look up
+   * @return the value for the key, or the missing value if the key is not in the map
+   */
+  public int get(long key) {
+    if (key == 0) {
+      return mHasZero ? mZeroValue : mMissingValue;
+    }
+    final long pos = slot(key);
+    return mKeys.get(pos) != 0 ? mValues.getInt(pos) : mMissingValue;
+  }
+
+  /**
+   * Set the value for a key.
+   * @param key the key
+   * @param value the value
+   * @return the previous value for the key, or the missing value if the key was not in the map
+   */
+  public int put(long key, int value) {
+    if (key == 0) {
+      final int previous = mHasZero ? mZeroValue : mMissingValue;
+      if (!mHasZero) {
+        mHasZero = true;
+        ++mSize;
+      }
+      mZeroValue = value;
+      return previous;
+    }
+    final long pos = slot(key);
+    if (mKeys.get(pos) != 0) {
+      final int previous = mValues.getInt(pos);
+      mValues.setInt(pos, value);
+      return previous;
+    }
+    mKeys.set(pos, key);
+    mValues.setInt(pos, value);
+    ++mSize;
+    if (mSize > mResizeThreshold) {
+      resize();
+    }
+    return mMissingValue;
+  }
+
+  private void resize() {
+    final LongIndex oldKeys = mKeys;
+    final IntIndex oldValues = mValues;
+    allocate(oldKeys.length() << 1);
+    for (long i = 0; i < oldKeys.length(); ++i) {
+      final long key = oldKeys.get(i);
+      if (key != 0) {
+        final long pos = slot(key);
+        mKeys.set(pos, key);
+        mValues.setInt(pos, oldValues.getInt(i));
+      }
+    }
+  }
+
+  /**
+   * @return the number of keys in the map
+   */
+  public long size() {
+    return mSize;
+  }
+
+  /**
+   * @return the number of bytes used by the table
+   */
+  public long bytes() {
+    return mKeys.bytes() + mValues.bytes();
+  }
+}
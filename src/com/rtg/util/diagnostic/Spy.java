@@ -31,16 +31,15 @@
 package com.rtg.util.diagnostic;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-import com.rtg.util.License;
-
 /**
  * Enable easy reporting of such things as counters to the developer log.
  */
 public final class Spy {
 
-  private static final List<Object> SPIES = new ArrayList<>();
+  private static final List<Object> SPIES = Collections.synchronizedList(new ArrayList<>());
 
   /**
    * Add a new spy.
@@ -50,15 +49,22 @@ public final class Spy {
     SPIES.add(spy);
   }
 
+  /**
+   * @return a snapshot of the spies registered so far, in order of creation
+   */
+  public static List<Object> spies() {
+    synchronized (SPIES) {
+      return new ArrayList<>(SPIES);
+    }
+  }
+
   /**
    * Generate a report to the log from all the current spies.
    */
   public static void report() {
     //System.err.println("Spy report:" + SPIES.size());
-    if (License.isDeveloper()) {
-      for (final Object obj : SPIES) {
-        Diagnostic.developerLog(obj.toString());
-      }
+    for (final Object obj : spies()) {
+      Diagnostic.userLog(obj.toString());
     }
   }
 
@@ -30,12 +30,15 @@
 
 package com.rtg.util.diagnostic;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Collect counts and have them reported when <code>Spy.report()</code> is called.
+ * Counters may be incremented concurrently from multiple threads.
  */
 public class SpyCounter {
   private final String mName;
-  private long mCount = 0;
+  private final LongAdder mCount = new LongAdder();
 
   /**
    * @param name used in reporting results.
@@ -49,11 +52,33 @@ public class SpyCounter {
    * Increment the counter.
    */
   public void increment() {
-    ++mCount;
+    mCount.increment();
+  }
+
+  /**
+   * Increment the counter by an amount.
+   * @param amount to add to the counter.
+   */
+  public void increment(long amount) {
+    mCount.add(amount);
+  }
+
+  /**
+   * @return the name of the counter.
+   */
+  public String name() {
+    return mName;
+  }
+
+  /**
+   * @return the current count.
+   */
+  public long count() {
+    return mCount.sum();
   }
 
   @Override
   public String toString() {
-    return mName + " counts " + mCount;
+    return mName + " counts " + count();
   }
 }
@@ -30,13 +30,17 @@
 
 package com.rtg.util.diagnostic;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 /**
  * Collect counts and have them reported when <code>Spy.report()</code> is called.
+ * The histogram may be incremented concurrently from multiple threads.
  */
 public class SpyHistogram {
   private final String mName;
-  private long mCount = 0;
-  private final long[] mHisto;
+  private final AtomicLong mCount = new AtomicLong();
+  private final AtomicLongArray mHisto;
 
   /**
    * @param name used in reporting results.
@@ -44,7 +48,7 @@ public class SpyHistogram {
    */
   public SpyHistogram(final String name, final int length) {
     mName = name;
-    mHisto = new long[length];
+    mHisto = new AtomicLongArray(length);
     Spy.add(this);
   }
 
@@ -54,21 +58,44 @@ public class SpyHistogram {
    * @param index specifies counter to be incremented assumed to be &ge; 0.
    */
   public void increment(final int index) {
-    if (index >= mHisto.length) {
-      ++mCount;
+    if (index >= mHisto.length()) {
+      mCount.incrementAndGet();
       return;
     }
-    mHisto[index]++;
+    mHisto.incrementAndGet(index);
+  }
+
+  /**
+   * @return the name of the histogram.
+   */
+  public String name() {
+    return mName;
+  }
+
+  /**
+   * @return the highest index that has been incremented so far, the length if an index beyond the histogram
+   * has been incremented, or -1 if nothing has been incremented.
+   */
+  public int maxIndex() {
+    if (mCount.get() > 0) {
+      return mHisto.length();
+    }
+    for (int i = mHisto.length() - 1; i >= 0; --i) {
+      if (mHisto.get(i) > 0) {
+        return i;
+      }
+    }
+    return -1;
   }
 
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder();
-    sb.append(mName).append(" [").append(mHisto.length).append("] ");
-    for (long aMHisto : mHisto) {
-      sb.append(aMHisto).append(" ");
+    sb.append(mName).append(" [").append(mHisto.length()).append("] ");
+    for (int i = 0; i < mHisto.length(); ++i) {
+      sb.append(mHisto.get(i)).append(" ");
     }
-    sb.append("...").append(mCount);
+    sb.append("...").append(mCount.get());
     return sb.toString();
   }
 }
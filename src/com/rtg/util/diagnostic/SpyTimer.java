@@ -30,16 +30,60 @@
 
 package com.rtg.util.diagnostic;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
+ * A timer that is reported to the log at the end of the run. Timing may be
+ * accumulated concurrently from multiple threads using <code>increment</code>, which
+ * does not lock, so it can be called while holding other monitors.
  */
 public class SpyTimer extends Timer {
 
+  // Intervals from increment, folded into the timer when it is read
+  private final LongAdder mPendingTime = new LongAdder();
+  private final LongAdder mPendingCount = new LongAdder();
+
   /**
-   * Do timing and output to developer log at end of run.
+   * Do timing and output to log at end of run.
    * @param name printed in output.
    */
   public SpyTimer(String name) {
     super(name);
     Spy.add(this);
   }
+
+  @Override
+  public void increment(long time) {
+    assert time >= 0;
+    mPendingTime.add(time);
+    mPendingCount.increment();
+  }
+
+  private void fold() {
+    final long count = mPendingCount.sumThenReset();
+    if (count > 0) {
+      increment(mPendingTime.sumThenReset(), count);
+    }
+  }
+
+  /**
+   * @return the name of the timer.
+   */
+  public String name() {
+    return mName;
+  }
+
+  /**
+   * @return the total time accumulated so far in seconds.
+   */
+  public synchronized double seconds() {
+    fold();
+    return time() / BILLION;
+  }
+
+  @Override
+  public synchronized String toString() {
+    fold();
+    return super.toString();
+  }
 }
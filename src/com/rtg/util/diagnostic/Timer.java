@@ -144,6 +144,21 @@ public class Timer extends AbstractTimer implements Integrity {
     mState = State.STOPPED;
   }
 
+  /**
+   * Increment time and count when a number of intervals have been measured outside.
+   * @param time the total time taken in nanoseconds.
+   * @param count the number of intervals.
+   */
+  void increment(final long time, final long count) {
+    assert time >= 0 && count > 0;
+    if (mState == State.RUNNING) {
+      throw new IllegalStateException();
+    }
+    mTime += time;
+    mStartCount += count;
+    mState = State.STOPPED;
+  }
+
   /**
    * Write the accumulated time and average time to the log.
    */
@@ -222,6 +237,13 @@ public class Timer extends AbstractTimer implements Integrity {
     return integrity();
   }
 
+  /**
+   * @return the accumulated time in nanoseconds, not including any currently running interval.
+   */
+  long time() {
+    return mTime;
+  }
+
   /**
    * Set the total time. Only to be used for testing!!
    * @param time new value for accumulated.
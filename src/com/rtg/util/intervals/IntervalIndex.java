@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.util.intervals;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A compact, immutable index of intervals on a single sequence, held as parallel arrays of
+ * start and end positions sorted by start. Alongside each interval the maximum end of it and
+ * all preceding intervals is recorded, so only intervals from the first one whose running
+ * maximum end reaches a query need to be examined. Intervals may overlap, although queries
+ * are fastest when they do not. None of the queries allocate.
+ */
+public final class IntervalIndex {
+
+  private final int[] mStarts;
+  private final int[] mEnds;
+  private final int[] mMaxEnds;
+  private final int mSize;
+
+  /**
+   * Construct an index directly over arrays, which are not copied and must not be modified afterwards.
+   * @param starts start positions, sorted in ascending order
+   * @param ends end positions corresponding to the starts
+   * @param size number of intervals held in the arrays
+   */
+  IntervalIndex(int[] starts, int[] ends, int size) {
+    assert size <= starts.length && size <= ends.length;
+    mStarts = starts;
+    mEnds = ends;
+    mSize = size;
+    // When no interval is nested inside an earlier one the running maximum is the end itself
+    int[] maxEnds = ends;
+    int max = Integer.MIN_VALUE;
+    for (int i = 0; i < size; ++i) {
+      assert i == 0 || starts[i - 1] <= starts[i];
+      if (ends[i] >= max) {
+        max = ends[i];
+      } else if (maxEnds == ends) {
+        maxEnds = Arrays.copyOf(ends, size);
+      }
+      if (maxEnds != ends) {
+        maxEnds[i] = max;
+      }
+    }
+    mMaxEnds = maxEnds;
+  }
+
+  /**
+   * Create an index of the supplied intervals.
+   * @param intervals the intervals, in any order
+   * @return the index
+   */
+  public static IntervalIndex create(Collection<? extends Interval> intervals) {
+    // Sort by start then end, packed into primitives
+    final long[] packed = new long[intervals.size()];
+    int i = 0;
+    for (final Interval interval : intervals) {
+      packed[i++] = ((long) interval.getStart() << 32) | (interval.getEnd() & 0xFFFFFFFFL);
+    }
+    Arrays.sort(packed);
+    final int[] starts = new int[packed.length];
+    final int[] ends = new int[packed.length];
+    for (i = 0; i < packed.length; ++i) {
+      starts[i] = (int) (packed[i] >> 32);
+      ends[i] = (int) packed[i];
+    }
+    return new IntervalIndex(starts, ends, packed.length);
+  }
+
+  /**
+   * Create an index of intervals which are already sorted by start position.
+   * @param intervals the intervals
+   * @return the index
+   */
+  static IntervalIndex ofSorted(List<? extends Interval> intervals) {
+    final int[] starts = new int[intervals.size()];
+    final int[] ends = new int[starts.length];
+    int i = 0;
+    for (final Interval interval : intervals) {
+      starts[i] = interval.getStart();
+      ends[i++] = interval.getEnd();
+    }
+    return new IntervalIndex(starts, ends, starts.length);
+  }
+
+  /** @return the number of intervals */
+  public int size() {
+    return mSize;
+  }
+
+  /**
+   * @param index index of an interval, intervals are ordered by start position
+   * @return zero based inclusive start of the interval
+   */
+  public int getStart(int index) {
+    assert index < mSize;
+    return mStarts[index];
+  }
+
+  /**
+   * @param index index of an interval, intervals are ordered by start position
+   * @return zero based exclusive end of the interval
+   */
+  public int getEnd(int index) {
+    assert index < mSize;
+    return mEnds[index];
+  }
+
+  // Index of first element of a sorted array that is greater than the key, or size if there is none
+  private int upperBound(int[] values, int key) {
+    int lo = 0;
+    int hi = mSize;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (values[mid] <= key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * @param pos zero based position
+   * @return index of the last interval starting at or before the position, or -1 if there is none
+   */
+  public int floor(int pos) {
+    return upperBound(mStarts, pos) - 1;
+  }
+
+  /**
+   * @param pos zero based position
+   * @return index of the last interval starting strictly before the position, or -1 if there is none
+   */
+  public int lower(int pos) {
+    return pos == Integer.MIN_VALUE ? -1 : upperBound(mStarts, pos - 1) - 1;
+  }
+
+  /**
+   * Find the next region at or after a position.
+   * @param pos zero based position
+   * @return index of the first interval that ends after the position, so either contains the position
+   * or lies entirely after it, or <code>size()</code> if there is none
+   */
+  public int nextRegion(int pos) {
+    int i = upperBound(mMaxEnds, pos);
+    while (i < mSize && mEnds[i] <= pos) {
+      ++i;
+    }
+    return i;
+  }
+
+  /**
+   * @param start zero based inclusive start of the query
+   * @param end zero based exclusive end of the query
+   * @return index of the first interval overlapping the query, or -1 if there is none
+   */
+  public int firstOverlap(int start, int end) {
+    return overlapFrom(upperBound(mMaxEnds, start), start, end);
+  }
+
+  /**
+   * @param index index of an interval overlapping the query, as returned by a previous call
+   * @param start zero based inclusive start of the query
+   * @param end zero based exclusive end of the query
+   * @return index of the next interval overlapping the query, or -1 if there are no more
+   */
+  public int nextOverlap(int index, int start, int end) {
+    return overlapFrom(index + 1, start, end);
+  }
+
+  private int overlapFrom(int index, int start, int end) {
+    for (int i = index; i < mSize && mStarts[i] < end; ++i) {
+      if (mEnds[i] > start) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param start zero based inclusive start of the query
+   * @param end zero based exclusive end of the query
+   * @return true if any interval overlaps the query
+   */
+  public boolean overlapped(int start, int end) {
+    return firstOverlap(start, end) != -1;
+  }
+
+  /**
+   * @param pos zero based position
+   * @return true if any interval contains the position
+   */
+  public boolean contains(int pos) {
+    final int i = floor(pos);
+    if (i >= 0 && mMaxEnds[i] > pos) {
+      // Some interval up to i reaches the position
+      for (int j = i; j >= 0 && mMaxEnds[j] > pos; --j) {
+        if (mEnds[j] > pos) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param start zero based inclusive start of the query
+   * @param end zero based exclusive end of the query
+   * @return true if a single interval starting before the end of the query contains the whole query
+   */
+  public boolean enclosed(int start, int end) {
+    final int i = lower(end);
+    for (int j = Math.min(i, floor(start)); j >= 0 && mMaxEnds[j] >= end; --j) {
+      if (mEnds[j] >= end) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -29,21 +29,29 @@
  */
 package com.rtg.util.intervals;
 
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Store information about multiple intervals on a single sequence.
  * Overlapping regions are joined together into a single interval.
+ * Intervals are held in primitive arrays. Those added out of order are merged lazily, when the
+ * intervals are next queried.
  */
 class MergedIntervals {
 
-  /**
-   * Map of region start to region end
-   * a position is within the region if the floor entries value is greater than it
-   */
-  final TreeMap<Integer, Integer> mIntervals = new TreeMap<>();
+  private static final int INITIAL_CAPACITY = 16;
+
+  // Intervals, which are sorted by start and disjoint unless mMerged is false
+  private int[] mStarts = new int[INITIAL_CAPACITY];
+  private int[] mEnds = new int[INITIAL_CAPACITY];
+  private int mSize = 0;
+  private boolean mMerged = true;
+
+  // Query view over the merged intervals, built on the first query and discarded on modification
+  private volatile IntervalIndex mIndex = null;
+  // True while an index refers to the interval arrays, which must then be copied before they are modified
+  private boolean mShared = false;
 
   /**
    * Add a new interval to the set
@@ -59,28 +67,83 @@ class MergedIntervals {
    * @param end 0-based exclusive end position of the region
    */
   void add(int start, int end) {
-    final Map.Entry<Integer, Integer> floor = mIntervals.floorEntry(start);
-    final Map.Entry<Integer, Integer> endFloor = mIntervals.floorEntry(end);
-    final int actualStart;
-    final int actualEnd;
-    if (floor != null && start >= floor.getKey() && end <= floor.getValue()) {
-      //Don't bother with regions already fully contained
+    unshare();
+    if (mMerged && mSize > 0) {
+      final int last = mSize - 1;
+      if (start >= mStarts[last]) {
+        // Regions arriving in order can be merged immediately
+        if (start <= mEnds[last]) {
+          mEnds[last] = Math.max(mEnds[last], end);
+          return;
+        }
+      } else {
+        mMerged = false;
+      }
+    }
+    if (mSize == mStarts.length) {
+      final int capacity = mSize + (mSize >> 1);
+      mStarts = Arrays.copyOf(mStarts, capacity);
+      mEnds = Arrays.copyOf(mEnds, capacity);
+    }
+    mStarts[mSize] = start;
+    mEnds[mSize] = end;
+    ++mSize;
+  }
+
+  // Discard any index, taking a private copy of the intervals if the index refers to them
+  private void unshare() {
+    mIndex = null;
+    if (mShared) {
+      mStarts = Arrays.copyOf(mStarts, mStarts.length);
+      mEnds = Arrays.copyOf(mEnds, mEnds.length);
+      mShared = false;
+    }
+  }
+
+  // Sort and join any regions that were added out of order
+  private void merge() {
+    if (mMerged) {
       return;
     }
-    //Get Start for Region
-    if (floor == null || start > floor.getValue()) {
-      actualStart = start;
-    } else {
-      actualStart = Math.min(floor.getKey(), start);
+    final long[] packed = new long[mSize];
+    for (int i = 0; i < mSize; ++i) {
+      packed[i] = ((long) mStarts[i] << 32) | (mEnds[i] & 0xFFFFFFFFL);
     }
-    //Get End for Region
-    if (endFloor == null) {
-      actualEnd = end;
-    } else {
-      actualEnd = Math.max(endFloor.getValue(), end);
+    Arrays.sort(packed);
+    int size = 0;
+    for (final long p : packed) {
+      final int start = (int) (p >> 32);
+      final int end = (int) p;
+      if (size > 0 && start <= mEnds[size - 1]) {
+        mEnds[size - 1] = Math.max(mEnds[size - 1], end);
+      } else {
+        mStarts[size] = start;
+        mEnds[size] = end;
+        ++size;
+      }
+    }
+    mSize = size;
+    mMerged = true;
+  }
+
+  /**
+   * @return an index over the merged intervals
+   */
+  IntervalIndex index() {
+    IntervalIndex index = mIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = mIndex;
+        if (index == null) {
+          merge();
+          // Later modifications copy the intervals before changing them, so the index is not affected
+          index = new IntervalIndex(mStarts, mEnds, mSize);
+          mShared = true;
+          mIndex = index;
+        }
+      }
     }
-    removeContainedBy(actualStart, actualEnd);
-    mIntervals.put(actualStart, actualEnd);
+    return index;
   }
 
   /**
@@ -97,43 +160,92 @@ class MergedIntervals {
    * @param end 0-based exclusive end position of the region
    */
   void subtract(int start, int end) {
-    final Map.Entry<Integer, Integer> floor = mIntervals.floorEntry(start);
-    final Map.Entry<Integer, Integer> endFloor = mIntervals.lowerEntry(end);
-    if (endFloor == null) {
-      return; // query is to the left of all regions.
+    merge();
+    // Regions from first to last (exclusive) overlap the subtracted region
+    final int first = upperBound(mEnds, mSize, start);
+    final int last = end == Integer.MIN_VALUE ? 0 : upperBound(mStarts, mSize, end - 1);
+    if (first >= last) {
+      return;
+    }
+    unshare();
+    final int[] starts = new int[2];
+    final int[] ends = new int[2];
+    int keep = 0;
+    if (mStarts[first] < start) {
+      starts[keep] = mStarts[first];
+      ends[keep++] = start;
+    }
+    if (mEnds[last - 1] > end) {
+      starts[keep] = end;
+      ends[keep++] = mEnds[last - 1];
+    }
+    final int newSize = mSize - (last - first) + keep;
+    if (newSize > mStarts.length) {
+      mStarts = Arrays.copyOf(mStarts, newSize);
+      mEnds = Arrays.copyOf(mEnds, newSize);
     }
-    if (floor != null && floor.getKey() < end && floor.getValue() > start) {
-      // We have a region that overlaps query start
-      if (floor.getValue() > end) {
-        // Region completely encompasses query, split
-        mIntervals.put(end, floor.getValue());
+    System.arraycopy(mStarts, last, mStarts, first + keep, mSize - last);
+    System.arraycopy(mEnds, last, mEnds, first + keep, mSize - last);
+    System.arraycopy(starts, 0, mStarts, first, keep);
+    System.arraycopy(ends, 0, mEnds, first, keep);
+    mSize = newSize;
+  }
+
+  // Index of first of the leading size elements of a sorted array that is greater than the key, or size if there is none
+  private static int upperBound(int[] values, int size, int key) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (values[mid] <= key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
       }
-      mIntervals.put(floor.getKey(), start); // Truncate to start
-    } else if (endFloor.getKey() < end && endFloor.getValue() > end) {
-      // We have a region that overlaps end
-      mIntervals.put(end, endFloor.getValue());
     }
-    removeContainedBy(start, end);
+    return lo;
   }
 
-  //Remove any existing regions completely within start and end
-  private void removeContainedBy(int start, int end) {
-    Map.Entry<Integer, Integer> overlappedRegion;
-    while ((overlappedRegion = mIntervals.lowerEntry(end)) != null) {
-      if (overlappedRegion.getKey() < start) {
-        break;
+  /**
+   * Restrict the set to those parts of its regions which are also within another set
+   * @param other the other set of regions
+   */
+  void intersect(MergedIntervals other) {
+    merge();
+    final IntervalIndex theirs = other.index();
+    final int[] starts = new int[mSize + theirs.size()];
+    final int[] ends = new int[starts.length];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < mSize && j < theirs.size()) {
+      final int start = Math.max(mStarts[i], theirs.getStart(j));
+      final int end = Math.min(mEnds[i], theirs.getEnd(j));
+      if (start < end) {
+        starts[size] = start;
+        ends[size++] = end;
+      }
+      if (mEnds[i] < theirs.getEnd(j)) {
+        ++i;
+      } else {
+        ++j;
       }
-      mIntervals.remove(overlappedRegion.getKey());
     }
+    mIndex = null;
+    mShared = false;
+    mStarts = starts;
+    mEnds = ends;
+    mSize = size;
   }
 
   /**
    * @return a mask that can be used for fast containment tests
    */
   public BitSet mask() {
+    final IntervalIndex index = index();
     final BitSet mask = new BitSet();
-    for (Map.Entry<Integer, Integer> region : mIntervals.entrySet()) {
-      mask.set(region.getKey(), region.getValue());
+    for (int i = 0; i < index.size(); ++i) {
+      mask.set(index.getStart(i), index.getEnd(i));
     }
     return mask;
   }
@@ -143,8 +255,7 @@ class MergedIntervals {
    * @return true if the position provided falls within the intervals
    */
   boolean enclosed(int pos) {
-    final Map.Entry<Integer, Integer> floor = mIntervals.floorEntry(pos);
-    return floor != null && floor.getValue() > pos;
+    return index().contains(pos);
   }
 
   /**
@@ -153,15 +264,7 @@ class MergedIntervals {
    * @return true if the position provided falls entirely within the intervals
    */
   boolean enclosed(int start, int end) {
-    final Map.Entry<Integer, Integer> floor = mIntervals.lowerEntry(end);
-    if (floor == null) {
-      return false;
-    } else if (end > floor.getValue()) {
-      return false;
-    } else if (start < floor.getKey()) {
-      return false;
-    }
-    return true;
+    return index().enclosed(start, end);
   }
 
   /**
@@ -170,12 +273,7 @@ class MergedIntervals {
    * @return true if the range specified is overlapped by the intervals
    */
   boolean overlapped(int start, int end) {
-    final Map.Entry<Integer, Integer> floor = mIntervals.lowerEntry(end);
-    if (floor == null) {
-      return false;
-    } else {
-      return start < floor.getValue() && end > floor.getKey();
-    }
+    return index().overlapped(start, end);
   }
 
   /**
@@ -183,15 +281,16 @@ class MergedIntervals {
    * @return the total length covered by regions
    */
   public int totalLength() {
+    final IntervalIndex index = index();
     int total = 0;
-    for (Map.Entry<Integer, Integer> region : mIntervals.entrySet()) {
-      total += region.getValue() - region.getKey();
+    for (int i = 0; i < index.size(); ++i) {
+      total += index.getEnd(i) - index.getStart(i);
     }
     return total;
   }
 
   /** @return the number of regions */
   public int size() {
-    return mIntervals.size();
+    return index().size();
   }
 }
@@ -33,7 +33,6 @@ package com.rtg.util.intervals;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -88,6 +87,7 @@ public class RangeList<T> {
   }
 
   private final List<RangeView<T>> mRanges;
+  private final IntervalIndex mIndex;
   private final List<RangeView<T>> mNonEmptyRanges;
 
   /**
@@ -106,9 +106,11 @@ public class RangeList<T> {
     if (ranges == null || ranges.isEmpty()) {
       mRanges = new ArrayList<>(1);
       mRanges.add(new RangeView<>(Integer.MIN_VALUE, Integer.MAX_VALUE));
+      mIndex = IntervalIndex.ofSorted(mRanges);
     } else {
       // get list of range boundaries
       mRanges = getRangeViews(ranges);
+      mIndex = IntervalIndex.ofSorted(mRanges);
 
       // load input ranges into the non-overlapping views
       for (final RangeMeta<T> range : ranges) {
@@ -129,18 +131,20 @@ public class RangeList<T> {
 
   // Create a list of non-overlapping RangeView objects
   private static <U> List<RangeView<U>> getRangeViews(List<RangeMeta<U>> ranges) {
-    final HashSet<Integer> pivots = new HashSet<>();
+    final int[] allPivots = new int[2 * ranges.size()];
+    int n = 0;
     for (final RangeMeta<?> range : ranges) {
-      pivots.add(range.getStart());
-      pivots.add(range.getEnd());
+      allPivots[n++] = range.getStart();
+      allPivots[n++] = range.getEnd();
     }
-    final int[] pivots2 = new int[pivots.size()];
-    int i2 = 0;
-    for (final Integer x : pivots) {
-      pivots2[i2] = x;
-      ++i2;
+    Arrays.sort(allPivots);
+    n = 0;
+    for (final int x : allPivots) {
+      if (n == 0 || allPivots[n - 1] != x) {
+        allPivots[n++] = x;
+      }
     }
-    Arrays.sort(pivots2);
+    final int[] pivots2 = Arrays.copyOf(allPivots, n);
 
     // set up continuous non-overlapping ranges for -inf to +inf
     final List<RangeView<U>> views = new ArrayList<>(pivots2.length + 1);
@@ -189,30 +193,8 @@ public class RangeList<T> {
    * @return the index of the range entry containing the position
    */
   public final int findFullRangeIndex(int loc) {
-    if (loc == Integer.MAX_VALUE) {
-      return mRanges.size() - 1;
-    }
-    int min = 0;
-    int max = mRanges.size();
-    int res = (max + min) / 2;
-
-    // binary search
-    boolean found = false;
-    while (!found) {
-      //System.err.println(min + " " + res + " " + max + " : " + loc + " " + ranges[res]);
-      final RangeView<T> range = mRanges.get(res);
-      if (range.contains(loc)) {
-        found = true;
-      } else {
-        if (loc < range.getStart()) {
-          max = res;
-        } else {
-          min = res;
-        }
-        res = (max + min) / 2;
-      }
-    }
-    return res;
+    // views are contiguous from -inf to +inf, so the one containing loc is the last starting at or before it
+    return mIndex.floor(loc);
   }
 
   @Override
@@ -86,26 +86,28 @@ public class ReferenceRegions implements Iterable<SequenceNameLocus> {
     return new Iterator<SequenceNameLocus>() {
       final Iterator<String> mSeqIt = mSequences.keySet().iterator();
       String mSequence;
-      Iterator<Map.Entry<Integer, Integer>> mRegionIt = null;
+      IntervalIndex mRegions = null;
+      int mRegion = 0;
       @Override
       public boolean hasNext() {
-        if (mRegionIt == null || !mRegionIt.hasNext()) {
-          mRegionIt = null;
+        if (mRegions == null || mRegion >= mRegions.size()) {
+          mRegions = null;
           while (mSeqIt.hasNext()) {
             mSequence = mSeqIt.next();
-            mRegionIt = mSequences.get(mSequence).mIntervals.entrySet().iterator();
-            if (mRegionIt.hasNext()) {
+            mRegions = mSequences.get(mSequence).index();
+            mRegion = 0;
+            if (mRegions.size() > 0) {
               break;
             }
           }
         }
-        return mRegionIt != null && mRegionIt.hasNext();
+        return mRegions != null && mRegion < mRegions.size();
       }
 
       @Override
       public SequenceNameLocus next() {
-        final Map.Entry<Integer, Integer> entry = mRegionIt.next();
-        return new SequenceNameLocusSimple(mSequence, entry.getKey(), entry.getValue());
+        final int region = mRegion++;
+        return new SequenceNameLocusSimple(mSequence, mRegions.getStart(region), mRegions.getEnd(region));
       }
     };
   }
@@ -127,16 +129,9 @@ public class ReferenceRegions implements Iterable<SequenceNameLocus> {
    */
   public void intersect(ReferenceRegions regions) {
     for (String seq : sequenceNames()) {
-      int outStart = 0;
       final MergedIntervals theirs = regions.mSequences.get(seq);
-      final MergedIntervals ours = mSequences.get(seq);
       if (theirs != null) {
-        for (Map.Entry<Integer, Integer> interval : theirs.mIntervals.entrySet()) {
-          final int outEnd = interval.getKey();
-          ours.subtract(outStart, outEnd);
-          outStart = interval.getValue();
-        }
-        ours.subtract(outStart, Integer.MAX_VALUE);
+        mSequences.get(seq).intersect(theirs);
       }
     }
   }
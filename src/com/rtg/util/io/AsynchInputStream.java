@@ -33,6 +33,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.rtg.util.diagnostic.SpyCounter;
+import com.rtg.util.diagnostic.SpyTimer;
+
 /**
  * An input stream that does the reading in a separate thread.  It
  * also does buffering, during the input and also within the pipe used
@@ -55,6 +58,10 @@ public class AsynchInputStream extends InputStream {
   /** Modern disks have about 64 Kb blocks, so make it that size? */
   public static final int DEFAULT_INPUT_BUFFER_SIZE = 65536;
 
+  // Time the consumer spends waiting for data, and the background reader spends waiting for space
+  private static final SpyTimer CONSUMER_WAIT = new SpyTimer("AsynchInputStream.consumer-wait");
+  private static final SpyTimer PRODUCER_WAIT = new SpyTimer("AsynchInputStream.producer-wait");
+
   /** This is package-level protection, just for testing purposes. */
   final ConcurrentByteQueue mQueue;
 
@@ -73,13 +80,25 @@ public class AsynchInputStream extends InputStream {
    * @param bufferSize the buffer size of the input reading object.
    */
   public AsynchInputStream(InputStream input, int pipeSize, int bufferSize) {
+    this(input, pipeSize, bufferSize, null);
+  }
+
+  /**
+   * Create an asynchronous input stream to read the given file.
+   *
+   * @param input the input stream
+   * @param pipeSize the size of the buffer between the threads.  At least 1 Kb.
+   * @param bufferSize the buffer size of the input reading object.
+   * @param bytesRead if not null, counts the bytes read from the input stream
+   */
+  protected AsynchInputStream(InputStream input, int pipeSize, int bufferSize, SpyCounter bytesRead) {
     //Diagnostic.developerLog("new AsynchInputStream(" + pipeSize + ", " + bufferSize + ")");
     assert pipeSize >= 1024;
-    mQueue = new ConcurrentByteQueue(pipeSize);
+    mQueue = new ConcurrentByteQueue(pipeSize, CONSUMER_WAIT, PRODUCER_WAIT);
     if (input == null) {
       throw new IllegalArgumentException("File cannot be null");
     }
-    mAsynchInput = new AsynchInput(input, mQueue, bufferSize);
+    mAsynchInput = new AsynchInput(input, mQueue, bufferSize, bytesRead);
     mThread = new Thread(mAsynchInput, "AsynchInputStream");
     mThread.setDaemon(true);
     mThread.start();
@@ -158,12 +177,15 @@ public class AsynchInputStream extends InputStream {
     /** A buffer for the decompressed input. */
     private final byte[] mBuffer;
 
+    private final SpyCounter mBytesRead;
+
     private final AtomicReference<Throwable> mException = new AtomicReference<>(null);
 
-    AsynchInput(InputStream input, ConcurrentByteQueue queue, int inputSize) {
+    AsynchInput(InputStream input, ConcurrentByteQueue queue, int inputSize, SpyCounter bytesRead) {
       mInput = input;
       mQueue = queue;
       mBuffer = new byte[inputSize];
+      mBytesRead = bytesRead;
     }
 
     @Override
@@ -173,6 +195,9 @@ public class AsynchInputStream extends InputStream {
         while (!self.isInterrupted()) {
           final int size = mInput.read(mBuffer);
           if (size > 0) {
+            if (mBytesRead != null) {
+              mBytesRead.increment(size);
+            }
             mQueue.write(mBuffer, 0, size);
           }
           if (size <= 0) {
@@ -33,6 +33,9 @@ package com.rtg.util.io;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import com.rtg.util.diagnostic.SpyCounter;
+import com.rtg.util.diagnostic.SpyTimer;
+
 import htsjdk.samtools.util.RuntimeIOException;
 
 /**
@@ -57,6 +60,10 @@ public class AsynchOutputStream extends OutputStream {
   /** Modern disks have about 64 Kb blocks, so make it that size? */
   public static final int DEFAULT_OUTPUT_BUFFER_SIZE = 65536;
 
+  // Time the producer spends waiting for space, and the background writer spends waiting for data
+  private static final SpyTimer PRODUCER_WAIT = new SpyTimer("AsynchOutputStream.producer-wait");
+  private static final SpyTimer CONSUMER_WAIT = new SpyTimer("AsynchOutputStream.consumer-wait");
+
   /** This is package-level protection, just for testing purposes. */
   final ConcurrentByteQueue mQueue;
 
@@ -83,13 +90,23 @@ public class AsynchOutputStream extends OutputStream {
    * @param pipeSize the size of the buffer between the threads.  At least 1 Kb.
    */
   public AsynchOutputStream(OutputStream stream, int pipeSize) {
+    this(stream, pipeSize, null);
+  }
+
+  /**
+   * Create an asynchronous output stream to write to the given stream.
+   * @param stream the output stream
+   * @param pipeSize the size of the buffer between the threads.  At least 1 Kb.
+   * @param bytesWritten if not null, counts the bytes written to the output stream
+   */
+  protected AsynchOutputStream(OutputStream stream, int pipeSize, SpyCounter bytesWritten) {
     //Diagnostic.developerLog("new AsynchOutputStream(" + pipeSize + ", " + bufferSize + ")");
     assert pipeSize >= 1024;
-    mQueue = new ConcurrentByteQueue(pipeSize);
+    mQueue = new ConcurrentByteQueue(pipeSize, CONSUMER_WAIT, PRODUCER_WAIT);
     if (stream == null) {
       throw new IllegalArgumentException("Stream cannot be null");
     }
-    mAsynchOutput = new AsynchOutput(stream, mQueue);
+    mAsynchOutput = new AsynchOutput(stream, mQueue, bytesWritten);
     mThread = new Thread(mAsynchOutput, "AsynchOutputStream");
     mThread.setDaemon(true);
     mThread.start();
@@ -210,11 +227,14 @@ public class AsynchOutputStream extends OutputStream {
     /** the queue/pipe used to send bytes to the parent process */
     private final ConcurrentByteQueue mQueue;
 
+    private final SpyCounter mBytesWritten;
+
     volatile IOException mException = null; // tell the parent about an error.
 
-    AsynchOutput(OutputStream stream, ConcurrentByteQueue queue) {
+    AsynchOutput(OutputStream stream, ConcurrentByteQueue queue, SpyCounter bytesWritten) {
       mOutput = stream;
       mQueue = queue;
+      mBytesWritten = bytesWritten;
     }
 
     @Override
@@ -225,6 +245,9 @@ public class AsynchOutputStream extends OutputStream {
           if (size <= 0) {
             break;
           }
+          if (mBytesWritten != null) {
+            mBytesWritten.increment(size);
+          }
         }
       } catch (IOException e) {
         mException = e; // tell the other end of the pipe about this error.
@@ -254,6 +254,17 @@ public final class ByteArrayIOUtils {
             + (vals[from] & 0xFF);
   }
 
+  /**
+   * Low 16 bits of an <code>int</code> into byte array as a <code>short</code>
+   * @param i data
+   * @param dest output data
+   * @param offset where to write to
+   */
+  public static void shortToBytesLittleEndian(final int i, final byte[] dest, final int offset) {
+    dest[offset] = (byte) (i & 0xFF);
+    dest[offset + 1] = (byte) ((i >> 8) & 0xFF);
+  }
+
   /**
    * Single <code>int</code> into byte array
    * @param i data
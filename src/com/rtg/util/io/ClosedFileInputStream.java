@@ -31,19 +31,23 @@ package com.rtg.util.io;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 /**
  * Stream that reads file contents into a buffer and then closes file handle until
- * it requires more data. File should only be open during read calls.
+ * it requires more data. File should only be open during read calls, although
+ * handles may be retained between reads by a bounded {@link FileHandlePool} until
+ * the stream is closed.
  */
 public final class ClosedFileInputStream extends htsjdk.samtools.seekablestream.SeekableStream {
 
   private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
 
   private final File mFile;
+  private final FileHandlePool mPool;
   private final byte[] mBuffer;
   private final long mFileSize;
+  private final long mLastModified;
+  private boolean mClosed = false;
   private int mBufferPos;
   private int mBufferInUse;
   private long mFilePointer;
@@ -62,9 +66,21 @@ public final class ClosedFileInputStream extends htsjdk.samtools.seekablestream.
    * @param bufferSize size of buffer
    */
   ClosedFileInputStream(File file, int bufferSize) {
+    this(file, bufferSize, FileHandlePool.POOL);
+  }
+
+  /**
+   * @param file file to read from
+   * @param bufferSize size of buffer
+   * @param pool pool of file handles to read with
+   */
+  ClosedFileInputStream(File file, int bufferSize, FileHandlePool pool) {
     mBuffer = new byte[bufferSize];
     mFile = file;
     mFileSize = file.length();
+    mLastModified = file.lastModified();
+    mPool = pool;
+    mPool.register(mFile);
   }
 
   /**
@@ -77,10 +93,15 @@ public final class ClosedFileInputStream extends htsjdk.samtools.seekablestream.
   }
 
   /**
-   * does nothing since we don't keep the file open
+   * Releases any pooled file handle. The stream may still be read after closing, but each read will reopen the file.
+   * @throws IOException if an error occurs closing the pooled handle
    */
   @Override
-  public void close() {
+  public void close() throws IOException {
+    if (!mClosed) {
+      mClosed = true;
+      mPool.unregister(mFile);
+    }
   }
 
   /**
@@ -160,14 +181,7 @@ public final class ClosedFileInputStream extends htsjdk.samtools.seekablestream.
 
   private void fillBuffer() throws IOException {
     mBufferPos = 0;
-    mBufferInUse = 0;
-    try (RandomAccessFile raf = new RandomAccessFile(mFile, "r")) {
-      raf.seek(mFilePointer);
-      ++mDiskSeeksDone;
-      int len;
-      while (mBufferInUse != mBuffer.length && (len = raf.read(mBuffer, mBufferInUse, mBuffer.length - mBufferInUse)) != -1) {
-        mBufferInUse += len;
-      }
-    }
+    ++mDiskSeeksDone;
+    mBufferInUse = mPool.read(mFile, mFileSize, mLastModified, mFilePointer, mBuffer, 0, mBuffer.length);
   }
 }
@@ -31,7 +31,13 @@ package com.rtg.util.io;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 
+import com.rtg.util.diagnostic.SpyTimer;
 import com.rtg.util.integrity.Exam;
 import com.rtg.util.integrity.Integrity;
 
@@ -47,6 +53,9 @@ public class ConcurrentByteQueue implements Integrity {
 
   private static final int TIMEOUT = 100000;
 
+  // Queues that are open or still hold data, for monitoring
+  private static final Set<ConcurrentByteQueue> LIVE = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
   /**
    * Circular buffer.
    * Valid bytes are <code>mBuf[mStart .. mStart + mSize - 1]</code> but modulo size.
@@ -57,13 +66,38 @@ public class ConcurrentByteQueue implements Integrity {
   /** Set by the writer to indicate that no more writes will be done. */
   private boolean mClosed;
 
+  /** Accumulate time spent waiting for data or space, may be null. */
+  private final SpyTimer mReaderWait;
+  private final SpyTimer mWriterWait;
+
   ConcurrentByteQueue(int bufSize) {
+    this(bufSize, null, null);
+  }
+
+  /**
+   * @param bufSize capacity of the queue
+   * @param readerWait accumulates time the reader spends waiting for data, may be null
+   * @param writerWait accumulates time the writer spends waiting for space, may be null
+   */
+  ConcurrentByteQueue(int bufSize, SpyTimer readerWait, SpyTimer writerWait) {
     assert bufSize > 0;
+    mReaderWait = readerWait;
+    mWriterWait = writerWait;
     mBuf = new byte[bufSize];
     mStart = 0;
     mSize = 0;
     mClosed = false;
     assert globalIntegrity();
+    LIVE.add(this);
+  }
+
+  /**
+   * @return the queues that are open or still hold data
+   */
+  public static List<ConcurrentByteQueue> liveQueues() {
+    synchronized (LIVE) {
+      return new ArrayList<>(LIVE);
+    }
   }
 
   /**
@@ -90,6 +124,9 @@ public class ConcurrentByteQueue implements Integrity {
 //            + "CBQ Reader was full notifies: " + mReadWasFullNotify);
     mClosed = true;
     notifyAll();
+    if (mSize == 0) {
+      LIVE.remove(this);
+    }
 //    for (int i = 0; i < mReadHist.length; ++i) {
 //      Diagnostic.developerLog("CBQ hist: " + (i * 1000) + " read " + mReadHist[i] + " write " + mWriteHist[i]);
 //    }
@@ -134,7 +171,7 @@ public class ConcurrentByteQueue implements Integrity {
       } else {
         // wait until the reader has cleared some space
         notifyAll();
-        wait(TIMEOUT);
+        await(mWriterWait);
         wasEmpty = mSize == 0;
       }
       assert globalIntegrity();
@@ -158,9 +195,10 @@ public class ConcurrentByteQueue implements Integrity {
    */
   public synchronized int read(byte[] buf, int start, int count) throws InterruptedException {
     while (mSize == 0 && !mClosed) {
-      wait(TIMEOUT);
+      await(mReaderWait);
     }
     if (mSize == 0 && mClosed) {
+      LIVE.remove(this);
       return -1;
     } else {
       final boolean wasFull = mSize == mBuf.length;
@@ -194,9 +232,10 @@ public class ConcurrentByteQueue implements Integrity {
    */
   public synchronized int writeToStream(OutputStream out) throws InterruptedException, IOException {
     while (mSize == 0 && !mClosed) {
-      wait(TIMEOUT);
+      await(mReaderWait);
     }
     if (mSize == 0 && mClosed) {
+      LIVE.remove(this);
       return -1;
     } else {
       final boolean wasFull = mSize == mBuf.length;
@@ -221,6 +260,17 @@ public class ConcurrentByteQueue implements Integrity {
 
   }
 
+  // Caller must hold the lock
+  private void await(SpyTimer timer) throws InterruptedException {
+    if (timer == null) {
+      wait(TIMEOUT);
+    } else {
+      final long start = System.nanoTime();
+      wait(TIMEOUT);
+      timer.increment(System.nanoTime() - start);
+    }
+  }
+
   @Override
   public final synchronized boolean globalIntegrity() {
     integrity();
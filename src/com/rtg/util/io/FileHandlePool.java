@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.rtg.launcher.globals.GlobalFlags;
+import com.rtg.launcher.globals.ToolsGlobalFlags;
+
+/**
+ * A bounded pool of open read-only file handles, shared by streams that would otherwise open and close
+ * their file on every read. Files are only kept open while at least one stream has registered an interest
+ * in them. When more files than the capacity are in use, the least recently used handles are closed and
+ * files beyond the budget are reopened on demand.
+ */
+public final class FileHandlePool {
+
+  /** The pool shared by all streams, sized by a global flag */
+  static final FileHandlePool POOL = new FileHandlePool(GlobalFlags.getIntegerValue(ToolsGlobalFlags.OPEN_FILE_HANDLES));
+
+  private static final class Handle {
+    private final RandomAccessFile mFile;
+    private final long mLength;
+    private final long mLastModified;
+    private boolean mClosed = false;
+
+    Handle(File file, long length, long lastModified) throws IOException {
+      mFile = new RandomAccessFile(file, "r");
+      mLength = length;
+      mLastModified = lastModified;
+    }
+
+    // Returns -1 if the handle was closed, otherwise the number of bytes read
+    synchronized int read(long position, byte[] buffer, int offset, int length) throws IOException {
+      if (mClosed) {
+        return -1;
+      }
+      mFile.seek(position);
+      return readFully(mFile, buffer, offset, length);
+    }
+
+    synchronized void close() throws IOException {
+      if (!mClosed) {
+        mClosed = true;
+        mFile.close();
+      }
+    }
+  }
+
+  private final int mCapacity;
+  private final Map<File, Integer> mStreams = new HashMap<>();
+  private final LinkedHashMap<File, Handle> mHandles = new LinkedHashMap<>(16, 0.75f, true); // In access order
+  private long mOpens = 0;
+
+  /**
+   * @param capacity maximum number of file handles to keep open, 0 to disable pooling
+   */
+  FileHandlePool(int capacity) {
+    mCapacity = Math.max(0, capacity);
+  }
+
+  /**
+   * Registers a stream that will be reading from the file. Until the stream is unregistered,
+   * a handle for the file may be kept open between reads.
+   * @param file the file
+   */
+  void register(File file) {
+    if (mCapacity > 0) {
+      synchronized (this) {
+        mStreams.merge(file.getAbsoluteFile(), 1, Integer::sum);
+      }
+    }
+  }
+
+  /**
+   * Unregisters a stream. The handle for the file is closed once no streams are registered for it.
+   * @param file the file
+   * @throws IOException if an error occurs closing the handle
+   */
+  void unregister(File file) throws IOException {
+    if (mCapacity > 0) {
+      final File key = file.getAbsoluteFile();
+      final Handle retired;
+      synchronized (this) {
+        final Integer count = mStreams.get(key);
+        if (count == null) {
+          return;
+        }
+        if (count > 1) {
+          mStreams.put(key, count - 1);
+          return;
+        }
+        mStreams.remove(key);
+        retired = mHandles.remove(key);
+      }
+      if (retired != null) {
+        retired.close();
+      }
+    }
+  }
+
+  /**
+   * Reads from a position in a file until the buffer is filled or the end of the file is reached.
+   * @param file the file
+   * @param length the length of the file, as seen by the caller
+   * @param lastModified the modification time of the file, as seen by the caller. If the file has
+   * changed since the pooled handle was opened, the handle is replaced
+   * @param position position in the file to read from
+   * @param buffer the buffer to read into
+   * @param offset offset in the buffer of the first byte to read
+   * @param len the maximum number of bytes to read
+   * @return the number of bytes read
+   * @throws IOException if an I/O error occurs
+   */
+  int read(File file, long length, long lastModified, long position, byte[] buffer, int offset, int len) throws IOException {
+    while (true) {
+      final Handle handle = handle(file, length, lastModified);
+      if (handle == null) {
+        // Not pooled, so open the file just for this read
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+          incrementOpens();
+          raf.seek(position);
+          return readFully(raf, buffer, offset, len);
+        }
+      }
+      final int read = handle.read(position, buffer, offset, len);
+      if (read >= 0) {
+        return read;
+      }
+      // Handle was evicted by another thread between lookup and read, so try again
+    }
+  }
+
+  private Handle handle(File file, long length, long lastModified) throws IOException {
+    if (mCapacity == 0) {
+      return null;
+    }
+    final File key = file.getAbsoluteFile();
+    synchronized (this) {
+      if (!mStreams.containsKey(key)) {
+        return null;
+      }
+      final Handle existing = mHandles.get(key);
+      if (existing != null && existing.mLength == length && existing.mLastModified == lastModified) {
+        return existing;
+      }
+    }
+    // Open the file without holding the pool lock, so reads of other files are not held up
+    final Handle handle = new Handle(file, length, lastModified);
+    final List<Handle> retired = new ArrayList<>();
+    try {
+      synchronized (this) {
+        ++mOpens;
+        if (!mStreams.containsKey(key)) { // Unregistered while opening
+          retired.add(handle);
+          return null;
+        }
+        final Handle existing = mHandles.get(key);
+        if (existing != null && existing.mLength == length && existing.mLastModified == lastModified) {
+          // Another thread opened the file first
+          retired.add(handle);
+          return existing;
+        }
+        if (existing != null) { // File has changed since it was opened
+          mHandles.remove(key);
+          retired.add(existing);
+        }
+        mHandles.put(key, handle);
+        final Iterator<Handle> it = mHandles.values().iterator();
+        while (mHandles.size() > mCapacity) {
+          retired.add(it.next());
+          it.remove();
+        }
+        return handle;
+      }
+    } finally {
+      for (final Handle h : retired) {
+        h.close();
+      }
+    }
+  }
+
+  private synchronized void incrementOpens() {
+    ++mOpens;
+  }
+
+  /**
+   * @return the number of times a file has been opened for reading by this pool
+   */
+  synchronized long opens() {
+    return mOpens;
+  }
+
+  /**
+   * @return the number of file handles currently held open
+   */
+  synchronized int size() {
+    return mHandles.size();
+  }
+
+  private static int readFully(RandomAccessFile raf, byte[] buffer, int offset, int length) throws IOException {
+    int total = 0;
+    int len;
+    while (total < length && (len = raf.read(buffer, offset + total, length - total)) != -1) {
+      total += len;
+    }
+    return total;
+  }
+}
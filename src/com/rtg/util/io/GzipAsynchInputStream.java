@@ -34,6 +34,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import com.rtg.util.diagnostic.SpyCounter;
 import com.rtg.util.gzip.GzipUtils;
 
 
@@ -51,6 +52,8 @@ public final class GzipAsynchInputStream extends AsynchInputStream {
   /** Modern disks have about 64 Kb blocks, so make it that size? */
   public static final int DEFAULT_GZIP_BUFFER_SIZE = 64 * 1024;
 
+  private static final SpyCounter INFLATED = new SpyCounter("GzipAsynchInputStream.inflated-bytes");
+
   // This is so we can do some parameter checking before calling super()
   private static InputStream makeInputStream(File file, int gzipSize) throws IOException {
     if (file == null) {
@@ -74,7 +77,7 @@ public final class GzipAsynchInputStream extends AsynchInputStream {
    * @throws IOException on IO error.
    */
   public GzipAsynchInputStream(File file, int pipeSize, int gzipSize) throws IOException {
-    super(makeInputStream(file, gzipSize), pipeSize, gzipSize);
+    super(makeInputStream(file, gzipSize), pipeSize, gzipSize, INFLATED);
   }
 
   /**
@@ -93,7 +96,7 @@ public final class GzipAsynchInputStream extends AsynchInputStream {
    * @throws IOException on IO error.
    */
   public GzipAsynchInputStream(InputStream is) throws IOException {
-    super(GzipUtils.createGzipInputStream(is));
+    super(GzipUtils.createGzipInputStream(is), DEFAULT_PIPE_SIZE, DEFAULT_INPUT_BUFFER_SIZE, INFLATED);
   }
 
 }
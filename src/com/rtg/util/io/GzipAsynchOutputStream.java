@@ -34,6 +34,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import com.rtg.util.diagnostic.SpyCounter;
+
 import htsjdk.samtools.util.BlockCompressedOutputStream;
 
 /**
@@ -55,6 +57,8 @@ public final class GzipAsynchOutputStream extends AsynchOutputStream {
 
   private static final int DEFAULT_GZIP_LEVEL = AdjustableGZIPOutputStream.DEFAULT_GZIP_LEVEL;
 
+  private static final SpyCounter DEFLATED = new SpyCounter("GzipAsynchOutputStream.deflated-bytes");
+
   // This is so we can do some parameter checking before calling super()
   private static OutputStream makeOutputStream(File file, int gzipSize) throws IOException  {
     if (file == null) {
@@ -63,11 +67,25 @@ public final class GzipAsynchOutputStream extends AsynchOutputStream {
     if (!BGZIP) {
       return new BufferedOutputStreamFix(new AdjustableGZIPOutputStream(FileUtils.createOutputStream(file, false), gzipSize, DEFAULT_GZIP_LEVEL));
     } else {
-    // Use BlockCompressedOutputStream so that the file is tabix compatible.
-      return new BufferedOutputStreamFix(new BlockCompressedOutputStream(FileUtils.createOutputStream(file, false), null, DEFAULT_GZIP_LEVEL, false));
+    // Use block compression so that the file is tabix compatible.
+      return new BufferedOutputStreamFix(createBlockCompressedOutputStream(FileUtils.createOutputStream(file, false), DEFAULT_GZIP_LEVEL, ParallelBgzfOutputStream.DEFAULT_THREADS, false));
     }
   }
 
+  /**
+   * Create a block compressed output stream, which compresses blocks in parallel if more than one thread is requested.
+   * @param stream the stream to write the compressed output to
+   * @param level the compression level
+   * @param threads the number of threads to use for compression
+   * @param terminate true if the BGZF terminator block should be written on close
+   * @return the block compressed output stream
+   */
+  public static OutputStream createBlockCompressedOutputStream(OutputStream stream, int level, int threads, boolean terminate) {
+    return threads > 1
+      ? new ParallelBgzfOutputStream(stream, level, threads, terminate)
+      : new BlockCompressedOutputStream(stream, null, level, terminate);
+  }
+
   /**
    * Create an asynchronous GZIP output stream with a pipe size of
    * <code>DEFAULT_BUFFER_SIZE</code> and a GZIP buffer size of
@@ -89,7 +107,7 @@ public final class GzipAsynchOutputStream extends AsynchOutputStream {
    * @throws IOException on IO error.
    */
   GzipAsynchOutputStream(File file, int pipeSize, int gzipSize) throws IOException {
-    super(makeOutputStream(file, gzipSize), pipeSize);
+    super(makeOutputStream(file, gzipSize), pipeSize, DEFLATED);
   }
 
  /**
@@ -115,9 +133,20 @@ public final class GzipAsynchOutputStream extends AsynchOutputStream {
   * @throws IOException on IO error.
   */
   public GzipAsynchOutputStream(OutputStream stream, int pipeSize, int gzipSize, boolean terminated) throws IOException {
-    super(BGZIP ? new BlockCompressedOutputStream(stream, null, DEFAULT_GZIP_LEVEL, terminated) : new AdjustableGZIPOutputStream(stream), pipeSize);
-    // Use BlockCompressedOutputStream so that the file is tabix compatible.
+    super(BGZIP ? createBlockCompressedOutputStream(stream, DEFAULT_GZIP_LEVEL, ParallelBgzfOutputStream.DEFAULT_THREADS, terminated) : new AdjustableGZIPOutputStream(stream), pipeSize, DEFLATED);
+    // Use block compression so that the file is tabix compatible.
     //    super(new BlockCompressedOutputStream(stream, DEFAULT_GZIP_LEVEL), pipeSize, gzipSize);
   }
+
+  /**
+   * Create an asynchronous block compressed output stream which passes each block to a listener as it is written.
+   *
+   * @param stream the output stream
+   * @param terminated true to terminate the file
+   * @param listener receives the uncompressed contents of each block, and is closed when the stream is closed
+   */
+  public GzipAsynchOutputStream(OutputStream stream, boolean terminated, ParallelBgzfOutputStream.BlockListener listener) {
+    super(new ParallelBgzfOutputStream(stream, DEFAULT_GZIP_LEVEL, ParallelBgzfOutputStream.DEFAULT_THREADS, terminated, listener), DEFAULT_PIPE_SIZE, DEFLATED);
+  }
 }
 
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.util.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.rtg.launcher.globals.GlobalFlags;
+import com.rtg.launcher.globals.ToolsGlobalFlags;
+
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+
+/**
+ * A block compressed (BGZF) output stream that deflates blocks concurrently on a pool of
+ * worker threads and writes them out in order. The blocks produced are identical to those
+ * produced by <code>BlockCompressedOutputStream</code> at the same compression level, so the
+ * output is tabix compatible.
+ */
+public final class ParallelBgzfOutputStream extends OutputStream {
+
+  /** Receives the uncompressed contents of each block, in file order, as the block is written */
+  public interface BlockListener extends Closeable {
+    /**
+     * Called after a block has been written to the underlying stream.
+     * @param data the uncompressed data of the block, which must not be modified
+     * @param length the number of bytes of data in the block
+     * @param compressedLength the length of the compressed block in the output
+     * @throws IOException if an IO error occurs
+     */
+    void blockWritten(byte[] data, int length, int compressedLength) throws IOException;
+  }
+
+  /** Default number of threads to use for block compression */
+  public static final int DEFAULT_THREADS = GlobalFlags.getIntegerValue(ToolsGlobalFlags.GZIP_THREADS);
+
+  private static final int BLOCK_SIZE = BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE;
+  private static final int MAX_DEFLATED_SIZE = BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE - BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH;
+
+  // Shared by all streams, so that the number of gzip threads bounds the total concurrency of all writers
+  private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(Math.max(1, DEFAULT_THREADS), Math.max(1, DEFAULT_THREADS), 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+    final Thread t = new Thread(r, "ParallelBgzfOutputStream");
+    t.setDaemon(true);
+    return t;
+  });
+  static {
+    EXECUTOR.allowCoreThreadTimeOut(true);
+  }
+
+  // Deflaters are reused by each worker thread, indexed by compression level + 1
+  private static final ThreadLocal<Deflater[]> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater[11]);
+
+  private final OutputStream mOut;
+  private final int mLevel;
+  private final boolean mTerminate;
+  private final int mMaxPending;
+  private final BlockListener mListener;
+  private final ArrayDeque<PendingBlock> mPending = new ArrayDeque<>();
+  private byte[] mBuffer = new byte[BLOCK_SIZE];
+  private int mBufferCount = 0;
+  private boolean mClosed = false;
+
+  /**
+   * Create a parallel block compressed output stream.
+   * @param out the stream to write compressed blocks to
+   * @param level the compression level, -1 to 9
+   * @param threads the number of threads to compress with, compression threads are shared between all streams
+   * @param terminate true if the BGZF terminator block should be written on close
+   */
+  public ParallelBgzfOutputStream(OutputStream out, int level, int threads, boolean terminate) {
+    this(out, level, threads, terminate, null);
+  }
+
+  /**
+   * Create a parallel block compressed output stream.
+   * @param out the stream to write compressed blocks to
+   * @param level the compression level, -1 to 9
+   * @param threads the number of threads to compress with, compression threads are shared between all streams
+   * @param terminate true if the BGZF terminator block should be written on close
+   * @param listener if non-null, is passed each block as it is written, and closed when this stream is closed
+   */
+  public ParallelBgzfOutputStream(OutputStream out, int level, int threads, boolean terminate, BlockListener listener) {
+    if (out == null) {
+      throw new IllegalArgumentException("Stream cannot be null");
+    }
+    assert -1 <= level && level <= 9;
+    mOut = out;
+    mLevel = level;
+    mTerminate = terminate;
+    mListener = listener;
+    ensurePoolSize(threads);
+    // Allow some blocks to queue up so that workers stay busy while completed blocks are written
+    mMaxPending = 2 * Math.max(1, threads);
+  }
+
+  // An explicit request for more threads than the gzip threads flag (e.g. bgzip --threads) enlarges the shared pool
+  private static synchronized void ensurePoolSize(int threads) {
+    if (threads > EXECUTOR.getMaximumPoolSize()) {
+      EXECUTOR.setMaximumPoolSize(threads);
+      EXECUTOR.setCorePoolSize(threads);
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    mBuffer[mBufferCount++] = (byte) b;
+    if (mBufferCount == mBuffer.length) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(byte[] buf, int off, int len) throws IOException {
+    while (len > 0) {
+      final int toCopy = Math.min(mBuffer.length - mBufferCount, len);
+      System.arraycopy(buf, off, mBuffer, mBufferCount, toCopy);
+      mBufferCount += toCopy;
+      off += toCopy;
+      len -= toCopy;
+      if (mBufferCount == mBuffer.length) {
+        submitBlock();
+      }
+    }
+  }
+
+  /**
+   * As with <code>BlockCompressedOutputStream</code>, flushing forces out any partially filled
+   * block, so it affects the block boundaries of the output.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (mBufferCount > 0) {
+      submitBlock();
+    }
+    while (!mPending.isEmpty()) {
+      writeNextBlock();
+    }
+    mOut.flush();
+  }
+
+  @Override
+  @SuppressWarnings("try")
+  public void close() throws IOException {
+    if (mClosed) {
+      return;
+    }
+    mClosed = true;
+    try {
+      flush();
+      if (mTerminate) {
+        mOut.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+      }
+    } finally {
+      for (final PendingBlock b : mPending) {
+        b.mCompressed.cancel(true);
+      }
+      mPending.clear();
+      try (Closeable ignored = mListener) {
+        mOut.close();
+      }
+    }
+  }
+
+  private void submitBlock() throws IOException {
+    while (mPending.size() >= mMaxPending) {
+      writeNextBlock();
+    }
+    final byte[] data = mBuffer;
+    final int length = mBufferCount;
+    final int level = mLevel;
+    mPending.add(new PendingBlock(data, length, EXECUTOR.submit(() -> compressBlock(data, length, level))));
+    mBuffer = new byte[BLOCK_SIZE];
+    mBufferCount = 0;
+  }
+
+  private void writeNextBlock() throws IOException {
+    final PendingBlock next = mPending.remove();
+    try {
+      final byte[] block = next.mCompressed.get();
+      mOut.write(block);
+      if (mListener != null) {
+        mListener.blockWritten(next.mData, next.mLength, block.length);
+      }
+    } catch (final ExecutionException e) {
+      IOUtils.rethrow(e.getCause());
+    } catch (final InterruptedException e) {
+      throw new IOException("ParallelBgzfOutputStream interrupted during write", e);
+    }
+  }
+
+  private static final class PendingBlock {
+    private final byte[] mData;
+    private final int mLength;
+    private final Future<byte[]> mCompressed;
+
+    PendingBlock(byte[] data, int length, Future<byte[]> compressed) {
+      mData = data;
+      mLength = length;
+      mCompressed = compressed;
+    }
+  }
+
+  private static Deflater deflater(int level) {
+    final Deflater[] deflaters = DEFLATERS.get();
+    if (deflaters[level + 1] == null) {
+      deflaters[level + 1] = new Deflater(level, true);
+    }
+    return deflaters[level + 1];
+  }
+
+  /**
+   * Compress data into a single complete BGZF block, in the same manner as <code>BlockCompressedOutputStream</code>.
+   * @param data uncompressed data
+   * @param length number of bytes of data to compress, at most the default uncompressed block size
+   * @param level compression level
+   * @return the bytes of the BGZF block
+   */
+  static byte[] compressBlock(byte[] data, int length, int level) {
+    assert length <= BLOCK_SIZE;
+    final byte[] deflated = new byte[MAX_DEFLATED_SIZE];
+    Deflater deflater = deflater(level);
+    deflater.reset();
+    deflater.setInput(data, 0, length);
+    deflater.finish();
+    int deflatedSize = deflater.deflate(deflated, 0, deflated.length);
+    if (!deflater.finished()) {
+      // Incompressible data, store it instead, which is guaranteed to fit
+      deflater = deflater(Deflater.NO_COMPRESSION);
+      deflater.reset();
+      deflater.setInput(data, 0, length);
+      deflater.finish();
+      deflatedSize = deflater.deflate(deflated, 0, deflated.length);
+      if (!deflater.finished()) {
+        throw new IllegalStateException("Block did not fit without compression");
+      }
+    }
+    final CRC32 crc = new CRC32();
+    crc.update(data, 0, length);
+
+    final int blockSize = BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH + deflatedSize + BlockCompressedStreamConstants.BLOCK_FOOTER_LENGTH;
+    final byte[] block = new byte[blockSize];
+    block[0] = BlockCompressedStreamConstants.GZIP_ID1;
+    block[1] = (byte) BlockCompressedStreamConstants.GZIP_ID2;
+    block[2] = BlockCompressedStreamConstants.GZIP_CM_DEFLATE;
+    block[3] = BlockCompressedStreamConstants.GZIP_FLG;
+    // bytes 4-7 modification time are zero
+    block[8] = BlockCompressedStreamConstants.GZIP_XFL;
+    block[9] = (byte) BlockCompressedStreamConstants.GZIP_OS_UNKNOWN;
+    ByteArrayIOUtils.shortToBytesLittleEndian(BlockCompressedStreamConstants.GZIP_XLEN, block, 10);
+    block[12] = BlockCompressedStreamConstants.BGZF_ID1;
+    block[13] = BlockCompressedStreamConstants.BGZF_ID2;
+    ByteArrayIOUtils.shortToBytesLittleEndian(BlockCompressedStreamConstants.BGZF_LEN, block, 14);
+    ByteArrayIOUtils.shortToBytesLittleEndian(blockSize - 1, block, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET);
+    System.arraycopy(deflated, 0, block, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH, deflatedSize);
+    ByteArrayIOUtils.intToBytesLittleEndian((int) crc.getValue(), block, blockSize - 8);
+    ByteArrayIOUtils.intToBytesLittleEndian(length, block, blockSize - 4);
+    return block;
+  }
+}
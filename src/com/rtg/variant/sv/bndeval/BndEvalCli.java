@@ -41,21 +41,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.rtg.launcher.CommonFlags;
 import com.rtg.launcher.LoggedCli;
+import com.rtg.util.SimpleThreadPool;
 import com.rtg.util.cli.CommonFlagCategories;
 import com.rtg.util.cli.Flag;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.intervals.IntervalComparator;
-import com.rtg.util.intervals.Range;
 import com.rtg.util.intervals.ReferenceRanges;
 import com.rtg.util.io.LogStream;
 import com.rtg.vcf.AllMatchFilter;
@@ -128,6 +128,7 @@ public class BndEvalCli extends LoggedCli {
 
 
     CommonFlags.initNoGzip(mFlags);
+    CommonFlags.initThreadsFlag(mFlags);
     mFlags.setValidator(flags -> CommonFlags.validateOutputDirectory(flags)
       && CommonFlags.validateInputFile(flags, VcfEvalCli.BASELINE, VcfEvalCli.CALLS, VcfEvalCli.EVAL_REGIONS_FLAG)
       && CommonFlags.validateRegions(flags)
@@ -170,7 +171,7 @@ public class BndEvalCli extends LoggedCli {
     final GenomeBndVariants baseline = loadVariantSet(VariantSetType.BASELINE, (File) mFlags.getValue(VcfEvalCli.BASELINE), passOnly, regions);
     final GenomeBndVariants calls = loadVariantSet(VariantSetType.CALLS, (File) mFlags.getValue(VcfEvalCli.CALLS), passOnly, regions);
 
-    findMatches(baseline, calls);
+    findMatches(baseline, calls, CommonFlags.parseThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG)));
     weightMatches(baseline);
 
     // Create ROC container / extractor
@@ -242,43 +243,78 @@ public class BndEvalCli extends LoggedCli {
     return new BreakpointGeometry(orientation, rec.getSequenceName(), b.getRemoteChr(), localPos, xHi, b.getRemotePos(), yHi, rLo, rHi);
   }
 
-  private void findMatches(Map<String, ChrBndVariants> baseline, Map<String, ChrBndVariants> calls) {
-    for (Map.Entry<String, ChrBndVariants> chrCalls : calls.entrySet()) {
-      for (final BndVariant c : chrCalls.getValue()) {
-        findMatches(baseline, c, c.getBreakpoint());
+  // A called breakend geometry to be matched against the baseline breakends of one chromosome
+  private static final class MatchQuery {
+    private final BndVariant mCall;
+    private final AbstractBreakpointGeometry mGeometry;
+    private final int mStart;
+    private final int mEnd;
+    private final List<BndVariant> mMatches = new ArrayList<>();
+
+    MatchQuery(BndVariant call, AbstractBreakpointGeometry g, int tolerance) {
+      mCall = call;
+      mGeometry = g;
+      // Determine earliest and latest position where a baseline variant could start that overlaps the supplied geometry
+      // Since we don't segregate breakends by orientations, we use the min/max'es to get the outer range to scan over
+      mStart = Math.min(g.getXLo(), g.getXHi()) - (tolerance + 1);
+      mEnd = Math.max(g.getXLo(), g.getXHi());
+    }
+  }
+
+  private static final Comparator<MatchQuery> QUERY_COMPARATOR = Comparator.comparingInt(q -> q.mStart);
+
+  private void findMatches(Map<String, ChrBndVariants> baseline, Map<String, ChrBndVariants> calls, int numberThreads) throws IOException {
+    // Queries in their original order, so that matches are recorded in the same order regardless of threading
+    final List<MatchQuery> queries = new ArrayList<>();
+    final Map<String, List<MatchQuery>> chrQueries = new HashMap<>();
+    for (final ChrBndVariants chrCalls : calls.values()) {
+      for (final BndVariant c : chrCalls) {
+        queries.add(new MatchQuery(c, c.getBreakpoint(), mTolerance));
         if (mBidirectional) {
-          findMatches(baseline, c, c.getBreakpoint().flip());
+          queries.add(new MatchQuery(c, c.getBreakpoint().flip(), mTolerance));
         }
       }
     }
-  }
+    for (final MatchQuery q : queries) {
+      chrQueries.computeIfAbsent(q.mGeometry.getXName(), k -> new ArrayList<>()).add(q);
+    }
 
-  static final Comparator<Range> START_COMPARATOR = (o1, o2) -> {
-    if (o1.getStart() < o2.getStart()) {
-      return -1;
-    } else if (o1.getStart() > o2.getStart()) {
-      return 1;
+    // Each query is owned by exactly one chromosome, so chromosomes can be matched independently
+    final SimpleThreadPool threadPool = new SimpleThreadPool(numberThreads, "BndEval", true);
+    threadPool.enableBasicProgress(chrQueries.size());
+    for (final Map.Entry<String, List<MatchQuery>> e : chrQueries.entrySet()) {
+      final List<BndVariant> chrBaseline = baseline.get(e.getKey());
+      if (chrBaseline != null) {
+        threadPool.execute(() -> findMatches(chrBaseline, e.getValue()));
+      }
     }
-    return 0;
-  };
-
-  private void findMatches(Map<String, ChrBndVariants> baseline, BndVariant c, AbstractBreakpointGeometry g) {
-    final ChrBndVariants bndVariants = baseline.computeIfAbsent(g.getXName(), k -> new ChrBndVariants());
-    // Determine earliest and latest position where a baseline variant could start that overlaps the supplied geometry
-    // Since we don't segregate breakends by orientations, we use the min/max'es to get the outer range to scan over
-    final int start = Math.min(g.getXLo(), g.getXHi()) - (mTolerance + 1);
-    final int end = Math.max(g.getXLo(), g.getXHi());
-    int pos = Collections.binarySearch(bndVariants, new Range(start, start), START_COMPARATOR);
-    if (pos < 0) {
-      pos = -(pos + 1);
+    threadPool.terminate();
+
+    for (final MatchQuery q : queries) {
+      for (final BndVariant b : q.mMatches) {
+        setMatch(b, q.mCall);
+      }
     }
-    while (pos < bndVariants.size() && bndVariants.get(pos).getStart() <= end) {
-      final BndVariant b = bndVariants.get(pos);
-      if (g.overlap(b.getBreakpoint())) {
-        setMatch(b, c);
-        //break;
+  }
+
+  /**
+   * Find the baseline breakends overlapping each query by sweeping through both in order of start position.
+   * @param baseline baseline breakends on one chromosome, sorted by start position
+   * @param queries called breakend geometries on the same chromosome, will be sorted by start position
+   */
+  private static void findMatches(List<BndVariant> baseline, List<MatchQuery> queries) {
+    queries.sort(QUERY_COMPARATOR);
+    int first = 0;
+    for (final MatchQuery q : queries) {
+      while (first < baseline.size() && baseline.get(first).getStart() < q.mStart) {
+        ++first;
+      }
+      for (int pos = first; pos < baseline.size() && baseline.get(pos).getStart() <= q.mEnd; ++pos) {
+        final BndVariant b = baseline.get(pos);
+        if (q.mGeometry.overlap(b.getBreakpoint())) {
+          q.mMatches.add(b);
+        }
       }
-      pos++;
     }
   }
 
@@ -38,8 +38,11 @@ import java.util.List;
 
 import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.bed.BedRangeLoader;
+import com.rtg.bed.BedReader;
 import com.rtg.bed.BedRecord;
+import com.rtg.util.intervals.RangeMeta;
 import com.rtg.util.intervals.ReferenceRanges;
+import com.rtg.util.intervals.RegionRestriction;
 
 /**
  * Annotates VCF records that overlap BED regions with the text from the matching BED region.
@@ -60,14 +63,39 @@ public class BedVcfAnnotator extends NamedRangesVcfAnnotator {
     super(infoId, description, loadBedIdRanges(bedFiles), fullSpan);
   }
 
+  /**
+   * Create an annotator that streams BED regions from tabix indexed files, for annotating a sorted VCF.
+   * @param infoId if non-null, BED annotations will be added as an INFO field with this ID, otherwise add to VCF id column.
+   * @param description if non-null, use this description for the INFO field header, if it doesn't already exist.
+   * @param bedFiles block compressed and indexed BED files containing annotations
+   * @param fullSpan if true, full reference span each VCF record will be considered, otherwise just the start position.
+   * @return the annotator
+   * @throws IOException if a BED file is not indexed.
+   */
+  public static StreamingNamedRangesVcfAnnotator<BedRecord> streaming(String infoId, String description, Collection<File> bedFiles, boolean fullSpan) throws IOException {
+    final NameLoader loader = new NameLoader();
+    return new StreamingNamedRangesVcfAnnotator<>(infoId, description, bedFiles,
+      (file, sequenceName) -> BedReader.openBedReader(new RegionRestriction(sequenceName), file, 1), loader::range, fullSpan);
+  }
+
   private static ReferenceRanges<List<String>> loadBedIdRanges(Collection<File> bedFiles) throws IOException {
-    final BedRangeLoader<List<String>> bedLoader = new BedRangeLoader<List<String>>(1) {
-      @Override
-      public List<String> getMeta(BedRecord rec) {
-        return Collections.singletonList(new String(rec.getAnnotations()[0].toCharArray()));
-      }
-    };
+    final BedRangeLoader<List<String>> bedLoader = new NameLoader();
     bedLoader.loadRanges(bedFiles);
     return bedLoader.getReferenceRanges();
   }
+
+  private static final class NameLoader extends BedRangeLoader<List<String>> {
+    NameLoader() {
+      super(1);
+    }
+
+    @Override
+    public List<String> getMeta(BedRecord rec) {
+      return Collections.singletonList(new String(rec.getAnnotations()[0].toCharArray()));
+    }
+
+    RangeMeta<List<String>> range(BedRecord rec) {
+      return getRangeData(rec);
+    }
+  }
 }
@@ -0,0 +1,669 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.vcf.header.FormatField;
+import com.rtg.vcf.header.InfoField;
+import com.rtg.vcf.header.VcfHeader;
+
+/**
+ * Filter that evaluates a <code>--keep-expr</code> style expression natively, without a javascript engine.
+ * Expressions are compiled into a tree of lambdas once the header is known. The supported subset covers
+ * comparisons of <code>CHROM</code>, <code>POS</code>, <code>ID</code>, <code>REF</code>, <code>QUAL</code>,
+ * <code>INFO.field</code> and <code>sample.field</code> values against literals or each other, combined with
+ * <code>!</code>, <code>&amp;&amp;</code>, <code>||</code>, parentheses and <code>has()</code>, following the
+ * javascript coercion rules of the filter preamble. Any expression outside that subset is evaluated by a
+ * <code>ScriptedVcfFilter</code> instead.
+ */
+@TestClass("com.rtg.vcf.CompiledExpressionFilterTest")
+public class CompiledExpressionFilter implements EndableVcfFilter {
+
+  private final String mExpression;
+  private final OutputStream mOutput;
+  private final PrintStream mErr;
+  private Predicate<VcfRecord> mCompiled = null;
+  private ScriptedVcfFilter mScripted = null;
+
+  /**
+   * @param expression expression to evaluate to determine if record should be accepted
+   * @param output output stream for the JavaScript print method, if falling back to javascript
+   * @param err output stream for our JavaScript error method, if falling back to javascript
+   */
+  public CompiledExpressionFilter(String expression, OutputStream output, PrintStream err) {
+    mExpression = expression;
+    mOutput = output;
+    mErr = err;
+  }
+
+  @Override
+  public boolean accept(VcfRecord record) {
+    return mCompiled != null ? mCompiled.test(record) : mScripted.accept(record);
+  }
+
+  @Override
+  public void setHeader(VcfHeader header) {
+    mCompiled = compile(mExpression, header);
+    if (mCompiled == null) {
+      Diagnostic.developerLog("Expression is not supported natively, evaluating with javascript: " + mExpression);
+      if (mScripted == null) {
+        mScripted = new ScriptedVcfFilter(mExpression, Collections.emptyList(), mOutput, mErr);
+      }
+      mScripted.setHeader(header);
+    } else {
+      Diagnostic.developerLog("Compiled expression: " + mExpression);
+    }
+  }
+
+  /**
+   * @return true if the expression is being evaluated natively
+   */
+  boolean isCompiled() {
+    return mCompiled != null;
+  }
+
+  /**
+   * Invoke at the end of processing to run any javascript ending function
+   */
+  @Override
+  public void end() {
+    if (mScripted != null) {
+      mScripted.end();
+    }
+  }
+
+  /**
+   * Compile an expression into a predicate over records.
+   * @param expression the expression
+   * @param header header supplying the declared fields and sample names
+   * @return the predicate, or null if the expression uses constructs that are not supported natively
+   */
+  static Predicate<VcfRecord> compile(String expression, VcfHeader header) {
+    try {
+      return new Parser(expression, header).parse();
+    } catch (final UnsupportedException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Convert a string to a number in the same manner as javascript (for the decimal forms found in VCF).
+   * @param s string to convert, may be null
+   * @return the numeric value, or NaN if the string is not numeric
+   */
+  static double toNumber(String s) {
+    if (s == null) {
+      return 0;
+    }
+    final String t = s.trim();
+    if (t.isEmpty()) {
+      return 0;
+    }
+    for (int i = 0; i < t.length(); ++i) {
+      final char c = t.charAt(i);
+      if ((c < '0' || c > '9') && c != '.' && c != 'e' && c != 'E' && c != '+' && c != '-') {
+        switch (t) {
+          case "Infinity":
+          case "+Infinity":
+            return Double.POSITIVE_INFINITY;
+          case "-Infinity":
+            return Double.NEGATIVE_INFINITY;
+          default:
+            return Double.NaN;
+        }
+      }
+    }
+    try {
+      return Double.parseDouble(t);
+    } catch (final NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  // Signals use of a construct outside the natively supported subset
+  private static final class UnsupportedException extends Exception {
+    UnsupportedException() {
+      super(null, null, false, false);
+    }
+  }
+
+  private enum Type { BOOLEAN, NUMBER, STRING }
+
+  private enum Comparison {
+    LT, GT, LE, GE, EQ, NE;
+
+    boolean test(double a, double b) {
+      switch (this) {
+        case LT:
+          return a < b;
+        case GT:
+          return a > b;
+        case LE:
+          return a <= b;
+        case GE:
+          return a >= b;
+        case EQ:
+          return a == b;
+        default:
+          return a != b;
+      }
+    }
+
+    boolean test(int cmp) {
+      switch (this) {
+        case LT:
+          return cmp < 0;
+        case GT:
+          return cmp > 0;
+        case LE:
+          return cmp <= 0;
+        case GE:
+          return cmp >= 0;
+        case EQ:
+          return cmp == 0;
+        default:
+          return cmp != 0;
+      }
+    }
+  }
+
+  // A compiled sub-expression. Only the evaluator matching the type is set, along with the value of literals.
+  private static final class Node {
+    final Type mType;
+    final Predicate<VcfRecord> mBoolean;
+    final ToDoubleFunction<VcfRecord> mNumber;
+    final Function<VcfRecord, String> mString;
+    final Object mConstant;
+
+    private Node(Type type, Predicate<VcfRecord> b, ToDoubleFunction<VcfRecord> n, Function<VcfRecord, String> s, Object constant) {
+      mType = type;
+      mBoolean = b;
+      mNumber = n;
+      mString = s;
+      mConstant = constant;
+    }
+
+    static Node bool(Predicate<VcfRecord> b) {
+      return new Node(Type.BOOLEAN, b, null, null, null);
+    }
+
+    static Node number(ToDoubleFunction<VcfRecord> n) {
+      return new Node(Type.NUMBER, null, n, null, null);
+    }
+
+    static Node string(Function<VcfRecord, String> s) {
+      return new Node(Type.STRING, null, null, s, null);
+    }
+
+    static Node constant(Object value) {
+      if (value instanceof Boolean) {
+        final boolean b = (Boolean) value;
+        return new Node(Type.BOOLEAN, r -> b, null, null, value);
+      } else if (value instanceof Double) {
+        final double d = (Double) value;
+        return new Node(Type.NUMBER, null, r -> d, null, value);
+      }
+      final String s = (String) value;
+      return new Node(Type.STRING, null, null, r -> s, value);
+    }
+
+    // Numeric value of this node, using javascript conversion for strings
+    ToDoubleFunction<VcfRecord> asNumber() {
+      if (mType == Type.NUMBER) {
+        return mNumber;
+      }
+      final Function<VcfRecord, String> s = mString;
+      return r -> toNumber(s.apply(r));
+    }
+  }
+
+  private enum TokenType { IDENTIFIER, NUMBER, STRING, OPERATOR, END }
+
+  private static final class Token {
+    final TokenType mType;
+    final String mText;
+
+    Token(TokenType type, String text) {
+      mType = type;
+      mText = text;
+    }
+
+    boolean is(String operator) {
+      return mType == TokenType.OPERATOR && mText.equals(operator);
+    }
+  }
+
+  // Longest first, so that prefixes are only matched when the longer operator is absent
+  private static final String[] OPERATORS = {"===", "!==", "==", "!=", "<=", ">=", "&&", "||", "<", ">", "!", "(", ")", "[", "]", ".", "-", ";"};
+
+  private static final Set<String> BUILTINS = new HashSet<>(Arrays.asList("INFO", "CHROM", "POS", "ID", "REF", "ALT", "QUAL", "FILTER", "SAMPLES", "has", "true", "false"));
+
+  private static final class Parser {
+    private final List<Token> mTokens;
+    private final List<String> mSamples;
+    private final Map<String, Integer> mSampleIndex = new HashMap<>();
+    private final Set<String> mInfoIds = new HashSet<>();
+    private final Set<String> mFormatIds = new HashSet<>();
+    private int mPos = 0;
+
+    Parser(String expression, VcfHeader header) throws UnsupportedException {
+      mTokens = tokenize(expression);
+      mSamples = header.getSampleNames();
+      for (int i = 0; i < mSamples.size(); ++i) {
+        final String name = mSamples.get(i);
+        if (BUILTINS.contains(name)) {
+          // The preamble exposes sample names as globals, which would interfere with the builtins
+          throw new UnsupportedException();
+        }
+        mSampleIndex.putIfAbsent(name, i);
+      }
+      for (final InfoField field : header.getInfoLines()) {
+        mInfoIds.add(field.getId());
+      }
+      for (final FormatField field : header.getFormatLines()) {
+        mFormatIds.add(field.getId());
+      }
+    }
+
+    private static List<Token> tokenize(String expression) throws UnsupportedException {
+      final List<Token> tokens = new ArrayList<>();
+      int i = 0;
+      outer:
+      while (i < expression.length()) {
+        final char c = expression.charAt(i);
+        if (Character.isWhitespace(c)) {
+          ++i;
+        } else if (isIdentifierStart(c)) {
+          final int start = i;
+          while (i < expression.length() && isIdentifierPart(expression.charAt(i))) {
+            ++i;
+          }
+          tokens.add(new Token(TokenType.IDENTIFIER, expression.substring(start, i)));
+        } else if (isDigit(c) || (c == '.' && i + 1 < expression.length() && isDigit(expression.charAt(i + 1)))) {
+          final int start = i;
+          while (i < expression.length()) {
+            final char d = expression.charAt(i);
+            if (isDigit(d) || d == '.' || d == 'e' || d == 'E' || ((d == '+' || d == '-') && (expression.charAt(i - 1) == 'e' || expression.charAt(i - 1) == 'E'))) {
+              ++i;
+            } else {
+              break;
+            }
+          }
+          final String text = expression.substring(start, i);
+          if ((text.length() > 1 && text.charAt(0) == '0' && isDigit(text.charAt(1))) // Legacy octal
+            || (i < expression.length() && isIdentifierPart(expression.charAt(i)))
+            || Double.isNaN(toNumber(text))) {
+            throw new UnsupportedException();
+          }
+          tokens.add(new Token(TokenType.NUMBER, text));
+        } else if (c == '"' || c == '\'') {
+          final StringBuilder sb = new StringBuilder();
+          ++i;
+          while (i < expression.length() && expression.charAt(i) != c) {
+            char d = expression.charAt(i++);
+            if (d == '\\') {
+              if (i == expression.length()) {
+                throw new UnsupportedException();
+              }
+              d = unescape(expression.charAt(i++));
+            } else if (d == '\n' || d == '\r') {
+              throw new UnsupportedException();
+            }
+            sb.append(d);
+          }
+          if (i == expression.length()) {
+            throw new UnsupportedException();
+          }
+          ++i;
+          tokens.add(new Token(TokenType.STRING, sb.toString()));
+        } else {
+          for (final String op : OPERATORS) {
+            if (expression.startsWith(op, i)) {
+              tokens.add(new Token(TokenType.OPERATOR, op));
+              i += op.length();
+              continue outer;
+            }
+          }
+          throw new UnsupportedException();
+        }
+      }
+      tokens.add(new Token(TokenType.END, ""));
+      return tokens;
+    }
+
+    private static boolean isDigit(char c) {
+      return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(char c) {
+      return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+      return isIdentifierStart(c) || isDigit(c);
+    }
+
+    private static char unescape(char c) throws UnsupportedException {
+      switch (c) {
+        case '\\':
+        case '\'':
+        case '"':
+          return c;
+        case 'n':
+          return '\n';
+        case 't':
+          return '\t';
+        default:
+          throw new UnsupportedException();
+      }
+    }
+
+    private Token peek() {
+      return mTokens.get(mPos);
+    }
+
+    private Token next() {
+      return mTokens.get(mPos++);
+    }
+
+    private void expect(String operator) throws UnsupportedException {
+      if (!next().is(operator)) {
+        throw new UnsupportedException();
+      }
+    }
+
+    private String identifier() throws UnsupportedException {
+      final Token t = next();
+      if (t.mType != TokenType.IDENTIFIER) {
+        throw new UnsupportedException();
+      }
+      return t.mText;
+    }
+
+    Predicate<VcfRecord> parse() throws UnsupportedException {
+      final Node node = or();
+      while (peek().is(";")) {
+        next();
+      }
+      if (peek().mType != TokenType.END || node.mType != Type.BOOLEAN) {
+        throw new UnsupportedException();
+      }
+      return node.mBoolean;
+    }
+
+    private static Predicate<VcfRecord> bool(Node n) throws UnsupportedException {
+      if (n.mType != Type.BOOLEAN) {
+        // Javascript would produce the operand itself rather than a boolean
+        throw new UnsupportedException();
+      }
+      return n.mBoolean;
+    }
+
+    private Node or() throws UnsupportedException {
+      Node left = and();
+      while (peek().is("||")) {
+        next();
+        final Predicate<VcfRecord> a = bool(left);
+        final Predicate<VcfRecord> b = bool(and());
+        left = Node.bool(r -> a.test(r) || b.test(r));
+      }
+      return left;
+    }
+
+    private Node and() throws UnsupportedException {
+      Node left = equality();
+      while (peek().is("&&")) {
+        next();
+        final Predicate<VcfRecord> a = bool(left);
+        final Predicate<VcfRecord> b = bool(equality());
+        left = Node.bool(r -> a.test(r) && b.test(r));
+      }
+      return left;
+    }
+
+    private Node equality() throws UnsupportedException {
+      Node left = relational();
+      while (peek().is("==") || peek().is("!=") || peek().is("===") || peek().is("!==")) {
+        final String op = next().mText;
+        final Predicate<VcfRecord> eq = equals(left, relational(), op.length() == 3);
+        left = Node.bool(op.charAt(0) == '!' ? eq.negate() : eq);
+      }
+      return left;
+    }
+
+    private static Predicate<VcfRecord> equals(Node left, Node right, boolean strict) throws UnsupportedException {
+      if (left.mType == Type.BOOLEAN || right.mType == Type.BOOLEAN) {
+        if (left.mType != right.mType) {
+          throw new UnsupportedException();
+        }
+        final Predicate<VcfRecord> a = left.mBoolean;
+        final Predicate<VcfRecord> b = right.mBoolean;
+        return r -> a.test(r) == b.test(r);
+      } else if (left.mType == Type.STRING && right.mType == Type.STRING) {
+        final Function<VcfRecord, String> a = left.mString;
+        if (right.mConstant != null) {
+          final String b = (String) right.mConstant;
+          return r -> b.equals(a.apply(r));
+        }
+        final Function<VcfRecord, String> b = right.mString;
+        return r -> Objects.equals(a.apply(r), b.apply(r));
+      } else if (left.mType == Type.NUMBER && right.mType == Type.NUMBER) {
+        return comparison(left.mNumber, right, Comparison.EQ);
+      } else if (strict) {
+        return r -> false;
+      }
+      // Mixed string and number, where null is only equal to null or undefined
+      final Function<VcfRecord, String> s = left.mType == Type.STRING ? left.mString : right.mString;
+      final Node n = left.mType == Type.NUMBER ? left : right;
+      final ToDoubleFunction<VcfRecord> num = n.mNumber;
+      if (n.mConstant != null) {
+        final double d = (Double) n.mConstant;
+        return r -> {
+          final String v = s.apply(r);
+          return v != null && toNumber(v) == d;
+        };
+      }
+      return r -> {
+        final String v = s.apply(r);
+        return v != null && toNumber(v) == num.applyAsDouble(r);
+      };
+    }
+
+    private static Predicate<VcfRecord> comparison(ToDoubleFunction<VcfRecord> a, Node right, Comparison c) {
+      if (right.mConstant != null) {
+        final double d = (Double) right.mConstant;
+        return r -> c.test(a.applyAsDouble(r), d);
+      }
+      final ToDoubleFunction<VcfRecord> b = right.mNumber;
+      return r -> c.test(a.applyAsDouble(r), b.applyAsDouble(r));
+    }
+
+    private Node relational() throws UnsupportedException {
+      Node left = unary();
+      while (peek().is("<") || peek().is(">") || peek().is("<=") || peek().is(">=")) {
+        final Comparison c = comparison(next().mText);
+        final Node right = unary();
+        if (left.mType == Type.BOOLEAN || right.mType == Type.BOOLEAN) {
+          throw new UnsupportedException();
+        } else if (left.mType == Type.STRING && right.mType == Type.STRING) {
+          // Lexicographic, unless either is null, in which case both are converted to numbers
+          final Function<VcfRecord, String> a = left.mString;
+          final Function<VcfRecord, String> b = right.mString;
+          left = Node.bool(r -> {
+            final String x = a.apply(r);
+            final String y = b.apply(r);
+            return x == null || y == null ? c.test(toNumber(x), toNumber(y)) : c.test(x.compareTo(y));
+          });
+        } else {
+          final Node numRight = right.mType == Type.NUMBER ? right : Node.number(right.asNumber());
+          left = Node.bool(comparison(left.asNumber(), numRight, c));
+        }
+      }
+      return left;
+    }
+
+    private static Comparison comparison(String op) {
+      switch (op) {
+        case "<":
+          return Comparison.LT;
+        case ">":
+          return Comparison.GT;
+        case "<=":
+          return Comparison.LE;
+        default:
+          return Comparison.GE;
+      }
+    }
+
+    private Node unary() throws UnsupportedException {
+      if (peek().is("!")) {
+        next();
+        return Node.bool(bool(unary()).negate());
+      } else if (peek().is("-")) {
+        next();
+        final Token t = next();
+        if (t.mType != TokenType.NUMBER) {
+          throw new UnsupportedException();
+        }
+        return Node.constant(-toNumber(t.mText));
+      }
+      return member();
+    }
+
+    private Node member() throws UnsupportedException {
+      Node node = primary();
+      while (peek().is(".")) {
+        next();
+        node = sampleField(node, identifier());
+      }
+      return node;
+    }
+
+    // Format field of a sample, as provided by the String prototype properties of the preamble
+    private Node sampleField(Node sample, String field) throws UnsupportedException {
+      final Integer index = sample.mConstant instanceof String ? mSampleIndex.get(sample.mConstant) : null;
+      if (index == null || !mFormatIds.contains(field)) {
+        throw new UnsupportedException();
+      }
+      final int i = index;
+      return Node.string(r -> {
+        final List<String> values = r.getFormat(field);
+        return values == null ? VcfRecord.MISSING : values.get(i);
+      });
+    }
+
+    private Node primary() throws UnsupportedException {
+      final Token t = next();
+      switch (t.mType) {
+        case NUMBER:
+          return Node.constant(toNumber(t.mText));
+        case STRING:
+          return Node.constant(t.mText);
+        case IDENTIFIER:
+          return identifier(t.mText);
+        default:
+          if (t.is("(")) {
+            final Node node = or();
+            expect(")");
+            return node;
+          }
+          throw new UnsupportedException();
+      }
+    }
+
+    private Node identifier(String name) throws UnsupportedException {
+      switch (name) {
+        case "true":
+          return Node.constant(Boolean.TRUE);
+        case "false":
+          return Node.constant(Boolean.FALSE);
+        case "CHROM":
+          return Node.string(VcfRecord::getSequenceName);
+        case "POS":
+          return Node.number(VcfRecord::getOneBasedStart);
+        case "ID":
+          return Node.string(VcfRecord::getId);
+        case "REF":
+          return Node.string(VcfRecord::getRefCall);
+        case "QUAL":
+          return Node.string(VcfRecord::getQuality);
+        case "INFO":
+          expect(".");
+          final String field = identifier();
+          if (!mInfoIds.contains(field)) {
+            throw new UnsupportedException();
+          }
+          return Node.string(r -> {
+            final String value = r.getInfo(field);
+            return value == null ? VcfRecord.MISSING : value;
+          });
+        case "SAMPLES":
+          expect("[");
+          final Token t = next();
+          expect("]");
+          final double index = t.mType == TokenType.NUMBER ? toNumber(t.mText) : -1;
+          if (index < 0 || index >= mSamples.size() || index != Math.floor(index)) {
+            throw new UnsupportedException();
+          }
+          return Node.constant(mSamples.get((int) index));
+        case "has":
+          expect("(");
+          final Node arg = or();
+          expect(")");
+          if (arg.mType != Type.STRING) {
+            return Node.constant(Boolean.TRUE);
+          }
+          final Function<VcfRecord, String> s = arg.mString;
+          return Node.bool(r -> !VcfRecord.MISSING.equals(s.apply(r)));
+        default:
+          if (mSampleIndex.containsKey(name)) {
+            return Node.constant(name);
+          }
+          throw new UnsupportedException();
+      }
+    }
+  }
+}
@@ -90,6 +90,14 @@ class Decomposer {
     mAdjuster = new Adjuster(header);
   }
 
+  /**
+   * Release the files held for reference sequence lookups.
+   * @throws IOException if the files could not be closed
+   */
+  protected void close() throws IOException {
+    ReaderUtils.closeSequenceNameMap(mNameMap);
+  }
+
   /**
    * Return true if this record is a candidate for decomposition. Currently this requires that the REF or ALT
    * alleles only contain DNA symbols
@@ -132,7 +132,11 @@ public class DecomposingVcfIterator extends Decomposer implements VcfIterator {
 
   @Override
   public void close() throws IOException {
-    mIn.close();
+    try {
+      mIn.close();
+    } finally {
+      super.close();
+    }
   }
 
 }
@@ -77,6 +77,8 @@ class DecomposingVcfWriter extends Decomposer implements VcfWriter {
   public void close() throws IOException {
     try (VcfWriter ignored = mOut) {
       // Use try with resources on existing writer for nice closing
+    } finally {
+      super.close();
     }
   }
 }
@@ -38,6 +38,7 @@ import java.io.OutputStream;
 import com.rtg.tabix.IndexingStreamCreator;
 import com.rtg.tabix.TabixIndexer;
 import com.rtg.util.ByteUtils;
+import com.rtg.util.diagnostic.SpyCounter;
 import com.rtg.vcf.header.VcfHeader;
 
 
@@ -47,6 +48,8 @@ import com.rtg.vcf.header.VcfHeader;
  */
 public class DefaultVcfWriter implements VcfWriter {
 
+  private static final SpyCounter RECORDS = new SpyCounter("VcfWriter.records");
+
   private final IndexingStreamCreator mIndexer;
   private final OutputStream mOut;
   private final VcfHeader mHeader;
@@ -116,6 +119,7 @@ public class DefaultVcfWriter implements VcfWriter {
       writeHeader();
     }
     writeToStream(record);
+    RECORDS.increment();
   }
 
   @Override
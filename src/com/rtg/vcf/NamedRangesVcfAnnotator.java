@@ -73,7 +73,14 @@ public abstract class NamedRangesVcfAnnotator implements VcfAnnotator {
     mFullSpan = fullSpan;
   }
 
-  private List<String> getAnnotations(String chr, int start, int end) {
+  /**
+   * Get the sorted names of all ranges overlapping a region.
+   * @param chr sequence name
+   * @param start zero-based start position, inclusive
+   * @param end zero-based end position, exclusive
+   * @return the names, or null if there are no overlapping ranges
+   */
+  protected List<String> getAnnotations(String chr, int start, int end) {
     final RangeList<List<String>> chrRanges = mAnnotations.get(chr);
     if (chrRanges != null) {
       final Set<String> found = new HashSet<>();
@@ -96,7 +103,13 @@ public abstract class NamedRangesVcfAnnotator implements VcfAnnotator {
     return null;
   }
 
-  private List<String> getAnnotations(String chr, int loc) {
+  /**
+   * Get the sorted names of all ranges containing a position.
+   * @param chr sequence name
+   * @param loc zero-based position
+   * @return the names, or null if there are no ranges containing the position
+   */
+  protected List<String> getAnnotations(String chr, int loc) {
     final RangeList<List<String>> chrRanges = mAnnotations.get(chr);
     if (chrRanges != null) {
       final List<List<String>> m = chrRanges.find(loc);
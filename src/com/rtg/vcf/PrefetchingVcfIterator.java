@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.util.io.IOIterator;
+import com.rtg.util.io.IOUtils;
+import com.rtg.vcf.header.VcfHeader;
+
+/**
+ * Reads and parses records from an underlying VCF iterator in batches on an executor, so that
+ * decompression and parsing of the next batch overlaps with consumption of the current one. At
+ * most one batch is being read ahead at any time, and the underlying iterator is only accessed by
+ * one thread at a time, so many of these may share a small executor.
+ */
+@TestClass("com.rtg.vcf.PrefetchingVcfIteratorTest")
+public class PrefetchingVcfIterator implements VcfIterator {
+
+  /** Default number of records per batch */
+  public static final int DEFAULT_BATCH_SIZE = 256;
+
+  private final VcfIterator mIn;
+  private final ExecutorService mExecutor;
+  private final int mBatchSize;
+  private List<VcfRecord> mBatch = Collections.emptyList();
+  private int mBatchPos = 0;
+  private Future<List<VcfRecord>> mPending;
+
+  /**
+   * @param in source of records
+   * @param executor executor on which batches are read
+   * @param batchSize number of records to read in each batch
+   */
+  public PrefetchingVcfIterator(VcfIterator in, ExecutorService executor, int batchSize) {
+    mIn = in;
+    mExecutor = executor;
+    mBatchSize = batchSize;
+    mPending = mExecutor.submit(this::readBatch);
+  }
+
+  private List<VcfRecord> readBatch() throws IOException {
+    final List<VcfRecord> batch = new ArrayList<>(mBatchSize);
+    while (batch.size() < mBatchSize && mIn.hasNext()) {
+      batch.add(mIn.next());
+    }
+    return batch;
+  }
+
+  private void nextBatch() throws IOException {
+    try {
+      mBatch = mPending.get();
+    } catch (final ExecutionException e) {
+      mPending = null;
+      IOUtils.rethrow(e.getCause());
+    } catch (final InterruptedException e) {
+      mPending = null;
+      throw new IOException("Interrupted while reading VCF records", e);
+    }
+    mBatchPos = 0;
+    // A short batch means the underlying iterator is exhausted
+    mPending = mBatch.size() < mBatchSize ? null : mExecutor.submit(this::readBatch);
+  }
+
+  @Override
+  public VcfHeader getHeader() {
+    return mIn.getHeader();
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    while (mBatchPos == mBatch.size()) {
+      if (mPending == null) {
+        return false;
+      }
+      nextBatch();
+    }
+    return true;
+  }
+
+  @Override
+  public VcfRecord next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return mBatch.get(mBatchPos++);
+  }
+
+  @Override
+  public void forEach(Consumer<? super VcfRecord> action) throws IOException {
+    IOIterator.forEach(this, action);
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Wait for any outstanding read before closing the underlying iterator
+    if (mPending != null) {
+      try {
+        mPending.get();
+      } catch (final ExecutionException e) {
+        // Closing anyway
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      mPending = null;
+    }
+    mIn.close();
+  }
+}
@@ -56,7 +56,7 @@ import com.rtg.vcf.header.VcfHeader;
 /**
  * Filter than runs supplied Javascript to determine if record should be accepted
  */
-public class ScriptedVcfFilter implements VcfFilter {
+public class ScriptedVcfFilter implements EndableVcfFilter {
   /** Name of the end function */
   public static final String END = "end";
   /** Name of the record function */
@@ -199,6 +199,7 @@ public class ScriptedVcfFilter implements VcfFilter {
   /**
    * Invoke at the end of processing to run the ending scripts
    */
+  @Override
   public void end() {
     try {
       if (hasFunction(END)) {
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.tabix.TabixIndexer;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.intervals.RangeMeta;
+import com.rtg.util.io.IOIterator;
+
+import htsjdk.samtools.util.RuntimeIOException;
+
+/**
+ * Annotates VCF records that overlap named regions, reading the regions from tabix indexed files in step
+ * with the records being annotated rather than loading them all into memory. Only the regions that may
+ * overlap the current record are held, so the records being annotated must be sorted by position within
+ * each sequence and the records for each sequence must be contiguous.
+ * @param <T> type of record read from the annotation files
+ */
+@TestClass("com.rtg.vcf.StreamingNamedRangesVcfAnnotatorTest")
+public class StreamingNamedRangesVcfAnnotator<T> extends NamedRangesVcfAnnotator implements Closeable {
+
+  /**
+   * Opens the records of an annotation file that overlap a sequence, in order of start position.
+   * @param <T> type of record
+   */
+  @FunctionalInterface
+  public interface RecordOpener<T> {
+    /**
+     * @param file the annotation file
+     * @param sequenceName the sequence to read
+     * @return iterator over the records
+     * @throws IOException if the file could not be read
+     */
+    IOIterator<T> open(File file, String sequenceName) throws IOException;
+  }
+
+  private final List<File> mFiles;
+  private final RecordOpener<T> mOpener;
+  private final Function<T, RangeMeta<List<String>>> mToRange;
+  private final List<IOIterator<T>> mReaders = new ArrayList<>();
+  private final List<RangeMeta<List<String>>> mNext = new ArrayList<>();
+  private final List<RangeMeta<List<String>>> mActive = new ArrayList<>();
+  private final Set<String> mDoneSequences = new HashSet<>();
+  private String mSequence = null;
+  private int mLastStart = -1;
+
+  /**
+   * Constructor
+   * @param infoId if non-null, annotations will be added as an INFO field with this ID, otherwise add to VCF id column.
+   * @param description if non-null, use this description for the INFO field header, if it doesn't already exist.
+   * @param files block compressed and tabix indexed annotation files
+   * @param opener opens the records of an annotation file for a sequence
+   * @param toRange converts an annotation record to a named range, or null if the record should be ignored
+   * @param fullSpan if true, full reference span each VCF record will be considered, otherwise just the start position.
+   * @throws IOException if an annotation file is not indexed
+   */
+  public StreamingNamedRangesVcfAnnotator(String infoId, String description, Collection<File> files, RecordOpener<T> opener, Function<T, RangeMeta<List<String>>> toRange, boolean fullSpan) throws IOException {
+    super(infoId, description, null, fullSpan);
+    mFiles = new ArrayList<>(files);
+    mOpener = opener;
+    mToRange = toRange;
+    for (final File f : mFiles) {
+      final File index = TabixIndexer.existingIndexFileName(f);
+      if (!TabixIndexer.isBlockCompressed(f)) {
+        throw new NoTalkbackSlimException(f + " is not in bgzip format");
+      } else if (!index.exists()) {
+        throw new NoTalkbackSlimException("Index not found for file: " + f.getPath() + " expected index called: " + index.getPath());
+      }
+    }
+  }
+
+  private void closeReaders() throws IOException {
+    for (final IOIterator<T> reader : mReaders) {
+      reader.close();
+    }
+    mReaders.clear();
+    mNext.clear();
+    mActive.clear();
+  }
+
+  private void startSequence(String chr) throws IOException {
+    closeReaders();
+    if (mSequence != null) {
+      mDoneSequences.add(mSequence);
+    }
+    if (mDoneSequences.contains(chr)) {
+      throw new NoTalkbackSlimException("Records for sequence " + chr + " are not contiguous in the VCF being annotated");
+    }
+    mSequence = chr;
+    mLastStart = -1;
+    for (final File f : mFiles) {
+      final IOIterator<T> reader = mOpener.open(f, chr);
+      mReaders.add(reader);
+      mNext.add(null);
+      advance(mReaders.size() - 1);
+    }
+  }
+
+  // Read the next non-empty range from an annotation file
+  private void advance(int i) throws IOException {
+    final IOIterator<T> reader = mReaders.get(i);
+    final RangeMeta<List<String>> prev = mNext.get(i);
+    while (reader.hasNext()) {
+      final RangeMeta<List<String>> range = mToRange.apply(reader.next());
+      if (range != null && range.getEnd() > range.getStart()) {
+        if (prev != null && range.getStart() < prev.getStart()) {
+          throw new NoTalkbackSlimException("Annotation file " + mFiles.get(i).getPath() + " is not sorted at " + mSequence + ":" + (range.getStart() + 1));
+        }
+        mNext.set(i, range);
+        return;
+      }
+    }
+    mNext.set(i, null);
+  }
+
+  // Bring the window of ranges up to date for a query region, which must not start before any previous query
+  private void moveTo(String chr, int start, int end) throws IOException {
+    if (!chr.equals(mSequence)) {
+      startSequence(chr);
+    } else if (start < mLastStart) {
+      throw new NoTalkbackSlimException("VCF being annotated is not sorted at " + chr + ":" + (start + 1));
+    }
+    mLastStart = start;
+    mActive.removeIf(range -> range.getEnd() <= start);
+    for (int i = 0; i < mReaders.size(); ++i) {
+      RangeMeta<List<String>> range;
+      while ((range = mNext.get(i)) != null && range.getStart() < end) {
+        if (range.getEnd() > start) {
+          mActive.add(range);
+        }
+        advance(i);
+      }
+    }
+  }
+
+  @Override
+  protected List<String> getAnnotations(String chr, int start, int end) {
+    try {
+      moveTo(chr, start, end);
+    } catch (final IOException e) {
+      throw new RuntimeIOException(e);
+    }
+    final Set<String> found = new HashSet<>();
+    for (final RangeMeta<List<String>> range : mActive) {
+      if (range.getStart() < end && range.getEnd() > start) {
+        found.addAll(range.getMeta());
+      }
+    }
+    if (found.isEmpty()) {
+      return null;
+    }
+    final List<String> anno = new ArrayList<>(found);
+    Collections.sort(anno);
+    return anno;
+  }
+
+  @Override
+  protected List<String> getAnnotations(String chr, int loc) {
+    return getAnnotations(chr, loc, loc + 1);
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeReaders();
+  }
+}
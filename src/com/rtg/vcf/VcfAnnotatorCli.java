@@ -39,6 +39,7 @@ import static com.rtg.util.cli.CommonFlagCategories.INPUT_OUTPUT;
 import static com.rtg.util.cli.CommonFlagCategories.REPORTING;
 import static com.rtg.util.cli.CommonFlagCategories.UTILITY;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -84,6 +85,7 @@ public final class VcfAnnotatorCli extends AbstractCli {
   private static final String CLUSTER_FLAG = "Xcluster";
   private static final String OLD_RANGE_OVERLAP = "Xold-id-overlap";
   private static final String STR_FLAG = "Xstr";
+  private static final String STREAM_FLAG = "Xstream-annotations";
 
   /** All known annotators with zero-arg constructors */
   private static final Map<String, VcfAnnotator> ANNOTATORS = new TreeMap<>();
@@ -129,6 +131,7 @@ public final class VcfAnnotatorCli extends AbstractCli {
     mFlags.registerOptional('A', DERIVED_ANNOTATIONS_FLAG, String.class, STRING, "add computed annotation to VCF records").setParameterRange(ANNOTATORS.keySet()).setMaxCount(Integer.MAX_VALUE).enableCsv().setCategory(REPORTING);
     mFlags.registerOptional(CLUSTER_FLAG, "annotate records with number of nearby variants").setCategory(REPORTING);
     mFlags.registerOptional(OLD_RANGE_OVERLAP, "when annotating IDs from BED/VCF, use old method for determining record overlap (record start position only)").setCategory(REPORTING);
+    mFlags.registerOptional(STREAM_FLAG, "read BED/VCF annotations from their tabix indexes as the input is annotated, rather than loading them into memory. The input VCF must be sorted").setCategory(REPORTING);
     mFlags.registerOptional(STR_FLAG, File.class, "SDF", "annotate records with simple tandem repeat indicator based on given SDF").setCategory(REPORTING);
     mFlags.setValidator(new VcfAnnotatorValidator());
   }
@@ -182,48 +185,60 @@ public final class VcfAnnotatorCli extends AbstractCli {
     }
 
     final boolean fullSpan = !mFlags.isSet(OLD_RANGE_OVERLAP);
+    final boolean stream = mFlags.isSet(STREAM_FLAG);
     final List<VcfAnnotator> annotators = new ArrayList<>();
-    if (mFlags.isSet(BED_INFO_FLAG)) {
-      annotators.add(new BedVcfAnnotator((String) mFlags.getValue(INFO_ID_FLAG), (String) mFlags.getValue(INFO_DESCR_FLAG), getFiles(BED_INFO_FLAG), fullSpan));
-    }
-    if (mFlags.isSet(BED_IDS_FLAG)) {
-      annotators.add(new BedVcfAnnotator(null, null, getFiles(BED_IDS_FLAG), fullSpan));
-    } else if (mFlags.isSet(VCF_IDS_FLAG)) {
-      annotators.add(new VcfIdAnnotator(getFiles(VCF_IDS_FLAG), fullSpan));
-    }
-    if (mFlags.isSet(STR_FLAG)) {
-      mRefSequencesSource = getReference((File) mFlags.getValue(STR_FLAG)).referenceSource();
-      annotators.add(new SimpleTandemRepeatAnnotator(mRefSequencesSource));
-    }
-
-    annotators.addAll(derived.stream().map(ANNOTATORS::get).collect(Collectors.toList()));
+    try {
+      if (mFlags.isSet(BED_INFO_FLAG)) {
+        final String infoId = (String) mFlags.getValue(INFO_ID_FLAG);
+        final String infoDescription = (String) mFlags.getValue(INFO_DESCR_FLAG);
+        annotators.add(stream ? BedVcfAnnotator.streaming(infoId, infoDescription, getFiles(BED_INFO_FLAG), fullSpan) : new BedVcfAnnotator(infoId, infoDescription, getFiles(BED_INFO_FLAG), fullSpan));
+      }
+      if (mFlags.isSet(BED_IDS_FLAG)) {
+        annotators.add(stream ? BedVcfAnnotator.streaming(null, null, getFiles(BED_IDS_FLAG), fullSpan) : new BedVcfAnnotator(null, null, getFiles(BED_IDS_FLAG), fullSpan));
+      } else if (mFlags.isSet(VCF_IDS_FLAG)) {
+        annotators.add(stream ? VcfIdAnnotator.streaming(getFiles(VCF_IDS_FLAG), fullSpan) : new VcfIdAnnotator(getFiles(VCF_IDS_FLAG), fullSpan));
+      }
+      if (mFlags.isSet(STR_FLAG)) {
+        mRefSequencesSource = getReference((File) mFlags.getValue(STR_FLAG)).referenceSource();
+        annotators.add(new SimpleTandemRepeatAnnotator(mRefSequencesSource));
+      }
 
-    if (mFlags.isSet(RELABEL_FLAG)) {
-      annotators.add(VcfSampleNameRelabeller.create((File) mFlags.getValue(RELABEL_FLAG)));
-    }
+      annotators.addAll(derived.stream().map(ANNOTATORS::get).collect(Collectors.toList()));
 
-    final Collection<String> extraHeaderLines = VcfMerge.getHeaderLines(mFlags);
-    final File output = (File) mFlags.getValue(OUTPUT_FLAG);
-    final boolean gzip = !mFlags.isSet(NO_GZIP);
-    try (VcfReader reader = VcfReader.openVcfReader(mFlags)) {
-      final VcfHeader header = reader.getHeader();
-      VcfUtils.addHeaderLines(header, extraHeaderLines);
-      for (final VcfAnnotator annotator : annotators) {
-        annotator.updateHeader(header);
+      if (mFlags.isSet(RELABEL_FLAG)) {
+        annotators.add(VcfSampleNameRelabeller.create((File) mFlags.getValue(RELABEL_FLAG)));
       }
-      final File vcfFile = VcfUtils.getZippedVcfFileName(gzip, output);
-      try (VcfWriter writer = getVcfWriter(header, vcfFile)) {
-        while (reader.hasNext()) {
-          final VcfRecord rec = reader.next();
-          for (final VcfAnnotator annotator : annotators) {
-            annotator.annotate(rec);
+
+      final Collection<String> extraHeaderLines = VcfMerge.getHeaderLines(mFlags);
+      final File output = (File) mFlags.getValue(OUTPUT_FLAG);
+      final boolean gzip = !mFlags.isSet(NO_GZIP);
+      try (VcfReader reader = VcfReader.openVcfReader(mFlags)) {
+        final VcfHeader header = reader.getHeader();
+        VcfUtils.addHeaderLines(header, extraHeaderLines);
+        for (final VcfAnnotator annotator : annotators) {
+          annotator.updateHeader(header);
+        }
+        final File vcfFile = VcfUtils.getZippedVcfFileName(gzip, output);
+        try (VcfWriter writer = getVcfWriter(header, vcfFile)) {
+          while (reader.hasNext()) {
+            final VcfRecord rec = reader.next();
+            for (final VcfAnnotator annotator : annotators) {
+              annotator.annotate(rec);
+            }
+            writer.write(rec);
           }
-          writer.write(rec);
         }
       }
-    }
-    if (mRefSequencesSource != null) {
-      mRefSequencesSource.close();
+    } finally {
+      // Streamed annotators hold open readers, which must be released even if annotation fails
+      for (final VcfAnnotator annotator : annotators) {
+        if (annotator instanceof Closeable) {
+          ((Closeable) annotator).close();
+        }
+      }
+      if (mRefSequencesSource != null) {
+        mRefSequencesSource.close();
+      }
     }
     return 0;
   }
@@ -55,6 +55,8 @@ import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.bed.BedUtils;
 import com.rtg.launcher.AbstractCli;
 import com.rtg.launcher.CommonFlags;
+import com.rtg.launcher.globals.GlobalFlags;
+import com.rtg.launcher.globals.ToolsGlobalFlags;
 import com.rtg.util.cli.CFlags;
 import com.rtg.util.cli.Flag;
 import com.rtg.util.cli.Validator;
@@ -224,6 +226,7 @@ public final class VcfFilterCli extends AbstractCli {
     javascript.setCategory(FILTERING_REC);
     javascript.setMaxCount(Integer.MAX_VALUE);
     mFlags.registerOptional(NO_HEADER, "prevent VCF header from being written").setCategory(UTILITY);
+    CommonFlags.initThreadsFlag(mFlags, "number of threads used to evaluate javascript filtering. Each thread has an independent javascript context");
     mFlags.addRequiredSet(output);
     mFlags.addRequiredSet(javascript);
     mFlags.setValidator(new VcfFilterValidator());
@@ -250,6 +253,7 @@ public final class VcfFilterCli extends AbstractCli {
         || !flags.checkInRange(MAX_AMBIGUITY_RATIO, 0.0, 1.0)
         || !flags.checkInRange(DENSITY_WINDOW, 1, Integer.MAX_VALUE)
         || !CommonFlags.validateRegions(flags)
+        || !CommonFlags.validateThreads(flags)
         || !flags.checkNand(EXCLUDE_BED, EXCLUDE_VCF)
         || !flags.checkNand(INCLUDE_BED, INCLUDE_VCF)
         || !flags.checkNand(SNPS_ONLY, NON_SNPS_ONLY)
@@ -386,14 +390,27 @@ public final class VcfFilterCli extends AbstractCli {
       }
     }
 
-    final Optional<ScriptedVcfFilter> scriptFilter = buildScriptFilter(mFlags, output);
-    scriptFilter.ifPresent(mVcfFilterTask.mFilters::add);
+    final List<EndableVcfFilter> scriptFilters = new ArrayList<>();
+    final int threads = CommonFlags.parseThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG));
+    for (int i = 0; i < threads; ++i) {
+      final Optional<EndableVcfFilter> scriptFilter = buildScriptFilter(mFlags, output);
+      if (!scriptFilter.isPresent()) {
+        break;
+      }
+      scriptFilters.add(scriptFilter.get());
+    }
+    if (scriptFilters.size() == 1) {
+      mVcfFilterTask.mFilters.addAll(scriptFilters);
+    } else {
+      mVcfFilterTask.mWorkerFilters.addAll(scriptFilters);
+    }
 
     final Collection<String> extraHeaderLines = VcfMerge.getHeaderLines(mFlags);
     final File out = (File) mFlags.getValue(OUTPUT_FLAG);
     final boolean stdout = out != null && FileUtils.isStdio(out);
     Diagnostic.developerLog("Starting filter");
-    try (VcfReader r = VcfReader.openVcfReader(mFlags)) {
+    // Most records are passed through with only a few fields examined, so defer decoding until needed
+    try (VcfReader r = new VcfReaderFactory(mFlags).parser(new VcfParser(true)).make(mFlags)) {
       final VcfHeader header = r.getHeader();
       VcfUtils.addHeaderLines(header, extraHeaderLines);
       mVcfFilterTask.setHeader(header);
@@ -403,7 +420,9 @@ public final class VcfFilterCli extends AbstractCli {
       if (!stdout && out != null) {
         mVcfFilterTask.printStatistics(output);
       }
-      scriptFilter.ifPresent(ScriptedVcfFilter::end);
+      for (final EndableVcfFilter scriptFilter : scriptFilters) {
+        scriptFilter.end();
+      }
     }
   }
 
@@ -416,13 +435,17 @@ public final class VcfFilterCli extends AbstractCli {
     return new VcfWriterFactory(mFlags).addRunInfo(true).make(header, outputFile);
   }
 
-  private Optional<ScriptedVcfFilter> buildScriptFilter(CFlags flags, OutputStream output) throws IOException {
+  private Optional<EndableVcfFilter> buildScriptFilter(CFlags flags, OutputStream output) throws IOException {
     final String expressionString = fileOrString(flags, KEEP_EXPRESSION_FLAG);
     final List<?> values = flags.getValues(JAVASCRIPT_FLAG);
     final List<String> beginnings = new ArrayList<>(values.size());
     for (Object begin : values) {
       beginnings.add(fileIfExists((String) begin));
     }
+    if (expressionString != null && beginnings.isEmpty() && GlobalFlags.getBooleanValue(ToolsGlobalFlags.VCFFILTER_COMPILED_EXPRESSIONS)) {
+      // Simple expressions don't need the javascript engine, which is only started if the expression can't be compiled
+      return Optional.of(new CompiledExpressionFilter(expressionString, output, System.err));
+    }
     if (expressionString != null || beginnings.size() > 0) {
       final ScriptedVcfFilter filter = new ScriptedVcfFilter(expressionString, beginnings, output, System.err);
       return Optional.of(filter);
@@ -31,16 +31,24 @@ package com.rtg.vcf;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.intervals.ReferenceRegions;
+import com.rtg.util.io.IOUtils;
 import com.rtg.vcf.VcfFilterStatistics.Stat;
 import com.rtg.vcf.header.FilterField;
 import com.rtg.vcf.header.FormatField;
@@ -56,6 +64,8 @@ import com.rtg.vcf.header.VcfNumber;
 @TestClass("com.rtg.vcf.VcfFilterCliTest")
 class VcfFilterTask {
 
+  private static final int BATCH_SIZE = 1000;
+
   protected final VcfFilterStatistics mVcfFilterStatistics = new VcfFilterStatistics();
 
   // overlap filtering
@@ -64,6 +74,8 @@ class VcfFilterTask {
 
   // what to filter on
   protected List<VcfFilter> mFilters = new ArrayList<>();
+  // Equivalent filters applied after mFilters, one per worker thread, used concurrently when non-empty
+  protected List<VcfFilter> mWorkerFilters = new ArrayList<>();
   protected List<String> mSampleNames = new ArrayList<>();
   protected int[] mSampleIndexes = null;
   protected boolean[] mSampleFailed = null;
@@ -103,6 +115,9 @@ class VcfFilterTask {
       }
       filter.setHeader(header);
     }
+    for (final VcfFilter filter : mWorkerFilters) {
+      filter.setHeader(header);
+    }
     if (mFailFilterName != null) {
       header.ensureContains(new FilterField(mFailFilterName, "RTG vcffilter user defined filter"));
     }
@@ -173,17 +188,13 @@ class VcfFilterTask {
     mPrevDense = false;
     mPrevRecord = null;
     try {
-      while (r.hasNext()) {
-        final VcfRecord record = r.next();
-        if (accept(record)) {
-          write(w, record);
-        } else if (mFailFilterName != null) {
-          record.addFilter(mFailFilterName);
-          write(w, record);
-        } else if (mResetFailedSampleGts || mFailSampleFilterName != null) {
-          filterSamples(record);
-          write(w, record);
+      if (mWorkerFilters.isEmpty()) {
+        while (r.hasNext()) {
+          final VcfRecord record = r.next();
+          output(w, record, accept(record));
         }
+      } else {
+        processBatches(r, w);
       }
     } catch (final VcfFormatException iae) {
       throw new NoTalkbackSlimException(iae.getMessage());
@@ -191,6 +202,107 @@ class VcfFilterTask {
     flush(w);
   }
 
+  private void output(final VcfWriter w, final VcfRecord record, boolean accepted) throws IOException {
+    if (accepted) {
+      write(w, record);
+    } else if (mFailFilterName != null) {
+      record.addFilter(mFailFilterName);
+      write(w, record);
+    } else if (mResetFailedSampleGts || mFailSampleFilterName != null) {
+      filterSamples(record);
+      write(w, record);
+    }
+  }
+
+  /** The outcome of filtering a single record, retained until the record can be output in order */
+  private static final class FilterResult {
+    final VcfRecord mRecord;
+    boolean mAccepted;
+    boolean mNonSampleSpecificFailed;
+    boolean[] mSampleFailed;
+
+    FilterResult(VcfRecord record) {
+      mRecord = record;
+    }
+  }
+
+  // Runs the worker filters over the records that passed the other filters
+  private static List<FilterResult> applyWorkerFilter(VcfFilter filter, List<FilterResult> batch) {
+    for (final FilterResult result : batch) {
+      if (result.mAccepted && !filter.accept(result.mRecord)) {
+        result.mAccepted = false;
+        result.mNonSampleSpecificFailed = true;
+      }
+    }
+    return batch;
+  }
+
+  // Records pass through the cheap (and stateful) filters in the calling thread, then batches are filtered
+  // by the worker filters concurrently, each worker filter being used by one thread at a time. Batches are
+  // output in the original order.
+  private void processBatches(final VcfReader r, final VcfWriter w) throws IOException {
+    final ExecutorService executor = Executors.newFixedThreadPool(mWorkerFilters.size());
+    final BlockingQueue<VcfFilter> idleFilters = new ArrayBlockingQueue<>(mWorkerFilters.size(), false, mWorkerFilters);
+    final ArrayDeque<Future<List<FilterResult>>> pending = new ArrayDeque<>();
+    try {
+      List<FilterResult> batch = new ArrayList<>(BATCH_SIZE);
+      while (r.hasNext()) {
+        final FilterResult result = new FilterResult(r.next());
+        result.mAccepted = accept(result.mRecord);
+        if (!result.mAccepted) {
+          result.mNonSampleSpecificFailed = mNonSampleSpecificFailed;
+          result.mSampleFailed = mSampleFailed == null ? null : mSampleFailed.clone();
+        }
+        batch.add(result);
+        if (batch.size() == BATCH_SIZE || !r.hasNext()) {
+          final List<FilterResult> toFilter = batch;
+          pending.add(executor.submit(() -> {
+            final VcfFilter filter = idleFilters.take();
+            try {
+              return applyWorkerFilter(filter, toFilter);
+            } finally {
+              idleFilters.add(filter);
+            }
+          }));
+          batch = new ArrayList<>(BATCH_SIZE);
+          while (pending.size() > 2 * mWorkerFilters.size()) {
+            outputBatch(w, pending.remove());
+          }
+        }
+      }
+      while (!pending.isEmpty()) {
+        outputBatch(w, pending.remove());
+      }
+    } finally {
+      for (final Future<List<FilterResult>> f : pending) {
+        f.cancel(true);
+      }
+      executor.shutdownNow();
+    }
+  }
+
+  private void outputBatch(final VcfWriter w, Future<List<FilterResult>> future) throws IOException {
+    final List<FilterResult> batch;
+    try {
+      batch = future.get();
+    } catch (final ExecutionException e) {
+      IOUtils.rethrow(e.getCause());
+      return;
+    } catch (final InterruptedException e) {
+      throw new NoTalkbackSlimException("Interrupted while filtering");
+    }
+    for (final FilterResult result : batch) {
+      // Restore the per-record failure state that filterSamples relies on
+      mNonSampleSpecificFailed = result.mNonSampleSpecificFailed;
+      if (result.mSampleFailed != null) {
+        System.arraycopy(result.mSampleFailed, 0, mSampleFailed, 0, mSampleFailed.length);
+      } else if (mSampleFailed != null) {
+        Arrays.fill(mSampleFailed, false);
+      }
+      output(w, result.mRecord, result.mAccepted);
+    }
+  }
+
   // Any samples that failed during the sample-specific filtering (or those failing non-sample-specific filtering)
   // will either have their GT set to missing value or FT field set.
   void filterSamples(VcfRecord record) {
@@ -245,9 +357,11 @@ class VcfFilterTask {
     mEndPosition = record.getEnd();
     // check filter/infos to keep - they have precedence
     boolean keep = (mKeepInfos.size() + mKeepFilters.size()) == 0; // only set if no keep flags set
-    for (final String tag : record.getInfo().keySet()) {
-      if (mKeepInfos.contains(tag)) {
-        keep = true;
+    if (!mKeepInfos.isEmpty()) { // Avoid decoding INFO unless it is needed
+      for (final String tag : record.getInfo().keySet()) {
+        if (mKeepInfos.contains(tag)) {
+          keep = true;
+        }
       }
     }
     if (record.getFilters().isEmpty()) {
@@ -266,11 +380,13 @@ class VcfFilterTask {
       mNonSampleSpecificFailed = true;
       return false;
     }
-    for (final String tag : record.getInfo().keySet()) {
-      if (mRemoveInfos.contains(tag)) {
-        mVcfFilterStatistics.incrementInfoTag(tag);
-        mNonSampleSpecificFailed = true;
-        return false;
+    if (!mRemoveInfos.isEmpty()) {
+      for (final String tag : record.getInfo().keySet()) {
+        if (mRemoveInfos.contains(tag)) {
+          mVcfFilterStatistics.incrementInfoTag(tag);
+          mNonSampleSpecificFailed = true;
+          return false;
+        }
       }
     }
     if (record.getFilters().isEmpty()) {
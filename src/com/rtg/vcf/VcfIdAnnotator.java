@@ -38,8 +38,10 @@ import java.util.List;
 
 import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.util.StringUtils;
-import com.rtg.util.intervals.SimpleRangeMeta;
+import com.rtg.util.intervals.RangeMeta;
 import com.rtg.util.intervals.ReferenceRanges;
+import com.rtg.util.intervals.RegionRestriction;
+import com.rtg.util.intervals.SimpleRangeMeta;
 
 /**
  * Adds VCF ID column based on VCF IDs from another VCF file.
@@ -57,15 +59,32 @@ public class VcfIdAnnotator extends NamedRangesVcfAnnotator {
     super(null, null, loadVcfIdRanges(vcfFiles), fullSpan);
   }
 
+  /**
+   * Create an annotator that streams variant IDs from tabix indexed VCF files, for annotating a sorted VCF.
+   * @param vcfFiles block compressed and indexed VCF files containing variant IDs to be added to VCF id column.
+   * @param fullSpan if true, full reference span each VCF record will be considered, otherwise just the start position.
+   * @return the annotator
+   * @throws IOException if a VCF file is not indexed.
+   */
+  public static StreamingNamedRangesVcfAnnotator<VcfRecord> streaming(Collection<File> vcfFiles, boolean fullSpan) throws IOException {
+    return new StreamingNamedRangesVcfAnnotator<>(null, null, vcfFiles,
+      (file, sequenceName) -> VcfReader.openVcfReader(file, new RegionRestriction(sequenceName)), VcfIdAnnotator::idRange, fullSpan);
+  }
+
+  private static RangeMeta<List<String>> idRange(VcfRecord record) {
+    final String id = record.getId();
+    return VcfRecord.MISSING.equals(id) ? null : new SimpleRangeMeta<>(record.getStart(), record.getEnd(), Arrays.asList(StringUtils.split(id, ';')));
+  }
+
   private static ReferenceRanges<List<String>> loadVcfIdRanges(Collection<File> vcfFiles) throws IOException {
     final ReferenceRanges.Accumulator<List<String>> rangeData = new ReferenceRanges.Accumulator<>();
     for (final File vcfFile : vcfFiles) {
       try (final VcfReader reader = VcfReader.openVcfReader(vcfFile)) {
         while (reader.hasNext()) {
           final VcfRecord record = reader.next();
-          final String id = record.getId();
-          if (!VcfRecord.MISSING.equals(id)) {
-            rangeData.addRangeData(record.getSequenceName(), new SimpleRangeMeta<>(record.getStart(), record.getEnd(), Arrays.asList(StringUtils.split(id, ';'))));
+          final RangeMeta<List<String>> range = idRange(record);
+          if (range != null) {
+            rangeData.addRangeData(record.getSequenceName(), range);
           }
         }
       }
@@ -49,10 +49,14 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import com.rtg.launcher.AbstractCli;
@@ -87,6 +91,7 @@ public class VcfMerge extends AbstractCli {
   private static final String NO_RECORD_MERGE = "no-merge-records";
   private static final String NON_PADDING_AWARE = "Xnon-padding-aware";
   private static final String GT_MAJORITY = "Xgt-majority";
+  private static final String MAX_MERGE_INPUTS = "Xmax-merge-inputs";
 
   @Override
   public String moduleName() {
@@ -119,6 +124,8 @@ public class VcfMerge extends AbstractCli {
     mFlags.registerOptional(NO_ALT_MERGE, "do not merge multiple records if the ALTs are different").setCategory(UTILITY);
     mFlags.registerOptional(NON_PADDING_AWARE, "allow merging of multiple records that mix whether they employ a VCF anchor base").setCategory(UTILITY);
     mFlags.registerOptional(GT_MAJORITY, "alternate mode that combines per sample GTs by majority vote").setCategory(UTILITY);
+    mFlags.registerOptional(MAX_MERGE_INPUTS, Integer.class, CommonFlags.INT, "maximum number of input VCFs to merge at once. Larger sets of inputs are merged hierarchically via intermediate files", 1000).setCategory(UTILITY);
+    CommonFlags.initThreadsFlag(mFlags);
 
     mFlags.addRequiredSet(inFlag);
     mFlags.addRequiredSet(listFlag);
@@ -132,6 +139,8 @@ public class VcfMerge extends AbstractCli {
       return CommonFlags.checkFileList(flags, CommonFlags.INPUT_LIST_FLAG, null, Integer.MAX_VALUE)
         && CommonFlags.validateOutputFile(flags, VcfUtils.getZippedVcfFileName(!flags.isSet(NO_GZIP), (File) flags.getValue(OUTPUT_FLAG)))
         && flags.checkAtMostOne(GT_MAJORITY, NO_ALT_MERGE, NO_RECORD_MERGE)
+        && flags.checkInRange(MAX_MERGE_INPUTS, 2, Integer.MAX_VALUE)
+        && CommonFlags.validateThreads(flags)
         && flags.checkNand(FORCE_MERGE_ALL, FORCE_MERGE);
     }
   }
@@ -196,52 +205,30 @@ public class VcfMerge extends AbstractCli {
     final boolean gzip = !mFlags.isSet(NO_GZIP);
     final VariantStatistics stats = mFlags.isSet(STATS_FLAG) ? new VariantStatistics(null) : null;
     final ReferenceRanges<String> regions = CommonFlags.parseRegionOrBedRegions(mFlags);
-    final VcfPositionZipper posZip = new VcfPositionZipper(regions, forceMerge, inputs.toArray(new File[0]));
-    final VcfHeader header = posZip.getHeader();
-    VcfUtils.addHeaderLines(header, extraHeaderLines);
-
-    String defaultFormat = FORMAT_GENOTYPE;
-    if (header.getFormatField(FORMAT_GENOTYPE) == null && header.getFormatLines().size() > 0) {
-      defaultFormat = header.getFormatLines().get(0).getId();
-    }
-
     final boolean stdout = FileUtils.isStdio(outFile);
     final File vcfFile = VcfUtils.getZippedVcfFileName(gzip, outFile);
-    final VcfRecordMerger merger;
-    if (mFlags.isSet(GT_MAJORITY)) {
-      if (!FORMAT_GENOTYPE.equals(defaultFormat)) {
-        throw new NoTalkbackSlimException("VCF header does not contain GT declaration");
-      }
-      merger = new VcfGtMajorityMerger();
-    } else if (mFlags.isSet(NO_ALT_MERGE)) {
-      merger = new VcfSameAltsMerger();
-    } else {
-      merger = new VcfRecordMerger();
-    }
-    merger.setHeader(header);
-    merger.setDefaultFormat(defaultFormat);
-    merger.setAllowMerging(!mFlags.isSet(NO_RECORD_MERGE));
-    merger.setPaddingAware(!mFlags.isSet(NON_PADDING_AWARE));
-    merger.setDropUnmergeable(!mFlags.isSet(PRESERVE_FORMATS));
-
-    try (final VcfWriter w = new VcfWriterFactory(mFlags).addRunInfo(true).make(header, vcfFile)) {
-      final ZipperCallback callback = (records, headers) -> {
-        assert records.length > 0;
-        final VcfRecord[] mergedArr = merger.mergeRecords(records, headers);
-        for (VcfRecord merged : mergedArr) {
-          if (stats != null) {
-            stats.tallyVariant(header, merged);
-          }
-          w.write(merged);
+    // Majority voting over intermediate results would not be the same as over all inputs
+    final int maxInputs = mFlags.isSet(GT_MAJORITY) ? Integer.MAX_VALUE : (Integer) mFlags.getValue(MAX_MERGE_INPUTS);
+    final int threads = CommonFlags.parseThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG));
+    final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    File tempDir = null;
+    try {
+      List<File> toMerge = inputs;
+      for (int level = 0; toMerge.size() > maxInputs; ++level) {
+        if (tempDir == null) {
+          tempDir = FileUtils.createTempDir("vcfmerge", null, stdout ? null : vcfFile.getAbsoluteFile().getParentFile());
         }
-      };
-      while (posZip.hasNextPosition()) {
-        posZip.nextPosition(callback);
+        toMerge = mergeGroups(toMerge, maxInputs, tempDir, level, forceMerge, regions, executor);
+      }
+      merge(toMerge, vcfFile, new VcfWriterFactory(mFlags).addRunInfo(true), extraHeaderLines, forceMerge, regions, stats, executor);
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      if (tempDir != null && !FileUtils.deleteFiles(tempDir)) {
+        Diagnostic.warning("Could not delete intermediate directory: " + tempDir.getPath());
       }
-    } catch (final VcfFormatException iae) {
-      throw new NoTalkbackSlimException("Problem in VCF: " + iae.getMessage());
     }
-    merger.printWarningSummary();
     if (!stdout) {
       if (stats != null) {
         stats.printStatistics(out);
@@ -250,27 +237,108 @@ public class VcfMerge extends AbstractCli {
     return 0;
   }
 
+  // Merge groups of inputs into intermediate files, returning the files to be merged at the next level
+  private List<File> mergeGroups(List<File> inputs, int groupSize, File tempDir, int level, Set<String> forceMerge, ReferenceRanges<String> regions, ExecutorService executor) throws IOException {
+    final List<File> merged = new ArrayList<>();
+    for (int start = 0; start < inputs.size(); start += groupSize) {
+      final List<File> group = inputs.subList(start, Math.min(inputs.size(), start + groupSize));
+      if (group.size() == 1) {
+        merged.add(group.get(0));
+      } else {
+        final File intermediate = new File(tempDir, "level" + level + "_" + merged.size() + VcfUtils.VCF_SUFFIX + FileUtils.GZ_SUFFIX);
+        Diagnostic.userLog("Merging " + group.size() + " inputs into " + intermediate.getPath());
+        merge(group, intermediate, new VcfWriterFactory(), Collections.emptyList(), forceMerge, regions, null, executor);
+        merged.add(intermediate);
+      }
+    }
+    // Intermediate inputs from the previous level are no longer required
+    for (final File f : inputs) {
+      if (tempDir.equals(f.getParentFile()) && !merged.contains(f)) {
+        FileUtils.deleteFiles(TabixIndexer.indexFileName(f));
+        FileUtils.deleteFiles(f);
+      }
+    }
+    return merged;
+  }
+
+  private void merge(List<File> inputs, File vcfFile, VcfWriterFactory writerFactory, Collection<String> extraHeaderLines, Set<String> forceMerge, ReferenceRanges<String> regions, VariantStatistics stats, ExecutorService executor) throws IOException {
+    try (final VcfPositionZipper posZip = new VcfPositionZipper(regions, forceMerge, executor, inputs.toArray(new File[0]))) {
+      final VcfHeader header = posZip.getHeader();
+      VcfUtils.addHeaderLines(header, extraHeaderLines);
+
+      String defaultFormat = FORMAT_GENOTYPE;
+      if (header.getFormatField(FORMAT_GENOTYPE) == null && header.getFormatLines().size() > 0) {
+        defaultFormat = header.getFormatLines().get(0).getId();
+      }
+
+      final VcfRecordMerger merger;
+      if (mFlags.isSet(GT_MAJORITY)) {
+        if (!FORMAT_GENOTYPE.equals(defaultFormat)) {
+          throw new NoTalkbackSlimException("VCF header does not contain GT declaration");
+        }
+        merger = new VcfGtMajorityMerger();
+      } else if (mFlags.isSet(NO_ALT_MERGE)) {
+        merger = new VcfSameAltsMerger();
+      } else {
+        merger = new VcfRecordMerger();
+      }
+      merger.setHeader(header);
+      merger.setDefaultFormat(defaultFormat);
+      merger.setAllowMerging(!mFlags.isSet(NO_RECORD_MERGE));
+      merger.setPaddingAware(!mFlags.isSet(NON_PADDING_AWARE));
+      merger.setDropUnmergeable(!mFlags.isSet(PRESERVE_FORMATS));
+
+      try (final VcfWriter w = writerFactory.make(header, vcfFile)) {
+        final ZipperCallback callback = (records, headers) -> {
+          assert records.length > 0;
+          final VcfRecord[] mergedArr = merger.mergeRecords(records, headers);
+          for (VcfRecord merged : mergedArr) {
+            if (stats != null) {
+              stats.tallyVariant(header, merged);
+            }
+            w.write(merged);
+          }
+        };
+        while (posZip.hasNextPosition()) {
+          posZip.nextPosition(callback);
+        }
+      } catch (final VcfFormatException iae) {
+        throw new NoTalkbackSlimException("Problem in VCF: " + iae.getMessage());
+      }
+      merger.printWarningSummary();
+    }
+  }
+
   /**
    * This class will process multiple <code>VCF</code> files in order and call the appropriate callback
    * for each chromosome position encountered in any of the files. The callback receives all records that
-   * are present on that position (provided there is only 1 per file)
+   * are present on that position, in input file order. The inputs with the next position are found via a
+   * heap, and when an executor is supplied each input is read and parsed ahead on the executor.
    */
   static class VcfPositionZipper implements Closeable {
     final File[] mFiles;
     final VcfHeader[] mHeaders;
     final TabixIndexReader[] mIndexes;
     final List<ReferenceRanges<String>> mRegions;
-    final VcfReader[] mReaders;
+    final VcfIterator[] mReaders;
+    private final VcfRecord[] mNext;
+    private final PriorityQueue<Integer> mQueue;
+    private final ExecutorService mExecutor;
     private final VcfHeader mMergedHeader;
-    private int mCurrentRegion = 0;
-    private final Set<Integer> mCurrentRecords = new HashSet<>();
+    private int mCurrentRegion = -1;
 
     VcfPositionZipper(ReferenceRanges<String> rr, File... vcfFiles) throws IOException {
-      this(rr, null, vcfFiles);
+      this(rr, null, null, vcfFiles);
     }
-    VcfPositionZipper(ReferenceRanges<String> rr, Set<String> forceMerge, File... vcfFiles) throws IOException {
+    VcfPositionZipper(ReferenceRanges<String> rr, Set<String> forceMerge, ExecutorService executor, File... vcfFiles) throws IOException {
       mFiles = vcfFiles;
-      mReaders = new VcfReader[mFiles.length];
+      mExecutor = executor;
+      mReaders = new VcfIterator[mFiles.length];
+      mNext = new VcfRecord[mFiles.length];
+      mQueue = new PriorityQueue<>(Math.max(1, mFiles.length), (a, b) -> {
+        final int res = Integer.compare(mNext[a].getStart(), mNext[b].getStart());
+        return res != 0 ? res : Integer.compare(a, b);
+      });
       mHeaders = new VcfHeader[mFiles.length];
       mIndexes = new TabixIndexReader[mFiles.length];
       VcfHeader current = null;
@@ -290,13 +358,13 @@ public class VcfMerge extends AbstractCli {
           current = header;
           numSamples = current.getNumberOfSamples();
         }
-        final File index = TabixIndexer.indexFileName(vcfFile);
+        final File index = TabixIndexer.existingIndexFileName(vcfFile);
         if (!TabixIndexer.isBlockCompressed(vcfFile)) {
           throw new NoTalkbackSlimException(vcfFile + " is not in bgzip format");
         } else if (!index.exists()) {
           throw new NoTalkbackSlimException("Index not found for file: " + index.getPath() + " expected index called: " + index.getPath());
         }
-        mIndexes[i] = new TabixIndexReader(TabixIndexer.indexFileName(vcfFile));
+        mIndexes[i] = new TabixIndexReader(index);
       }
       mMergedHeader = current;
 
@@ -320,69 +388,65 @@ public class VcfMerge extends AbstractCli {
 
     @Override
     public void close() throws IOException {
-      for (final VcfReader reader : mReaders) {
-        if (reader != null) {
-          reader.close();
+      closeReaders();
+    }
+
+    private void closeReaders() throws IOException {
+      mQueue.clear();
+      for (int i = 0; i < mReaders.length; ++i) {
+        if (mReaders[i] != null) {
+          mReaders[i].close();
+          mReaders[i] = null;
         }
+        mNext[i] = null;
       }
     }
 
-
     public VcfHeader getHeader() {
       return mMergedHeader;
     }
 
-    private void populateNext() throws IOException {
-      boolean recordActive = false;
-      while (!recordActive && mCurrentRegion < mRegions.size()) {
-        int minPos = Integer.MAX_VALUE;
+    // Move to the next record of the given input, returning false if the input is exhausted
+    private boolean advance(int i) throws IOException {
+      mNext[i] = mReaders[i].hasNext() ? mReaders[i].next() : null;
+      return mNext[i] != null;
+    }
 
+    private void populateNext() throws IOException {
+      while (mQueue.isEmpty() && mCurrentRegion < mRegions.size() - 1) {
+        closeReaders();
+        ++mCurrentRegion;
         for (int i = 0; i < mReaders.length; ++i) {
-          if (mReaders[i] == null) {
-            mReaders[i] = new VcfReader(new VcfParser(), new TabixLineReader(mFiles[i], mIndexes[i], mRegions.get(mCurrentRegion)), mHeaders[i]);
-          }
-          if (mReaders[i].hasNext()) {
-            final int pos = mReaders[i].peek().getStart();
-            if (pos < minPos) {
-              minPos = pos;
-              mCurrentRecords.clear();
-              mCurrentRecords.add(i);
-              recordActive = true;
-            } else if (pos == minPos) {
-              mCurrentRecords.add(i);
-            }
-          }
+          final VcfReader reader = new VcfReader(new VcfParser(), new TabixLineReader(mFiles[i], mIndexes[i], mRegions.get(mCurrentRegion)), mHeaders[i]);
+          mReaders[i] = mExecutor == null ? reader : new PrefetchingVcfIterator(reader, mExecutor, PrefetchingVcfIterator.DEFAULT_BATCH_SIZE);
         }
-        if (!recordActive) {
-          ++mCurrentRegion;
-          for (int i = 0; i < mReaders.length; ++i) {
-            if (mReaders[i] != null) {
-              mReaders[i].close();
-            }
-            mReaders[i] = null;
+        for (int i = 0; i < mReaders.length; ++i) {
+          if (advance(i)) {
+            mQueue.add(i);
           }
         }
       }
     }
 
     public boolean hasNextPosition() {
-      return !mCurrentRecords.isEmpty();
+      return !mQueue.isEmpty();
     }
 
     public void nextPosition(ZipperCallback callback) throws IOException {
-      final ArrayList<VcfRecord> recs = new ArrayList<>(mCurrentRecords.size());
-      final ArrayList<VcfHeader> headers = new ArrayList<>(mCurrentRecords.size());
-      int position;
-      for (final int i : mCurrentRecords) {
+      final ArrayList<VcfRecord> recs = new ArrayList<>();
+      final ArrayList<VcfHeader> headers = new ArrayList<>();
+      final int position = mNext[mQueue.peek()].getStart();
+      while (!mQueue.isEmpty() && mNext[mQueue.peek()].getStart() == position) {
+        final int i = mQueue.poll();
         do {
-          final VcfRecord rec = mReaders[i].next();
-          position = rec.getStart();
-          recs.add(rec);
+          recs.add(mNext[i]);
           headers.add(mReaders[i].getHeader());
-        } while (mReaders[i].hasNext() && mReaders[i].peek().getStart() == position);
+        } while (advance(i) && mNext[i].getStart() == position);
+        if (mNext[i] != null) {
+          mQueue.add(i);
+        }
       }
       callback.vcfAtPosition(recs.toArray(new VcfRecord[0]), headers.toArray(new VcfHeader[0]));
-      mCurrentRecords.clear();
       populateNext();
     }
   }
@@ -35,8 +35,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.Arrays;
 
 import com.rtg.tabix.BrLineReader;
+import com.rtg.tabix.ByteLineReader;
 import com.rtg.tabix.LineReader;
 import com.rtg.util.StringUtils;
 import com.rtg.util.io.FileUtils;
@@ -56,6 +58,27 @@ public class VcfParser {
   private static final int FILTER_FIELD = 6;
   private static final int INFO_FIELD = 7;
 
+  private final boolean mLazy;
+  // Records are usually grouped by sequence, so reuse the previous sequence name where possible
+  private String mLastSequence = "";
+
+  /**
+   * Construct a parser that fully decodes each record.
+   */
+  public VcfParser() {
+    this(false);
+  }
+
+  /**
+   * Construct a parser, optionally deferring decoding of the INFO, FORMAT and sample columns. When lazy, those
+   * columns are retained as text and only decoded when first accessed, and records where they are not accessed
+   * are written back out verbatim. This greatly reduces the parsing cost for tools that pass most records through
+   * untouched, at the expense of errors within those columns being reported when they are accessed.
+   * @param lazy true if decoding of INFO, FORMAT and sample columns should be deferred until first access
+   */
+  public VcfParser(boolean lazy) {
+    mLazy = lazy;
+  }
 
   /**
    * Parse the header from a file.
@@ -115,7 +138,7 @@ public class VcfParser {
    * @return the corresponding record
    */
   public VcfRecord parseLine(String line) {
-    return parseFields(StringUtils.split(line, '\t'));
+    return mLazy ? parseLazily(line) : parseFields(StringUtils.split(line, '\t'));
   }
 
   /**
@@ -127,12 +150,134 @@ public class VcfParser {
     if (field.length < 8) {
       throw new VcfFormatException("Expected at least 8 fields");
     }
-    for (int i = 0; i < field.length; i++) {
+    if (mLazy) {
+      final String samples = field.length > 9 ? StringUtils.join(StringUtils.TAB, Arrays.copyOfRange(field, 8, field.length)) : null;
+      return parseLazily(field, samples, Math.max(0, field.length - 9));
+    }
+    checkNotEmpty(field, 0, field.length, 0);
+    final VcfRecord rec = parseFixedFields(field);
+    parseInfo(rec, field[INFO_FIELD]);
+    rec.setNumberOfSamples(0);
+    // now parse each sample field.
+    if (field.length > 8) {
+      parseSamples(rec, field, 8);
+    }
+    return rec;
+  }
+
+  /**
+   * Turn a line of <code>VCF</code> held in a byte array into a {@link VcfRecord}. When parsing lazily, the fields
+   * are located directly within the bytes, and only those needed by the record are converted into strings.
+   * @param buf buffer containing the line
+   * @param start offset of the start of the line
+   * @param end offset of the end of the line (exclusive)
+   * @return the corresponding record
+   */
+  public VcfRecord parseLine(byte[] buf, int start, int end) {
+    if (!mLazy) {
+      // Every field will be needed, and splitting a string is at least as fast as working from bytes
+      return parseLine(ByteLineReader.toString(buf, start, end));
+    }
+    final String[] field = new String[INFO_FIELD + 1];
+    int fieldStart = start;
+    int fieldEnd = start;
+    for (int i = 0; i < field.length; ++i) {
+      fieldEnd = fieldStart;
+      while (fieldEnd < end && buf[fieldEnd] != '\t') {
+        ++fieldEnd;
+      }
+      if (fieldEnd == end && i < INFO_FIELD) {
+        throw new VcfFormatException("Expected at least 8 fields");
+      }
+      field[i] = i == CHROM_FIELD ? sequenceName(buf, fieldStart, fieldEnd) : fieldString(buf, fieldStart, fieldEnd);
+      fieldStart = fieldEnd + 1;
+    }
+    if (fieldEnd == end) {
+      return parseLazily(field, null, 0);
+    }
+    int numSamples = 0;
+    for (int i = fieldStart; i < end; ++i) {
+      if (buf[i] == '\t') {
+        ++numSamples;
+      }
+    }
+    if (numSamples == 0) {
+      throw new VcfFormatException("Format field exists without sample fields");
+    }
+    return parseLazily(field, ByteLineReader.toString(buf, fieldStart, end), numSamples);
+  }
+
+  private static String fieldString(byte[] buf, int start, int end) {
+    return end - start == 1 && buf[start] == VcfUtils.MISSING_VALUE ? VcfRecord.MISSING : ByteLineReader.toString(buf, start, end);
+  }
+
+  private String sequenceName(byte[] buf, int start, int end) {
+    final String last = mLastSequence;
+    if (last.length() == end - start) {
+      int i = 0;
+      while (i < last.length() && last.charAt(i) == buf[start + i]) {
+        ++i;
+      }
+      if (i == last.length()) {
+        return last;
+      }
+    }
+    final String name = ByteLineReader.toString(buf, start, end);
+    mLastSequence = name;
+    return name;
+  }
+
+  // Splits out only the fixed columns, leaving the FORMAT and sample columns as a single string
+  private VcfRecord parseLazily(String line) {
+    final String[] field = new String[INFO_FIELD + 1];
+    int start = 0;
+    int end = -1;
+    for (int i = 0; i < field.length; ++i) {
+      end = line.indexOf('\t', start);
+      if (end == -1) {
+        if (i < INFO_FIELD) {
+          throw new VcfFormatException("Expected at least 8 fields");
+        }
+        field[i] = line.substring(start);
+      } else {
+        field[i] = line.substring(start, end);
+        start = end + 1;
+      }
+    }
+    if (end == -1) {
+      return parseLazily(field, null, 0);
+    }
+    int numSamples = 0;
+    for (int i = start; i < line.length(); ++i) {
+      if (line.charAt(i) == '\t') {
+        ++numSamples;
+      }
+    }
+    if (numSamples == 0) {
+      throw new VcfFormatException("Format field exists without sample fields");
+    }
+    return parseLazily(field, line.substring(start), numSamples);
+  }
+
+  private VcfRecord parseLazily(String[] field, String samples, int numSamples) {
+    checkNotEmpty(field, 0, INFO_FIELD + 1, 0);
+    if (field.length == 9) {
+      throw new VcfFormatException("Format field exists without sample fields");
+    }
+    final VcfRecord rec = parseFixedFields(field);
+    rec.setUndecoded(VcfRecord.MISSING.equals(field[INFO_FIELD]) ? null : field[INFO_FIELD], samples, numSamples);
+    return rec;
+  }
+
+  private static void checkNotEmpty(String[] field, int start, int end, int columnOffset) {
+    for (int i = start; i < end; ++i) {
       if (field[i].trim().length() == 0) {
-        throw new VcfFormatException("Field in column " + (i + 1) + " is empty");
+        throw new VcfFormatException("Field in column " + (i + columnOffset + 1) + " is empty");
       }
     }
+  }
 
+  private static VcfRecord parseFixedFields(String[] field) {
     final int pos;
     try {
       pos = Integer.parseInt(field[POS_FIELD]) - 1;
@@ -161,8 +306,17 @@ public class VcfParser {
         rec.addFilter(aFilterSplit);
       }
     }
-    if (!VcfRecord.MISSING.equals(field[INFO_FIELD])) {
-      final String[] infoSplit = StringUtils.split(field[INFO_FIELD], ';');
+    return rec;
+  }
+
+  /**
+   * Decode the INFO column into a record
+   * @param rec the record to add the INFO fields to
+   * @param info the contents of the INFO column
+   */
+  static void parseInfo(VcfRecord rec, String info) {
+    if (!VcfRecord.MISSING.equals(info)) {
+      final String[] infoSplit = StringUtils.split(info, ';');
       for (final String anInfoSplit : infoSplit) {
         final String[] singleInfoSplit = StringUtils.split(anInfoSplit, '=', 2);
         final String key = singleInfoSplit[0];
@@ -176,33 +330,50 @@ public class VcfParser {
         }
       }
     }
-    rec.setNumberOfSamples(0);
-    // now parse each sample field.
-    if (field.length > 8) {
-      if (field.length == 9) {
-        throw new VcfFormatException("Format field exists without sample fields");
-      }
-      final String[] formatFields = StringUtils.split(field[8], ':');
-      rec.setNumberOfSamples(field.length - 9);
-      for (final String key : formatFields) {
-        if (rec.hasFormat(key)) {
-          throw new VcfFormatException("Duplicate FORMAT field: " + key);
-        }
-        rec.addFormat(key);
+  }
+
+  /**
+   * Decode the FORMAT and sample columns retained by a lazily parsed record
+   * @param rec the record to add the sample fields to
+   * @param samples the FORMAT column and sample columns, tab separated
+   */
+  static void parseSamples(VcfRecord rec, String samples) {
+    final String[] field = StringUtils.split(samples, '\t');
+    checkNotEmpty(field, 0, field.length, 8);
+    parseSamples(rec, field, 0);
+  }
+
+  /**
+   * Decode the FORMAT and sample columns into a record
+   * @param rec the record to add the sample fields to
+   * @param field array containing the FORMAT column followed by the sample columns
+   * @param formatColumn index of the FORMAT column within the array
+   */
+  static void parseSamples(VcfRecord rec, String[] field, int formatColumn) {
+    if (field.length == formatColumn + 1) {
+      throw new VcfFormatException("Format field exists without sample fields");
+    }
+    // Column numbers in messages are relative to the full record
+    final int columnOffset = 8 - formatColumn;
+    final String[] formatFields = StringUtils.split(field[formatColumn], ':');
+    rec.setNumberOfSamples(field.length - formatColumn - 1);
+    for (final String key : formatFields) {
+      if (rec.hasFormat(key)) {
+        throw new VcfFormatException("Duplicate FORMAT field: " + key);
       }
-      for (int sample = 9; sample < field.length; ++sample) {
-        final String[] formatValues = StringUtils.split(field[sample], ':');
-        if (formatValues.length > formatFields.length) {
-          throw new VcfFormatException("Column " + (sample + 1) + " does not have the same number of values as specified in the format column. Field=" + field[sample]);
-        }
-        for (int i = 0; i < formatValues.length; ++i) {
-          rec.addFormatAndSample(formatFields[i], formatValues[i]);
-        }
-        for (int i = formatValues.length; i < formatFields.length; ++i) {
-          rec.addFormatAndSample(formatFields[i], VcfRecord.MISSING);
-        }
+      rec.addFormat(key);
+    }
+    for (int sample = formatColumn + 1; sample < field.length; ++sample) {
+      final String[] formatValues = StringUtils.split(field[sample], ':');
+      if (formatValues.length > formatFields.length) {
+        throw new VcfFormatException("Column " + (sample + columnOffset + 1) + " does not have the same number of values as specified in the format column. Field=" + field[sample]);
+      }
+      for (int i = 0; i < formatValues.length; ++i) {
+        rec.addFormatAndSample(formatFields[i], formatValues[i]);
+      }
+      for (int i = formatValues.length; i < formatFields.length; ++i) {
+        rec.addFormatAndSample(formatFields[i], VcfRecord.MISSING);
       }
     }
-    return rec;
   }
 }
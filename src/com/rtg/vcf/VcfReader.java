@@ -34,9 +34,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.function.Consumer;
 
-import com.rtg.tabix.BrLineReader;
+import com.rtg.tabix.ByteLineReader;
 import com.rtg.tabix.LineReader;
 import com.rtg.util.cli.CFlags;
+import com.rtg.util.diagnostic.SpyCounter;
 import com.rtg.util.intervals.ReferenceRanges;
 import com.rtg.util.intervals.RegionRestriction;
 import com.rtg.util.io.IOIterator;
@@ -47,14 +48,17 @@ import com.rtg.vcf.header.VcfHeader;
  */
 public class VcfReader implements VcfIterator {
 
+  private static final SpyCounter RECORDS = new SpyCounter("VcfReader.records");
+
   private final VcfParser mParser;
   private final LineReader mIn;
+  private final ByteLineReader mBytes; // Non-null when records can be parsed directly from bytes
   private final VcfHeader mHeader;
   private final int mNumSamples;
   private VcfRecord mCurrent;
 
   // Constructor for use by VcfReaderFactory
-  VcfReader(VcfParser parser, BrLineReader in) throws IOException {
+  VcfReader(VcfParser parser, LineReader in) throws IOException {
     this(parser, in, parser.parseHeader(in));
   }
 
@@ -68,6 +72,7 @@ public class VcfReader implements VcfIterator {
   VcfReader(VcfParser parser, LineReader reader, VcfHeader header) throws IOException {
     mParser = parser;
     mIn = reader;
+    mBytes = reader instanceof ByteLineReader ? (ByteLineReader) reader : null;
     mHeader = header;
     mNumSamples = mHeader.getNumberOfSamples();
     setNext();
@@ -155,6 +160,20 @@ public class VcfReader implements VcfIterator {
    * @throws IOException when IO or format errors occur.
    */
   private boolean setNext() throws IOException {
+    if (mBytes != null) {
+      if (!mBytes.nextLine()) {
+        mCurrent = null;
+        return false;
+      }
+      try {
+        mCurrent = mParser.parseLine(mBytes.buffer(), mBytes.lineStart(), mBytes.lineEnd());
+        checkNumberOfSamples();
+        RECORDS.increment();
+      } catch (final VcfFormatException e) {
+        throw new VcfFormatException("Invalid VCF record. " + e.getMessage() + " on line:" + mBytes.line()); // Add context information
+      }
+      return true;
+    }
     final String line = mIn.readLine();
     if (line == null) {
       mCurrent = null;
@@ -162,15 +181,20 @@ public class VcfReader implements VcfIterator {
     }
     try {
       mCurrent = mParser.parseLine(line);
-      if (mCurrent.getNumberOfSamples() != mNumSamples) {
-        throw new VcfFormatException("Expected " + mNumSamples + " samples, but there were " + mCurrent.getNumberOfSamples());
-      }
+      checkNumberOfSamples();
+      RECORDS.increment();
     } catch (final VcfFormatException e) {
       throw new VcfFormatException("Invalid VCF record. " + e.getMessage() + " on line:" + line); // Add context information
     }
     return true;
   }
 
+  private void checkNumberOfSamples() {
+    if (mCurrent.getNumberOfSamples() != mNumSamples) {
+      throw new VcfFormatException("Expected " + mNumSamples + " samples, but there were " + mCurrent.getNumberOfSamples());
+    }
+  }
+
   /**
    * closes internal streams
    * @throws IOException if an IO error occurs
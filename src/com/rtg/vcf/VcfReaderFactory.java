@@ -34,12 +34,13 @@ import static com.rtg.launcher.CommonFlags.INPUT_FLAG;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 
 import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.launcher.CommonFlags;
+import com.rtg.sam.BgzfInputStream;
 import com.rtg.sam.SamRangeUtils;
 import com.rtg.tabix.BrLineReader;
+import com.rtg.tabix.ByteLineReader;
 import com.rtg.tabix.TabixIndexer;
 import com.rtg.tabix.TabixLineReader;
 import com.rtg.util.cli.CFlags;
@@ -119,12 +120,12 @@ public class VcfReaderFactory {
   public VcfReader make(File f) throws IOException {
     final VcfReader vcfr;
     if (mRegions == null || mRegions.allAvailable()) {
-      vcfr = new VcfReader(mParser, new BrLineReader(new BufferedReader(new InputStreamReader(FileUtils.createInputStream(f, true)))));
+      vcfr = new VcfReader(mParser, new ByteLineReader(BgzfInputStream.createInputStream(f)));
     } else {
       if (FileUtils.isStdio(f)) {
         throw new IOException("Cannot apply region restrictions when reading VCF from stdin");
       }
-      vcfr = new VcfReader(mParser, new TabixLineReader(f, TabixIndexer.indexFileName(f), mRegions), mParser.parseHeader(f));
+      vcfr = new VcfReader(mParser, new TabixLineReader(f, TabixIndexer.existingIndexFileName(f), mRegions), mParser.parseHeader(f));
     }
     return vcfr;
   }
@@ -85,6 +85,11 @@ public class VcfRecord implements SequenceNameLocus {
    */
   private final Map<String, ArrayList<String>> mFormatAndSample;
 
+  // When parsed lazily, the text of the INFO column and of the FORMAT and sample columns, prior to decoding.
+  // Each is set to null once decoded into the corresponding map above.
+  private String mRawInfo;
+  private String mRawSamples;
+
   /**
    * Construct a new standard (non gVCF) VcfRecord
    * @param sequence the sequence name
@@ -115,6 +120,8 @@ public class VcfRecord implements SequenceNameLocus {
     mAltCalls = new ArrayList<>(rec.mAltCalls);
     mFilters = new ArrayList<>(rec.mFilters);
     mInfo = new LinkedHashMap<>(rec.mInfo);
+    mRawInfo = rec.mRawInfo;
+    mRawSamples = rec.mRawSamples;
     mFormatAndSample = new LinkedHashMap<>(rec.mFormatAndSample.size());
     for (Entry<String, ArrayList<String>> e : rec.mFormatAndSample.entrySet()) {
       mFormatAndSample.put(e.getKey(), new ArrayList<>(e.getValue()));
@@ -124,6 +131,45 @@ public class VcfRecord implements SequenceNameLocus {
     mNumSamples = rec.mNumSamples;
   }
 
+  /**
+   * Retain the INFO and sample columns undecoded, to be decoded upon first access.
+   * @param info the text of the INFO column, or null if there are no INFO fields
+   * @param samples the text of the FORMAT and sample columns, or null if there are no samples
+   * @param numSamples the number of sample columns
+   */
+  void setUndecoded(String info, String samples, int numSamples) {
+    assert mInfo.isEmpty() && mFormatAndSample.isEmpty();
+    mRawInfo = info;
+    mRawSamples = samples;
+    mNumSamples = numSamples;
+  }
+
+  private Map<String, String> info() {
+    if (mRawInfo != null) {
+      final String info = mRawInfo;
+      mRawInfo = null;
+      try {
+        VcfParser.parseInfo(this, info);
+      } catch (final VcfFormatException e) {
+        throw new VcfFormatException("Invalid VCF record. " + e.getMessage() + " at " + getSequenceName() + ":" + getOneBasedStart());
+      }
+    }
+    return mInfo;
+  }
+
+  private Map<String, ArrayList<String>> formatAndSample() {
+    if (mRawSamples != null) {
+      final String samples = mRawSamples;
+      mRawSamples = null;
+      try {
+        VcfParser.parseSamples(this, samples);
+      } catch (final VcfFormatException e) {
+        throw new VcfFormatException("Invalid VCF record. " + e.getMessage() + " at " + getSequenceName() + ":" + getOneBasedStart());
+      }
+    }
+    return mFormatAndSample;
+  }
+
   @Override
   public String getSequenceName() {
     return mSequence;
@@ -327,7 +373,7 @@ public class VcfRecord implements SequenceNameLocus {
    * @return this, for call chaining
    */
   public VcfRecord addSampleFilter(String filter, int sampleIndex) {
-    final List<String> filters = mFormatAndSample.computeIfAbsent(VcfUtils.FORMAT_FILTER, l -> new ArrayList<>());
+    final List<String> filters = formatAndSample().computeIfAbsent(VcfUtils.FORMAT_FILTER, l -> new ArrayList<>());
     while (filters.size() < mNumSamples) {
       filters.add(MISSING);
     }
@@ -353,14 +399,14 @@ public class VcfRecord implements SequenceNameLocus {
    * @return true if the info field is contained in this record
    */
   public boolean hasInfo(String key) {
-    return mInfo.containsKey(key);
+    return info().containsKey(key);
   }
 
   /**
    * @return info fields (should be treated as read-only).
    */
   public Map<String, String> getInfo() {
-    return mInfo;
+    return info();
   }
 
   /**
@@ -369,7 +415,7 @@ public class VcfRecord implements SequenceNameLocus {
    * @return null if the key is not present, otherwise the value associated with the key.
    */
   public String getInfo(String key) {
-    return mInfo.get(key);
+    return info().get(key);
   }
 
   /**
@@ -378,7 +424,7 @@ public class VcfRecord implements SequenceNameLocus {
    * @return null if the key is not present, otherwise the values associated with the key.
    */
   public String[] getInfoSplit(String key) {
-    final String r = mInfo.get(key);
+    final String r = info().get(key);
     return r == null ? null : r.length() == 0 ? EMPTY : StringUtils.split(r, ',');
   }
 
@@ -389,12 +435,13 @@ public class VcfRecord implements SequenceNameLocus {
    * @return this, for call chaining
    */
   public VcfRecord addInfo(String key, String... values) {
-    final String old = mInfo.get(key);
+    final Map<String, String> info = info();
+    final String old = info.get(key);
     if (values == null) {
-      mInfo.put(key, old == null ? "" : old);
+      info.put(key, old == null ? "" : old);
     } else {
       final String joined = StringUtils.join(ALT_CALL_INFO_SEPARATOR, values);
-      mInfo.put(key, old == null || old.length() == 0 ? joined : StringUtils.join(ALT_CALL_INFO_SEPARATOR, old, joined));
+      info.put(key, old == null || old.length() == 0 ? joined : StringUtils.join(ALT_CALL_INFO_SEPARATOR, old, joined));
     }
     return this;
   }
@@ -406,7 +453,7 @@ public class VcfRecord implements SequenceNameLocus {
    * @return this, for call chaining
    */
   public VcfRecord setInfo(String key, String... values) {
-    mInfo.put(key, values == null ? "" : StringUtils.join(ALT_CALL_INFO_SEPARATOR, values));
+    info().put(key, values == null ? "" : StringUtils.join(ALT_CALL_INFO_SEPARATOR, values));
     return this;
   }
 
@@ -416,7 +463,7 @@ public class VcfRecord implements SequenceNameLocus {
    * @return this, for call chaining
    */
   public VcfRecord removeInfo(final String key) {
-    mInfo.remove(key);
+    info().remove(key);
     return this;
   }
 
@@ -426,14 +473,14 @@ public class VcfRecord implements SequenceNameLocus {
    * @return format keywords mapped to sample values (should be treated as read-only).
    */
   public Map<String, ArrayList<String>> getFormatAndSample() {
-    return mFormatAndSample;
+    return formatAndSample();
   }
 
   /**
    * @return a set of the format ids used in this record
    */
   public Set<String> getFormats() {
-    return mFormatAndSample.keySet();
+    return formatAndSample().keySet();
   }
 
   /**
@@ -442,7 +489,7 @@ public class VcfRecord implements SequenceNameLocus {
    * @return true if the format field is contained in this record
    */
   public boolean hasFormat(String key) {
-    return mFormatAndSample.containsKey(key);
+    return formatAndSample().containsKey(key);
   }
 
   /**
@@ -450,7 +497,7 @@ public class VcfRecord implements SequenceNameLocus {
    * @param key format value
    */
   public void removeFormat(String key) {
-    mFormatAndSample.remove(key);
+    formatAndSample().remove(key);
   }
 
   /**
@@ -459,7 +506,7 @@ public class VcfRecord implements SequenceNameLocus {
    * @return the sample values for this format field
    */
   public List<String> getFormat(String key) {
-    return mFormatAndSample.get(key);
+    return formatAndSample().get(key);
   }
 
   /**
@@ -474,16 +521,17 @@ public class VcfRecord implements SequenceNameLocus {
 
   // Ensures that GT is first
   private List<String> addOrGetFormat(String key) {
-    ArrayList<String> ret = mFormatAndSample.get(key);
+    final Map<String, ArrayList<String>> formatAndSample = formatAndSample();
+    ArrayList<String> ret = formatAndSample.get(key);
     if (ret == null) {
       ret = new ArrayList<>();
-      if (!mFormatAndSample.isEmpty() && VcfUtils.FORMAT_GENOTYPE.equals(key)) {
-        final LinkedHashMap<String, ArrayList<String>> prev = new LinkedHashMap<>(mFormatAndSample);
-        mFormatAndSample.clear();
-        mFormatAndSample.put(key, ret);
-        mFormatAndSample.putAll(prev);
+      if (!formatAndSample.isEmpty() && VcfUtils.FORMAT_GENOTYPE.equals(key)) {
+        final LinkedHashMap<String, ArrayList<String>> prev = new LinkedHashMap<>(formatAndSample);
+        formatAndSample.clear();
+        formatAndSample.put(key, ret);
+        formatAndSample.putAll(prev);
       } else {
-        mFormatAndSample.put(key, ret);
+        formatAndSample.put(key, ret);
       }
     }
     return ret;
@@ -530,7 +578,7 @@ public class VcfRecord implements SequenceNameLocus {
   public VcfRecord setFormatAndSample(String key, String val, int sampleIndex) {
     assert sampleIndex < mNumSamples : "Invalid sample index: " + sampleIndex;
     final List<String> vals;
-    if (mFormatAndSample.containsKey(key)) {
+    if (hasFormat(key)) {
       vals = mFormatAndSample.get(key);
     } else {
       vals = addOrGetFormat(key);
@@ -546,6 +594,7 @@ public class VcfRecord implements SequenceNameLocus {
    */
   public VcfRecord removeSamples() {
     mNumSamples = 0;
+    mRawSamples = null;
     mFormatAndSample.clear();
     return this;
   }
@@ -556,8 +605,8 @@ public class VcfRecord implements SequenceNameLocus {
    * @return this, for chain calling
    */
   public VcfRecord padFormatAndSample(String key) {
-    if (mFormatAndSample.containsKey(key)) {
-      final ArrayList<String> list = mFormatAndSample.get(key);
+    final ArrayList<String> list = formatAndSample().get(key);
+    if (list != null) {
       while (list.size() < mNumSamples) {
         list.add(MISSING);
       }
@@ -578,6 +627,7 @@ public class VcfRecord implements SequenceNameLocus {
    * @return this, for chain calling
    */
   public VcfRecord setNumberOfSamples(int num) {
+    formatAndSample();
     mNumSamples = num;
     return this;
   }
@@ -599,7 +649,12 @@ public class VcfRecord implements SequenceNameLocus {
     sb.append(TAB);
     sb.append(formatFilterField(mFilters));
     sb.append(TAB);
-    sb.append(formatInfoField());
+    sb.append(mRawInfo != null ? mRawInfo : formatInfoField());
+    if (mRawSamples != null) {
+      sb.append(TAB);
+      sb.append(mRawSamples);
+      return sb.toString();
+    }
     validateNumberOfSamples();
     if (mNumSamples > 0) {
       sb.append(TAB);
@@ -622,7 +677,7 @@ public class VcfRecord implements SequenceNameLocus {
   private void validateNumberOfSamples() {
     int firstCount = 0;
     boolean first = true;
-    for (final Entry<String, ArrayList<String>> formatField : mFormatAndSample.entrySet()) {
+    for (final Entry<String, ArrayList<String>> formatField : formatAndSample().entrySet()) {
       final int currentCount = formatField.getValue().size();
       if (first) {
         firstCount = currentCount;
@@ -640,9 +695,9 @@ public class VcfRecord implements SequenceNameLocus {
 
   private String formatInfoField() {
     final StringBuilder sb = new StringBuilder();
-    for (final String key : mInfo.keySet()) {
-      sb.append(key);
-      final String value = getInfo(key);
+    for (final Entry<String, String> e : info().entrySet()) {
+      sb.append(e.getKey());
+      final String value = e.getValue();
       if (value.length() > 0) {
         sb.append("=")
           .append(value);
@@ -694,7 +749,7 @@ public class VcfRecord implements SequenceNameLocus {
    * @return value as a String or null if not specified
    */
   public String getSampleString(int sampleNumber, String formatField) {
-    final ArrayList<String> samples = mFormatAndSample.get(formatField);
+    final ArrayList<String> samples = formatAndSample().get(formatField);
     if (samples != null) {
       return samples.get(sampleNumber);
     }
@@ -316,7 +316,7 @@ public class VcfSubset extends AbstractCli {
 
     final File vcfFile = VcfUtils.getZippedVcfFileName(gzip, output);
     final VcfSampleStripperFactory sampleStripperFact = new VcfSampleStripperFactory(mFlags);
-    try (final VcfReader reader = new VcfReaderFactory(mFlags).parser(new VcfSubsetParser(sampleStripperFact)).make(mFlags)) {
+    try (final VcfReader reader = new VcfReaderFactory(mFlags).parser(new VcfSubsetParser(sampleStripperFact, true)).make(mFlags)) {
       final VcfHeader header = reader.getHeader();
 
       addAnnotatorFromFlags(annotators, new VcfInfoStripperFactory(mFlags), header);
@@ -31,8 +31,10 @@
 package com.rtg.vcf;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
+import com.rtg.tabix.ByteLineReader;
 import com.rtg.tabix.LineReader;
 import com.rtg.vcf.header.VcfHeader;
 
@@ -48,6 +50,11 @@ public class VcfSubsetParser extends VcfParser {
 
 
   VcfSubsetParser(VcfSubset.VcfSampleStripperFactory factory) {
+    this(factory, false);
+  }
+
+  VcfSubsetParser(VcfSubset.VcfSampleStripperFactory factory, boolean lazy) {
+    super(lazy);
     mFactory = factory;
   }
 
@@ -95,13 +102,27 @@ public class VcfSubsetParser extends VcfParser {
   }
 
   static String[] split(String src, int[] samplesToKeep) {
+    final byte[] buf = src.getBytes(StandardCharsets.UTF_8);
+    return split(buf, 0, buf.length, samplesToKeep);
+  }
+
+  /**
+   * Split a line into its fixed columns and the retained sample columns, locating the columns directly within
+   * the bytes of the line, so that only the retained columns are converted into strings.
+   * @param buf buffer containing the line
+   * @param start offset of the start of the line
+   * @param end offset of the end of the line (exclusive)
+   * @param samplesToKeep indexes of the sample columns to retain
+   * @return the retained columns
+   */
+  static String[] split(byte[] buf, int start, int end, int[] samplesToKeep) {
     final int outcols = samplesToKeep.length == 0 ? 8 : (9 + samplesToKeep.length);
     final String[] output = new String[outcols];
     int outcol = 0;
     int index;
-    int lindex = 0;
-    while ((index = src.indexOf('\t', lindex)) != -1 && outcol < 8) { // Get up to INFO
-      output[outcol++] = src.substring(lindex, index);
+    int lindex = start;
+    while ((index = indexOfTab(buf, lindex, end)) != -1 && outcol < 8) { // Get up to INFO
+      output[outcol++] = ByteLineReader.toString(buf, lindex, index);
       lindex = index + 1;
     }
     if (outcol < 7) {
@@ -112,24 +133,24 @@ public class VcfSubsetParser extends VcfParser {
       if (samplesToKeep.length > 0) {
         throw new VcfFormatException("Expected FORMAT field and samples");
       }
-      output[outcol] = src.substring(lindex);
+      output[outcol] = ByteLineReader.toString(buf, lindex, end);
       return output; // Done, we were not expecting further samples
     } else if (samplesToKeep.length == 0) {
       return output;
     }
 
-    index = src.indexOf('\t', lindex);
+    index = indexOfTab(buf, lindex, end);
     if (index == -1) { // 8th column is last
       throw new VcfFormatException("Format field exists without sample fields");
     }
-    output[outcol++] = src.substring(lindex, index); // This is the FORMAT field
+    output[outcol++] = ByteLineReader.toString(buf, lindex, index); // This is the FORMAT field
     lindex = index + 1;
 
     // Collect sample columns
     int sidx = 0;
-    while ((index = src.indexOf('\t', lindex)) != -1 && outcol < output.length) { // Get up to INFO
+    while ((index = indexOfTab(buf, lindex, end)) != -1 && outcol < output.length) {
       if (sidx == samplesToKeep[outcol - 9]) {
-        output[outcol++] = src.substring(lindex, index);
+        output[outcol++] = ByteLineReader.toString(buf, lindex, index);
         if (outcol == output.length) { // Got all we wanted
           return output;
         }
@@ -138,12 +159,21 @@ public class VcfSubsetParser extends VcfParser {
       lindex = index + 1;
     }
     if (index == -1 && sidx == samplesToKeep[outcol - 9]) {
-      output[outcol] = src.substring(lindex); // we wanted that last sample
+      output[outcol] = ByteLineReader.toString(buf, lindex, end); // we wanted that last sample
       return output;
     }
     throw new VcfFormatException("Expected at least 8 fields");
   }
 
+  private static int indexOfTab(byte[] buf, int start, int end) {
+    for (int i = start; i < end; ++i) {
+      if (buf[i] == '\t') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   @Override
   public VcfRecord parseLine(String line) {
     if (mSamplesToKeep == null) {
@@ -154,4 +184,15 @@ public class VcfSubsetParser extends VcfParser {
       return parseFields(split(line));
     }
   }
+
+  @Override
+  public VcfRecord parseLine(byte[] buf, int start, int end) {
+    if (mSamplesToKeep == null) {
+      throw new IllegalStateException("parseHeader() has not been called!");
+    } else if (mSamplesToKeep == SENTINEL) {
+      return super.parseLine(buf, start, end);
+    } else {
+      return parseFields(split(buf, start, end, mSamplesToKeep));
+    }
+  }
 }
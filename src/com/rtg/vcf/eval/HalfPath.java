@@ -84,6 +84,33 @@ public final class HalfPath implements Comparable<HalfPath> {
     mIncludedVariantEndPosition = path.mIncludedVariantEndPosition;
   }
 
+  /**
+   * Construct a <code>HalfPath</code> whose included and excluded variants are those of each of the supplied
+   * half paths in turn, and whose playback state is that of the last of them.
+   * @param paths finished half paths over consecutive independent windows of the same template
+   * @return the concatenated half path
+   */
+  static HalfPath concatenate(List<HalfPath> paths) {
+    assert paths.size() > 0;
+    final HalfPath result = new HalfPath(paths.get(paths.size() - 1));
+    result.mIncluded = paths.get(0).mIncluded;
+    result.mExcluded = paths.get(0).mExcluded;
+    for (int i = 1; i < paths.size(); ++i) {
+      result.mIncluded = append(result.mIncluded, paths.get(i).mIncluded);
+      result.mExcluded = append(result.mExcluded, paths.get(i).mExcluded);
+    }
+    return result;
+  }
+
+  // Lists are held most recent first, so the later entries go on the front, oldest first
+  private static <T> BasicLinkedListNode<T> append(BasicLinkedListNode<T> earlier, BasicLinkedListNode<T> later) {
+    BasicLinkedListNode<T> result = earlier;
+    for (final T v : BasicLinkedListNode.toReversedList(later)) {
+      result = new BasicLinkedListNode<>(v, result);
+    }
+    return result;
+  }
+
   String dumpHaplotypes() {
     return dumpHaplotypes(new Range(0, mHaplotypes[0].mTemplate.length));
   }
@@ -33,6 +33,7 @@ import java.io.File;
 import java.util.List;
 
 import com.reeltwo.jumble.annotations.JumbleIgnore;
+import com.rtg.vcf.VcfRecord;
 
 /**
  * A simple holder for loaded results plus stats about how many variants were skipped.
@@ -43,6 +44,7 @@ class LoadedVariants {
   final int mSkippedDuringLoading;
   final List<Variant> mVariants;
   final File mPreprocessed;
+  final List<VcfRecord> mRecords;
 
   /**
    * Construct the holder
@@ -51,8 +53,20 @@ class LoadedVariants {
    * @param preprocessed a File containing preprocessed variants, or null if no preprocessing was done
    */
   LoadedVariants(List<Variant> variants, int skipped, File preprocessed) {
+    this(variants, skipped, preprocessed, null);
+  }
+
+  /**
+   * Construct the holder
+   * @param variants the variants that were loaded
+   * @param skipped a count of the number of variants skipped during loading
+   * @param preprocessed a File containing preprocessed variants, or null if no preprocessing was done
+   * @param records all the (preprocessed) records that were read, or null if records were not retained
+   */
+  LoadedVariants(List<Variant> variants, int skipped, File preprocessed, List<VcfRecord> records) {
     mVariants = variants;
     mSkippedDuringLoading = skipped;
     mPreprocessed = preprocessed;
+    mRecords = records;
   }
 }
@@ -184,6 +184,38 @@ public final class Path implements Comparable<Path> {
     mEquivalents = parent.mEquivalents;
   }
 
+  private Path(HalfPath calledPath, HalfPath baselinePath, BasicLinkedListNode<Integer> syncPoints) {
+    mCalledPath = calledPath;
+    mBaselinePath = baselinePath;
+    mSyncPointList = syncPoints;
+  }
+
+  /**
+   * Stitch together the best paths found over consecutive independent windows of the same template
+   * into a single path, equivalent to that which would have been found over the whole template.
+   * @param windows finished best paths, in template order
+   * @return the combined path
+   */
+  static Path concatenate(List<Path> windows) {
+    assert windows.size() > 0;
+    final List<HalfPath> called = new ArrayList<>(windows.size());
+    final List<HalfPath> baseline = new ArrayList<>(windows.size());
+    BasicLinkedListNode<Integer> syncPoints = null;
+    for (int i = 0; i < windows.size(); ++i) {
+      final Path window = windows.get(i);
+      assert window.finished();
+      called.add(window.mCalledPath);
+      baseline.add(window.mBaselinePath);
+      // Every window ends with a sync point at the end of the template, only the final one is retained
+      final List<Integer> windowSyncPoints = window.getSyncPoints();
+      final int numSyncPoints = i == windows.size() - 1 ? windowSyncPoints.size() : windowSyncPoints.size() - 1;
+      for (int j = 0; j < numSyncPoints; ++j) {
+        syncPoints = new BasicLinkedListNode<>(windowSyncPoints.get(j), syncPoints);
+      }
+    }
+    return new Path(HalfPath.concatenate(called), HalfPath.concatenate(baseline), syncPoints);
+  }
+
   /**
    * @return true if the path has finished (i.e. both half paths have reached the end of the template)
    */
@@ -38,6 +38,9 @@ import com.rtg.launcher.globals.GlobalFlags;
 import com.rtg.launcher.globals.ToolsGlobalFlags;
 import com.rtg.util.BasicLinkedListNode;
 import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.diagnostic.SpyCounter;
+import com.rtg.util.diagnostic.SpyHistogram;
+import com.rtg.util.diagnostic.SpyTimer;
 
 /**
  * Find the path through the two sequences of variants that best reconciles them.
@@ -47,6 +50,11 @@ public final class PathFinder {
 
   static final boolean TRACE = GlobalFlags.getBooleanValue(ToolsGlobalFlags.VCFEVAL_TRACE);
 
+  private static final SpyTimer TIME = new SpyTimer("PathFinder.time");
+  private static final SpyCounter ITERATIONS = new SpyCounter("PathFinder.iterations");
+  // Maximum number of paths in play between sync points, binned by bit length
+  private static final SpyHistogram COMPLEXITY = new SpyHistogram("PathFinder.complexity-bits", 32);
+
   // Bundles up some configuration variables that can be re-used between runs of the path finding
   static final class Config {
 
@@ -127,6 +135,7 @@ public final class PathFinder {
   }
 
   Path bestPath() {
+    final long start = System.nanoTime();
     Diagnostic.developerLog("Starting path-finding with " + mBaselineOrientor.haplotypes() + " haplotypes on sequence " + mTemplateName + " using " + mBaselineOrientor + "," + mCallOrientor);
     // make it easy to find variants
     final TreeSet<Path> sortedPaths = new TreeSet<>();
@@ -135,6 +144,7 @@ public final class PathFinder {
     int maxPaths = 0;
     String maxPathsRegion = "";
     int currentIterations = 0;
+    long totalIterations = 0;
     int currentMaxIterations = 0;
     int currentMax = 0;
     mCurrentMaxPos = 0;
@@ -143,6 +153,7 @@ public final class PathFinder {
     while (sortedPaths.size() > 0) {
       currentMax = Math.max(currentMax, sortedPaths.size());
       currentMaxIterations = Math.max(currentMaxIterations, currentIterations++);
+      ++totalIterations;
       Path head = sortedPaths.pollFirst();
       if (TRACE) {
         System.err.println("Size: " + (sortedPaths.size() + 1) + " Range:" + (lastSyncPos + 1) + "-" + (mCurrentMaxPos + 1) + " LocalIterations: " + currentIterations + " " + mConfig.mMaxComplexity + "\n");
@@ -150,6 +161,7 @@ public final class PathFinder {
       }
       if (sortedPaths.size() == 0) { // Only one path currently in play
         final int currentSyncPos = head.mCalledPath.getPosition();
+        COMPLEXITY.increment(Integer.SIZE - Integer.numberOfLeadingZeros(currentMax));
         if (currentMax > maxPaths) {
           maxPathsRegion = mTemplateName + ":" + (lastSyncPos + 1) + "-" + (currentSyncPos + 1);
           maxPaths = currentMax;
@@ -210,6 +222,8 @@ public final class PathFinder {
     }
     //System.err.println("Best: " + best);
     Diagnostic.userLog("Reference " + mTemplateName + " had maximum path complexity of " + maxPaths + " at " + maxPathsRegion);
+    ITERATIONS.increment(totalIterations);
+    TIME.increment(System.nanoTime() - start);
     return best;
   }
 
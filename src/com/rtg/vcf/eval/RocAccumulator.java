@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf.eval;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates the counts for a single ROC curve. Scores are binned at the resolution to which
+ * they are reported, so points that would be combined into the same line of output are combined
+ * as they are added. The bins are held in a primitive open addressing hash table, so memory
+ * is bounded by the number of lines of ROC output rather than the number of distinct scores.
+ */
+final class RocAccumulator {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // Scaled scores smaller than this can be rounded in floating point without error affecting the result
+  private static final double FAST_ROUNDING_LIMIT = 1e8;
+  // Scaled scores closer than this to a rounding boundary are rounded exactly
+  private static final double TIE_TOLERANCE = 1e-6;
+
+  private final int mScoreDp;
+  private final double mScale;
+
+  private boolean[] mUsed = new boolean[INITIAL_CAPACITY];
+  private double[] mScores = new double[INITIAL_CAPACITY];
+  private double[] mTruePositives = new double[INITIAL_CAPACITY];
+  private double[] mFalsePositives = new double[INITIAL_CAPACITY];
+  private double[] mRawTruePositives = new double[INITIAL_CAPACITY];
+  private int mSize = 0;
+  private boolean mHasNoScore = false;
+  private double mNoScoreTruePositives = 0;
+  private double mNoScoreFalsePositives = 0;
+  private double mNoScoreRawTruePositives = 0;
+
+  /**
+   * @param scoreDp number of decimal places to which scores are reported
+   */
+  RocAccumulator(int scoreDp) {
+    mScoreDp = scoreDp;
+    mScale = Math.pow(10, scoreDp);
+  }
+
+  /**
+   * Round a score to the reported resolution, in the same way as the score is formatted for output.
+   * @param score the score
+   * @return the nearest double to the rounded score, or the score itself if it is infinite
+   */
+  double bin(double score) {
+    if (Double.isInfinite(score)) {
+      return score;
+    }
+    final double scaled = score * mScale;
+    if (Math.abs(scaled) < FAST_ROUNDING_LIMIT && Math.abs(scaled - Math.floor(scaled) - 0.5) > TIE_TOLERANCE) {
+      return Math.round(scaled) / mScale;
+    }
+    // Formatting rounds half up from the shortest decimal representation of the score
+    return new BigDecimal(Double.toString(score)).setScale(mScoreDp, RoundingMode.HALF_UP).doubleValue();
+  }
+
+  /**
+   * Add counts to the curve
+   * @param score the score, or NaN if the counts have no score
+   * @param truePositives true positive weight (baseline weighting)
+   * @param falsePositives false positive weight
+   * @param rawTruePositives true positive weight (unweighted)
+   */
+  void add(double score, double truePositives, double falsePositives, double rawTruePositives) {
+    if (Double.isNaN(score)) {
+      mHasNoScore = true;
+      mNoScoreTruePositives += truePositives;
+      mNoScoreFalsePositives += falsePositives;
+      mNoScoreRawTruePositives += rawTruePositives;
+    } else {
+      addBinned(bin(score), truePositives, falsePositives, rawTruePositives);
+    }
+  }
+
+  private void addBinned(double bin, double truePositives, double falsePositives, double rawTruePositives) {
+    final int slot = slot(bin);
+    if (!mUsed[slot]) {
+      mUsed[slot] = true;
+      mScores[slot] = bin;
+      ++mSize;
+    }
+    mTruePositives[slot] += truePositives;
+    mFalsePositives[slot] += falsePositives;
+    mRawTruePositives[slot] += rawTruePositives;
+    if (2 * mSize > mUsed.length) {
+      resize();
+    }
+  }
+
+  private static int hash(double bin) {
+    final long bits = Double.doubleToLongBits(bin) * 0x9E3779B97F4A7C15L;
+    return (int) (bits ^ (bits >>> 32));
+  }
+
+  // Slot containing the bin, or the empty slot where it belongs
+  private int slot(double bin) {
+    final int mask = mUsed.length - 1;
+    int slot = hash(bin) & mask;
+    while (mUsed[slot] && mScores[slot] != bin) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void resize() {
+    final boolean[] used = mUsed;
+    final double[] scores = mScores;
+    final double[] tp = mTruePositives;
+    final double[] fp = mFalsePositives;
+    final double[] rawTp = mRawTruePositives;
+    final int capacity = 2 * used.length;
+    mUsed = new boolean[capacity];
+    mScores = new double[capacity];
+    mTruePositives = new double[capacity];
+    mFalsePositives = new double[capacity];
+    mRawTruePositives = new double[capacity];
+    for (int i = 0; i < used.length; ++i) {
+      if (used[i]) {
+        final int slot = slot(scores[i]);
+        mUsed[slot] = true;
+        mScores[slot] = scores[i];
+        mTruePositives[slot] = tp[i];
+        mFalsePositives[slot] = fp[i];
+        mRawTruePositives[slot] = rawTp[i];
+      }
+    }
+  }
+
+  /**
+   * Add all the counts from another curve into this one
+   * @param other the other curve, which must use the same score resolution
+   */
+  void merge(RocAccumulator other) {
+    assert other.mScoreDp == mScoreDp;
+    for (int i = 0; i < other.mUsed.length; ++i) {
+      if (other.mUsed[i]) {
+        addBinned(other.mScores[i], other.mTruePositives[i], other.mFalsePositives[i], other.mRawTruePositives[i]);
+      }
+    }
+    if (other.mHasNoScore) {
+      add(Double.NaN, other.mNoScoreTruePositives, other.mNoScoreFalsePositives, other.mNoScoreRawTruePositives);
+    }
+  }
+
+  /** @return number of distinct bins, including that for points without a score */
+  int size() {
+    return mSize + (mHasNoScore ? 1 : 0);
+  }
+
+  /**
+   * @param descending true if points should be ordered from highest to lowest score
+   * @return a point for each bin in score order, with any points without a score last
+   */
+  List<RocPoint<Double>> points(boolean descending) {
+    final double[] scores = new double[mSize];
+    int n = 0;
+    for (int i = 0; i < mUsed.length; ++i) {
+      if (mUsed[i]) {
+        scores[n++] = mScores[i];
+      }
+    }
+    Arrays.sort(scores);
+    final List<RocPoint<Double>> points = new ArrayList<>(size());
+    for (int i = 0; i < scores.length; ++i) {
+      final double score = scores[descending ? scores.length - 1 - i : i];
+      final int slot = slot(score);
+      points.add(new RocPoint<>(score, mTruePositives[slot], mFalsePositives[slot], mRawTruePositives[slot]));
+    }
+    if (mHasNoScore) {
+      points.add(new RocPoint<>(Double.NaN, mNoScoreTruePositives, mNoScoreFalsePositives, mNoScoreRawTruePositives));
+    }
+    return points;
+  }
+}
@@ -44,16 +44,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
-import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import com.rtg.launcher.CommonFlags;
 import com.rtg.util.ContingencyTable;
@@ -105,8 +101,8 @@ public class RocContainer {
   private static final String SLOPE_EXT = "_slope.tsv";
 
   private final String mFieldLabel;
-  private final Map<RocFilter, SortedMap<Double, RocPoint<Double>>> mRocs = new LinkedHashMap<>();
-  private final Comparator<Double> mComparator;
+  private final Map<RocFilter, RocAccumulator> mRocs = new LinkedHashMap<>();
+  private final boolean mDescending;
   private final RocSortValueExtractor mRocExtractor;
   private final String mFilePrefix;
   private final RocFilter mDefaultRocFilter;
@@ -138,15 +134,7 @@ public class RocContainer {
    * @param filter the RocFilter to regard as the default for summary reporting
    */
   public RocContainer(RocSortValueExtractor extractor, String filePrefix, RocFilter filter) {
-    switch (extractor.getSortOrder()) {
-      case ASCENDING:
-        mComparator = new AscendingDoubleComparator();
-        break;
-      case DESCENDING:
-      default:
-        mComparator = new DescendingDoubleComparator();
-        break;
-    }
+    mDescending = extractor.getSortOrder() != RocSortOrder.ASCENDING;
     mFieldLabel = extractor.toString();
     mFilePrefix = filePrefix;
     mRocExtractor = extractor;
@@ -173,7 +161,7 @@ public class RocContainer {
    * @param filter filtered curve to generate
    */
   public void addFilter(RocFilter filter) {
-    mRocs.put(filter, new TreeMap<>(mComparator));
+    mRocs.put(filter, new RocAccumulator(SCORE_DP));
     mRequiresGt |= filter.requiresGt();
   }
 
@@ -249,12 +237,35 @@ public class RocContainer {
    * @param filter specifies which roc line the point will be added to
    */
   void addRocLine(RocPoint<Double> point, RocFilter filter) {
-    final SortedMap<Double, RocPoint<Double>> points = mRocs.get(filter);
-    if (points.containsKey(point.getThreshold())) {
-      points.get(point.getThreshold()).add(point);
-    } else {
-      points.put(point.getThreshold(), new RocPoint<>(point));
+    mRocs.get(filter).add(point.getThreshold(), point.getTruePositives(), point.getFalsePositives(), point.getRawTruePositives());
+  }
+
+  /**
+   * Add the counts accumulated by another container, such as one filled by a separate thread, into this one.
+   * Filters are matched by name, so the other container may hold its own instances of them.
+   * @param other container with the same filters and score field as this one
+   */
+  public void merge(RocContainer other) {
+    for (final Map.Entry<RocFilter, RocAccumulator> entry : other.mRocs.entrySet()) {
+      final RocFilter theirs = entry.getKey();
+      final RocFilter filter = filter(theirs.name());
+      if (filter == null) {
+        throw new IllegalArgumentException("ROC filter " + theirs + " is not present");
+      }
+      mRocs.get(filter).merge(entry.getValue());
+      mBaselineTotals.add(filter, other.mBaselineTotals.get(theirs));
+      mBaselineTpTotal.add(filter, other.mBaselineTpTotal.get(theirs));
     }
+    mNoScoreVariants += other.mNoScoreVariants;
+  }
+
+  private RocFilter filter(String name) {
+    for (final RocFilter filter : filters()) {
+      if (filter.name().equals(name)) {
+        return filter;
+      }
+    }
+    return null;
   }
 
   /**
@@ -267,7 +278,7 @@ public class RocContainer {
   public void writeRocs(File outDir, boolean zip, boolean slope) throws IOException {
     Diagnostic.developerLog("Writing ROC");
     mBestCutpoint.init();
-    for (final Map.Entry<RocFilter, SortedMap<Double, RocPoint<Double>>> entry : mRocs.entrySet()) {
+    for (final Map.Entry<RocFilter, RocAccumulator> entry : mRocs.entrySet()) {
       final RocFilter filter = entry.getKey();
       // Compute adjustment factor for sub-categorized calls when call representation is systematically
       // different to baseline representation.
@@ -291,14 +302,13 @@ public class RocContainer {
         scale = 1.0;
       }
 
-      final SortedMap<Double, RocPoint<Double>> points = entry.getValue();
+      final List<RocPoint<Double>> points = entry.getValue().points(mDescending);
       final File rocFile = FileUtils.getZippedFileName(zip, new File(outDir, mFilePrefix + filter.fileName()));
       try (LineWriter os = new LineWriter(new OutputStreamWriter(FileUtils.createOutputStream(rocFile)))) {
         rocHeader(os, filter, totalBaselineVariants, totalCallVariants, extraMetrics, rescale);
         String prevScore = null;
         final RocPoint<Double> cumulative = new RocPoint<>();
-        for (final Map.Entry<Double, RocPoint<Double>> me : points.entrySet()) {
-          final RocPoint<Double> point = me.getValue();
+        for (final RocPoint<Double> point : points) {
           final String score = Double.isNaN(point.getThreshold()) ? "None" : Utils.realFormat(point.getThreshold(), SCORE_DP);
           if (prevScore != null && score.compareTo(prevScore) != 0) {
             writeRocLine(os, filter, prevScore, totalBaselineVariants, cumulative, extraMetrics, scale);
@@ -437,29 +447,9 @@ public class RocContainer {
 
   RocPoint<Double> getTotal(RocFilter filter) {
     final RocPoint<Double> total = new RocPoint<>();
-    for (final RocPoint<Double> point : mRocs.get(filter).values()) {
+    for (final RocPoint<Double> point : mRocs.get(filter).points(mDescending)) {
       total.add(point);
     }
     return total;
   }
-
-  // Need to manually ensure that Double.NaN looks smaller than every other number, so that it comes last on the ROC
-  private static class DescendingDoubleComparator implements Comparator<Double>, Serializable {
-    @Override
-    public int compare(Double o1, Double o2) {
-      if (Double.isNaN(o1)) {
-        return Double.isNaN(o2) ? 0 : 1;
-      } else if (Double.isNaN(o2)) {
-        return -1;
-      }
-      return o2.compareTo(o1);
-    }
-  }
-
-  private static class AscendingDoubleComparator implements Comparator<Double>, Serializable {
-    @Override
-    public int compare(Double o1, Double o2) {
-      return o1.compareTo(o2);
-    }
-  }
 }
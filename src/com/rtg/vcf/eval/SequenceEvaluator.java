@@ -36,6 +36,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.launcher.globals.GlobalFlags;
@@ -63,13 +64,26 @@ class SequenceEvaluator implements IORunnable {
   private final Map<String, Long> mNameMap;
   private final List<Pair<Orientor, Orientor>> mOrientors;
   private final PathFinder.Config mPathFinderConfig = new PathFinder.Config();
+  private final Executor mWindowExecutor;
 
   SequenceEvaluator(EvalSynchronizer variantSets, Map<String, Long> nameMap, SequencesReader template, List<Pair<Orientor, Orientor>> orientors) {
+    this(variantSets, nameMap, template, orientors, null);
+  }
+
+  /**
+   * @param variantSets supplies variants and receives results
+   * @param nameMap map from sequence name to sequence id
+   * @param template reference sequences
+   * @param orientors variant orientors for each pass
+   * @param windowExecutor if non-null, path finding is split into independent windows that are run on this executor
+   */
+  SequenceEvaluator(EvalSynchronizer variantSets, Map<String, Long> nameMap, SequencesReader template, List<Pair<Orientor, Orientor>> orientors, Executor windowExecutor) {
     assert orientors.size() == 1 || orientors.size() == 2;
     mSynchronize = variantSets;
     mTemplate = template;
     mNameMap = nameMap;
     mOrientors = orientors;
+    mWindowExecutor = windowExecutor;
   }
 
   @Override
@@ -99,9 +113,7 @@ class SequenceEvaluator implements IORunnable {
 
         //find the best path for variant calls
         Pair<Orientor, Orientor> op = mOrientors.get(0);
-        final PathFinder f = new PathFinder(template, currentName, baseLineCalls, calledCalls, op.getA(), op.getB(), mPathFinderConfig);
-
-        final Path best = f.bestPath();
+        final Path best = bestPath(template, currentName, baseLineCalls, calledCalls, op);
         if (best == null) {
           // Add some more info to the message so we can try to track this one down.
           final StringBuilder msg = new StringBuilder("After path finding on " + currentName + ", the best path was null!");
@@ -134,8 +146,7 @@ class SequenceEvaluator implements IORunnable {
         Path bestHap = null;
         if (mOrientors.size() == 2) {  // Run haploid pathfinding on the FP / FN to find common alleles
           op = mOrientors.get(1);
-          final PathFinder f2 = new PathFinder(template, currentName, falseNegatives, falsePositives, op.getA(), op.getB(), mPathFinderConfig);
-          bestHap = f2.bestPath();
+          bestHap = bestPath(template, currentName, falseNegatives, falsePositives, op);
 
           // if (DUMP_BEST_PATH) {
           //   dumpPath(bestHap, currentName, template, op.getA().haplotypes());
@@ -157,6 +168,13 @@ class SequenceEvaluator implements IORunnable {
     }
   }
 
+  private Path bestPath(byte[] template, String currentName, Collection<Variant> baseLineCalls, Collection<Variant> calledCalls, Pair<Orientor, Orientor> op) {
+    if (mWindowExecutor != null) {
+      return new WindowedPathFinder(template, currentName, baseLineCalls, calledCalls, op.getA(), op.getB(), mPathFinderConfig, WindowedPathFinder.DEFAULT_MIN_WINDOW_VARIANTS, mWindowExecutor).bestPath();
+    }
+    return new PathFinder(template, currentName, baseLineCalls, calledCalls, op.getA(), op.getB(), mPathFinderConfig).bestPath();
+  }
+
   private void dumpPath(Path best, String currentName, byte[] template, int haplotypes) {
     System.out.println("#### " + best);
     final List<Integer> syncPoints = best.getSyncPoints();
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf.eval;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.rtg.util.Pair;
+import com.rtg.util.intervals.ReferenceRanges;
+import com.rtg.vcf.ArrayVcfIterator;
+import com.rtg.vcf.VcfIterator;
+import com.rtg.vcf.VcfRecord;
+import com.rtg.vcf.header.VcfHeader;
+
+/**
+ * Holds the records of each sequence of the baseline and calls, so that they are read and
+ * parsed only once when evaluating several samples. Each sample reads the records of a sequence
+ * twice, once to construct variants and once to produce output, after which the records are
+ * discarded.
+ */
+class SharedVcfRecords {
+
+  private static final class Entry {
+    private VcfHeader mHeader;
+    private VcfRecord[] mRecords;
+    private int mRemaining;
+
+    Entry(int uses) {
+      mRemaining = uses;
+    }
+  }
+
+  private final File mBaselineFile;
+  private final File mCallsFile;
+  private final ReferenceRanges<String> mRanges;
+  private final boolean mDecompose;
+  private final int mUses;
+  private final Map<Pair<VariantSetType, String>, Entry> mEntries = new ConcurrentHashMap<>();
+
+  /**
+   * @param baselineFile the baseline VCF
+   * @param callsFile the calls VCF
+   * @param ranges controls which regions records will be loaded from
+   * @param decompose true if records should be decomposed
+   * @param samples the number of samples that will read the records
+   */
+  SharedVcfRecords(File baselineFile, File callsFile, ReferenceRanges<String> ranges, boolean decompose, int samples) {
+    mBaselineFile = baselineFile;
+    mCallsFile = callsFile;
+    mRanges = ranges;
+    mDecompose = decompose;
+    mUses = 2 * samples;
+  }
+
+  boolean isDecomposing() {
+    return mDecompose;
+  }
+
+  /**
+   * Gets the records of a sequence, loading them if this is the first request for them.
+   * @param type which set of records to return
+   * @param sequenceName name of the sequence
+   * @param copy if true, the returned records are copies which the caller is free to modify,
+   * otherwise the records are shared and must not be modified
+   * @return an iterator over the records
+   * @throws IOException if the records could not be read
+   */
+  VcfIterator records(VariantSetType type, String sequenceName, boolean copy) throws IOException {
+    final Pair<VariantSetType, String> key = new Pair<>(type, sequenceName);
+    final Entry entry = mEntries.computeIfAbsent(key, k -> new Entry(mUses));
+    final VcfHeader header;
+    VcfRecord[] records;
+    synchronized (entry) {
+      if (entry.mRecords == null) {
+        load(entry, type == VariantSetType.BASELINE ? mBaselineFile : mCallsFile, sequenceName);
+      }
+      header = entry.mHeader;
+      records = entry.mRecords;
+      if (--entry.mRemaining == 0) {
+        mEntries.remove(key);
+      }
+    }
+    if (copy) {
+      final VcfRecord[] copies = new VcfRecord[records.length];
+      for (int i = 0; i < records.length; ++i) {
+        copies[i] = new VcfRecord(records[i]);
+      }
+      records = copies;
+    }
+    return new ArrayVcfIterator(header, records);
+  }
+
+  private void load(Entry entry, File input, String sequenceName) throws IOException {
+    final List<VcfRecord> records = new ArrayList<>();
+    try (VcfIterator reader = VcfRecordTabixCallable.getReader(input, mRanges.forSequence(sequenceName), mDecompose)) {
+      while (reader.hasNext()) {
+        final VcfRecord rec = reader.next();
+        // Decode now, since lazy decoding is not safe when records are shared between threads
+        rec.getInfo();
+        rec.getFormatAndSample();
+        records.add(rec);
+      }
+      entry.mHeader = reader.getHeader();
+    }
+    entry.mRecords = records.toArray(new VcfRecord[0]);
+  }
+}
@@ -69,6 +69,7 @@ import com.rtg.vcf.ArrayVcfIterator;
 import com.rtg.vcf.DecomposingVcfIterator;
 import com.rtg.vcf.VcfIterator;
 import com.rtg.vcf.VcfReader;
+import com.rtg.vcf.VcfRecord;
 import com.rtg.vcf.VcfSortRefiner;
 import com.rtg.vcf.VcfUtils;
 import com.rtg.vcf.header.ContigField;
@@ -92,6 +93,10 @@ class TabixVcfRecordSet implements VariantSet {
   private final VariantFactory mCallsFactory;
   private final Map<String, File> mBaselinePreprocessed = new ConcurrentHashMap<>();
   private final Map<String, File> mCallsPreprocessed = new ConcurrentHashMap<>();
+  private final Map<String, List<VcfRecord>> mBaselineRecords = new ConcurrentHashMap<>();
+  private final Map<String, List<VcfRecord>> mCallsRecords = new ConcurrentHashMap<>();
+  private final boolean mRetainRecords = GlobalFlags.getBooleanValue(ToolsGlobalFlags.VCFEVAL_RETAIN_RECORDS);
+  private final SharedVcfRecords mShared;
   private final int mMaxLength;
   private final File mPreprocessDestDir;
   private final boolean mPreprocess;
@@ -105,6 +110,17 @@ class TabixVcfRecordSet implements VariantSet {
                     Collection<Pair<String, Integer>> referenceNameOrdering,
                     String baselineSample, String callsSample,
                     boolean passOnly, boolean relaxedRef, int maxLength, File preprocessDestDir, int ploidy) throws IOException {
+    this(baselineFile, calledFile, ranges, evalRegions, referenceNameOrdering, baselineSample, callsSample, passOnly, relaxedRef, maxLength, preprocessDestDir, ploidy, null);
+  }
+
+  /**
+   * @param shared if non-null, records are obtained from here rather than read from the input files
+   */
+  TabixVcfRecordSet(File baselineFile, File calledFile,
+                    ReferenceRanges<String> ranges, ReferenceRegions evalRegions,
+                    Collection<Pair<String, Integer>> referenceNameOrdering,
+                    String baselineSample, String callsSample,
+                    boolean passOnly, boolean relaxedRef, int maxLength, File preprocessDestDir, int ploidy, SharedVcfRecords shared) throws IOException {
     if (referenceNameOrdering == null) {
       throw new NullPointerException();
     }
@@ -121,11 +137,12 @@ class TabixVcfRecordSet implements VariantSet {
     mPreprocessDestDir = preprocessDestDir;
     mPreprocess = mPreprocessDestDir != null;
     mRelaxedRef = relaxedRef;
+    mShared = shared;
 
     final Set<String> basenames = new TreeSet<>();
-    Collections.addAll(basenames, new TabixIndexReader(TabixIndexer.indexFileName(baselineFile)).sequenceNames());
+    Collections.addAll(basenames, new TabixIndexReader(TabixIndexer.existingIndexFileName(baselineFile)).sequenceNames());
     final Set<String> callnames = new TreeSet<>();
-    Collections.addAll(callnames, new TabixIndexReader(TabixIndexer.indexFileName(calledFile)).sequenceNames());
+    Collections.addAll(callnames, new TabixIndexReader(TabixIndexer.existingIndexFileName(calledFile)).sequenceNames());
 
     final Set<String> basedeclarednames = new TreeSet<>(basenames);
     for (ContigField c : baselineHeader.getContigLines()) {
@@ -185,8 +202,9 @@ class TabixVcfRecordSet implements VariantSet {
       }
     }
 
-    mBaseLineHeader = mPreprocess ? addDecompositionHeader(baselineHeader) : baselineHeader;
-    mCalledHeader = mPreprocess ? addDecompositionHeader(calledHeader) : calledHeader;
+    final boolean decompose = mPreprocess || mShared != null && mShared.isDecomposing();
+    mBaseLineHeader = decompose ? addDecompositionHeader(baselineHeader) : baselineHeader;
+    mCalledHeader = decompose ? addDecompositionHeader(calledHeader) : calledHeader;
     mBaselineFactory = getVariantFactory(VariantSetType.BASELINE, mBaseLineHeader, baselineSample, ploidy, passOnly);
     mCallsFactory = getVariantFactory(VariantSetType.CALLS, mCalledHeader, callsSample, ploidy, passOnly);
     mBaselineSampleNo = baselineSample != null ? mBaseLineHeader.getSampleIndex(baselineSample) : 0;
@@ -243,15 +261,22 @@ class TabixVcfRecordSet implements VariantSet {
     final ExecutorService executor = Executors.newFixedThreadPool(2);
     try {
       final ReferenceRanges<String> subRanges = mRanges.forSequence(currentName);
-      final FutureTask<LoadedVariants> baseFuture = new FutureTask<>(new VcfRecordTabixCallable(mBaselineFile, subRanges, mEvalRegions, currentName, currentLength, VariantSetType.BASELINE, mBaselineFactory, mMaxLength, mPreprocessDestDir, mRelaxedRef));
-      final FutureTask<LoadedVariants> callFuture = new FutureTask<>(new VcfRecordTabixCallable(mCallsFile, subRanges, mEvalRegions, currentName, currentLength, VariantSetType.CALLS, mCallsFactory, mMaxLength, mPreprocessDestDir, mRelaxedRef));
+      final FutureTask<LoadedVariants> baseFuture = new FutureTask<>(mShared != null
+        ? new VcfRecordTabixCallable(mShared, subRanges, mEvalRegions, currentName, currentLength, VariantSetType.BASELINE, mBaselineFactory, mMaxLength, mRelaxedRef)
+        : new VcfRecordTabixCallable(mBaselineFile, subRanges, mEvalRegions, currentName, currentLength, VariantSetType.BASELINE, mBaselineFactory, mMaxLength, mPreprocessDestDir, mRelaxedRef, mRetainRecords));
+      final FutureTask<LoadedVariants> callFuture = new FutureTask<>(mShared != null
+        ? new VcfRecordTabixCallable(mShared, subRanges, mEvalRegions, currentName, currentLength, VariantSetType.CALLS, mCallsFactory, mMaxLength, mRelaxedRef)
+        : new VcfRecordTabixCallable(mCallsFile, subRanges, mEvalRegions, currentName, currentLength, VariantSetType.CALLS, mCallsFactory, mMaxLength, mPreprocessDestDir, mRelaxedRef, mRetainRecords));
       executor.execute(baseFuture);
       executor.execute(callFuture);
       final LoadedVariants baseVars = baseFuture.get();
       final LoadedVariants calledVars = callFuture.get();
       map.put(VariantSetType.BASELINE, baseVars.mVariants);
       map.put(VariantSetType.CALLS, calledVars.mVariants);
-      if (mPreprocess) {
+      if (mRetainRecords) {
+        mBaselineRecords.put(currentName, baseVars.mRecords);
+        mCallsRecords.put(currentName, calledVars.mRecords);
+      } else if (mPreprocess) {
         Diagnostic.developerLog("Preprocessed VCF at " + baseVars.mPreprocessed);
         Diagnostic.developerLog("Preprocessed VCF at " + calledVars.mPreprocessed);
         mBaselinePreprocessed.put(currentName, baseVars.mPreprocessed);
@@ -283,6 +308,13 @@ class TabixVcfRecordSet implements VariantSet {
 
   @Override
   public VcfIterator getBaselineVariants(String sequenceName) throws IOException {
+    if (mShared != null) {
+      return mShared.records(VariantSetType.BASELINE, sequenceName, true);
+    }
+    final List<VcfRecord> records = mBaselineRecords.remove(sequenceName);
+    if (records != null) {
+      return new ArrayVcfIterator(mBaseLineHeader, records.toArray(new VcfRecord[0]));
+    }
     return new VcfSortRefiner(mPreprocess ? VcfReader.openVcfReader(mBaselinePreprocessed.get(sequenceName)) : VcfReader.openVcfReader(mBaselineFile, mRanges.forSequence(sequenceName)));
   }
 
@@ -298,6 +330,13 @@ class TabixVcfRecordSet implements VariantSet {
 
   @Override
   public VcfIterator getCalledVariants(String sequenceName) throws IOException {
+    if (mShared != null) {
+      return mShared.records(VariantSetType.CALLS, sequenceName, true);
+    }
+    final List<VcfRecord> records = mCallsRecords.remove(sequenceName);
+    if (records != null) {
+      return new ArrayVcfIterator(mCalledHeader, records.toArray(new VcfRecord[0]));
+    }
     return new VcfSortRefiner(mPreprocess ? VcfReader.openVcfReader(mCallsPreprocessed.get(sequenceName)) : VcfReader.openVcfReader(mCallsFile, mRanges.forSequence(sequenceName)));
   }
 
@@ -45,11 +45,12 @@ import static com.rtg.vcf.eval.VcfEvalCli.validateVcfRocFlag;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.rtg.launcher.CommonFlags;
 import com.rtg.launcher.LoggedCli;
+import com.rtg.util.SimpleThreadPool;
 import com.rtg.util.StringUtils;
 import com.rtg.util.cli.CommonFlagCategories;
 import com.rtg.util.diagnostic.Diagnostic;
@@ -117,29 +118,28 @@ public class Vcf2Rocplot extends LoggedCli {
 
     // Create ROC container / extractor
     mRocExtractor = RocSortValueExtractor.getRocSortValueExtractor((String) mFlags.getValue(SCORE_FIELD), (RocSortOrder) mFlags.getValue(SORT_ORDER));
-    mRoc = new RocContainer(mRocExtractor);
-    if (mFlags.isSet(CRITERIA_PRECISION)) {
-      mRoc.setRocPointCriteria(new PrecisionThreshold((Double) mFlags.getValue(CRITERIA_PRECISION)));
-    } else if (mFlags.isSet(CRITERIA_SENSITIVITY)) {
-      mRoc.setRocPointCriteria(new SensitivityThreshold((Double) mFlags.getValue(CRITERIA_SENSITIVITY)));
+    mRoc = createRocContainer();
+
+    final List<File> vcfs = new ArrayList<>();
+    for (final Object o : mFlags.getAnonymousValues(0)) {
+      vcfs.add((File) o);
     }
-    mRoc.addFilters(VcfEvalCli.getRocFilters(mFlags));
-
-    final Collection<?> values = mFlags.getAnonymousValues(0);
-    for (final Object o : values) {
-      final File vcf = (File) o;
-      final VcfReaderFactory fact = new VcfReaderFactory(mFlags);
-      try (final VcfIterator vr = fact.make(vcf)) {
-        if (vr.getHeader().getInfoField(WithInfoEvalSynchronizer.INFO_CALL) != null
-          || vr.getHeader().getInfoField(WithInfoEvalSynchronizer.INFO_BASE) != null) {
-          Diagnostic.userLog("VCF file " + vcf + " looks to contain regular vcfeval annotation");
-          loadWithInfoVariants(vr, vcf);
-        } else if (vr.getHeader().getInfoField(Ga4ghEvalSynchronizer.FORMAT_DECISION) != null) {
-          Diagnostic.userLog("VCF file " + vcf + " looks to contain GA4GH annotations");
-          loadGa4ghVariants(vr);
-        } else {
-          Diagnostic.userLog("VCF file " + vcf + " doesn't look to contain any recognized annotations");
-        }
+    if (vcfs.size() == 1) {
+      load(vcfs.get(0), mRoc);
+    } else {
+      // Each file is loaded into its own container, with its own filters, and the results merged
+      final RocContainer[] rocs = new RocContainer[vcfs.size()];
+      final int numberThreads = Math.min(CommonFlags.parseThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG)), vcfs.size());
+      final SimpleThreadPool threadPool = new SimpleThreadPool(numberThreads, "Vcf2Rocplot", true);
+      for (int i = 0; i < vcfs.size(); ++i) {
+        rocs[i] = createRocContainer();
+        final File vcf = vcfs.get(i);
+        final RocContainer roc = rocs[i];
+        threadPool.execute(() -> load(vcf, roc));
+      }
+      threadPool.terminate();
+      for (final RocContainer roc : rocs) {
+        mRoc.merge(roc);
       }
     }
 
@@ -151,7 +151,34 @@ public class Vcf2Rocplot extends LoggedCli {
   }
 
 
-  private void loadWithInfoVariants(VcfIterator vr, File vcf) throws IOException {
+  private RocContainer createRocContainer() throws IOException {
+    final RocContainer roc = new RocContainer(mRocExtractor);
+    if (mFlags.isSet(CRITERIA_PRECISION)) {
+      roc.setRocPointCriteria(new PrecisionThreshold((Double) mFlags.getValue(CRITERIA_PRECISION)));
+    } else if (mFlags.isSet(CRITERIA_SENSITIVITY)) {
+      roc.setRocPointCriteria(new SensitivityThreshold((Double) mFlags.getValue(CRITERIA_SENSITIVITY)));
+    }
+    roc.addFilters(VcfEvalCli.getRocFilters(mFlags));
+    return roc;
+  }
+
+  private void load(File vcf, RocContainer roc) throws IOException {
+    final VcfReaderFactory fact = new VcfReaderFactory(mFlags);
+    try (final VcfIterator vr = fact.make(vcf)) {
+      if (vr.getHeader().getInfoField(WithInfoEvalSynchronizer.INFO_CALL) != null
+        || vr.getHeader().getInfoField(WithInfoEvalSynchronizer.INFO_BASE) != null) {
+        Diagnostic.userLog("VCF file " + vcf + " looks to contain regular vcfeval annotation");
+        loadWithInfoVariants(vr, vcf, roc);
+      } else if (vr.getHeader().getInfoField(Ga4ghEvalSynchronizer.FORMAT_DECISION) != null) {
+        Diagnostic.userLog("VCF file " + vcf + " looks to contain GA4GH annotations");
+        loadGa4ghVariants(vr, roc);
+      } else {
+        Diagnostic.userLog("VCF file " + vcf + " doesn't look to contain any recognized annotations");
+      }
+    }
+  }
+
+  private void loadWithInfoVariants(VcfIterator vr, File vcf, RocContainer roc) throws IOException {
     final VcfHeader header = vr.getHeader();
     // If the VCF is from combined output, look up the appropriate sample indexes, otherwise assume 0
     final int bSample = getSampleIndex(header, CombinedEvalSynchronizer.SAMPLE_BASELINE);
@@ -163,7 +190,7 @@ public class Vcf2Rocplot extends LoggedCli {
         // If this is wrong, the user should vcfsubset to pick out the sample they want.
       }
     }
-    mRoc.filters().forEach(f -> f.setHeader(header));
+    roc.filters().forEach(f -> f.setHeader(header));
 
     while (vr.hasNext()) {
       final VcfRecord rec = vr.next();
@@ -172,11 +199,11 @@ public class Vcf2Rocplot extends LoggedCli {
       if (base != null) {
         switch (base) {
           case WithInfoEvalSynchronizer.STATUS_TP:
-            mRoc.incrementBaselineCount(rec, bSample, true);
+            roc.incrementBaselineCount(rec, bSample, true);
             break;
           case WithInfoEvalSynchronizer.STATUS_FN:
           case WithInfoEvalSynchronizer.STATUS_FN_CA:
-            mRoc.incrementBaselineCount(rec, bSample, false);
+            roc.incrementBaselineCount(rec, bSample, false);
             break;
           case WithInfoEvalSynchronizer.STATUS_OUTSIDE:
           case WithInfoEvalSynchronizer.STATUS_HARD:
@@ -193,11 +220,11 @@ public class Vcf2Rocplot extends LoggedCli {
         switch (call) {
           case WithInfoEvalSynchronizer.STATUS_TP:
             final double weight = VcfUtils.getDoubleInfoFieldFromRecord(rec, WithInfoEvalSynchronizer.INFO_CALL_WEIGHT);
-            mRoc.addRocLine(rec, cSample, Double.isNaN(weight) ? 1 : weight, 0, 1);
+            roc.addRocLine(rec, cSample, Double.isNaN(weight) ? 1 : weight, 0, 1);
             break;
           case WithInfoEvalSynchronizer.STATUS_FP:
           case WithInfoEvalSynchronizer.STATUS_FP_CA:
-            mRoc.addRocLine(rec, cSample, 0, 1, 0);
+            roc.addRocLine(rec, cSample, 0, 1, 0);
             break;
           case WithInfoEvalSynchronizer.STATUS_OUTSIDE:
           case WithInfoEvalSynchronizer.STATUS_HARD:
@@ -212,7 +239,7 @@ public class Vcf2Rocplot extends LoggedCli {
     }
   }
 
-  private void loadGa4ghVariants(VcfIterator vr) throws IOException {
+  private static void loadGa4ghVariants(VcfIterator vr, RocContainer roc) throws IOException {
     while (vr.hasNext()) {
       final VcfRecord rec = vr.next();
 
@@ -223,20 +250,20 @@ public class Vcf2Rocplot extends LoggedCli {
 
       switch (decision.get(Ga4ghEvalSynchronizer.TRUTH_SAMPLE_INDEX)) {
         case Ga4ghEvalSynchronizer.DECISION_TP:
-          mRoc.incrementBaselineCount(rec, Ga4ghEvalSynchronizer.TRUTH_SAMPLE_INDEX, true);
+          roc.incrementBaselineCount(rec, Ga4ghEvalSynchronizer.TRUTH_SAMPLE_INDEX, true);
           break;
         case Ga4ghEvalSynchronizer.DECISION_FN:
-          mRoc.incrementBaselineCount(rec, Ga4ghEvalSynchronizer.TRUTH_SAMPLE_INDEX, false);
+          roc.incrementBaselineCount(rec, Ga4ghEvalSynchronizer.TRUTH_SAMPLE_INDEX, false);
           break;
         default:
           // ignore
       }
       switch (decision.get(Ga4ghEvalSynchronizer.QUERY_SAMPLE_INDEX)) {
         case Ga4ghEvalSynchronizer.DECISION_TP:
-          mRoc.addRocLine(rec, Ga4ghEvalSynchronizer.QUERY_SAMPLE_INDEX, 1, 0, 1);
+          roc.addRocLine(rec, Ga4ghEvalSynchronizer.QUERY_SAMPLE_INDEX, 1, 0, 1);
           break;
         case Ga4ghEvalSynchronizer.DECISION_FP:
-          mRoc.addRocLine(rec, Ga4ghEvalSynchronizer.QUERY_SAMPLE_INDEX, 0, 1, 0);
+          roc.addRocLine(rec, Ga4ghEvalSynchronizer.QUERY_SAMPLE_INDEX, 0, 1, 0);
           break;
         default:
           // ignore
@@ -36,11 +36,14 @@ import static com.rtg.util.cli.CommonFlagCategories.REPORTING;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import com.reeltwo.jumble.annotations.TestClass;
@@ -49,6 +52,7 @@ import com.rtg.launcher.NoStatistics;
 import com.rtg.launcher.OutputParams;
 import com.rtg.launcher.ParamsCli;
 import com.rtg.util.IORunnable;
+import com.rtg.util.Pair;
 import com.rtg.util.StringUtils;
 import com.rtg.util.cli.CFlags;
 import com.rtg.util.cli.CommonFlagCategories;
@@ -151,7 +155,7 @@ public class VcfEvalCli extends ParamsCli<VcfEvalParams> {
 
     mFlags.registerOptional('e', EVAL_REGIONS_FLAG, File.class, "File", "if set, evaluate within regions contained in the supplied BED file, allowing transborder matches. To be used for truth-set high-confidence regions or other regions of interest where region boundary effects should be minimized").setCategory(INPUT_OUTPUT);
 
-    mFlags.registerOptional(SAMPLE, String.class, CommonFlags.STRING, "the name of the sample to select. Use <baseline_sample>,<calls_sample> to select different sample names for baseline and calls. (Required when using multi-sample VCF files)").setCategory(FILTERING);
+    mFlags.registerOptional(SAMPLE, String.class, CommonFlags.STRING, "the name of the sample to select. Use <baseline_sample>,<calls_sample> to select different sample names for baseline and calls. (Required when using multi-sample VCF files). May be specified multiple times to evaluate several samples in a single pass, writing the results for each to a subdirectory of the output directory").setMaxCount(Integer.MAX_VALUE).setCategory(FILTERING);
     mFlags.registerOptional(ALL_RECORDS, "use all records regardless of filter status (Default is to only process variants passing filters)").setCategory(FILTERING);
     mFlags.registerOptional(SQUASH_PLOIDY, "treat heterozygous genotypes as homozygous ALT in both baseline and calls, to allow matches that ignore zygosity differences").setCategory(FILTERING);
     mFlags.registerOptional(REF_OVERLAP, "allow alleles to overlap where bases of either allele are same-as-ref (Default is to only allow VCF anchor base overlap)").setCategory(FILTERING);
@@ -184,6 +188,7 @@ public class VcfEvalCli extends ParamsCli<VcfEvalParams> {
       && validatePairedFlag(flags, SAMPLE, "sample name")
       && validatePairedFlag(flags, OBEY_PHASE, "phase type")
       && validateModeSample(flags)
+      && validateSamplePairs(flags)
       && validateScoreField(flags)
       && flags.checkInRange(SAMPLE_PLOIDY, 1, Integer.MAX_VALUE)
       && validateVcfRocFlag(flags, ROC_EXPR)
@@ -221,13 +226,46 @@ public class VcfEvalCli extends ParamsCli<VcfEvalParams> {
 
   private static boolean validateModeSample(CFlags flags) {
     final String mode = (String) flags.getValue(OUTPUT_MODE);
-    if (flags.isSet(SAMPLE) && ((String) flags.getValue(SAMPLE)).contains(VariantFactory.ALT_SAMPLE) && (VcfEvalTask.MODE_COMBINE.equals(mode) || VcfEvalTask.MODE_GA4GH.equals(mode))) {
-      flags.setParseMessage("--" + OUTPUT_MODE + "=" + mode + " cannot be used when either sample is " + VariantFactory.ALT_SAMPLE);
-      return false;
+    if (VcfEvalTask.MODE_COMBINE.equals(mode) || VcfEvalTask.MODE_GA4GH.equals(mode)) {
+      for (final Object sample : flags.getValues(SAMPLE)) {
+        if (((String) sample).contains(VariantFactory.ALT_SAMPLE)) {
+          flags.setParseMessage("--" + OUTPUT_MODE + "=" + mode + " cannot be used when either sample is " + VariantFactory.ALT_SAMPLE);
+          return false;
+        }
+      }
     }
     return true;
   }
 
+  private static boolean validateSamplePairs(CFlags flags) {
+    final Map<String, Pair<String, String>> dirs = new HashMap<>();
+    for (final Pair<String, String> pair : samplePairs(flags)) {
+      final Pair<String, String> previous = dirs.put(VcfEvalTask.sampleDirectoryName(pair), pair);
+      if (previous != null) {
+        if (previous.equals(pair)) {
+          flags.setParseMessage("The sample " + sampleSpec(pair) + " has been specified more than once");
+        } else {
+          flags.setParseMessage("The samples " + sampleSpec(previous) + " and " + sampleSpec(pair) + " would both be written to the output directory " + VcfEvalTask.sampleDirectoryName(pair));
+        }
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String sampleSpec(Pair<String, String> pair) {
+    return pair.getA() + (pair.getA().equals(pair.getB()) ? "" : "," + pair.getB());
+  }
+
+  private static List<Pair<String, String>> samplePairs(CFlags flags) {
+    final List<Pair<String, String>> pairs = new ArrayList<>();
+    for (final Object value : flags.getValues(SAMPLE)) {
+      final String[] samples = splitPairedSpec((String) value);
+      pairs.add(new Pair<>(samples[0], samples[1]));
+    }
+    return pairs;
+  }
+
   /**
    * Validates that the VCF score field is well formed
    * @param flags the populated flags
@@ -262,8 +300,8 @@ public class VcfEvalCli extends ParamsCli<VcfEvalParams> {
   }
 
   private static boolean validatePairedFlag(CFlags flags, String flag, String label) {
-    if (flags.isSet(flag)) {
-      final String flagValue = (String) flags.getValue(flag);
+    for (final Object value : flags.getValues(flag)) {
+      final String flagValue = (String) value;
       if (flagValue.length() == 0) {
         flags.setParseMessage("Supplied " + label + " cannot be empty");
         return false;
@@ -338,10 +376,12 @@ public class VcfEvalCli extends ParamsCli<VcfEvalParams> {
     if (mFlags.isSet(EVAL_REGIONS_FLAG)) {
       builder.evalRegionsFile((File) mFlags.getValue(EVAL_REGIONS_FLAG));
     }
-    if (mFlags.isSet(SAMPLE)) {
-      final String[] samples = splitPairedSpec((String) mFlags.getValue(SAMPLE));
-      builder.baselineSample(samples[0]);
-      builder.callsSample(samples[1]);
+    final List<Pair<String, String>> samplePairs = samplePairs(mFlags);
+    if (samplePairs.size() == 1) {
+      builder.baselineSample(samplePairs.get(0).getA());
+      builder.callsSample(samplePairs.get(0).getB());
+    } else if (samplePairs.size() > 1) {
+      builder.samplePairs(samplePairs);
     }
     final int haplotypes = (Integer) mFlags.getValue(SAMPLE_PLOIDY);
     final String[] phaseTypes = splitPairedSpec((String) mFlags.getValue(OBEY_PHASE));
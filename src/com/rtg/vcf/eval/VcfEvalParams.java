@@ -30,11 +30,15 @@
 package com.rtg.vcf.eval;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import com.rtg.launcher.OutputModuleParams;
+import com.rtg.util.Pair;
 import com.rtg.util.intervals.RegionRestriction;
 import com.rtg.vcf.VcfUtils;
 
@@ -62,6 +66,7 @@ public final class VcfEvalParams extends OutputModuleParams {
     String mScoreField = VcfUtils.FORMAT_GENOTYPE_QUALITY;
     String mBaselineSample;
     String mCallsSample;
+    List<Pair<String, String>> mSamplePairs = Collections.emptyList();
     String mOutputMode = VcfEvalTask.MODE_SPLIT;
     boolean mUseAllRecords = false;
     int mNumberThreads = 1;
@@ -151,6 +156,18 @@ public final class VcfEvalParams extends OutputModuleParams {
       return self();
     }
 
+    /**
+     * Sets multiple pairs of baseline and calls sample names to evaluate in a single pass over the input.
+     * Results for each pair are written to a separate subdirectory of the output directory.
+     *
+     * @param samplePairs the baseline and calls sample name pairs.
+     * @return this builder, so calls can be chained.
+     */
+    public VcfEvalParamsBuilder samplePairs(final List<Pair<String, String>> samplePairs) {
+      mSamplePairs = new ArrayList<>(samplePairs);
+      return self();
+    }
+
     /**
      * Sets the run output mode.
      *
@@ -347,6 +364,7 @@ public final class VcfEvalParams extends OutputModuleParams {
   private final RocSortOrder mSortOrder;
   private final String mBaselineSample;
   private final String mCallsSample;
+  private final List<Pair<String, String>> mSamplePairs;
   private final int mNumberThreads;
   private final boolean mUseAllRecords;
   private final boolean mTwoPass;
@@ -379,6 +397,7 @@ public final class VcfEvalParams extends OutputModuleParams {
     mOutputMode = builder.mOutputMode;
     mBaselineSample = builder.mBaselineSample;
     mCallsSample = builder.mCallsSample;
+    mSamplePairs = builder.mSamplePairs;
     mNumberThreads = builder.mNumberThreads;
     mUseAllRecords = builder.mUseAllRecords;
     mTwoPass = builder.mTwoPass;
@@ -471,6 +490,14 @@ public final class VcfEvalParams extends OutputModuleParams {
     return mCallsSample;
   }
 
+  /**
+   * Get the pairs of baseline and calls sample names to evaluate in a single pass, if more than one sample is being evaluated.
+   * @return the sample name pairs, empty unless evaluating multiple samples.
+   */
+  public List<Pair<String, String>> samplePairs() {
+    return mSamplePairs;
+  }
+
   /**
    * Get the run mode name.
    * @return the run mode name.
@@ -577,6 +604,7 @@ public final class VcfEvalParams extends OutputModuleParams {
     return "Baseline file=" + mBaselineFile.getPath() + ", Calls file=" + mCallsFile.getPath() + ", Template file=" + mTemplateFile.getPath()
       + ", score field=" + mScoreField + ", sort order=" + mSortOrder
       + ", baseline sample name=" + mBaselineSample + ", calls sample name=" + mCallsSample
+      + (mSamplePairs.isEmpty() ? "" : ", sample pairs=" + mSamplePairs)
       + ", num threads=" + mNumberThreads
       + ", use all records=" + mUseAllRecords + ", decompose = " + mDecompose + ", max length=" + mMaxLength
       + ", ref overlap=" + mRefOverlap + ", squash ploidy=" + mSquashPloidy + ", two pass=" + mTwoPass
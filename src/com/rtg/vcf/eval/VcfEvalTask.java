@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import com.rtg.bed.BedUtils;
 import com.rtg.launcher.NoStatistics;
@@ -90,7 +91,7 @@ public final class VcfEvalTask extends ParamsTask<VcfEvalParams, NoStatistics> {
    */
   static void evaluateCalls(VcfEvalParams params) throws IOException {
     SdfUtils.validateHasNames(params.templateFile());
-    try (final SequencesReader templateSequences = SequencesReaderFactory.createDefaultSequencesReader(params.templateFile(), LongRange.NONE)) {
+    try (final SequencesReader templateSequences = SequencesReaderFactory.createRandomAccessSequencesReader(params.templateFile(), LongRange.NONE)) {
       SdfUtils.validateNoDuplicates(templateSequences, false);
 
       final File baseline = params.baselineFile();
@@ -99,26 +100,113 @@ public final class VcfEvalTask extends ParamsTask<VcfEvalParams, NoStatistics> {
 
       final ReferenceRanges<String> ranges = getReferenceRanges(params, templateSequences);
       final ReferenceRegions evalRegions = params.evalRegionsFile() == null ? null : BedUtils.regions(params.evalRegionsFile());
-      final VariantSet variants = getVariants(params, templateSequences, ranges, evalRegions);
+      if (!params.samplePairs().isEmpty()) {
+        evaluateSamples(params, templateSequences, ranges, evalRegions);
+      } else {
+        final VariantSet variants = getVariants(params, templateSequences, ranges, evalRegions);
 
-      evaluateCalls(params, templateSequences, variants);
+        evaluateCalls(params, templateSequences, variants);
+      }
     }
   }
 
   private static void evaluateCalls(VcfEvalParams params, SequencesReader templateSequences, VariantSet variants) throws IOException {
     final File outdir = params.directory();
-    if (!outdir.exists() && !outdir.mkdirs()) {
-      throw new IOException("Unable to create directory \"" + outdir.getPath() + "\"");
+    makeDirectory(outdir);
+
+    final Map<String, Long> nameMap = ReaderUtils.getSequenceNameMap(templateSequences);
+
+    final List<Pair<Orientor, Orientor>> o = getOrientors(params, params.baselineSample(), params.callsSample());
+    try (final EvalSynchronizer sync = getPathProcessor(params, variants, outdir, params.callsSample())) {
+      final SimpleThreadPool threadPool = new SimpleThreadPool(params.numberThreads(), "VcfEval", true);
+      final Executor windowExecutor = getWindowExecutor(params, threadPool);
+      threadPool.enableBasicProgress(templateSequences.numberSequences());
+      for (int i = 0; i < templateSequences.numberSequences(); ++i) {
+        threadPool.execute(new SequenceEvaluator(sync, nameMap, templateSequences, o, windowExecutor));
+      }
+
+      threadPool.terminate();
+
+      sync.finish();
+    } finally {
+      ReaderUtils.closeSequenceNameMap(nameMap);
     }
+  }
 
+  /**
+   * Evaluates several pairs of samples, reading each sequence of the input files only once and sharing
+   * the thread pool between all samples. Results for each sample are written to their own subdirectory.
+   */
+  private static void evaluateSamples(VcfEvalParams params, SequencesReader templateSequences, ReferenceRanges<String> ranges, ReferenceRegions evalRegions) throws IOException {
+    makeDirectory(params.directory());
     final Map<String, Long> nameMap = ReaderUtils.getSequenceNameMap(templateSequences);
+    final List<Pair<String, String>> samplePairs = params.samplePairs();
+    final SharedVcfRecords shared = new SharedVcfRecords(params.baselineFile(), params.callsFile(), ranges, params.decompose(), samplePairs.size());
+    final List<EvalSynchronizer> syncs = new ArrayList<>();
+    final List<List<Pair<Orientor, Orientor>>> orientors = new ArrayList<>();
+    try {
+      for (final Pair<String, String> samples : samplePairs) {
+        final File outdir = new File(params.directory(), sampleDirectoryName(samples));
+        makeDirectory(outdir);
+        final VariantSet variants = getVariants(params, templateSequences, ranges, evalRegions, samples.getA(), samples.getB(), null, shared);
+        syncs.add(getPathProcessor(params, variants, outdir, samples.getB()));
+        orientors.add(getOrientors(params, samples.getA(), samples.getB()));
+      }
+      final SimpleThreadPool threadPool = new SimpleThreadPool(params.numberThreads(), "VcfEval", true);
+      final Executor windowExecutor = getWindowExecutor(params, threadPool);
+      threadPool.enableBasicProgress(templateSequences.numberSequences() * samplePairs.size());
+      // Interleave samples so that the shared records of each sequence are released as soon as possible
+      for (int i = 0; i < templateSequences.numberSequences(); ++i) {
+        for (int s = 0; s < syncs.size(); ++s) {
+          threadPool.execute(new SequenceEvaluator(syncs.get(s), nameMap, templateSequences, orientors.get(s), windowExecutor));
+        }
+      }
+
+      threadPool.terminate();
+
+      for (int s = 0; s < syncs.size(); ++s) {
+        Diagnostic.info("Results for sample " + sampleDirectoryName(samplePairs.get(s)) + ":");
+        syncs.get(s).finish();
+      }
+    } finally {
+      for (final EvalSynchronizer sync : syncs) {
+        sync.close();
+      }
+      ReaderUtils.closeSequenceNameMap(nameMap);
+    }
+  }
+
+  // With windowed path finding, the windows of each sequence are queued on the same pool as the sequences,
+  // and the evaluating thread runs any windows that no idle worker has taken, so that --threads bounds the total
+  private static Executor getWindowExecutor(VcfEvalParams params, SimpleThreadPool threadPool) {
+    if (GlobalFlags.getBooleanValue(ToolsGlobalFlags.VCFEVAL_WINDOWED_PATHS) && params.numberThreads() > 1) {
+      return threadPool::executeHelper;
+    }
+    return null;
+  }
+
+  /**
+   * Gets the name of the output subdirectory for a sample when evaluating several samples.
+   * @param samples the baseline and calls sample names
+   * @return the directory name
+   */
+  static String sampleDirectoryName(Pair<String, String> samples) {
+    return samples.getA().equals(samples.getB()) ? samples.getA() : samples.getA() + "_" + samples.getB();
+  }
 
+  private static void makeDirectory(File outdir) throws IOException {
+    if (!outdir.exists() && !outdir.mkdirs()) {
+      throw new IOException("Unable to create directory \"" + outdir.getPath() + "\"");
+    }
+  }
+
+  private static List<Pair<Orientor, Orientor>> getOrientors(VcfEvalParams params, String baselineSample, String callsSample) {
     final List<Pair<Orientor, Orientor>> o;
     if (params.twoPass() && params.squashPloidy()) {
       throw new IllegalStateException("Cannot run two-pass with squash-ploidy set");
     }
-    final String bvf = VariantFactory.getFactoryName(VariantSetType.BASELINE, params.baselineSample());
-    final String cvf = VariantFactory.getFactoryName(VariantSetType.CALLS, params.callsSample());
+    final String bvf = VariantFactory.getFactoryName(VariantSetType.BASELINE, baselineSample);
+    final String cvf = VariantFactory.getFactoryName(VariantSetType.CALLS, callsSample);
     if (params.twoPass()) {
       o = new ArrayList<>();
       o.add(new Pair<>(getOrientor(bvf, false, params.baselinePhaseOrientor()), getOrientor(cvf, false, params.callsPhaseOrientor())));
@@ -127,21 +215,10 @@ public final class VcfEvalTask extends ParamsTask<VcfEvalParams, NoStatistics> {
       o = Collections.singletonList(new Pair<>(getOrientor(bvf, params.squashPloidy(), params.baselinePhaseOrientor()), getOrientor(cvf, params.squashPloidy(), params.callsPhaseOrientor())));
     }
     Diagnostic.userLog("Variant orientors per pass: " + o);
-    try (final EvalSynchronizer sync = getPathProcessor(params, variants)) {
-      final SimpleThreadPool threadPool = new SimpleThreadPool(params.numberThreads(), "VcfEval", true);
-      threadPool.enableBasicProgress(templateSequences.numberSequences());
-      for (int i = 0; i < templateSequences.numberSequences(); ++i) {
-        threadPool.execute(new SequenceEvaluator(sync, nameMap, templateSequences, o));
-      }
-
-      threadPool.terminate();
-
-      sync.finish();
-    }
+    return o;
   }
 
-  private static EvalSynchronizer getPathProcessor(VcfEvalParams params, VariantSet variants) throws IOException {
-    final File outdir = params.directory();
+  private static EvalSynchronizer getPathProcessor(VcfEvalParams params, VariantSet variants, File outdir, String callsSample) throws IOException {
     final EvalSynchronizer processor;
     final String outputMode = GlobalFlags.isSet(ToolsGlobalFlags.VCFEVAL_PATH_PROCESSOR) ? GlobalFlags.getStringValue(ToolsGlobalFlags.VCFEVAL_PATH_PROCESSOR) : params.outputMode();
     final RocSortValueExtractor rocExtractor = RocSortValueExtractor.getRocSortValueExtractor(params.scoreField(), params.sortOrder());
@@ -158,7 +235,7 @@ public final class VcfEvalTask extends ParamsTask<VcfEvalParams, NoStatistics> {
         if (params.squashPloidy()) {
           throw new UnsupportedOperationException();
         }
-        processor = new SampleRecoder(variants, outdir, params.outputParams().isCompressed(), params.callsSample());
+        processor = new SampleRecoder(variants, outdir, params.outputParams().isCompressed(), callsSample);
         break;
       case MODE_PHASE_TRANSFER:
         if (params.squashPloidy() || params.twoPass()) {
@@ -217,17 +294,6 @@ public final class VcfEvalTask extends ParamsTask<VcfEvalParams, NoStatistics> {
    * @throws IOException if IO is broken
    */
   static VariantSet getVariants(VcfEvalParams params, SequencesReader templateSequences, ReferenceRanges<String> ranges, ReferenceRegions evalRegions) throws IOException {
-    final File calls = params.callsFile();
-    final File baseline = params.baselineFile();
-    final String baselineSample = params.baselineSample();
-    final String callsSample = params.callsSample();
-
-    final long numSequences = templateSequences.names().length();
-    assert numSequences <= Integer.MAX_VALUE;
-    final List<Pair<String, Integer>> nameOrdering = new ArrayList<>((int) numSequences);
-    for (long i = 0; i < numSequences; ++i) {
-      nameOrdering.add(new Pair<>(templateSequences.names().name(i), templateSequences.length(i)));
-    }
     final File preprocessDir;
     if (params.decompose()) {
       preprocessDir = new File(params.outputParams().directory(), "intermediate");
@@ -237,7 +303,20 @@ public final class VcfEvalTask extends ParamsTask<VcfEvalParams, NoStatistics> {
     } else {
       preprocessDir = null;
     }
-    return new TabixVcfRecordSet(baseline, calls, ranges, evalRegions, nameOrdering, baselineSample, callsSample, !params.useAllRecords(), params.refOverlap(), params.maxLength(), preprocessDir, params.baselinePhaseOrientor().haplotypes());
+    return getVariants(params, templateSequences, ranges, evalRegions, params.baselineSample(), params.callsSample(), preprocessDir, null);
+  }
+
+  private static VariantSet getVariants(VcfEvalParams params, SequencesReader templateSequences, ReferenceRanges<String> ranges, ReferenceRegions evalRegions, String baselineSample, String callsSample, File preprocessDir, SharedVcfRecords shared) throws IOException {
+    final File calls = params.callsFile();
+    final File baseline = params.baselineFile();
+
+    final long numSequences = templateSequences.names().length();
+    assert numSequences <= Integer.MAX_VALUE;
+    final List<Pair<String, Integer>> nameOrdering = new ArrayList<>((int) numSequences);
+    for (long i = 0; i < numSequences; ++i) {
+      nameOrdering.add(new Pair<>(templateSequences.names().name(i), templateSequences.length(i)));
+    }
+    return new TabixVcfRecordSet(baseline, calls, ranges, evalRegions, nameOrdering, baselineSample, callsSample, !params.useAllRecords(), params.refOverlap(), params.maxLength(), preprocessDir, params.baselinePhaseOrientor().haplotypes(), shared);
   }
 
   static ReferenceRanges<String> getReferenceRanges(VcfEvalParams params, SequencesReader templateSequences) throws IOException {
@@ -59,20 +59,44 @@ public class VcfRecordTabixCallable implements Callable<LoadedVariants> {
   private static final boolean DECOMPOSE_INDELS = GlobalFlags.getBooleanValue(ToolsGlobalFlags.VCFEVAL_DECOMPOSE_INDELS);
 
   private final File mInput;
+  private final SharedVcfRecords mShared;
+  private final String mTemplateName;
   private final ReferenceRanges<String> mRanges;
   private final ReferenceRegions mEvalRegions;
   private final int mTemplateLength;
   private final VariantSetType mType;
   private final VariantFactory mFactory;
   private final int mMaxLength;
+  private final boolean mDecompose;
   private final File mDecomposedFile;
   private final boolean mRelaxedRef;
+  private final boolean mRetainRecords;
 
   VcfRecordTabixCallable(File file, ReferenceRanges<String> ranges, ReferenceRegions evalRegions, String templateName, Integer templateLength, VariantSetType type, VariantFactory factory, int maxLength, File preprocessDestDir, boolean relaxedRef) {
+    this(file, ranges, evalRegions, templateName, templateLength, type, factory, maxLength, preprocessDestDir, relaxedRef, false);
+  }
+
+  /**
+   * @param shared supplies the (possibly decomposed) records, which are shared with the evaluation of other samples
+   */
+  VcfRecordTabixCallable(SharedVcfRecords shared, ReferenceRanges<String> ranges, ReferenceRegions evalRegions, String templateName, Integer templateLength, VariantSetType type, VariantFactory factory, int maxLength, boolean relaxedRef) {
+    this(null, shared, ranges, evalRegions, templateName, templateLength, type, factory, maxLength, null, relaxedRef, false);
+  }
+
+  /**
+   * @param retainRecords if true, every record read is retained in the result, and preprocessed records are not written to file
+   */
+  VcfRecordTabixCallable(File file, ReferenceRanges<String> ranges, ReferenceRegions evalRegions, String templateName, Integer templateLength, VariantSetType type, VariantFactory factory, int maxLength, File preprocessDestDir, boolean relaxedRef, boolean retainRecords) {
+    this(file, null, ranges, evalRegions, templateName, templateLength, type, factory, maxLength, preprocessDestDir, relaxedRef, retainRecords);
+  }
+
+  private VcfRecordTabixCallable(File file, SharedVcfRecords shared, ReferenceRanges<String> ranges, ReferenceRegions evalRegions, String templateName, Integer templateLength, VariantSetType type, VariantFactory factory, int maxLength, File preprocessDestDir, boolean relaxedRef, boolean retainRecords) {
     if (!ranges.containsSequence(templateName)) {
       throw new IllegalArgumentException("Ranges supplied do not contain reference sequence " + templateName);
     }
     mInput = file;
+    mShared = shared;
+    mTemplateName = templateName;
     mRanges = ranges;
     mEvalRegions = evalRegions;
     mFactory = factory;
@@ -80,7 +104,9 @@ public class VcfRecordTabixCallable implements Callable<LoadedVariants> {
     mType = type;
     mMaxLength = maxLength;
     mRelaxedRef = relaxedRef;
-    if (preprocessDestDir != null) {
+    mRetainRecords = retainRecords;
+    mDecompose = preprocessDestDir != null;
+    if (mDecompose && !retainRecords) {
       mDecomposedFile = new File(preprocessDestDir, "decomposed_" + type.label() + "_" + templateName + ".vcf.gz");
     } else {
       mDecomposedFile = null;
@@ -92,11 +118,15 @@ public class VcfRecordTabixCallable implements Callable<LoadedVariants> {
     int skipped = 0;
     int id = 0;
     final List<Variant> list = new ArrayList<>();
+    final List<VcfRecord> records = mRetainRecords ? new ArrayList<>() : null;
     try (VcfIterator reader = getReader()) {
       try (VcfWriter preprocessed = mDecomposedFile == null ? new NullVcfWriter(reader.getHeader()) : new VcfWriterFactory().make(reader.getHeader(), mDecomposedFile)) {
         while (reader.hasNext()) {
           final VcfRecord rec = reader.next();
           preprocessed.write(rec);
+          if (records != null) {
+            records.add(rec);
+          }
           ++id;
 
           // Skip variants that are too long (these cause problems during evaluation)
@@ -137,14 +167,18 @@ public class VcfRecordTabixCallable implements Callable<LoadedVariants> {
         if (mRelaxedRef) {
           Variant.trimAlleles(list);
         }
-        return new LoadedVariants(list, skipped, mDecomposedFile);
+        return new LoadedVariants(list, skipped, mDecomposedFile, records);
       }
     }
   }
 
   private VcfIterator getReader() throws IOException {
-    VcfIterator reader = VcfReader.openVcfReader(mInput, mRanges);
-    if (mDecomposedFile != null) {
+    return mShared != null ? mShared.records(mType, mTemplateName, false) : getReader(mInput, mRanges, mDecompose);
+  }
+
+  static VcfIterator getReader(File input, ReferenceRanges<String> ranges, boolean decompose) throws IOException {
+    VcfIterator reader = VcfReader.openVcfReader(input, ranges);
+    if (decompose) {
       reader = new DecomposingVcfIterator(reader, null, DECOMPOSE_MNPS, DECOMPOSE_INDELS);
     }
     return new VcfSortRefiner(reader);
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2014. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf.eval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.util.Pair;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.diagnostic.ErrorType;
+import com.rtg.util.diagnostic.SlimException;
+import com.rtg.util.io.IOUtils;
+
+/**
+ * Find the best path over a sequence by splitting the variants into independent windows, running the
+ * path finding on each window (in parallel when an executor is supplied), and stitching the window paths
+ * back together. Windows are only cut at variant-free gaps where no path that is out of sync at the end
+ * of one window can survive to the start of the next, so the result is the same as that of a single
+ * <code>PathFinder</code> over the whole sequence.
+ */
+@TestClass("com.rtg.vcf.eval.WindowedPathFinderTest")
+final class WindowedPathFinder {
+
+  /** Default minimum number of variants to aim for in each window, to amortize the per-window overhead */
+  static final int DEFAULT_MIN_WINDOW_VARIANTS = 1000;
+
+  private final byte[] mTemplate;
+  private final String mTemplateName;
+  private final List<Pair<List<Variant>, List<Variant>>> mWindows;
+  private final Orientor mBaselineOrientor;
+  private final Orientor mCallOrientor;
+  private final PathFinder.Config mConfig;
+  private final Executor mExecutor;
+
+  /**
+   * @param template the template bases
+   * @param templateName the template name
+   * @param baseLineVariants baseline variants
+   * @param calledVariants called variants
+   * @param baselineOrientor orientor for baseline variants
+   * @param callOrientor orientor for called variants
+   * @param config path finder configuration
+   * @param minWindowVariants minimum number of variants to place in each window (other than the last)
+   * @param executor executor used to run the windows, or null to run them in the calling thread
+   * @param <T> the variant type
+   */
+  <T extends Variant> WindowedPathFinder(byte[] template, String templateName, Collection<T> baseLineVariants, Collection<T> calledVariants, Orientor baselineOrientor, Orientor callOrientor, PathFinder.Config config, int minWindowVariants, Executor executor) {
+    mTemplate = template;
+    mTemplateName = templateName;
+    mBaselineOrientor = baselineOrientor;
+    mCallOrientor = callOrientor;
+    mConfig = config;
+    mExecutor = executor;
+    mWindows = windows(template, baseLineVariants, calledVariants, minWindowVariants);
+  }
+
+  /**
+   * Partition baseline and called variants into windows that can be path-found independently.
+   * @param template the template bases
+   * @param baseLineVariants baseline variants
+   * @param calledVariants called variants
+   * @param minWindowVariants minimum number of variants to place in each window (other than the last)
+   * @return a list of windows, each containing the baseline and called variants for that window
+   */
+  static List<Pair<List<Variant>, List<Variant>>> windows(byte[] template, Collection<? extends Variant> baseLineVariants, Collection<? extends Variant> calledVariants, int minWindowVariants) {
+    final Variant[] baseline = baseLineVariants.toArray(new Variant[0]);
+    Arrays.sort(baseline, Variant.NATURAL_COMPARATOR);
+    final Variant[] called = calledVariants.toArray(new Variant[0]);
+    Arrays.sort(called, Variant.NATURAL_COMPARATOR);
+
+    final List<Pair<List<Variant>, List<Variant>>> windows = new ArrayList<>();
+    List<Variant> windowBaseline = new ArrayList<>();
+    List<Variant> windowCalled = new ArrayList<>();
+    int windowEnd = -1;
+    int windowOffset = 0;
+    int b = 0;
+    int c = 0;
+    while (b < baseline.length || c < called.length) {
+      final boolean side = b == baseline.length || (c < called.length && called[c].getStart() < baseline[b].getStart());
+      final Variant next = side ? called[c++] : baseline[b++];
+      if (windowBaseline.size() + windowCalled.size() >= minWindowVariants && isSafeCut(template, windowEnd, next.getStart(), windowOffset)) {
+        windows.add(new Pair<>(windowBaseline, windowCalled));
+        windowBaseline = new ArrayList<>();
+        windowCalled = new ArrayList<>();
+        windowOffset = 0;
+      }
+      (side ? windowCalled : windowBaseline).add(next);
+      windowEnd = Math.max(windowEnd, next.getEnd());
+      windowOffset += lengthChange(next);
+    }
+    windows.add(new Pair<>(windowBaseline, windowCalled));
+    return windows;
+  }
+
+  // Largest difference between the length of an allele and the reference it replaces
+  private static int lengthChange(Variant v) {
+    int change = 0;
+    for (int i = -1; i < v.numAlleles(); ++i) {
+      final Allele a = v.allele(i);
+      if (a != null) {
+        change = Math.max(change, Math.abs(a.nt().length - a.getLength()));
+      }
+    }
+    return change;
+  }
+
+  /**
+   * Determine whether path finding can be restarted between two windows. Beyond the end of a window both
+   * haplotypes of any path that is still out of sync are replaying the reference, offset from each other by
+   * at most the total length change of the variants in the window. Such a path only survives while the
+   * reference repeats with a period of that offset, so the cut is safe if, for every possible offset, the
+   * repeat is broken before either haplotype reaches the next variant.
+   * @param template the template bases
+   * @param windowEnd end of the last variant in the window (exclusive)
+   * @param nextStart start of the first variant after the window
+   * @param maxOffset largest offset between the haplotypes of an out of sync path
+   * @return true if the variants either side of the gap can be path-found independently
+   */
+  static boolean isSafeCut(byte[] template, int windowEnd, int nextStart, int maxOffset) {
+    // Keep a base clear of the next variant, since a path enqueues a variant one position before its start
+    final int limit = Math.min(nextStart - 1, template.length);
+    if (windowEnd >= limit) {
+      return false;
+    }
+    for (int offset = 1; offset <= maxOffset; ++offset) {
+      int pos = windowEnd;
+      while (pos + offset < limit && template[pos] == template[pos + offset]) {
+        ++pos;
+      }
+      if (pos + offset >= limit) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of windows the variants were partitioned into
+   */
+  int numWindows() {
+    return mWindows.size();
+  }
+
+  private Path windowPath(Pair<List<Variant>, List<Variant>> window) {
+    return new PathFinder(mTemplate, mTemplateName, window.getA(), window.getB(), mBaselineOrientor, mCallOrientor, mConfig).bestPath();
+  }
+
+  Path bestPath() {
+    Diagnostic.developerLog("Path-finding on sequence " + mTemplateName + " split into " + mWindows.size() + " windows");
+    final List<Path> paths = new ArrayList<>(mWindows.size());
+    if (mExecutor == null || mWindows.size() == 1) {
+      for (final Pair<List<Variant>, List<Variant>> window : mWindows) {
+        paths.add(windowPath(window));
+      }
+    } else {
+      final List<FutureTask<Path>> tasks = new ArrayList<>(mWindows.size());
+      for (final Pair<List<Variant>, List<Variant>> window : mWindows) {
+        final FutureTask<Path> task = new FutureTask<>(() -> windowPath(window));
+        tasks.add(task);
+        mExecutor.execute(task);
+      }
+      try {
+        // The calling thread works through any windows not yet taken by the executor
+        for (final FutureTask<Path> task : tasks) {
+          task.run();
+        }
+        for (final FutureTask<Path> task : tasks) {
+          paths.add(task.get());
+        }
+      } catch (final ExecutionException e) {
+        IOUtils.rethrowWrapIO(e.getCause());
+      } catch (final InterruptedException e) {
+        throw new SlimException(e, ErrorType.INFO_ERROR, "Interrupted during path finding");
+      } finally {
+        for (final FutureTask<Path> task : tasks) {
+          task.cancel(true);
+        }
+      }
+    }
+    for (final Path p : paths) {
+      if (p == null) {
+        return null;
+      }
+    }
+    return Path.concatenate(paths);
+  }
+}
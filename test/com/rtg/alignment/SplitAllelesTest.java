@@ -32,6 +32,7 @@ package com.rtg.alignment;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import com.rtg.util.StringUtils;
 import com.rtg.util.diagnostic.Diagnostic;
@@ -191,4 +192,42 @@ public class SplitAllelesTest extends TestCase {
     assertEquals("", toString(sa.partition()));
   }
 
+
+  private static byte[] mutate(final Random r, final byte[] ref) {
+    final byte[] alt = new byte[ref.length + 20];
+    int j = 0;
+    for (int i = 0; i < ref.length && j < alt.length - 1; ++i) {
+      final int op = r.nextInt(20);
+      if (op == 0) {
+        alt[j++] = (byte) r.nextInt(5); // Substitution, possibly with N
+      } else if (op == 1) {
+        alt[j++] = ref[i];
+        alt[j++] = (byte) (1 + r.nextInt(4)); // Insertion
+      } else if (op != 2) {
+        alt[j++] = ref[i]; // Otherwise deletion
+      }
+    }
+    return Arrays.copyOf(alt, j);
+  }
+
+  public void testBandedSameAsFull() {
+    final Random r = new Random(42);
+    final GotohEditDistance banded = new GotohEditDistance(1, 1, 1, 10, false);
+    final GotohEditDistance full = new GotohEditDistance(1, 1, 1, 10, false);
+    for (int k = 0; k < 2000; ++k) {
+      final byte[] ref = new byte[r.nextInt(k % 10 == 0 ? 300 : 60)];
+      for (int i = 0; i < ref.length; ++i) {
+        ref[i] = (byte) (1 + r.nextInt(4));
+      }
+      final byte[] alt = r.nextInt(10) == 0 ? Arrays.copyOf(ref, r.nextInt(ref.length + 1)) : mutate(r, ref);
+      final String expected = ActionsHelper.toString(full.calculateEditDistanceFixedBoth(alt, 0, alt.length, ref, 0, ref.length, Integer.MAX_VALUE, Math.max(ref.length, alt.length)));
+      assertEquals(expected, SplitAlleles.align(banded, ref, alt));
+    }
+  }
+
+  public void testCachedAlignment() {
+    final String expected = toString(new SplitAlleles("ACGTTTACG", "ACGTACG", "ACTTTTACG").partition());
+    assertEquals(expected, toString(new SplitAlleles("ACGTTTACG", "ACGTACG", "ACTTTTACG").partition()));
+    assertEquals(expected, toString(new SplitAlleles("ACGTTTACG", Arrays.asList("ACGTACG", "ACTTTTACG")).partition()));
+  }
 }
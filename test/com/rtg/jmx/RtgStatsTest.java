@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.jmx;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.rtg.util.SimpleThreadPool;
+import com.rtg.util.diagnostic.SpyCounter;
+import com.rtg.util.io.AsynchInputStream;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class RtgStatsTest extends TestCase {
+
+  public void testRegister() throws JMException {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    final ObjectName name = new ObjectName(RtgStats.OBJECT_NAME);
+    final String old = System.getProperty(RtgStats.MBEAN_ENABLE);
+    try {
+      System.clearProperty(RtgStats.MBEAN_ENABLE);
+      RtgStats.register();
+      assertFalse(server.isRegistered(name));
+      System.setProperty(RtgStats.MBEAN_ENABLE, "true");
+      RtgStats.register();
+      RtgStats.register();
+      assertTrue(server.isRegistered(name));
+      assertTrue((Long) server.getAttribute(name, "RecordsRead") >= 0);
+      assertTrue((Integer) server.getAttribute(name, "QueuedJobs") >= 0);
+    } finally {
+      if (old == null) {
+        System.clearProperty(RtgStats.MBEAN_ENABLE);
+      } else {
+        System.setProperty(RtgStats.MBEAN_ENABLE, old);
+      }
+    }
+  }
+
+  public void testCountAndRate() {
+    final SpyCounter counter = new SpyCounter("RtgStatsTest.counter");
+    counter.increment(10);
+    assertEquals(10, RtgStats.count("RtgStatsTest.counter", "RtgStatsTest.missing"));
+    final RtgStats stats = new RtgStats();
+    assertEquals(0.0, stats.rate("a", 10, 0));
+    assertEquals(0.0, stats.rate("a", 20, 500000000L)); // Too soon to update
+    assertEquals(50.0, stats.rate("a", 60, 1000000000L), 1e-9);
+    assertEquals(50.0, stats.rate("a", 70, 1500000000L), 1e-9);
+    assertEquals(10.0, stats.rate("a", 80, 3000000000L), 1e-9);
+  }
+
+  public void testThreadPool() throws IOException, InterruptedException {
+    final RtgStats stats = new RtgStats();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final SimpleThreadPool pool = new SimpleThreadPool(1, "RtgStatsTest", false);
+    final int active = stats.getActiveJobs();
+    final int queued = stats.getQueuedJobs();
+    pool.execute(() -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        // Finish
+      }
+    });
+    started.await();
+    pool.execute(() -> { });
+    assertEquals(active + 1, stats.getActiveJobs());
+    assertEquals(queued + 1, stats.getQueuedJobs());
+    release.countDown();
+    pool.terminate();
+    assertFalse(SimpleThreadPool.livePools().contains(pool));
+  }
+
+  public void testPipes() throws IOException, InterruptedException {
+    final RtgStats stats = new RtgStats();
+    final long capacity = stats.getPipeCapacityBytes();
+    try (AsynchInputStream in = new AsynchInputStream(new ByteArrayInputStream(new byte[1000]))) {
+      assertEquals(capacity + AsynchInputStream.DEFAULT_PIPE_SIZE, stats.getPipeCapacityBytes());
+      for (int i = 0; i < 100 && stats.getPipeBufferedBytes() < 1000; ++i) {
+        Thread.sleep(10);
+      }
+      assertTrue(stats.getPipeBufferedBytes() >= 1000);
+      assertEquals(1000, in.read(new byte[2000]));
+    }
+  }
+}
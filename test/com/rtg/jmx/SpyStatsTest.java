@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.jmx;
+
+import java.io.IOException;
+
+import com.rtg.util.diagnostic.SpyCounter;
+import com.rtg.util.diagnostic.SpyHistogram;
+import com.rtg.util.diagnostic.SpyTimer;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class SpyStatsTest extends TestCase {
+
+  public void test() throws IOException {
+    final SpyCounter counter = new SpyCounter("SpyStatsTest.counter");
+    final SpyTimer timer = new SpyTimer("SpyStatsTest.timer");
+    final SpyHistogram histogram = new SpyHistogram("SpyStatsTest.histogram", 4);
+    final SpyStats ss = new SpyStats();
+    final StringBuilder sb = new StringBuilder();
+    ss.addHeader(sb);
+    assertEquals("", sb.toString());
+    ss.addColumnData(sb);
+    assertEquals("", sb.toString()); // No columns until labels have been output
+    ss.addColumnLabelsTop(sb);
+    assertTrue(sb.toString().contains(" SpyStatsTest.counter SpyStatsTest.timer SpyStatsTest.histogram"));
+    sb.setLength(0);
+    ss.addColumnLabelsBottom(sb);
+    assertTrue(sb.toString().endsWith("                count               secs                max-bin"));
+    counter.increment(42);
+    timer.increment(1500000000L);
+    histogram.increment(2);
+    sb.setLength(0);
+    ss.addColumnData(sb);
+    assertTrue(sb.toString().endsWith("                   42                1.5                      2"));
+    final int width = sb.length();
+    new SpyCounter("SpyStatsTest.later");
+    sb.setLength(0);
+    ss.addColumnData(sb);
+    assertEquals(width, sb.length()); // Columns only change when labels are output
+    sb.setLength(0);
+    ss.addColumnLabelsTop(sb);
+    assertTrue(sb.toString().endsWith(" SpyStatsTest.later"));
+  }
+}
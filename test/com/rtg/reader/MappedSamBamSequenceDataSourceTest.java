@@ -35,7 +35,10 @@ import static com.rtg.util.StringUtils.TAB;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import com.rtg.mode.DNA;
 import com.rtg.mode.DnaUtils;
@@ -142,4 +145,56 @@ public class MappedSamBamSequenceDataSourceTest extends SamBamSequenceDataSource
     }
   }
 
+
+  private static String readAll(SamBamSequenceDataSource source) throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    try {
+      while (source.nextSequence()) {
+        sb.append(source.name()).append(' ').append(Arrays.toString(source.sequenceData())).append(' ').append(Arrays.toString(source.qualityData())).append('\n');
+      }
+    } finally {
+      source.close();
+    }
+    return sb.toString();
+  }
+
+  private static String randomBases(Random r, int length) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; ++i) {
+      sb.append("ACGT".charAt(r.nextInt(4)));
+    }
+    return sb.toString();
+  }
+
+  public void testSpilledPairing() throws IOException {
+    Diagnostic.setLogStream();
+    final Random r = new Random(42);
+    // Mates in random order, with some singletons and duplicates
+    final List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 300; ++i) {
+      final String name = "read" + i;
+      final int type = r.nextInt(20);
+      if (type != 0) {
+        lines.add(String.format(SAM_LINE_LEFT, SAM_NL, name, randomBases(r, 10), "``````````"));
+      }
+      if (type != 1) {
+        lines.add(String.format(SAM_LINE_RIGHT, SAM_NL, name, randomBases(r, 10), "!!!!!!!!!!"));
+      }
+      if (type == 2) {
+        lines.add(String.format(SAM_LINE_RIGHT, SAM_NL, name, randomBases(r, 10), "##########"));
+      }
+    }
+    Collections.shuffle(lines, r);
+    try (TestDirectory td = new TestDirectory()) {
+      final File f = FileUtils.stringToFile(SAM_HEADER + String.join("", lines), new File(td, "in.sam"));
+      final List<File> files = Collections.singletonList(f);
+      for (final boolean keepSingletons : new boolean[] {false, true}) {
+        final String expected = readAll(new MappedSamBamSequenceDataSource(new FileStreamIterator(files), true, false, keepSingletons, null, Long.MAX_VALUE));
+        assertTrue(expected.length() > 0);
+        for (final long bufferBytes : new long[] {0, 1000, 5000, 20000}) {
+          assertEquals(expected, readAll(new MappedSamBamSequenceDataSource(new FileStreamIterator(files), true, false, keepSingletons, null, bufferBytes)));
+        }
+      }
+    }
+  }
 }
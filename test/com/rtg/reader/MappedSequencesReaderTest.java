@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import com.rtg.mode.DNAFastaSymbolTable;
+import com.rtg.util.Resources;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.intervals.LongRange;
+import com.rtg.util.io.SimpleArchive;
+import com.rtg.util.io.TestDirectory;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class MappedSequencesReaderTest extends TestCase {
+
+  private static String data(Random r, int count, boolean fastq) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < count; ++i) {
+      final int length = 1 + r.nextInt(r.nextBoolean() ? 20 : 300);
+      sb.append(fastq ? '@' : '>').append("seq").append(i);
+      if (r.nextBoolean()) {
+        sb.append(" description ").append(i);
+      }
+      sb.append('\n');
+      for (int j = 0; j < length; ++j) {
+        sb.append("ACGTN".charAt(r.nextInt(5)));
+      }
+      sb.append('\n');
+      if (fastq) {
+        sb.append("+\n");
+        for (int j = 0; j < length; ++j) {
+          sb.append((char) ('!' + r.nextInt(64)));
+        }
+        sb.append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void writeSdf(File dir, String data, boolean fastq, long sizeLimit, boolean compressed) throws IOException {
+    final FastaSequenceDataSource ds = fastq
+      ? new FastqSequenceDataSource(new ByteArrayInputStream(data.getBytes()), QualityFormat.SANGER)
+      : new FastaSequenceDataSource(new ByteArrayInputStream(data.getBytes()), new DNAFastaSymbolTable());
+    final SequencesWriter writer = new SequencesWriter(ds, dir, sizeLimit, PrereadType.UNKNOWN, compressed);
+    writer.processSequences();
+  }
+
+  private static void checkSame(SequencesReader expected, SequencesReader actual, Random r) throws IOException {
+    assertEquals(expected.numberSequences(), actual.numberSequences());
+    assertEquals(expected.hasQualityData(), actual.hasQualityData());
+    assertEquals(expected.totalLength(), actual.totalLength());
+    assertEquals(expected.maxLength(), actual.maxLength());
+    assertTrue(Arrays.equals(expected.sequenceLengths(0, expected.numberSequences()), actual.sequenceLengths(0, actual.numberSequences())));
+    final byte[] e = new byte[(int) expected.maxLength()];
+    final byte[] a = new byte[(int) expected.maxLength()];
+    for (long i = 0; i < expected.numberSequences(); ++i) {
+      final int length = expected.length(i);
+      assertEquals(length, actual.length(i));
+      assertEquals(expected.name(i), actual.name(i));
+      assertEquals(expected.nameSuffix(i), actual.nameSuffix(i));
+      assertEquals(length, actual.read(i, a));
+      expected.read(i, e);
+      assertTrue(Arrays.equals(Arrays.copyOf(e, length), Arrays.copyOf(a, length)));
+      final CRC32 crc = new CRC32();
+      crc.update(a, 0, length);
+      assertEquals((byte) crc.getValue(), actual.sequenceDataChecksum(i));
+      final int start = r.nextInt(length);
+      final int len = r.nextInt(length - start + 1);
+      final int count = expected.read(i, e, start, len);
+      assertEquals(len, count);
+      assertEquals(count, actual.read(i, a, start, len));
+      assertTrue(Arrays.equals(Arrays.copyOf(e, count), Arrays.copyOf(a, count)));
+      if (expected.hasQualityData()) {
+        assertEquals(length, actual.readQuality(i, a));
+        expected.readQuality(i, e);
+        assertTrue(Arrays.equals(Arrays.copyOf(e, length), Arrays.copyOf(a, length)));
+        expected.readQuality(i, e, start, len);
+        assertEquals(count, actual.readQuality(i, a, start, len));
+        assertTrue(Arrays.equals(Arrays.copyOf(e, count), Arrays.copyOf(a, count)));
+      }
+      final long end = i + r.nextInt((int) (expected.numberSequences() - i) + 1);
+      assertEquals(expected.lengthBetween(i, end), actual.lengthBetween(i, end));
+    }
+  }
+
+  private void check(boolean fastq, long sizeLimit, boolean compressed) throws IOException {
+    final Random r = new Random(sizeLimit);
+    try (TestDirectory dir = new TestDirectory("mapped")) {
+      writeSdf(dir, data(r, 200, fastq), fastq, sizeLimit, compressed);
+      assertTrue(!compressed || new IndexFile(dir).getSequenceEncoding() == IndexFile.SEQUENCE_ENCODING_COMPRESSED);
+      try (SequencesReader expected = new DefaultSequencesReader(dir, LongRange.NONE);
+           SequencesReader actual = new MappedSequencesReader(dir, LongRange.NONE)) {
+        checkSame(expected, actual, r);
+      }
+      final LongRange region = new LongRange(17, 123);
+      try (SequencesReader expected = CompressedMemorySequencesReader.createSequencesReader(dir, true, true, region);
+           SequencesReader actual = new MappedSequencesReader(dir, region)) {
+        checkSame(expected, actual, r);
+      }
+    }
+  }
+
+  public void testFasta() throws IOException {
+    check(false, 1000, true);
+    check(false, 1000, false);
+    check(false, 1L << 30, true);
+  }
+
+  public void testFastq() throws IOException {
+    check(true, 1000, true);
+    check(true, 1337, false);
+    check(true, 1L << 30, true);
+  }
+
+  public void testErrors() throws IOException {
+    try (TestDirectory dir = new TestDirectory("mapped")) {
+      writeSdf(dir, ">a\nACGT\n>b\nAC\n", false, 1000, true);
+      final MappedSequencesReader reader = new MappedSequencesReader(dir, LongRange.NONE);
+      assertTrue(reader.copy() == reader);
+      final byte[] buf = new byte[4];
+      assertEquals(0, reader.readQuality(0, buf));
+      try {
+        reader.read(2, buf);
+        fail();
+      } catch (final IllegalArgumentException e) {
+        assertEquals("Invalid sequence index: 2, maximum is: 2", e.getMessage());
+      }
+      try {
+        reader.read(1, buf, 3, 1);
+        fail();
+      } catch (final IllegalArgumentException e) {
+        assertEquals("Requested data not a subset of sequence data.", e.getMessage());
+      }
+      try {
+        reader.read(0, new byte[2]);
+        fail();
+      } catch (final IllegalArgumentException e) {
+        assertEquals("Array too small got: 2 required: 4", e.getMessage());
+      }
+    }
+  }
+
+  public void testNoChecksums() throws IOException {
+    try (TestDirectory dir = new TestDirectory("mapped")) {
+      try (InputStream archive = Resources.getResourceAsStream("com/rtg/reader/resources/sdfver9.arch")) {
+        SimpleArchive.unpackArchive(archive, dir);
+      }
+      final MappedSequencesReader reader = new MappedSequencesReader(dir, LongRange.NONE);
+      assertTrue(reader.numberSequences() > 0);
+      try {
+        reader.sequenceDataChecksum(0);
+        fail();
+      } catch (final NoTalkbackSlimException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("The SDF " + dir + " was created with an older version of RTG"));
+        assertTrue(e.getMessage(), e.getMessage().contains("Regenerate the SDF"));
+      }
+    }
+  }
+
+  public void testEmpty() throws IOException {
+    try (TestDirectory dir = new TestDirectory("mapped")) {
+      writeSdf(dir, "", false, 1000, true);
+      final MappedSequencesReader reader = new MappedSequencesReader(dir, LongRange.NONE);
+      assertEquals(0, reader.numberSequences());
+      assertEquals(0, reader.lengthBetween(0, 0));
+      assertEquals(0, reader.sequenceLengths(0, 0).length);
+    }
+  }
+}
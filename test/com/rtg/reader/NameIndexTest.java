@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import com.rtg.launcher.MainResult;
+import com.rtg.util.io.FileUtils;
+import com.rtg.util.io.TestDirectory;
+import com.rtg.util.test.FileHelper;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class NameIndexTest extends TestCase {
+
+  private static final String FASTA = ">seq0\nACGT\n>chr1 some description\nACGT\n>seq2\nA\n>chr1\nGG\n>x\nTTT\n";
+
+  private static void buildIndex(File sdf, long checksum) throws IOException {
+    try (SequencesReader reader = SequencesReaderFactory.createDefaultSequencesReader(sdf);
+         NameIndex.Builder builder = new NameIndex.Builder(sdf)) {
+      for (long i = 0; i < reader.numberSequences(); ++i) {
+        builder.add(reader.name(i));
+      }
+      builder.finish(reader.numberSequences(), checksum);
+    }
+  }
+
+  public void testLookup() throws IOException {
+    try (final TestDirectory dir = new TestDirectory("nameindex")) {
+      final File sdf = ReaderTestUtils.getDNADir(FASTA, new File(dir, "sdf"));
+      assertNull(NameIndex.open(sdf));
+      buildIndex(sdf, new IndexFile(sdf).getNameChecksum());
+      assertFalse(new File(sdf, SdfFileUtils.NAME_HASH_INDEX_FILENAME + ".tmp").exists());
+      try (final NameIndex index = NameIndex.open(sdf)) {
+        assertNotNull(index);
+        assertEquals(5, index.numberSequences());
+        assertEquals(0, index.sequenceId("seq0"));
+        assertEquals(3, index.sequenceId("chr1")); // Last of duplicates, as for a map
+        assertEquals(2, index.sequenceId("seq2"));
+        assertEquals(4, index.sequenceId("x"));
+        assertEquals(-1, index.sequenceId("chr2"));
+        assertEquals(-1, index.sequenceId(""));
+      }
+      try (SequencesReader reader = SequencesReaderFactory.createDefaultSequencesReader(sdf)) {
+        final Map<String, Long> map = ReaderUtils.getSequenceNameMap(reader);
+        assertEquals(Long.valueOf(3), map.get("chr1"));
+        assertNull(map.get("chr2"));
+        assertTrue(map.containsKey("x"));
+        assertEquals(4, map.size());
+        assertEquals("{seq0=0, chr1=3, seq2=2, x=4}", map.toString());
+        ReaderUtils.closeSequenceNameMap(map);
+        assertEquals(Long.valueOf(2), map.get("seq2")); // Reopens the name files
+        ReaderUtils.closeSequenceNameMap(map);
+      }
+    }
+  }
+
+  public void testOutOfDate() throws IOException {
+    try (final TestDirectory dir = new TestDirectory("nameindex")) {
+      final File sdf = ReaderTestUtils.getDNADir(FASTA, new File(dir, "sdf"));
+      buildIndex(sdf, new IndexFile(sdf).getNameChecksum() + 1);
+      assertNull(NameIndex.open(sdf));
+      FileUtils.stringToFile("junk", SdfFileUtils.nameHashIndexFile(sdf));
+      assertNull(NameIndex.open(sdf));
+    }
+  }
+
+  public void testFormat() throws IOException {
+    try (final TestDirectory dir = new TestDirectory("nameindex")) {
+      final File fasta = FileHelper.stringToGzFile(FASTA, new File(dir, "in.fasta.gz"));
+      final File sdf = new File(dir, "sdf");
+      final MainResult res = MainResult.run(new FormatCli(), "-o", sdf.getPath(), "--XX" + "com.rtg.reader.name-index=true", fasta.getPath());
+      assertEquals(res.err(), 0, res.rc());
+      try (final NameIndex index = NameIndex.open(sdf)) {
+        assertNotNull(index);
+        assertEquals(3, index.sequenceId("chr1"));
+      }
+    }
+  }
+
+  public void testTableSize() {
+    assertEquals(4, NameIndex.tableSize(0));
+    assertEquals(4, NameIndex.tableSize(1));
+    assertEquals(8, NameIndex.tableSize(2));
+    assertEquals(8, NameIndex.tableSize(3));
+    assertEquals(16, NameIndex.tableSize(4));
+  }
+}
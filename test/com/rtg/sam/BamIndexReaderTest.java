@@ -32,6 +32,8 @@ package com.rtg.sam;
 import java.io.File;
 import java.io.IOException;
 
+import com.rtg.tabix.IndexBinning;
+import com.rtg.tabix.UnindexableDataException;
 import com.rtg.tabix.VirtualOffsets;
 import com.rtg.util.io.FileUtils;
 import com.rtg.util.test.FileHelper;
@@ -61,4 +63,21 @@ public class BamIndexReaderTest extends TestCase {
       FileHelper.deleteAll(dir);
     }
   }
+
+  public void testCsi() throws IOException, UnindexableDataException {
+    final File dir = FileUtils.createTempDir("bamindexreader", "test");
+    try {
+      final File bam = new File(dir, "mated.bam");
+      FileHelper.resourceToFile("com/rtg/sam/resources/mated.bam", bam);
+      final File index = BamIndexer.csiIndexFileName(bam);
+      BamIndexer.saveBamCsiIndex(bam, index, IndexBinning.csi(IndexBinning.DEFAULT_MIN_SHIFT));
+      final SAMFileHeader header = SamUtils.getSingleHeader(bam);
+      final BamIndexReader tir = new BamIndexReader(index, header.getSequenceDictionary());
+      final VirtualOffsets positions = tir.getFilePointers(SamRangeUtils.createExplicitReferenceRange(header, new SamRegionRestriction("simulatedSequence", 0, 5000)));
+      assertEquals(151L, positions.start(0));
+      assertEquals((446375L << 16) | 49187, positions.end(0));
+    } finally {
+      FileHelper.deleteAll(dir);
+    }
+  }
 }
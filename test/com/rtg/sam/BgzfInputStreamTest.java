@@ -29,7 +29,15 @@
  */
 package com.rtg.sam;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
 import com.rtg.util.Resources;
+import com.rtg.util.io.ParallelBgzfOutputStream;
 
 import junit.framework.TestCase;
 
@@ -72,4 +80,75 @@ public class BgzfInputStreamTest extends TestCase {
       bgzfi.close();
     }
   }
+
+  private static byte[] compressed(int blocks) throws IOException {
+    final Random r = new Random(blocks);
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (OutputStream out = new ParallelBgzfOutputStream(bos, 5, 2, true)) {
+      for (int i = 0; i < blocks; ++i) {
+        final byte[] data = new byte[r.nextInt(100000)];
+        for (int j = 0; j < data.length; ++j) {
+          data[j] = (byte) ('A' + r.nextInt(r.nextBoolean() ? 4 : 26));
+        }
+        out.write(data);
+        out.flush(); // Introduce some short blocks
+      }
+    }
+    return bos.toByteArray();
+  }
+
+  public void testReadAheadOffByDefault() {
+    assertEquals(1, BgzfInputStream.DEFAULT_THREADS);
+  }
+
+  public void testReadAheadSameAsSerial() throws IOException {
+    final byte[] compressed = compressed(30);
+    try (BgzfInputStream serial = new BgzfInputStream(new ByteArrayInputStream(compressed), 1);
+         BgzfInputStream parallel = new BgzfInputStream(new ByteArrayInputStream(compressed), 4)) {
+      final Random r = new Random(17);
+      final byte[] bufA = new byte[70000];
+      final byte[] bufB = new byte[bufA.length];
+      long total = 0;
+      while (true) {
+        assertEquals(serial.getFilePointer(), parallel.getFilePointer());
+        assertEquals(serial.blockStart(), parallel.blockStart());
+        assertEquals(serial.dataOffset(), parallel.dataOffset());
+        if (r.nextInt(5) == 0) {
+          assertEquals(serial.available(), parallel.available());
+        }
+        final int len = 1 + r.nextInt(bufA.length - 1);
+        final int lenA = serial.read(bufA, 0, len);
+        final int lenB = parallel.read(bufB, 0, len);
+        assertEquals(lenA, lenB);
+        if (lenA == -1) {
+          break;
+        }
+        for (int i = 0; i < lenA; ++i) {
+          assertEquals(bufA[i], bufB[i]);
+        }
+        total += lenA;
+      }
+      assertTrue(total > 0);
+      assertEquals(0, parallel.available());
+      assertEquals(-1, parallel.read());
+      assertEquals((long) compressed.length << 16, parallel.getFilePointer());
+    }
+  }
+
+  public void testCorruptBlock() throws IOException {
+    final byte[] compressed = compressed(5);
+    final int firstBlockSize = ((compressed[17] & 0xFF) << 8 | (compressed[16] & 0xFF)) + 1;
+    compressed[firstBlockSize - 8] ^= 0x55; // Corrupt CRC of first block
+    for (final int threads : new int[] {1, 3}) {
+      try (InputStream in = new BgzfInputStream(new ByteArrayInputStream(compressed), threads)) {
+        final byte[] buf = new byte[4096];
+        while (in.read(buf) != -1) {
+          // Read until the corruption is detected
+        }
+        fail();
+      } catch (IOException e) {
+        assertTrue(e.getMessage().startsWith("CRC doesn't match block"));
+      }
+    }
+  }
 }
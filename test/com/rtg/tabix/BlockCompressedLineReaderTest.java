@@ -36,6 +36,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
+import com.rtg.sam.BgzfInputStream;
 import com.rtg.util.gzip.GzipUtils;
 import com.rtg.util.io.FileUtils;
 import com.rtg.util.test.FileHelper;
@@ -97,4 +98,32 @@ public class BlockCompressedLineReaderTest extends TestCase {
       assertTrue(FileHelper.deleteAll(dir));
     }
   }
+
+  public void testParallelLinearRead() throws IOException {
+    final File dir = FileUtils.createTempDir("bclr", "test");
+    try {
+      final File sam = FileHelper.resourceToFile("com/rtg/sam/resources/readerWindow1.sam.gz", new File(dir, "readerWindow1.sam.gz"));
+      try (BlockCompressedLineReader serial = new BlockCompressedLineReader(new BlockCompressedInputStream(sam));
+           BlockCompressedLineReader parallel = new BlockCompressedLineReader(new BgzfInputStream(sam, 3))) {
+        String lineA;
+        String lineB;
+        do {
+          lineA = serial.readLine();
+          lineB = parallel.readLine();
+          assertEquals(lineA, lineB);
+          assertEquals(serial.getLineFilePointer(), parallel.getLineFilePointer());
+          assertEquals(serial.getFilePointer(), parallel.getFilePointer());
+        } while (lineA != null);
+        assertTrue(parallel.getLineNumber() > 0);
+        try {
+          parallel.seek(0);
+          fail();
+        } catch (UnsupportedOperationException e) {
+          // Expected
+        }
+      }
+    } finally {
+      assertTrue(FileHelper.deleteAll(dir));
+    }
+  }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.tabix;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Test class
+ */
+public class ByteLineReaderTest extends TestCase {
+
+  private static List<String> readAll(LineReader reader) throws IOException {
+    final List<String> lines = new ArrayList<>();
+    try (LineReader r = reader) {
+      String line;
+      while ((line = r.readLine()) != null) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  private void check(String text) throws IOException {
+    final List<String> expected = readAll(new BrLineReader(new BufferedReader(new StringReader(text))));
+    for (final int size : new int[] {1, 2, 3, 7, 1024}) {
+      assertEquals(expected, readAll(new ByteLineReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), size)));
+    }
+  }
+
+  public void testSameAsBufferedReader() throws IOException {
+    check("");
+    check("a");
+    check("a\n");
+    check("\n\n");
+    check("line one\nline two\n\nline four");
+    check("dos\r\nline\r\nendings\r\n");
+    check("mac\rline\r\rendings");
+    check("mixed\r\n\r\n\n\rend\r");
+    check("non-ascii caf\u00e9\t\u4e2d\u6587\nok");
+  }
+
+  public void testBuffer() throws IOException {
+    final byte[] data = "first\tline\r\nsecond".getBytes(StandardCharsets.US_ASCII);
+    try (ByteLineReader r = new ByteLineReader(new ByteArrayInputStream(data), 4)) {
+      assertTrue(r.nextLine());
+      assertEquals(10, r.lineEnd() - r.lineStart());
+      assertEquals('\t', r.buffer()[r.lineStart() + 5]);
+      assertEquals("first\tline", r.line());
+      assertTrue(r.nextLine());
+      assertEquals("second", ByteLineReader.toString(r.buffer(), r.lineStart(), r.lineEnd()));
+      assertFalse(r.nextLine());
+      assertNull(r.readLine());
+    }
+  }
+}
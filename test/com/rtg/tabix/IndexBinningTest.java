@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.tabix;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class IndexBinningTest extends TestCase {
+
+  public void testTabixScheme() {
+    final IndexBinning b = IndexBinning.TABIX;
+    assertEquals(14, b.minShift());
+    assertEquals(5, b.depth());
+    assertEquals(TabixIndexer.MAXIMUM_REFERENCE_LENGTH, b.maxCoordinate());
+    assertEquals(TabixIndexer.META_BIN, b.metaBin());
+    assertEquals(4681, b.leafBin(0));
+    assertEquals(4682, b.leafBin(1 << 14));
+    final Random r = new Random(3);
+    for (int i = 0; i < 10000; ++i) {
+      final int beg = r.nextInt(TabixIndexer.MAXIMUM_REFERENCE_LENGTH - 1);
+      final int end = beg + 1 + r.nextInt(r.nextBoolean() ? 100 : 10000000);
+      assertEquals(TabixIndexer.reg2bin(beg, Math.min(end, TabixIndexer.MAXIMUM_REFERENCE_LENGTH)), b.reg2bin(beg, Math.min(end, TabixIndexer.MAXIMUM_REFERENCE_LENGTH)));
+    }
+  }
+
+  public void testReg2Bins() {
+    final IndexBinning b = IndexBinning.TABIX;
+    final int[] bins = new int[b.numBins()];
+    int n = b.reg2bins(bins, 0, 1);
+    assertEquals("[0, 1, 9, 73, 585, 4681]", Arrays.toString(Arrays.copyOf(bins, n)));
+    n = b.reg2bins(bins, (1 << 14) - 1, (1 << 14) + 1);
+    assertEquals("[0, 1, 9, 73, 585, 4681, 4682]", Arrays.toString(Arrays.copyOf(bins, n)));
+    // Every bin containing a region is in the list of overlapping bins
+    final Random r = new Random(5);
+    final IndexBinning csi = IndexBinning.csi(12);
+    final int[] csiBins = new int[csi.numBins()];
+    for (int i = 0; i < 1000; ++i) {
+      final int beg = r.nextInt(Integer.MAX_VALUE - 100000);
+      final int end = beg + 1 + r.nextInt(100000);
+      final int bin = csi.reg2bin(beg, end);
+      n = csi.reg2bins(csiBins, beg, end);
+      boolean found = false;
+      for (int k = 0; k < n; ++k) {
+        found |= csiBins[k] == bin;
+      }
+      assertTrue(found);
+      // Overlapping bins at each level run from the bin of the start to the bin of the last position
+      int k = 0;
+      for (int level = 0; level <= csi.depth(); ++level) {
+        for (int bin2 = csi.bin(level, beg); bin2 <= csi.bin(level, end - 1); ++bin2) {
+          assertEquals(csiBins[k++], bin2);
+        }
+      }
+      assertEquals(n, k);
+    }
+  }
+
+  public void testCsiScheme() {
+    final IndexBinning b = IndexBinning.csi(14);
+    assertEquals(6, b.depth());
+    assertEquals(1L << 32, b.maxCoordinate());
+    assertEquals(((1 << 21) - 1) / 7 + 1, b.metaBin());
+    // Positions beyond the limit of tabix indexes get distinct leaf bins
+    final int pos = 600000000;
+    assertEquals(b.leafBin(pos), b.reg2bin(pos, pos + 1));
+    assertTrue(b.reg2bin(pos, pos + 1) != b.reg2bin(pos + (1 << 14), pos + (1 << 14) + 1));
+    assertEquals(0, b.reg2bin(0, Integer.MAX_VALUE));
+    assertEquals(0, b.firstWindow(0));
+    assertEquals(pos >> 14, b.firstWindow(b.leafBin(pos)));
+    assertEquals((pos >> 17) << 3, b.firstWindow(IndexBinning.parentBin(b.leafBin(pos))));
+  }
+
+  public void testInvalid() {
+    try {
+      new IndexBinning(14, IndexBinning.MAX_DEPTH + 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid binning scheme, min shift 14 depth 10", e.getMessage());
+    }
+  }
+}
@@ -31,7 +31,10 @@ package com.rtg.tabix;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
 
+import com.rtg.util.io.IOUtils;
 import com.rtg.util.io.TestDirectory;
 import com.rtg.vcf.DefaultVcfWriter;
 import com.rtg.vcf.VcfRecord;
@@ -62,4 +65,57 @@ public class IndexingStreamCreatorTest extends TestCase {
       assertTrue(new File(dir, "thingy.vcf.gz.tbi").exists());
     }
   }
+
+  public void testSameAsIndexingFile() throws IOException, UnindexableDataException {
+    try (TestDirectory dir = new TestDirectory("isct")) {
+      final File vcfFile = new File(dir, "thingy.vcf.gz");
+      final VcfHeader header = new VcfHeader();
+      header.addCommonHeader();
+      header.addSampleName("sample");
+      final Random r = new Random(42);
+      try (VcfWriter writer = new DefaultVcfWriter(header, vcfFile, null, true, true, true)) {
+        for (int seq = 0; seq < 3; ++seq) {
+          int pos = 1;
+          for (int i = 0; i < 5000; ++i) {
+            pos += 1 + r.nextInt(1000);
+            // Occasional long records, so that some span several blocks
+            final StringBuilder ref = new StringBuilder("A");
+            final int length = r.nextInt(100) == 0 ? r.nextInt(200000) : r.nextInt(5);
+            for (int k = 0; k < length; ++k) {
+              ref.append("ACGT".charAt(r.nextInt(4)));
+            }
+            final VcfRecord rec = new VcfRecord("seq" + seq, pos, ref.toString());
+            rec.addAltCall("T");
+            rec.setNumberOfSamples(1);
+            rec.addFormatAndSample("GT", "1/0");
+            writer.write(rec);
+          }
+        }
+      }
+      final File tbi = new File(dir, "thingy.vcf.gz.tbi");
+      final File expected = new File(dir, "expected.tbi");
+      new TabixIndexer(vcfFile, expected).saveVcfIndex();
+      assertTrue(Arrays.equals(IOUtils.readData(expected), IOUtils.readData(tbi)));
+    }
+  }
+
+  public void testUnsorted() throws IOException {
+    try (TestDirectory dir = new TestDirectory("isct")) {
+      final File vcfFile = new File(dir, "thingy.vcf.gz");
+      final VcfHeader header = new VcfHeader();
+      header.addCommonHeader();
+      try {
+        try (VcfWriter writer = new DefaultVcfWriter(header, vcfFile, null, true, true, true)) {
+          // Plenty of records after the problem, which must not hold up the writer
+          for (int i = 0; i < 200000; ++i) {
+            writer.write(new VcfRecord("seq", i == 10 ? 0 : 100 + i, "A"));
+          }
+        }
+        fail();
+      } catch (final IOException e) {
+        assertEquals("Cannot produce index for: " + vcfFile + " (try disabling indexing)", e.getMessage());
+      }
+      assertTrue(vcfFile.length() > 100000);
+    }
+  }
 }
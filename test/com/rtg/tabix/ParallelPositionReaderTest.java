@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.tabix;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.rtg.util.io.TestDirectory;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import junit.framework.TestCase;
+
+/**
+ */
+public class ParallelPositionReaderTest extends TestCase {
+
+  private static String randomBases(Random r, int length) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; ++i) {
+      sb.append("ACGT".charAt(r.nextInt(4)));
+    }
+    return sb.toString();
+  }
+
+  // Records of widely varying length, so that some lines span several blocks
+  private static File vcf(File dir, Random r, boolean flush) throws IOException {
+    final File f = new File(dir, "test.vcf.gz");
+    try (OutputStream out = new BlockCompressedOutputStream(new FileOutputStream(f), f)) {
+      out.write("##fileformat=VCFv4.1\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n".getBytes());
+      for (int seq = 0; seq < 4; ++seq) {
+        int pos = 1;
+        for (int i = 0; i < 1000; ++i) {
+          pos += r.nextInt(2000);
+          final String ref = randomBases(r, r.nextInt(20) == 0 ? 1 + r.nextInt(100000) : 1 + r.nextInt(10));
+          out.write(("chr" + seq + "\t" + pos + "\t.\t" + ref + "\tA\t.\tPASS\t.\n").getBytes());
+          if (flush && r.nextInt(50) == 0) {
+            out.flush(); // Some lines end exactly at the end of a block
+          }
+        }
+      }
+    }
+    return f;
+  }
+
+  private static byte[] serialIndex(File f, TabixIndexer.IndexerFactory factory, IndexBinning csi) throws IOException, UnindexableDataException {
+    final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    try (InputStream is = new FileInputStream(f)) {
+      TabixIndexer.saveIndex(is, index, factory, csi);
+    }
+    return index.toByteArray();
+  }
+
+  private static byte[] parallelIndex(File f, TabixIndexer.IndexerFactory factory, IndexBinning csi, long rangeSize) throws IOException, UnindexableDataException {
+    final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    try (BlockCompressedPositionReader in = new ParallelPositionReader(f, factory, 3, rangeSize)) {
+      if (csi == null) {
+        TabixIndexer.saveTabixIndex(in, index, factory.getOptions());
+      } else {
+        TabixIndexer.saveCsiIndex(in, index, factory.getOptions(), csi);
+      }
+    }
+    return index.toByteArray();
+  }
+
+  private void checkSameAsSerial(File f, TabixIndexer.IndexerFactory factory) throws IOException, UnindexableDataException {
+    final byte[] expected = serialIndex(f, factory, null);
+    for (final long rangeSize : new long[] {1, 100000, ParallelPositionReader.RANGE_SIZE}) {
+      assertTrue(Arrays.equals(expected, parallelIndex(f, factory, null, rangeSize)));
+    }
+    final IndexBinning csi = IndexBinning.csi(14);
+    assertTrue(Arrays.equals(serialIndex(f, factory, csi), parallelIndex(f, factory, csi, 1)));
+  }
+
+  public void testSameAsSerial() throws IOException, UnindexableDataException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final Random r = new Random(42);
+      final File f = vcf(dir, r, false);
+      assertTrue(ParallelPositionReader.splitPoints(f, 1, 0).size() > 50);
+      checkSameAsSerial(f, new TabixIndexer.VcfIndexerFactory());
+      checkSameAsSerial(vcf(dir, r, true), new TabixIndexer.VcfIndexerFactory());
+    }
+  }
+
+  public void testSkipLines() throws IOException, UnindexableDataException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final Random r = new Random(7);
+      final File f = new File(dir, "test.bed.gz");
+      try (OutputStream out = new BlockCompressedOutputStream(new FileOutputStream(f), f)) {
+        // Skipped lines spanning several blocks
+        for (int i = 0; i < 3; ++i) {
+          out.write(("track " + randomBases(r, 100000) + "\n").getBytes());
+        }
+        for (int i = 0; i < 20000; ++i) {
+          out.write(("chr1\t" + (10 * i) + "\t" + (10 * i + 1 + r.nextInt(100)) + "\t" + randomBases(r, r.nextInt(20)) + "\n").getBytes());
+        }
+      }
+      // Without accounting for the skipped lines the file would be split within them
+      assertEquals(0, ParallelPositionReader.splitPoints(f, 1, 0).get(0)[0]);
+      checkSameAsSerial(f, new TabixIndexer.BedIndexerFactory(3));
+    }
+  }
+
+  public void testErrors() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final File f = new File(dir, "test.vcf.gz");
+      try (OutputStream out = new BlockCompressedOutputStream(new FileOutputStream(f), f)) {
+        for (int i = 0; i < 20000; ++i) {
+          out.write(("chr1\t" + (i == 15000 ? "x" : String.valueOf(i + 1)) + "\t.\tA\tC\t.\tPASS\t.\n").getBytes());
+        }
+      }
+      try {
+        parallelIndex(f, new TabixIndexer.VcfIndexerFactory(), null, 1);
+        fail();
+      } catch (final IOException | UnindexableDataException e) {
+        assertEquals("Data file did not contain an integer in column 2 on line: chr1\tx\t.\tA\tC\t.\tPASS\t.", e.getMessage());
+      }
+    }
+  }
+}
@@ -33,8 +33,12 @@ package com.rtg.tabix;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import com.rtg.sam.SamRegionRestriction;
+import com.rtg.util.intervals.RegionRestriction;
 import com.rtg.util.io.FileUtils;
 import com.rtg.util.test.BgzipFileHelper;
 import com.rtg.util.test.FileHelper;
@@ -129,4 +133,93 @@ public class TabixIndexReaderTest extends TestCase {
     }
   }
 
+  private static List<String> readRegion(File input, File index, RegionRestriction region) throws IOException {
+    final List<String> lines = new ArrayList<>();
+    try (TabixLineReader reader = new TabixLineReader(input, index, region)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  public void testCsiLongSequence() throws IOException, UnindexableDataException {
+    final File dir = FileUtils.createTempDir("tabixIndexer", "csi");
+    try {
+      final StringBuilder vcf = new StringBuilder("##fileformat=VCFv4.1\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n");
+      final List<String> records = new ArrayList<>();
+      for (final String chr : new String[] {"small", "big"}) {
+        final int length = "big".equals(chr) ? 700000000 : 1000000;
+        for (int pos = 1; pos < length; pos += 30011) {
+          final String record = chr + "\t" + pos + "\t.\tA\tG\t.\tPASS\t.";
+          records.add(record);
+          vcf.append(record).append('\n');
+        }
+      }
+      final File input = BgzipFileHelper.bytesToBgzipFile(vcf.toString().getBytes(), new File(dir, "long.vcf.gz"));
+      try {
+        new TabixIndexer(input, TabixIndexer.indexFileName(input)).saveVcfIndex();
+        fail();
+      } catch (final UnindexableDataException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("CSI"));
+      }
+      assertFalse(TabixIndexer.indexFileName(input).exists());
+
+      final File csi = TabixIndexer.csiIndexFileName(input);
+      new TabixIndexer(input, csi, IndexBinning.csi(IndexBinning.DEFAULT_MIN_SHIFT)).saveVcfIndex();
+      assertEquals(csi, TabixIndexer.existingIndexFileName(input));
+      final TabixIndexReader tir = new TabixIndexReader(csi);
+      assertEquals(2, tir.getOptions().mFormat);
+      assertEquals("[small, big]", Arrays.toString(tir.sequenceNames()));
+
+      for (final RegionRestriction region : new RegionRestriction[] {
+        new RegionRestriction("big", 650000000, 650200000),
+        new RegionRestriction("big", 1000, 100000),
+        new RegionRestriction("big", 699900000, 700000000),
+        new RegionRestriction("small", 30000, 30020),
+      }) {
+        final List<String> expected = new ArrayList<>();
+        for (final String record : records) {
+          final String[] parts = record.split("\t");
+          final int start = Integer.parseInt(parts[1]) - 1;
+          if (parts[0].equals(region.getSequenceName()) && start >= region.getStart() && start < region.getEnd()) {
+            expected.add(record);
+          }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, readRegion(input, csi, region));
+      }
+      // Offsets for a small region do not span the whole sequence
+      final VirtualOffsets offsets = tir.getFilePointers(new RegionRestriction("big", 650000000, 650040000));
+      final VirtualOffsets all = tir.getFilePointers(new RegionRestriction("big"));
+      assertTrue(offsets.start(0) > all.start(0));
+      assertTrue(offsets.end(0) < all.end(0));
+    } finally {
+      FileHelper.deleteAll(dir);
+    }
+  }
+
+  public void testCsiSameAsTabix() throws IOException, UnindexableDataException {
+    final File dir = FileUtils.createTempDir("tabixIndexer", "csi");
+    try {
+      final File input = FileHelper.resourceToFile("com/rtg/sam/resources/snp_only.vcf.gz", new File(dir, "snp_only.vcf.gz"));
+      final File tbi = FileHelper.resourceToFile("com/rtg/sam/resources/snp_only.vcf.gz.tbi", new File(dir, "snp_only.vcf.gz.tbi"));
+      final File csi = TabixIndexer.csiIndexFileName(input);
+      new TabixIndexer(input, csi, new IndexBinning(12, 7)).saveVcfIndex();
+      final TabixIndexReader tir = new TabixIndexReader(csi);
+      assertEquals(2, tir.getOptions().mFormat);
+      assertEquals(Arrays.toString(new TabixIndexReader(tbi).sequenceNames()), Arrays.toString(tir.sequenceNames()));
+      for (final RegionRestriction region : new RegionRestriction[] {
+        new RegionRestriction("simulatedSequence2", 0, 100),
+        new RegionRestriction("simulatedSequence14", 200, 800),
+        new RegionRestriction("simulatedSequence19"),
+        new RegionRestriction("simulatedSequence31", 100, 10000),
+      }) {
+        assertEquals(readRegion(input, tbi, region), readRegion(input, csi, region));
+      }
+    } finally {
+      FileHelper.deleteAll(dir);
+    }
+  }
 }
@@ -32,6 +32,8 @@ package com.rtg.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.rtg.util.diagnostic.Diagnostic;
@@ -296,6 +298,40 @@ public class SimpleThreadPoolTest extends TestCase {
     }
   }
 
+  public void testHelperJobs() throws IOException {
+    final File testDir = FileHelper.createTempDirectory();
+    try {
+      Diagnostic.switchLog(new File(testDir, "log"));
+      final AtomicInteger val = new AtomicInteger();
+      final SimpleThreadPool stp = new SimpleThreadPool(3, "Helper", true);
+      stp.enableBasicProgress(2);
+      for (int j = 0; j < 2; ++j) {
+        stp.execute(() -> {
+          final FutureTask<?>[] tasks = new FutureTask<?>[10];
+          for (int i = 0; i < tasks.length; ++i) {
+            tasks[i] = new FutureTask<>(val::incrementAndGet);
+            stp.executeHelper(tasks[i]);
+          }
+          try {
+            for (final FutureTask<?> task : tasks) {
+              task.run();
+              task.get();
+            }
+          } catch (final InterruptedException | ExecutionException e) {
+            throw new IOException(e);
+          }
+        });
+      }
+      stp.terminate();
+      assertEquals(20, val.get());
+      final String mps = FileHelper.fileToString(new File(testDir, FileUtils.PROGRESS_SUFFIX));
+      assertTrue(mps, mps.contains("Helper: 2/2 Jobs Finished"));
+      assertFalse(mps, mps.contains("Helper: 3/2 Jobs Finished"));
+    } finally {
+      FileHelper.deleteAll(testDir);
+    }
+  }
+
   public void testJumble() throws IOException {
     final SimpleThreadPool stp = new SimpleThreadPool(2, "TestQueue", true);
     final ThreadGroup tg = Thread.currentThread().getThreadGroup();
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.util.array.longindex;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class LongHashSetTest extends TestCase {
+
+  public void testTableSize() {
+    assertEquals(4, LongHashSet.tableSize(0));
+    assertEquals(4, LongHashSet.tableSize(1));
+    assertEquals(4, LongHashSet.tableSize(2));
+    assertEquals(16, LongHashSet.tableSize(12));
+    assertEquals(32, LongHashSet.tableSize(13));
+    assertEquals(1L << 32, LongHashSet.tableSize(3L << 30));
+    assertEquals(4096, LongHashSet.tableSize(3072));
+    assertEquals(8192, LongHashSet.tableSize(3073));
+    assertEquals(8192, LongHashSet.tableSize(3100));
+    try {
+      LongHashSet.tableSize(-1);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertEquals("Negative size=-1", e.getMessage());
+    }
+  }
+
+  public void testNoResizeAtExpectedSize() {
+    for (final int expectedSize : new int[] {1, 3, 12, 13, 3072, 3073, 3100, 10000}) {
+      final LongHashSet set = new LongHashSet(expectedSize);
+      final long bytes = set.bytes();
+      for (int i = 1; i <= expectedSize; ++i) {
+        assertTrue(set.add(i));
+      }
+      assertEquals(expectedSize, set.size());
+      assertEquals("expectedSize=" + expectedSize, bytes, set.bytes());
+    }
+  }
+
+  public void testZero() {
+    final LongHashSet set = new LongHashSet(0);
+    assertFalse(set.contains(0));
+    assertTrue(set.add(0));
+    assertFalse(set.add(0));
+    assertTrue(set.contains(0));
+    assertFalse(set.contains(1));
+    assertEquals(1, set.size());
+  }
+
+  public void testAgainstHashSet() {
+    final Random r = new Random(42);
+    final LongHashSet set = new LongHashSet(1);
+    final HashSet<Long> expected = new HashSet<>();
+    for (int i = 0; i < 100000; ++i) {
+      // Mix of small (colliding) and full range keys, including negatives
+      final long key = r.nextBoolean() ? r.nextInt(20000) - 10000 : r.nextLong();
+      assertEquals(expected.contains(key), set.contains(key));
+      assertEquals(expected.add(key), set.add(key));
+      assertTrue(set.contains(key));
+    }
+    assertEquals(expected.size(), set.size());
+    for (final long key : expected) {
+      assertTrue(set.contains(key));
+    }
+    assertTrue(set.bytes() >= 8 * set.size());
+  }
+}
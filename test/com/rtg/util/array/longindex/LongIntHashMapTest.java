@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.util.array.longindex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class LongIntHashMapTest extends TestCase {
+
+  public void testZero() {
+    final LongIntHashMap map = new LongIntHashMap(-1);
+    assertFalse(map.containsKey(0));
+    assertEquals(-1, map.get(0));
+    assertEquals(-1, map.put(0, 5));
+    assertEquals(5, map.put(0, 7));
+    assertEquals(7, map.get(0));
+    assertTrue(map.containsKey(0));
+    assertEquals(-1, map.get(1));
+    assertEquals(1, map.size());
+  }
+
+  public void testAgainstHashMap() {
+    final Random r = new Random(42);
+    final LongIntHashMap map = new LongIntHashMap(1, Integer.MIN_VALUE);
+    final Map<Long, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 100000; ++i) {
+      final long key = r.nextBoolean() ? r.nextInt(20000) - 10000 : r.nextLong();
+      final int value = r.nextInt();
+      assertEquals(expected.containsKey(key), map.containsKey(key));
+      final Integer previous = expected.put(key, value);
+      assertEquals(previous == null ? Integer.MIN_VALUE : previous, map.put(key, value));
+      assertEquals(value, map.get(key));
+    }
+    assertEquals(expected.size(), map.size());
+    for (final Map.Entry<Long, Integer> e : expected.entrySet()) {
+      assertEquals((int) e.getValue(), map.get(e.getKey()));
+    }
+    assertTrue(map.bytes() >= 12 * map.size());
+  }
+}
@@ -53,4 +53,23 @@ public class SpyCounterTest extends TestCase {
     //System.err.println(ps.toString());
     Diagnostic.setLogStream();
   }
+
+  public void testConcurrentIncrement() throws InterruptedException {
+    final SpyCounter spy = new SpyCounter("bar");
+    final Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; ++i) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 10000; ++j) {
+          spy.increment();
+          spy.increment(2);
+        }
+      });
+      threads[i].start();
+    }
+    for (final Thread t : threads) {
+      t.join();
+    }
+    assertEquals(120000, spy.count());
+    assertEquals("bar", spy.name());
+  }
 }
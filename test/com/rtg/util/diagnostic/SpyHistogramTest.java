@@ -54,4 +54,15 @@ public class SpyHistogramTest extends TestCase {
     assertTrue(ps.toString().contains(exp));
     Diagnostic.setLogStream();
   }
+
+  public void testMaxIndex() {
+    final SpyHistogram spy = new SpyHistogram("bar", 3);
+    assertEquals(-1, spy.maxIndex());
+    spy.increment(1);
+    spy.increment(1);
+    spy.increment(2);
+    assertEquals(2, spy.maxIndex());
+    spy.increment(5);
+    assertEquals(3, spy.maxIndex());
+  }
 }
@@ -55,4 +55,24 @@ public class SpyTimerTest extends TestCase {
     assertTrue(ps.toString().contains(str));
     Diagnostic.setLogStream();
   }
+
+  public void testConcurrentIncrement() throws InterruptedException {
+    final SpyTimer spy = new SpyTimer("bar");
+    final Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; ++i) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 1000; ++j) {
+          spy.increment(1000000);
+        }
+      });
+      threads[i].start();
+    }
+    for (final Thread t : threads) {
+      t.join();
+    }
+    assertEquals(4.0, spy.seconds(), 1e-9);
+    TestUtils.containsAll(spy.toString(), "Timer bar", "count 4000");
+    spy.increment(1000000000);
+    assertEquals(5.0, spy.seconds(), 1e-9);
+  }
 }
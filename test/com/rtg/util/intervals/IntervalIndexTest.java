@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.util.intervals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class IntervalIndexTest extends TestCase {
+
+  public void testSimple() {
+    final IntervalIndex index = IntervalIndex.create(Arrays.asList(new Range(20, 30), new Range(5, 10), new Range(6, 8), new Range(40, 41)));
+    assertEquals(4, index.size());
+    assertEquals(5, index.getStart(0));
+    assertEquals(10, index.getEnd(0));
+    assertEquals(6, index.getStart(1));
+    assertEquals(40, index.getStart(3));
+
+    assertEquals(-1, index.floor(4));
+    assertEquals(0, index.floor(5));
+    assertEquals(1, index.floor(19));
+    assertEquals(-1, index.lower(5));
+    assertEquals(0, index.lower(6));
+
+    assertEquals(0, index.nextRegion(0));
+    assertEquals(0, index.nextRegion(9));
+    assertEquals(2, index.nextRegion(10));
+    assertEquals(3, index.nextRegion(30));
+    assertEquals(4, index.nextRegion(41));
+
+    assertEquals(0, index.firstOverlap(7, 8));
+    assertEquals(1, index.nextOverlap(0, 7, 8));
+    assertEquals(-1, index.nextOverlap(1, 7, 8));
+    assertEquals(-1, index.firstOverlap(10, 20));
+    assertTrue(index.overlapped(9, 21));
+    assertFalse(index.overlapped(30, 40));
+
+    assertTrue(index.contains(7));
+    assertTrue(index.contains(9));
+    assertFalse(index.contains(10));
+    assertFalse(index.contains(4));
+
+    assertTrue(index.enclosed(5, 10));
+    assertTrue(index.enclosed(6, 8));
+    assertFalse(index.enclosed(9, 11));
+    assertFalse(index.enclosed(10, 20));
+  }
+
+  public void testEmpty() {
+    final IntervalIndex index = IntervalIndex.create(new ArrayList<Range>());
+    assertEquals(0, index.size());
+    assertEquals(-1, index.floor(5));
+    assertEquals(0, index.nextRegion(5));
+    assertEquals(-1, index.firstOverlap(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    assertFalse(index.contains(0));
+    assertFalse(index.enclosed(0, 1));
+  }
+
+  public void testAgainstBruteForce() {
+    final Random r = new Random(42);
+    for (int trial = 0; trial < 20; ++trial) {
+      final List<Range> ranges = new ArrayList<>();
+      final int n = r.nextInt(60);
+      for (int i = 0; i < n; ++i) {
+        final int start = r.nextInt(500);
+        ranges.add(new Range(start, start + 1 + r.nextInt(r.nextBoolean() ? 5 : 100)));
+      }
+      final IntervalIndex index = IntervalIndex.create(ranges);
+      assertEquals(n, index.size());
+      for (int q = 0; q < 500; ++q) {
+        final int start = r.nextInt(620) - 10;
+        final int end = start + 1 + r.nextInt(20);
+        int overlaps = 0;
+        boolean enclosed = false;
+        boolean contains = false;
+        for (final Range range : ranges) {
+          if (range.getStart() < end && range.getEnd() > start) {
+            ++overlaps;
+          }
+          enclosed |= range.getStart() <= start && range.getEnd() >= end;
+          contains |= range.getStart() <= start && range.getEnd() > start;
+        }
+        int found = 0;
+        for (int i = index.firstOverlap(start, end); i != -1; i = index.nextOverlap(i, start, end)) {
+          assertTrue(index.getStart(i) < end && index.getEnd(i) > start);
+          ++found;
+        }
+        assertEquals(overlaps, found);
+        assertEquals(overlaps > 0, index.overlapped(start, end));
+        assertEquals(enclosed, index.enclosed(start, end));
+        assertEquals(contains, index.contains(start));
+        final int next = index.nextRegion(start);
+        for (int i = 0; i < next; ++i) {
+          assertTrue(index.getEnd(i) <= start);
+        }
+        assertTrue(next == index.size() || index.getEnd(next) > start);
+      }
+    }
+  }
+}
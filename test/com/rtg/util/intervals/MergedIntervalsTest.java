@@ -30,6 +30,9 @@
 
 package com.rtg.util.intervals;
 
+import java.util.BitSet;
+import java.util.Random;
+
 import junit.framework.TestCase;
 
 /**
@@ -104,6 +107,39 @@ public class MergedIntervalsTest extends TestCase {
     assertFalse(mi.overlapped(0, 600));
   }
 
+  public void testIndexUnaffectedByModification() {
+    final MergedIntervals mi = new MergedIntervals();
+    mi.add(10, 20);
+    mi.add(30, 40);
+    final IntervalIndex index = mi.index();
+    mi.subtract(12, 14);
+    mi.add(15, 35);
+    mi.add(0, 5);
+    assertEquals(2, index.size());
+    assertEquals(10, index.getStart(0));
+    assertEquals(20, index.getEnd(0));
+    assertEquals(30, index.getStart(1));
+    assertEquals(40, index.getEnd(1));
+    assertTrue(index.contains(12));
+    assertFalse(index.contains(25));
+    assertEquals(3, mi.index().size());
+    assertFalse(mi.enclosed(12));
+    assertTrue(mi.enclosed(25));
+  }
+
+  public void testIndexBuiltOnQuery() {
+    final MergedIntervals mi = new MergedIntervals();
+    mi.add(10, 20);
+    final IntervalIndex index = mi.index();
+    assertSame(index, mi.index());
+    mi.add(15, 25); // Merged in place after taking a copy
+    assertEquals(20, index.getEnd(0));
+    assertNotSame(index, mi.index());
+    assertEquals(25, mi.index().getEnd(0));
+    mi.intersect(mi);
+    assertEquals(15, mi.totalLength());
+  }
+
   public void testOverlapMerging() {
     final MergedIntervals regions = new MergedIntervals();
     assertFalse(regions.enclosed(60, 70));
@@ -178,4 +214,49 @@ public class MergedIntervalsTest extends TestCase {
     regions.add(725944, 725959);
     assertTrue(regions.overlapped(725923, 725944));
   }
+
+  public void testUnorderedAgainstMask() {
+    final Random r = new Random(3);
+    final MergedIntervals regions = new MergedIntervals();
+    final MergedIntervals other = new MergedIntervals();
+    final BitSet expected = new BitSet();
+    final BitSet otherExpected = new BitSet();
+    for (int i = 0; i < 200; ++i) {
+      final int start = r.nextInt(5000);
+      final int end = start + 1 + r.nextInt(50);
+      regions.add(start, end);
+      expected.set(start, end);
+      final int otherStart = r.nextInt(5000);
+      final int otherEnd = otherStart + 1 + r.nextInt(100);
+      other.add(otherStart, otherEnd);
+      otherExpected.set(otherStart, otherEnd);
+    }
+    checkAgainstMask(expected, regions);
+    for (int i = 0; i < 20; ++i) {
+      final int start = r.nextInt(5000);
+      final int end = start + 1 + r.nextInt(100);
+      regions.subtract(start, end);
+      expected.clear(start, end);
+    }
+    checkAgainstMask(expected, regions);
+    regions.intersect(other);
+    expected.and(otherExpected);
+    checkAgainstMask(expected, regions);
+  }
+
+  private void checkAgainstMask(BitSet expected, MergedIntervals regions) {
+    assertEquals(expected, regions.mask());
+    assertEquals(expected.cardinality(), regions.totalLength());
+    int runs = 0;
+    for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(expected.nextClearBit(i))) {
+      ++runs;
+    }
+    assertEquals(runs, regions.size());
+    for (int pos = 0; pos < 5200; pos += 7) {
+      assertEquals(expected.get(pos), regions.enclosed(pos));
+      assertEquals(expected.nextClearBit(pos) >= pos + 10, regions.enclosed(pos, pos + 10));
+      final int next = expected.nextSetBit(pos);
+      assertEquals(next >= 0 && next < pos + 10, regions.overlapped(pos, pos + 10));
+    }
+  }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.util.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.rtg.util.test.FileHelper;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class FileHandlePoolTest extends TestCase {
+
+  private static String read(ClosedFileInputStream in, int position, int length) throws IOException {
+    in.seek(position);
+    final byte[] buf = new byte[length];
+    int read = 0;
+    int len;
+    while (read < length && (len = in.read(buf, read, length - read)) != -1) {
+      read += len;
+    }
+    return new String(buf, 0, read);
+  }
+
+  public void testReuse() throws IOException {
+    try (TestDirectory dir = new TestDirectory("filehandlepool")) {
+      final File a = FileUtils.stringToFile("0123456789abcdefghij", new File(dir, "a"));
+      final File b = FileUtils.stringToFile("ABCDEFGHIJKLMNOPQRST", new File(dir, "b"));
+      final FileHandlePool pool = new FileHandlePool(2);
+      try (ClosedFileInputStream ina = new ClosedFileInputStream(a, 4, pool);
+           ClosedFileInputStream inb = new ClosedFileInputStream(b, 4, pool)) {
+        assertEquals("0123", read(ina, 0, 4));
+        assertEquals("KLMNOP", read(inb, 10, 6));
+        assertEquals("ghij", read(ina, 16, 4));
+        assertEquals("4567", read(ina, 4, 4));
+        assertEquals(3, ina.getDiskSeeksDone());
+        assertEquals(2, pool.opens());
+        assertEquals(2, pool.size());
+      }
+      assertEquals(0, pool.size());
+    }
+  }
+
+  public void testEviction() throws IOException {
+    try (TestDirectory dir = new TestDirectory("filehandlepool")) {
+      final File a = FileUtils.stringToFile("0123456789", new File(dir, "a"));
+      final File b = FileUtils.stringToFile("ABCDEFGHIJ", new File(dir, "b"));
+      final FileHandlePool pool = new FileHandlePool(1);
+      final ClosedFileInputStream ina = new ClosedFileInputStream(a, 4, pool);
+      final ClosedFileInputStream ina2 = new ClosedFileInputStream(a, 4, pool);
+      try (ClosedFileInputStream inb = new ClosedFileInputStream(b, 4, pool)) {
+        assertEquals("0123", read(ina, 0, 4));
+        assertEquals("4567", read(ina2, 4, 4));
+        assertEquals(1, pool.opens()); // Both streams share a handle
+        assertEquals("ABCD", read(inb, 0, 4));
+        assertEquals(2, pool.opens());
+        assertEquals("89", read(ina, 8, 4));
+        assertEquals(3, pool.opens()); // Handle for a was evicted
+        assertEquals(1, pool.size());
+        ina.close();
+        assertEquals(1, pool.size()); // Still in use by ina2
+        ina2.close();
+        assertEquals(0, pool.size());
+        // Closed streams can still be read, but no longer hold a handle
+        assertEquals("0123", read(ina, 0, 4));
+        assertEquals(0, pool.size());
+      }
+    }
+  }
+
+  public void testChangedFile() throws IOException {
+    try (TestDirectory dir = new TestDirectory("filehandlepool")) {
+      final File a = FileUtils.stringToFile("0123456789", new File(dir, "a"));
+      final FileHandlePool pool = new FileHandlePool(4);
+      try (ClosedFileInputStream in = new ClosedFileInputStream(a, 4, pool)) {
+        assertEquals("0123", read(in, 0, 4));
+        assertTrue(a.delete());
+        FileUtils.stringToFile("abcdefghijklmnop", a);
+        assertTrue(a.setLastModified(a.lastModified() + 10000));
+        try (ClosedFileInputStream in2 = new ClosedFileInputStream(a, 4, pool)) {
+          assertEquals("mnop", read(in2, 12, 4));
+          assertEquals(2, pool.opens());
+        }
+      }
+    }
+  }
+
+  public void testDisabled() throws IOException {
+    try (TestDirectory dir = new TestDirectory("filehandlepool")) {
+      final File a = FileUtils.stringToFile("0123456789", new File(dir, "a"));
+      final FileHandlePool pool = new FileHandlePool(0);
+      try (ClosedFileInputStream in = new ClosedFileInputStream(a, 4, pool)) {
+        assertEquals("0123", read(in, 0, 4));
+        assertEquals("4567", read(in, 4, 4));
+        assertEquals(2, pool.opens());
+        assertEquals(0, pool.size());
+      }
+    }
+  }
+
+  public void testSharedPool() throws IOException {
+    try (TestDirectory dir = new TestDirectory("filehandlepool")) {
+      final File a = FileUtils.stringToFile("0123456789", new File(dir, "a"));
+      try (ClosedFileInputStream in = new ClosedFileInputStream(a)) {
+        assertEquals("012", read(in, 0, 3));
+      }
+      assertTrue(FileHelper.deleteAll(dir));
+    }
+  }
+}
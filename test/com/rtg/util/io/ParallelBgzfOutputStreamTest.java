@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.util.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import junit.framework.TestCase;
+
+/**
+ */
+public class ParallelBgzfOutputStreamTest extends TestCase {
+
+  private static byte[] data(Random r, int length) {
+    final byte[] data = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      // Mostly compressible, with some runs of noise
+      data[i] = (i / 1000) % 7 == 0 ? (byte) r.nextInt() : (byte) ('A' + r.nextInt(4));
+    }
+    return data;
+  }
+
+  private static void write(OutputStream out, byte[] data, Random r) throws IOException {
+    int pos = 0;
+    while (pos < data.length) {
+      if (r.nextInt(10) == 0) {
+        out.write(data[pos++]);
+      } else {
+        final int len = Math.min(data.length - pos, r.nextInt(100000));
+        out.write(data, pos, len);
+        pos += len;
+      }
+    }
+  }
+
+  private void check(int level, int threads, boolean terminate) throws IOException {
+    final byte[] data = data(new Random(level), 1000000);
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try (OutputStream out = new BlockCompressedOutputStream(expected, null, level, terminate)) {
+      write(out, data, new Random(42));
+    }
+    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    try (OutputStream out = new ParallelBgzfOutputStream(actual, level, threads, terminate)) {
+      write(out, data, new Random(42));
+    }
+    assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+
+    final ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+    try (BlockCompressedInputStream in = new BlockCompressedInputStream(new ByteArrayInputStream(actual.toByteArray()))) {
+      final byte[] buf = new byte[4096];
+      int len;
+      while ((len = in.read(buf)) > 0) {
+        uncompressed.write(buf, 0, len);
+      }
+    }
+    assertTrue(Arrays.equals(data, uncompressed.toByteArray()));
+  }
+
+  public void testSameAsSerial() throws IOException {
+    check(2, 4, true);
+    check(5, 3, false);
+    check(0, 2, true);
+    check(9, 1, true);
+  }
+
+  public void testFlush() throws IOException {
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try (OutputStream out = new BlockCompressedOutputStream(expected, null, 2, true)) {
+      out.write(new byte[] {'a', 'b'});
+      out.flush();
+      out.write('c');
+    }
+    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    try (OutputStream out = new ParallelBgzfOutputStream(actual, 2, 4, true)) {
+      out.write(new byte[] {'a', 'b'});
+      out.flush();
+      assertTrue(actual.size() > 0); // Flushed block has been written
+      out.write('c');
+    }
+    assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+  }
+
+  public void testBlockListener() throws IOException {
+    final byte[] data = data(new Random(3), 500000);
+    final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+    final long[] compressed = new long[2];
+    final ParallelBgzfOutputStream.BlockListener listener = new ParallelBgzfOutputStream.BlockListener() {
+      @Override
+      public void blockWritten(byte[] block, int length, int compressedLength) {
+        blocks.write(block, 0, length);
+        compressed[0] += compressedLength;
+      }
+      @Override
+      public void close() {
+        ++compressed[1];
+      }
+    };
+    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    try (OutputStream out = new ParallelBgzfOutputStream(actual, 5, 3, true, listener)) {
+      write(out, data, new Random(42));
+    }
+    assertTrue(Arrays.equals(data, blocks.toByteArray()));
+    assertEquals(actual.size() - BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK.length, compressed[0]);
+    assertEquals(1, compressed[1]);
+  }
+
+  public void testEmpty() throws IOException {
+    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    new ParallelBgzfOutputStream(actual, 2, 4, true).close();
+    assertTrue(Arrays.equals(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK, actual.toByteArray()));
+  }
+
+  public void testNullStream() {
+    try {
+      new ParallelBgzfOutputStream(null, 2, 4, true);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Stream cannot be null", e.getMessage());
+    }
+  }
+}
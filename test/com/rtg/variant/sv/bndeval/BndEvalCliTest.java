@@ -111,5 +111,8 @@ public class BndEvalCliTest extends AbstractBndEvalTest {
   public void testNanoSmallBidirectional3() throws IOException, UnindexableDataException {
     endToEnd("bndeval_small", "bndeval_small_bidirectional3", new String[] {"summary.txt", "tp.vcf", "tp-baseline.vcf", "fp.vcf", "fn.vcf"}, false, "--vcf-score-field", "QUAL", "--bidirectional");
   }
+  public void testNanoSmallBidirectionalThreaded() throws IOException, UnindexableDataException {
+    endToEnd("bndeval_small", "bndeval_small_bidirectional3", new String[] {"summary.txt", "tp.vcf", "tp-baseline.vcf", "fp.vcf", "fn.vcf"}, false, "--vcf-score-field", "QUAL", "--bidirectional", "-T", "4");
+  }
 
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf;
+
+import java.util.function.Predicate;
+
+import com.rtg.vcf.header.MetaType;
+import com.rtg.vcf.header.VcfHeader;
+import com.rtg.vcf.header.VcfNumber;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the corresponding class.
+ */
+public class CompiledExpressionFilterTest extends TestCase {
+
+  private static VcfHeader header() {
+    final VcfHeader header = new VcfHeader();
+    header.addInfoField("DP", MetaType.INTEGER, VcfNumber.ONE, "Depth");
+    header.addInfoField("AF", MetaType.FLOAT, VcfNumber.ALTS, "Allele frequency");
+    header.addInfoField("DB", MetaType.FLAG, VcfNumber.FLAG, "dbSNP");
+    header.addFormatField("GT", MetaType.STRING, VcfNumber.ONE, "Genotype");
+    header.addFormatField("GQ", MetaType.INTEGER, VcfNumber.ONE, "Genotype quality");
+    header.addFormatField("AD", MetaType.INTEGER, VcfNumber.REF_ALTS, "Allelic depths");
+    header.addSampleName("sample1");
+    header.addSampleName("sample2");
+    return header;
+  }
+
+  private static final String[] RECORDS = {
+    "chr1\t100\t.\tA\tG\t45.2\tPASS\tDP=12;AF=0.5;DB\tGT:GQ\t0/1:30\t1/1:12",
+    "chr1\t200\trs1\tC\tT,G\t.\t.\tDP=8;AF=0.2,0.3\tGT:GQ:AD\t1/2:9:0,4,4\t0/0:50:8,0,0",
+    "chr10\t300\t.\tG\tA\t7\t.\t.\tGT\t./.\t0/1",
+    "chr2\t99\t.\tT\tC\t100\t.\tDP=\tGT:GQ\t0/1:.\t0/1:99",
+  };
+
+  private static String accepted(String expression) {
+    final CompiledExpressionFilter filter = new CompiledExpressionFilter(expression, null, null);
+    filter.setHeader(header());
+    assertTrue(expression, filter.isCompiled());
+    final StringBuilder sb = new StringBuilder();
+    for (final boolean lazy : new boolean[] {false, true}) {
+      final VcfParser parser = new VcfParser(lazy);
+      for (final String line : RECORDS) {
+        sb.append(filter.accept(parser.parseLine(line)) ? '1' : '0');
+      }
+    }
+    // Eager and lazily decoded records must agree
+    assertEquals(sb.substring(0, RECORDS.length), sb.substring(RECORDS.length));
+    return sb.substring(0, RECORDS.length);
+  }
+
+  public void testFixedFields() {
+    assertEquals("1101", accepted("CHROM == 'chr1' || POS < 100"));
+    assertEquals("0100", accepted("ID === \"rs1\""));
+    assertEquals("1101", accepted("REF < 'G' || REF > \"G\""));
+    assertEquals("0010", accepted("CHROM > 'chr1' && CHROM < 'chr2'")); // Lexicographic
+    assertEquals("1111", accepted("QUAL != 'A' && !(QUAL < 0) ;"));
+    assertEquals("1001", accepted("QUAL > 10"));
+    assertEquals("0110", accepted("!(QUAL >= 10)"));
+    assertEquals("0010", accepted("QUAL == 7 && QUAL !== 7"));
+    assertEquals("0100", accepted("POS == '200' && POS !== '200'"));
+    assertEquals("1111", accepted("true || false"));
+    assertEquals("0000", accepted("POS > 1e6 || POS < -.5"));
+  }
+
+  public void testInfo() {
+    assertEquals("1000", accepted("INFO.DP > 10"));
+    assertEquals("1101", accepted("has(INFO.DP)"));
+    assertEquals("1010", accepted("has(INFO.DB) == has(INFO.DP) && INFO.DP != 8"));
+    assertEquals("0001", accepted("INFO.DP == 0")); // Empty value converts to zero
+    assertEquals("1000", accepted("INFO.AF == 0.5"));
+    assertEquals("0100", accepted("INFO.AF == '0.2,0.3'"));
+    assertEquals("0011", accepted("INFO.AF === '.'"));
+    assertEquals("1111", accepted("has(POS)"));
+  }
+
+  public void testSamples() {
+    assertEquals("1011", accepted("sample1.GT == '0/1' || sample2.GT === \"0/1\""));
+    assertEquals("0100", accepted("'sample1'.GT == \"1/2\" && SAMPLES[1].AD == '8,0,0'"));
+    assertEquals("1001", accepted("sample1.GQ < sample2.GQ || sample1.GQ > 20")); // Lexicographic, as in javascript
+    assertEquals("1101", accepted("has(sample2.GQ)"));
+    assertEquals("0011", accepted("!(sample1.GQ > 0)"));
+  }
+
+  public void testUnsupported() {
+    final VcfHeader header = header();
+    assertNotNull(CompiledExpressionFilter.compile("INFO.DP > 10", header));
+    for (final String expr : new String[] {
+      "ALT.length > 1", "FILTER == 'PASS'", "INFO.XX > 1", "sample1.XX == '0/1'", "sample3.GT == '0/1'",
+      "INFO.DP", "QUAL", "INFO.DP + 1 > 2", "INFO.DP > 010", "INFO.DP > 0x10", "INFO.DP = 1", "INFO.DP > 5 ? true : false",
+      "has(INFO.DP) && INFO.DP", "has(INFO.DP) > 1", "(POS > 1) < 2", "SAMPLES[2].GT == '0/1'", "SAMPLES[0.5].GT == '0/1'",
+      "'foo'.GT == '0/1'", "INFO.DP > 1 // comment", "CHROM == 'chr1", "CHROM == 'chr\\x31'", "rec.getInfo('DP') > 1",
+      "POS > 1 POS", "INFO.DP.length > 1", "-POS < 1", "Number(INFO.DP) > 1", "",
+    }) {
+      assertNull(expr, CompiledExpressionFilter.compile(expr, header));
+    }
+    // Sample names that clash with the builtins prevent native compilation
+    header.addSampleName("POS");
+    assertNull(CompiledExpressionFilter.compile("INFO.DP > 10", header));
+  }
+
+  public void testToNumber() {
+    assertEquals(0.0, CompiledExpressionFilter.toNumber(null));
+    assertEquals(0.0, CompiledExpressionFilter.toNumber(""));
+    assertEquals(0.0, CompiledExpressionFilter.toNumber("  "));
+    assertEquals(12.5, CompiledExpressionFilter.toNumber(" 12.5 "));
+    assertEquals(-1000.0, CompiledExpressionFilter.toNumber("-1e3"));
+    assertEquals(Double.POSITIVE_INFINITY, CompiledExpressionFilter.toNumber("Infinity"));
+    assertEquals(Double.NEGATIVE_INFINITY, CompiledExpressionFilter.toNumber("-Infinity"));
+    assertTrue(Double.isNaN(CompiledExpressionFilter.toNumber(".")));
+    assertTrue(Double.isNaN(CompiledExpressionFilter.toNumber("1,2")));
+    assertTrue(Double.isNaN(CompiledExpressionFilter.toNumber("1d")));
+    assertTrue(Double.isNaN(CompiledExpressionFilter.toNumber("NaN")));
+  }
+
+  public void testCompiledIsUsedByFilter() {
+    final Predicate<VcfRecord> p = CompiledExpressionFilter.compile("INFO.DP > 10", header());
+    assertNotNull(p);
+    assertTrue(p.test(new VcfParser().parseLine(RECORDS[0])));
+    assertFalse(p.test(new VcfParser().parseLine(RECORDS[1])));
+  }
+}
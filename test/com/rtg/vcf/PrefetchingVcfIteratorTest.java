@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.rtg.vcf.header.VcfHeader;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class PrefetchingVcfIteratorTest extends TestCase {
+
+  private static VcfRecord[] records(int count) {
+    final VcfRecord[] records = new VcfRecord[count];
+    for (int i = 0; i < count; ++i) {
+      records[i] = new VcfRecord("chr1", i, "A");
+    }
+    return records;
+  }
+
+  private static void check(ExecutorService executor, int count, int batchSize) throws IOException {
+    final VcfRecord[] records = records(count);
+    final VcfHeader header = new VcfHeader();
+    try (PrefetchingVcfIterator it = new PrefetchingVcfIterator(new ArrayVcfIterator(header, records), executor, batchSize)) {
+      assertTrue(header == it.getHeader());
+      for (final VcfRecord r : records) {
+        assertTrue(it.hasNext());
+        assertTrue(r == it.next());
+      }
+      assertFalse(it.hasNext());
+      assertFalse(it.hasNext());
+      try {
+        it.next();
+        fail();
+      } catch (final NoSuchElementException e) {
+        // Expected
+      }
+    }
+  }
+
+  public void testIteration() throws IOException {
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      check(executor, 0, 3);
+      check(executor, 2, 3);
+      check(executor, 9, 3);
+      check(executor, 10, 3);
+      check(executor, 1000, 7);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testErrorAndClose() throws IOException {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final boolean[] closed = {false};
+      final VcfIterator failing = new ArrayVcfIterator(new VcfHeader(), records(5)) {
+        @Override
+        public VcfRecord next() {
+          final VcfRecord r = super.next();
+          if (r.getStart() == 3) {
+            throw new VcfFormatException("Bad record");
+          }
+          return r;
+        }
+
+        @Override
+        public void close() {
+          closed[0] = true;
+        }
+      };
+      try (PrefetchingVcfIterator it = new PrefetchingVcfIterator(failing, executor, 2)) {
+        assertEquals(0, it.next().getStart());
+        assertEquals(1, it.next().getStart());
+        try {
+          // Failure is reported at the start of the batch containing the bad record
+          it.next();
+          fail();
+        } catch (final VcfFormatException e) {
+          assertEquals("Bad record", e.getMessage());
+        }
+      }
+      assertTrue(closed[0]);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.rtg.tabix.TabixIndexer;
+import com.rtg.tabix.UnindexableDataException;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.io.TestDirectory;
+import com.rtg.util.test.BgzipFileHelper;
+import com.rtg.vcf.header.VcfHeader;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class StreamingNamedRangesVcfAnnotatorTest extends TestCase {
+
+  private static final String[] SEQUENCES = {"chr1", "chr2", "chr3"};
+
+  private static File bed(File dir, Random r) throws IOException, UnindexableDataException {
+    final StringBuilder sb = new StringBuilder();
+    int id = 0;
+    for (final String seq : SEQUENCES) {
+      if (seq.equals("chr3")) {
+        continue; // No annotations for this sequence
+      }
+      for (int start = 0; start < 5000; start += r.nextInt(60)) {
+        final int end = start + 1 + r.nextInt(r.nextBoolean() ? 20 : 300);
+        sb.append(seq).append('\t').append(start).append('\t').append(end).append('\t').append("r").append(id++ % 50).append('\n');
+      }
+    }
+    final File bed = BgzipFileHelper.bytesToBgzipFile(sb.toString().getBytes(), new File(dir, "anno.bed.gz"));
+    new TabixIndexer(bed, TabixIndexer.indexFileName(bed)).saveBedIndex();
+    return bed;
+  }
+
+  private static File vcf(File dir, Random r) throws IOException, UnindexableDataException {
+    final StringBuilder sb = new StringBuilder(VcfHeader.MINIMAL_HEADER).append("\tSAMPLE\n");
+    int id = 0;
+    for (final String seq : SEQUENCES) {
+      for (int pos = 1; pos < 5000; pos += 1 + r.nextInt(200)) {
+        final String ref = r.nextBoolean() ? "A" : "ACGTACGTAC".substring(0, 1 + r.nextInt(10));
+        sb.append(seq).append('\t').append(pos).append("\tv").append(id++ % 30).append('\t').append(ref).append("\tT\t.\tPASS\t.\tGT\t0/1\n");
+      }
+    }
+    final File vcf = BgzipFileHelper.bytesToBgzipFile(sb.toString().getBytes(), new File(dir, "anno.vcf.gz"));
+    new TabixIndexer(vcf, TabixIndexer.indexFileName(vcf)).saveVcfIndex();
+    return vcf;
+  }
+
+  private static List<VcfRecord> records(Random r) {
+    final List<VcfRecord> records = new ArrayList<>();
+    for (final String seq : SEQUENCES) {
+      for (int pos = 1; pos < 5200; pos += r.nextInt(25)) {
+        final String ref = r.nextInt(4) == 0 ? "GGGGGGGGGG".substring(0, 1 + r.nextInt(10)) : "G";
+        records.add(VcfReaderTest.vcfLineToRecord(seq + "\t" + pos + "\t.\t" + ref + "\tC\t.\tPASS\t.\tGT\t0/1"));
+      }
+    }
+    return records;
+  }
+
+  private static List<String> annotate(VcfAnnotator annotator, List<VcfRecord> records) {
+    final List<String> res = new ArrayList<>();
+    for (final VcfRecord rec : records) {
+      final VcfRecord copy = VcfReaderTest.vcfLineToRecord(rec.toString());
+      annotator.annotate(copy);
+      res.add(copy.toString());
+    }
+    return res;
+  }
+
+  private void checkSame(VcfAnnotator expected, StreamingNamedRangesVcfAnnotator<?> streaming, List<VcfRecord> records) throws IOException {
+    final List<String> exp = annotate(expected, records);
+    try {
+      assertEquals(exp, annotate(streaming, records));
+    } finally {
+      streaming.close();
+    }
+  }
+
+  public void testBedSameAsInMemory() throws IOException, UnindexableDataException {
+    try (final TestDirectory dir = new TestDirectory()) {
+      final Random r = new Random(42);
+      final List<File> beds = Collections.singletonList(bed(dir, r));
+      final List<VcfRecord> records = records(r);
+      for (final boolean fullSpan : new boolean[] {true, false}) {
+        checkSame(new BedVcfAnnotator("ANN", "desc", beds, fullSpan), BedVcfAnnotator.streaming("ANN", "desc", beds, fullSpan), records);
+        checkSame(new BedVcfAnnotator(null, null, beds, fullSpan), BedVcfAnnotator.streaming(null, null, beds, fullSpan), records);
+      }
+    }
+  }
+
+  public void testVcfIdsSameAsInMemory() throws IOException, UnindexableDataException {
+    try (final TestDirectory dir = new TestDirectory()) {
+      final Random r = new Random(7);
+      final List<File> vcfs = Collections.singletonList(vcf(dir, r));
+      final List<VcfRecord> records = records(r);
+      for (final boolean fullSpan : new boolean[] {true, false}) {
+        checkSame(new VcfIdAnnotator(vcfs, fullSpan), VcfIdAnnotator.streaming(vcfs, fullSpan), records);
+      }
+    }
+  }
+
+  public void testUnsorted() throws IOException, UnindexableDataException {
+    try (final TestDirectory dir = new TestDirectory()) {
+      final List<File> beds = Collections.singletonList(bed(dir, new Random(3)));
+      try (final StreamingNamedRangesVcfAnnotator<?> annotator = BedVcfAnnotator.streaming(null, null, beds, true)) {
+        annotator.annotate(VcfReaderTest.vcfLineToRecord("chr1\t100\t.\tA\tC\t.\tPASS\t.\tGT\t0/1"));
+        annotator.annotate(VcfReaderTest.vcfLineToRecord("chr2\t100\t.\tA\tC\t.\tPASS\t.\tGT\t0/1"));
+        try {
+          annotator.annotate(VcfReaderTest.vcfLineToRecord("chr2\t99\t.\tA\tC\t.\tPASS\t.\tGT\t0/1"));
+          fail();
+        } catch (final NoTalkbackSlimException e) {
+          assertEquals("VCF being annotated is not sorted at chr2:99", e.getMessage());
+        }
+        try {
+          annotator.annotate(VcfReaderTest.vcfLineToRecord("chr1\t200\t.\tA\tC\t.\tPASS\t.\tGT\t0/1"));
+          fail();
+        } catch (final NoTalkbackSlimException e) {
+          assertEquals("Records for sequence chr1 are not contiguous in the VCF being annotated", e.getMessage());
+        }
+      }
+    }
+  }
+
+  public void testNotIndexed() throws IOException {
+    try (final TestDirectory dir = new TestDirectory()) {
+      final File bed = BgzipFileHelper.bytesToBgzipFile("chr1\t1\t10\tfoo\n".getBytes(), new File(dir, "anno.bed.gz"));
+      try {
+        BedVcfAnnotator.streaming(null, null, Collections.singletonList(bed), true);
+        fail();
+      } catch (final NoTalkbackSlimException e) {
+        assertTrue(e.getMessage(), e.getMessage().startsWith("Index not found for file: "));
+      }
+    }
+  }
+}
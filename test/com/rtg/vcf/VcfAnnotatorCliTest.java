@@ -34,10 +34,13 @@ import java.io.IOException;
 
 import com.rtg.launcher.AbstractCli;
 import com.rtg.launcher.AbstractCliTest;
+import com.rtg.tabix.TabixIndexer;
+import com.rtg.tabix.UnindexableDataException;
 import com.rtg.util.StringUtils;
 import com.rtg.util.TestUtils;
 import com.rtg.util.io.FileUtils;
 import com.rtg.util.io.TestDirectory;
+import com.rtg.util.test.BgzipFileHelper;
 import com.rtg.util.test.FileHelper;
 
 import htsjdk.samtools.util.BlockCompressedInputStream;
@@ -107,6 +110,20 @@ public class VcfAnnotatorCliTest extends AbstractCliTest {
     }
   }
 
+  public void testNanoVcfIdsStreamed() throws IOException, UnindexableDataException {
+    try (final TestDirectory dir = new TestDirectory()) {
+      final File inVcf = FileUtils.stringToFile(mNano.loadReference("snpAnnotate_small.vcf"), new File(dir, "input.vcf"));
+      final File idVcf = BgzipFileHelper.bytesToBgzipFile(mNano.loadReference("snpAnnotate_small_ids_vcf.vcf").getBytes(), new File(dir, "id.vcf.gz"));
+      new TabixIndexer(idVcf, TabixIndexer.indexFileName(idVcf)).saveVcfIndex();
+      final File outFile = new File(dir, "output.vcf");
+
+      final String str = checkMainInitOk("-i", inVcf.getPath(), "--vcf-ids", idVcf.getPath(), "-o", outFile.getPath(), "-Z", "--fill-an-ac", "--annotation", "NAA,ZY,PD", "--Xstream-annotations");
+      assertEquals("", str);
+      final String actual = StringUtils.grep(FileUtils.fileToString(outFile), "^[^#]").replaceAll("[\r\n]+", "\n");
+      mNano.check("snpAnnotate_small_vcf_ids_exp.vcf", actual, false);
+    }
+  }
+
   private void check(String bed, String id, boolean ids) throws IOException {
     try (final TestDirectory dir = new TestDirectory()) {
       final File inVcf = FileUtils.stringToFile(mNano.loadReference(id + ".vcf"), new File(dir, "input.vcf"));
@@ -29,6 +29,7 @@
  */
 package com.rtg.vcf;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.stream.Collectors;
@@ -421,4 +422,82 @@ public class VcfFilterCliTest extends AbstractCliTest {
       assertEquals(expected, output.out());
     }
   }
+
+  public void testCompiledKeepExpression() throws Exception {
+    try (TestDirectory tempDirectory = new TestDirectory()) {
+      final File in = FileHelper.resourceToFile(RESOURCES + "snps_complex.vcf", new File(tempDirectory, "input"));
+      for (final String threads : new String[] {"1", "3"}) {
+        final File out = new File(tempDirectory, "out" + threads + ".vcf");
+        // Evaluated natively, so does not require a javascript engine
+        checkMainInit("-i", in.getPath(), "-o", out.getPath(), "-Z", "--no-header", "-T", threads, "-e", "POS > 45000 && POS < 46000 && has(SAMPLE.GQ)");
+        final String expected = Stream.of(45027, 45199, 45403, 45418, 45777, 45793, 45921)
+          .map(Object::toString).collect(Collectors.joining(" "));
+        assertEquals(expected, Stream.of(FileUtils.fileToString(out).split(StringUtils.LS)).map(line -> line.split("\t")[1]).collect(Collectors.joining(" ")));
+      }
+    }
+  }
+
+  // Stands in for a slow scripted filter, one instance of which is used by each thread
+  private static final class OddPositionFilter implements VcfFilter {
+    private final Thread[] mUser = new Thread[1];
+    @Override
+    public boolean accept(VcfRecord record) {
+      synchronized (mUser) {
+        assertNull(mUser[0]);
+        mUser[0] = Thread.currentThread();
+      }
+      final boolean accept = record.getOneBasedStart() % 2 == 1 && record.getInfo("DP") != null;
+      synchronized (mUser) {
+        mUser[0] = null;
+      }
+      return accept;
+    }
+    @Override
+    public void setHeader(VcfHeader header) {
+    }
+  }
+
+  private static String filter(File in, boolean threaded, String failName) throws IOException {
+    final VcfFilterTask task = new VcfFilterTask();
+    task.mFailFilterName = failName;
+    task.mFilters.add(new AbstractVcfFilter(task.mVcfFilterStatistics, VcfFilterStatistics.Stat.ALLELE_COUNT) {
+      @Override
+      boolean acceptCondition(VcfRecord record) {
+        return !record.getAltCalls().isEmpty();
+      }
+    });
+    if (threaded) {
+      for (int i = 0; i < 3; ++i) {
+        task.mWorkerFilters.add(new OddPositionFilter());
+      }
+    } else {
+      task.mFilters.add(new OddPositionFilter());
+    }
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (VcfReader r = new VcfReaderFactory().parser(new VcfParser(true)).make(in)) {
+      task.setHeader(r.getHeader());
+      try (VcfWriter w = new DefaultVcfWriter(r.getHeader(), bos)) {
+        task.process(r, w);
+      }
+    }
+    final ByteArrayOutputStream stats = new ByteArrayOutputStream();
+    task.printStatistics(stats);
+    return bos.toString() + stats.toString();
+  }
+
+  public void testThreadedFiltering() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final StringBuilder vcf = new StringBuilder(VcfHeader.MINIMAL_HEADER).append("\tSAMPLE").append(StringUtils.LS);
+      for (int pos = 1; pos < 5000; ++pos) {
+        vcf.append("chr1\t").append(pos).append("\t.\tA\t").append(pos % 7 == 0 ? "." : "G").append("\t.\tPASS\t").append(pos % 5 == 0 ? "." : "DP=" + pos).append("\tGT\t0/1").append(StringUtils.LS);
+      }
+      final File in = new File(dir, "in.vcf");
+      FileUtils.stringToFile(vcf.toString(), in);
+      for (final String failName : new String[] {null, "FAILED"}) {
+        final String serial = filter(in, false, failName);
+        assertTrue(serial.contains("Remaining records : "));
+        assertEquals(serial, filter(in, true, failName));
+      }
+    }
+  }
 }
@@ -31,6 +31,7 @@ package com.rtg.vcf;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Random;
 
 import com.rtg.launcher.AbstractCli;
 import com.rtg.launcher.AbstractCliTest;
@@ -302,6 +303,35 @@ public class VcfMergeTest extends AbstractCliTest {
     checkMainInitBadFlags("-f", "-F");
   }
 
+  public void testHierarchicalMerge() throws Exception {
+    try (final TestDirectory dir = new TestDirectory("vcfmerge")) {
+      final Random r = new Random(42);
+      final String[] inputs = new String[7];
+      for (int i = 0; i < inputs.length; ++i) {
+        final StringBuilder sb = new StringBuilder(String.format(MINIMAL_HEADER.toString(), "sample" + i));
+        for (final String chr : new String[] {"chr2", "chr3"}) {
+          for (int pos = 1 + r.nextInt(10); pos < 1000; pos += 1 + r.nextInt(40)) {
+            sb.append(chr).append('\t').append(pos).append("\t.\tA\t").append("CGT".charAt(r.nextInt(3))).append("\t.\tPASS\t.\tGT\t").append(r.nextBoolean() ? "0/1" : "1/1").append('\n');
+          }
+        }
+        final File f = BgzipFileHelper.bytesToBgzipFile(sb.toString().getBytes(), new File(dir, "in" + i + ".vcf.gz"));
+        new TabixIndexer(f, TabixIndexer.indexFileName(f)).saveVcfIndex();
+        inputs[i] = f.getPath();
+      }
+      final File flat = new File(dir, "flat.vcf");
+      checkMainInit(Utils.append(inputs, "-Z", "-o", flat.getPath()));
+      final String expected = TestUtils.sanitizeVcfHeader(FileUtils.fileToString(flat));
+      assertTrue(expected.contains("sample6"));
+      for (final String maxInputs : new String[] {"2", "3"}) {
+        final File tree = new File(dir, "tree" + maxInputs + ".vcf");
+        checkMainInit(Utils.append(inputs, "-Z", "-o", tree.getPath(), "-T", "2", "--Xmax-merge-inputs", maxInputs));
+        assertEquals(expected, TestUtils.sanitizeVcfHeader(FileUtils.fileToString(tree)));
+      }
+      // Intermediate files have been removed
+      assertEquals(2 * inputs.length + 3, dir.listFiles().length);
+    }
+  }
+
   public void testMixNoSample() throws Exception {
     checkMerge("mix-nosample", "vcfmerge-mix-nosample-1.vcf", "vcfmerge-mix-nosample-2.vcf");
   }
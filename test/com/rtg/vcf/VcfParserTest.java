@@ -37,6 +37,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 
 import com.rtg.util.TestUtils;
@@ -180,4 +181,106 @@ public class VcfParserTest extends TestCase {
     assertEquals(Collections.singletonList("0|0"), rec.getFormat("GT"));
     assertEquals(Collections.singletonList("7"), rec.getFormat("GQ"));
   }
+
+  private static String summary(VcfRecord rec) {
+    return rec.getSequenceName() + " " + rec.getStart() + " " + rec.getId() + " " + rec.getRefCall() + " " + rec.getAltCalls()
+      + " " + rec.getQuality() + " " + rec.getFilters() + " " + rec.getInfo() + " " + rec.getNumberOfSamples() + " " + rec.getFormatAndSample();
+  }
+
+  public void testLazySameAsEager() {
+    final String[] recs = {
+      REC,
+      "chr1\t123\t.\tG\tA\t.\t.\t.",
+      "chr1\t123\tfoo\tA\tT\t100\tPASS\tXRX;DP=4\tGT:PR:DP\t1/0:.:3\t0/0:4\t.",
+    };
+    for (final String line : recs) {
+      final VcfRecord eager = new VcfParser().parseLine(line);
+      final VcfRecord lazy = new VcfParser(true).parseLine(line);
+      assertEquals(eager.getNumberOfSamples(), lazy.getNumberOfSamples());
+      assertEquals(summary(eager), summary(lazy));
+      assertEquals(eager.toString(), lazy.toString());
+      final VcfRecord fields = new VcfParser(true).parseFields(line.split("\t"));
+      assertEquals(summary(eager), summary(fields));
+    }
+  }
+
+  public void testLazyVerbatim() {
+    // Trailing missing sample values would normally be dropped on output
+    final String line = "chr1\t123\tfoo\tA\tT\t100\tPASS\tDP=4;XRX\tGT:PR:DP\t1/0:.:.\t0/0:4:.";
+    assertEquals("chr1\t123\tfoo\tA\tT\t100\tPASS\tDP=4;XRX\tGT:PR:DP\t1/0\t0/0:4", new VcfParser().parseLine(line).toString());
+    VcfRecord rec = new VcfParser(true).parseLine(line);
+    assertEquals(2, rec.getNumberOfSamples());
+    rec.addFilter("f1");
+    assertEquals("chr1\t123\tfoo\tA\tT\t100\tf1\tDP=4;XRX\tGT:PR:DP\t1/0:.:.\t0/0:4:.", rec.toString());
+    assertEquals("4", rec.getInfo("DP"));
+    assertEquals("chr1\t123\tfoo\tA\tT\t100\tf1\tDP=4;XRX\tGT:PR:DP\t1/0:.:.\t0/0:4:.", rec.toString());
+    rec.setInfo("DP", "5");
+    assertEquals("chr1\t123\tfoo\tA\tT\t100\tf1\tDP=5;XRX\tGT:PR:DP\t1/0:.:.\t0/0:4:.", rec.toString());
+    final VcfRecord copy = new VcfRecord(rec);
+    assertEquals(rec.toString(), copy.toString());
+    rec.setFormatAndSample("DP", "7", 0);
+    assertEquals("chr1\t123\tfoo\tA\tT\t100\tf1\tDP=5;XRX\tGT:PR:DP\t1/0:.:7\t0/0:4", rec.toString());
+    assertEquals("4", copy.getSampleString(1, "PR"));
+
+    rec = new VcfParser(true).parseLine(line);
+    rec.removeSamples();
+    assertEquals(0, rec.getNumberOfSamples());
+    assertEquals("chr1\t123\tfoo\tA\tT\t100\tPASS\tDP=4;XRX", rec.toString());
+  }
+
+  public void testLazyBadRecords() {
+    for (final String recText : BAD_RECORD) {
+      try {
+        new VcfParser(true).parseLine(recText.replaceAll(" +", TAB));
+        fail();
+      } catch (final VcfFormatException ex) {
+        // Expected
+      }
+    }
+    for (final String recText : BAD_RECORD_SAMPLE) {
+      // Errors in the INFO and sample columns are reported when they are first accessed
+      final VcfRecord rec = new VcfParser(true).parseLine(recText.replaceAll(" +", TAB));
+      try {
+        rec.getInfo();
+        rec.getFormatAndSample();
+        fail();
+      } catch (final VcfFormatException ex) {
+        TestUtils.containsAll(ex.getMessage(), "Invalid VCF record", "Duplicate", "chr1:123");
+      }
+    }
+    try {
+      new VcfParser(true).parseLine("chr1\t123\tfoo\tA\tT\t100\tPASS\tXRX\tGT:PR");
+      fail();
+    } catch (final VcfFormatException ex) {
+      assertEquals("Format field exists without sample fields", ex.getMessage());
+    }
+  }
+
+  public void testBytes() {
+    final String[] recs = {
+      REC,
+      "chr1\t123\t.\tG\tA\t.\t.\t.",
+      "chr1\t124\tfoo\tA\tT\t100\tPASS\tXRX;DP=4\tGT:PR:DP\t1/0:.:3\t0/0:4\t.",
+      "chr2\t123\tfoo\tA\tT\t100\tPASS\tNAME=caf\u00e9\tGT\t1/0",
+    };
+    for (final boolean lazy : new boolean[] {false, true}) {
+      final VcfParser parser = new VcfParser(lazy);
+      for (final String line : recs) {
+        final byte[] buf = ("xx" + line + "\nyy").getBytes(StandardCharsets.UTF_8);
+        final VcfRecord fromBytes = parser.parseLine(buf, 2, buf.length - 3);
+        final VcfRecord fromString = parser.parseLine(line);
+        assertEquals(summary(fromString), summary(fromBytes));
+        assertEquals(fromString.toString(), fromBytes.toString());
+      }
+    }
+    for (final String recText : BAD_RECORD) {
+      final byte[] buf = recText.replaceAll(" +", TAB).getBytes(StandardCharsets.UTF_8);
+      try {
+        new VcfParser().parseLine(buf, 0, buf.length);
+        fail();
+      } catch (final VcfFormatException ex) {
+        // Expected
+      }
+    }
+  }
 }
@@ -30,6 +30,8 @@
 
 package com.rtg.vcf;
 
+import java.util.Arrays;
+
 import static com.rtg.util.StringUtils.TAB;
 
 import junit.framework.TestCase;
@@ -53,6 +55,7 @@ public class VcfSubsetParserTest extends TestCase {
       String[] fields = VcfSubsetParser.split(rec, new int[0]);
       assertEquals(8, fields.length);
       assertEquals("NS=3;DP=7", fields[7]);
+      assertTrue(Arrays.equals(fields, splitBytes(rec, new int[0])));
     }
     for (String recTxt : BAD_NO_SAMPLES) {
       final String rec = recTxt.replaceAll(" +", TAB);
@@ -62,6 +65,12 @@ public class VcfSubsetParserTest extends TestCase {
       } catch (VcfFormatException e) {
         //System.err.println(e.getMessage());
       }
+      try {
+        splitBytes(rec, new int[0]);
+        fail("Expected failure on record: " + rec);
+      } catch (VcfFormatException e) {
+        //System.err.println(e.getMessage());
+      }
     }
   }
 
@@ -98,5 +107,11 @@ public class VcfSubsetParserTest extends TestCase {
       assertEquals(expect, fields[f]);
       f++;
     }
+    assertTrue(Arrays.equals(fields, splitBytes(rec, samplesToKeep)));
+  }
+
+  private static String[] splitBytes(String rec, int[] samplesToKeep) {
+    final byte[] buf = ("xx" + rec + "yy").getBytes();
+    return VcfSubsetParser.split(buf, 2, buf.length - 2, samplesToKeep);
   }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf.eval;
+
+import java.util.List;
+import java.util.Random;
+
+import com.rtg.util.Utils;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class RocAccumulatorTest extends TestCase {
+
+  private static void checkBin(RocAccumulator acc, double score) {
+    final double bin = acc.bin(score);
+    assertEquals("score " + score, Utils.realFormat(score, 3), Utils.realFormat(bin, 3));
+    assertEquals(bin, acc.bin(bin));
+  }
+
+  public void testBinMatchesFormatting() {
+    final RocAccumulator acc = new RocAccumulator(3);
+    for (final double score : new double[] {0, -0.0, 0.0005, 0.0015, 0.15, 2.5, -0.0005, -0.0004, 1.0005, 1.2345, 99.9995, 1e5 + 0.0005, 1e12 + 0.3, 123456789.0125, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_VALUE}) {
+      checkBin(acc, score);
+    }
+    final Random r = new Random(42);
+    for (int i = 0; i < 100000; ++i) {
+      final double scale = Math.pow(10, r.nextInt(16) - 4);
+      checkBin(acc, (r.nextDouble() - 0.2) * scale);
+      // Scores close to a rounding boundary
+      checkBin(acc, (r.nextInt(2000000) - 1000000 + 0.5) / 1000);
+    }
+  }
+
+  public void testInfiniteScores() {
+    final RocAccumulator acc = new RocAccumulator(3);
+    assertEquals(Double.POSITIVE_INFINITY, acc.bin(Double.POSITIVE_INFINITY));
+    assertEquals(Double.NEGATIVE_INFINITY, acc.bin(Double.NEGATIVE_INFINITY));
+    acc.add(Double.POSITIVE_INFINITY, 1, 0, 1);
+    acc.add(0.5, 0, 1, 0);
+    acc.add(Double.NEGATIVE_INFINITY, 0, 1, 0);
+    acc.add(Double.POSITIVE_INFINITY, 1, 0, 1);
+    final List<RocPoint<Double>> points = acc.points(true);
+    assertEquals(3, points.size());
+    assertEquals("Infinity\t2.0\t0.0\t2.0", points.get(0).toString());
+    assertEquals("-Infinity\t0.0\t1.0\t0.0", points.get(2).toString());
+  }
+
+  public void testAccumulate() {
+    final RocAccumulator acc = new RocAccumulator(3);
+    acc.add(0.1, 1, 0, 1);
+    acc.add(Double.NaN, 0, 1, 0);
+    acc.add(0.3, 0, 1, 0);
+    acc.add(0.10001, 0.5, 0, 1); // Reported as the same score
+    acc.add(0.2, 1.5, 0, 1);
+    assertEquals(4, acc.size());
+    List<RocPoint<Double>> points = acc.points(true);
+    assertEquals(4, points.size());
+    assertEquals("0.3\t0.0\t1.0\t0.0", points.get(0).toString());
+    assertEquals("0.2\t1.5\t0.0\t1.0", points.get(1).toString());
+    assertEquals("0.1\t1.5\t0.0\t2.0", points.get(2).toString());
+    assertEquals("NaN\t0.0\t1.0\t0.0", points.get(3).toString());
+    points = acc.points(false);
+    assertEquals(0.1, points.get(0).getThreshold());
+    assertEquals(0.3, points.get(2).getThreshold());
+    assertTrue(Double.isNaN(points.get(3).getThreshold()));
+  }
+
+  public void testManyBinsAndMerge() {
+    final RocAccumulator a = new RocAccumulator(3);
+    final RocAccumulator b = new RocAccumulator(3);
+    final RocAccumulator all = new RocAccumulator(3);
+    for (int i = 0; i < 10000; ++i) {
+      final double score = i / 7.0;
+      (i % 3 == 0 ? a : b).add(score, 1, 2, 3);
+      all.add(score, 1, 2, 3);
+    }
+    b.add(Double.NaN, 1, 1, 1);
+    all.add(Double.NaN, 1, 1, 1);
+    a.merge(b);
+    assertEquals(all.size(), a.size());
+    final List<RocPoint<Double>> expected = all.points(true);
+    final List<RocPoint<Double>> actual = a.points(true);
+    for (int i = 0; i < expected.size(); ++i) {
+      assertEquals(expected.get(i).toString(), actual.get(i).toString());
+    }
+  }
+}
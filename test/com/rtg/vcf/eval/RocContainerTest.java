@@ -83,4 +83,42 @@ public class RocContainerTest extends TestCase {
               "0.300\t1.50\t0");
     }
   }
+
+  public void testMerge() throws IOException {
+    try (final TestDirectory dir = new TestDirectory("roc")) {
+      final RocFilter v = RocFilter.ALL;
+      final RocContainer roc = new RocContainer(RocSortValueExtractor.NULL_EXTRACTOR);
+      roc.addFilter(v);
+      final RocFilter expr = new ExpressionRocFilter("EXPR", "true");
+      roc.addFilter(expr);
+      // Another container, as would be used by a separate thread, with its own filter instances
+      final RocContainer other = new RocContainer(RocSortValueExtractor.NULL_EXTRACTOR);
+      other.addFilter(v);
+      final RocFilter otherExpr = new ExpressionRocFilter("EXPR", "true");
+      other.addFilter(otherExpr);
+      roc.addRocLine(new RocPoint<>(0.1, 1.0, 0.0, 1.0), v);
+      other.addRocLine(new RocPoint<>(0.1, 0.0, 1.0, 0.0), v);
+      other.addRocLine(new RocPoint<>(0.2, 0.0, 1.0, 0.0), v);
+      roc.addRocLine(new RocPoint<>(0.1, 0.5, 0.0, 1.0), v);
+      other.addRocLine(new RocPoint<>(0.2, 1.5, 0.0, 1.0), v);
+      roc.addRocLine(new RocPoint<>(0.1, 0.5, 0.0, 1.0), v);
+      other.addRocLine(new RocPoint<>(0.3, 1.5, 0.0, 1.0), v);
+      other.addRocLine(new RocPoint<>(0.3, 1.5, 0.0, 1.0), otherExpr);
+      roc.mBaselineTotals.add(v, 2);
+      other.mBaselineTotals.add(v, 3);
+      other.mBaselineTpTotal.add(v, 5);
+      other.mBaselineTotals.add(otherExpr, 4);
+      roc.merge(other);
+      assertEquals(4, roc.mBaselineTotals.get(expr));
+      roc.writeRocs(dir, false, false);
+      final String all = FileHelper.fileToString(new File(dir, "weighted_roc.tsv"));
+      TestUtils.containsAll(all,
+        "#total baseline variants: 5",
+        "0.100\t2.00\t1",
+        "0.200\t3.50\t2",
+        "0.300\t5.00\t2");
+      final String exprRoc = FileHelper.fileToString(new File(dir, "expr_roc.tsv"));
+      TestUtils.containsAll(exprRoc, "0.300\t1.50\t0");
+    }
+  }
 }
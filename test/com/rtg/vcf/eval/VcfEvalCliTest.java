@@ -95,6 +95,10 @@ public class VcfEvalCliTest extends AbstractVcfEvalTest {
         "--at-precision", "42"), "The value for --at-precision must be in the range [0.0, 1.0]");
       TestUtils.containsAllUnwrapped(checkHandleFlagsErr("-o", out.getPath(), "-c", calls.getPath(), "-b", mutations.getPath(), "-t", template.getPath(),
         "--at-precision", "0.5", "--at-sensitivity", "0.5"), "Cannot set both --at-precision and --at-sensitivity");
+      TestUtils.containsAllUnwrapped(checkHandleFlagsErr("-o", out.getPath(), "-c", calls.getPath(), "-b", mutations.getPath(), "-t", template.getPath(),
+        "--sample", "a,b", "--sample", "a,b"), "The sample a,b has been specified more than once");
+      TestUtils.containsAllUnwrapped(checkHandleFlagsErr("-o", out.getPath(), "-c", calls.getPath(), "-b", mutations.getPath(), "-t", template.getPath(),
+        "--sample", "a,b", "--sample", "a_b"), "The samples a,b and a_b would both be written to the output directory a_b");
 
       checkHandleFlags(flagStrings);
 
@@ -30,10 +30,20 @@
 
 package com.rtg.vcf.eval;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 
+import com.rtg.launcher.MainResult;
+import com.rtg.reader.ReaderTestUtils;
+import com.rtg.reader.SdfId;
+import com.rtg.tabix.TabixIndexer;
 import com.rtg.tabix.UnindexableDataException;
+import com.rtg.util.TestUtils;
+import com.rtg.util.Utils;
+import com.rtg.util.io.FileUtils;
+import com.rtg.util.io.TestDirectory;
+import com.rtg.util.test.FileHelper;
 
 public class VcfEvalNanoTest extends AbstractVcfEvalTest {
 
@@ -41,6 +51,15 @@ public class VcfEvalNanoTest extends AbstractVcfEvalTest {
     check("vcfeval_small", true, false, false, "--sample", "sample1", "--vcf-score-field", "QUAL", "--roc-subset", "snp");
   }
 
+  public void testNanoSmallWindowedPaths() throws IOException, UnindexableDataException {
+    check("vcfeval_small", true, false, false, "--sample", "sample1", "--vcf-score-field", "QUAL", "--roc-subset", "snp", "-T", "3", "--XXcom.rtg.vcf.eval.windowed-paths=true");
+  }
+
+  public void testNanoSmallRetainRecords() throws IOException, UnindexableDataException {
+    check("vcfeval_small", true, false, false, "--sample", "sample1", "--vcf-score-field", "QUAL", "--roc-subset", "snp", "--XXcom.rtg.vcf.eval.retain-records=true");
+    endToEnd("vcfeval_small_updel/updel", new String[] {"baseline.vcf", "calls.vcf"}, false, "--vcf-score-field", "QUAL", "--output-mode", "annotate", "--squash-ploidy", "--XXcom.rtg.vcf.eval.retain-records=true");
+  }
+
   public void testNanoSmallSquash() throws IOException, UnindexableDataException {
     check("vcfeval_small_squash/vcfeval_small", true, false, false, "--sample", "sample1", "--vcf-score-field", "QUAL", "--roc-subset", "snp", "--squash-ploidy");
   }
@@ -160,6 +179,99 @@ public class VcfEvalNanoTest extends AbstractVcfEvalTest {
     endToEnd("vcfeval_tetraploid/small", new String[] {"baseline.vcf", "calls.vcf"}, false, "--output-mode=annotate", "--no-roc", "--sample-ploidy=4", "--Xobey-phase=true,false");
   }
 
+  public void testNanoMultipleSamples() throws IOException, UnindexableDataException {
+    checkMultipleSamples("--vcf-score-field", "QUAL");
+    checkMultipleSamples("--vcf-score-field", "QUAL", "--decompose", "--output-mode", "annotate");
+  }
+
+  // Evaluating several samples in one run should give the same results as evaluating each separately
+  private void checkMultipleSamples(String... args) throws IOException, UnindexableDataException {
+    final String id = "vcfeval_small_samples";
+    final String[][] samples = {{"sample1", "sample1"}, {"sample2,sample1", "sample2_sample1"}, {"sample2", "sample2"}};
+    try (TestDirectory dir = new TestDirectory("vcfeval-nano")) {
+      final File template = new File(dir, "template");
+      ReaderTestUtils.getReaderDNA(mNano.loadReference(id + "_in_template.fa"), template, new SdfId(0));
+      final File baseline = new File(dir, "baseline.vcf.gz");
+      FileHelper.stringToGzFile(mNano.loadReference(id + "_in_baseline.vcf"), baseline);
+      new TabixIndexer(baseline).saveVcfIndex();
+      final File calls = new File(dir, "calls.vcf.gz");
+      FileHelper.stringToGzFile(mNano.loadReference(id + "_in_calls.vcf"), calls);
+      new TabixIndexer(calls).saveVcfIndex();
+      final String[] common = Utils.append(args, "-c", calls.getPath(), "-b", baseline.getPath(), "-t", template.getPath(), "-Z", "-T", "2");
+
+      final File multi = new File(dir, "multi");
+      String[] multiArgs = Utils.append(common, "-o", multi.getPath());
+      for (final String[] sample : samples) {
+        multiArgs = Utils.append(multiArgs, "--sample", sample[0]);
+      }
+      final MainResult res = MainResult.run(getCli(), multiArgs);
+      assertEquals(res.err(), 0, res.rc());
+      assertFalse(new File(multi, "intermediate").exists());
+
+      for (final String[] sample : samples) {
+        final File single = new File(dir, sample[1]);
+        final MainResult singleRes = MainResult.run(getCli(), Utils.append(common, "-o", single.getPath(), "--sample", sample[0]));
+        assertEquals(singleRes.err(), 0, singleRes.rc());
+        final File sampleDir = new File(multi, sample[1]);
+        assertTrue(sampleDir.isDirectory());
+        int compared = 0;
+        for (final File expected : FileUtils.listFiles(single)) {
+          final String name = expected.getName();
+          if (name.endsWith(".vcf") || name.endsWith(".tsv") || "summary.txt".equals(name)) {
+            final File actual = new File(sampleDir, name);
+            assertTrue(actual.getPath(), actual.exists());
+            assertEquals(name, sanitize(FileUtils.fileToString(expected)), sanitize(FileUtils.fileToString(actual)));
+            ++compared;
+          }
+        }
+        assertTrue(compared > 0);
+      }
+    }
+  }
+
+  public void testNanoRetainRecordsDecompose() throws IOException, UnindexableDataException {
+    checkRetainRecords("vcfeval_annotate", "--decompose", "--ref-overlap", "--output-mode", "annotate");
+    checkRetainRecords("vcfeval_combine", "--decompose", "--ref-overlap", "--output-mode", "combine");
+    checkRetainRecords("vcfeval_small_samples", "--decompose", "--vcf-score-field", "QUAL", "--sample", "sample2");
+  }
+
+  // Retaining records in memory should give the same results as reading them again for output
+  private void checkRetainRecords(String id, String... args) throws IOException, UnindexableDataException {
+    try (TestDirectory dir = new TestDirectory("vcfeval-nano")) {
+      final File template = new File(dir, "template");
+      ReaderTestUtils.getReaderDNA(mNano.loadReference(id + "_in_template.fa"), template, new SdfId(0));
+      final File baseline = new File(dir, "baseline.vcf.gz");
+      FileHelper.stringToGzFile(mNano.loadReference(id + "_in_baseline.vcf"), baseline);
+      new TabixIndexer(baseline).saveVcfIndex();
+      final File calls = new File(dir, "calls.vcf.gz");
+      FileHelper.stringToGzFile(mNano.loadReference(id + "_in_calls.vcf"), calls);
+      new TabixIndexer(calls).saveVcfIndex();
+      final String[] common = Utils.append(args, "-c", calls.getPath(), "-b", baseline.getPath(), "-t", template.getPath(), "-Z");
+
+      final File reread = new File(dir, "reread");
+      final MainResult res = MainResult.run(getCli(), Utils.append(common, "-o", reread.getPath()));
+      assertEquals(res.err(), 0, res.rc());
+      final File retained = new File(dir, "retained");
+      final MainResult retainedRes = MainResult.run(getCli(), Utils.append(common, "-o", retained.getPath(), "--XXcom.rtg.vcf.eval.retain-records=true"));
+      assertEquals(retainedRes.err(), 0, retainedRes.rc());
+      int compared = 0;
+      for (final File expected : FileUtils.listFiles(reread)) {
+        final String name = expected.getName();
+        if (name.endsWith(".vcf") || name.endsWith(".tsv") || "summary.txt".equals(name)) {
+          final File actual = new File(retained, name);
+          assertTrue(actual.getPath(), actual.exists());
+          assertEquals(name, sanitize(FileUtils.fileToString(expected)), sanitize(FileUtils.fileToString(actual)));
+          ++compared;
+        }
+      }
+      assertTrue(compared > 0);
+    }
+  }
+
+  private static String sanitize(String content) {
+    return TestUtils.sanitizeTsvHeader(TestUtils.sanitizeVcfHeader(content));
+  }
+
   private void check(String id, boolean checkTp, boolean checkFp, boolean expectWarn, String... args) throws IOException, UnindexableDataException {
     final ArrayList<String> files = new ArrayList<>();
     files.add("weighted_roc.tsv");
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2014. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.vcf.eval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.rtg.util.Pair;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class WindowedPathFinderTest extends TestCase {
+
+  public void testWindows() {
+    final byte[] template = randomAllele(new Random(3), 30);
+    final List<Variant> baseline = new ArrayList<>();
+    final List<Variant> calls = new ArrayList<>();
+    baseline.add(new MockVariant(2, 3, new byte[] {otherBase(template[1], 1)}, null));
+    calls.add(new MockVariant(3, 4, new byte[] {otherBase(template[2], 1)}, null));
+    baseline.add(new MockVariant(4, 5, new byte[] {otherBase(template[3], 1)}, null)); // Adjacent, no gap
+    calls.add(new MockVariant(7, 8, new byte[] {otherBase(template[6], 1)}, null)); // Gap clear of the variant
+    baseline.add(new MockVariant(20, 21, new byte[] {otherBase(template[19], 1)}, null));
+    List<Pair<List<Variant>, List<Variant>>> windows = WindowedPathFinder.windows(template, baseline, calls, 1);
+    assertEquals(3, windows.size());
+    assertEquals(2, windows.get(0).getA().size());
+    assertEquals(1, windows.get(0).getB().size());
+    assertEquals(0, windows.get(1).getA().size());
+    assertEquals(1, windows.get(1).getB().size());
+    assertEquals(1, windows.get(2).getA().size());
+    assertEquals(0, windows.get(2).getB().size());
+
+    windows = WindowedPathFinder.windows(template, baseline, calls, 4);
+    assertEquals(2, windows.size());
+    assertEquals(4, windows.get(0).getA().size() + windows.get(0).getB().size());
+    assertEquals(1, windows.get(1).getA().size() + windows.get(1).getB().size());
+
+    assertEquals(1, WindowedPathFinder.windows(template, baseline, calls, 10).size());
+    assertEquals(1, WindowedPathFinder.windows(template, new ArrayList<>(), new ArrayList<>(), 1).size());
+  }
+
+  public void testIsSafeCut() {
+    final byte[] template = {1, 2, 3, 4, 1, 1, 1, 1, 1, 2, 3, 2, 3, 2, 3, 4, 1, 2};
+    assertTrue(WindowedPathFinder.isSafeCut(template, 1, 4, 0));
+    assertFalse(WindowedPathFinder.isSafeCut(template, 1, 2, 0));
+    assertTrue(WindowedPathFinder.isSafeCut(template, 0, 4, 1));
+    assertFalse(WindowedPathFinder.isSafeCut(template, 0, 3, 3));
+    // Inside the homopolymer the offset haplotypes keep matching until it ends
+    assertFalse(WindowedPathFinder.isSafeCut(template, 4, 9, 1));
+    assertTrue(WindowedPathFinder.isSafeCut(template, 4, 11, 1));
+    // A repeat with period two does not break for an even offset
+    assertTrue(WindowedPathFinder.isSafeCut(template, 9, 17, 1));
+    assertFalse(WindowedPathFinder.isSafeCut(template, 9, 16, 2));
+    assertTrue(WindowedPathFinder.isSafeCut(template, 9, 18, 2));
+    assertFalse(WindowedPathFinder.isSafeCut(template, 9, 16, 4));
+  }
+
+  private static byte[] randomAllele(Random r, int length) {
+    final byte[] allele = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      allele[i] = (byte) (1 + r.nextInt(4));
+    }
+    return allele;
+  }
+
+  private static byte otherBase(byte b, int offset) {
+    return (byte) ((b - 1 + offset) % 4 + 1);
+  }
+
+  // Generates a SNP (either het or hom), deletion, or insertion at the (one-based) position
+  private static Variant randomVariant(Random r, byte[] template, int pos, int id) {
+    switch (r.nextInt(3)) {
+      case 0:
+        final byte ref = template[pos - 1];
+        return new MockVariant(pos, pos + 1, new byte[] {otherBase(ref, 1)}, r.nextBoolean() ? null : new byte[] {otherBase(ref, 2)}, id);
+      case 1:
+        return new MockVariant(pos, pos + 1 + r.nextInt(3), new byte[0], null, id);
+      default:
+        return new MockVariant(pos, pos, randomAllele(r, 1 + r.nextInt(3)), null, id);
+    }
+  }
+
+  private static String summary(Path p) {
+    return p.getBaselineIncluded() + " " + p.getBaselineExcluded() + " " + p.getCalledIncluded() + " " + p.getCalledExcluded() + " " + p.getSyncPoints();
+  }
+
+  private static void checkSameAsSerial(byte[] template, List<Variant> baseline, List<Variant> calls) {
+    final Orientor o = new PathTest.MockOrientor();
+    final PathFinder.Config config = new PathFinder.Config();
+    final Path serial = new PathFinder(template, "t", baseline, calls, o, o, config).bestPath();
+    assertEquals(baseline.size(), serial.getBaselineIncluded().size());
+    assertEquals(calls.size(), serial.getCalledIncluded().size());
+    final Path windowed = new WindowedPathFinder(template, "t", baseline, calls, o, o, config, 1, null).bestPath();
+    assertEquals(summary(serial), summary(windowed));
+  }
+
+  // Template of random bases with the given repeat unit copied into the middle
+  private static byte[] repeatTemplate(byte[] unit, int start, int copies) {
+    final byte[] template = randomAllele(new Random(7), 100);
+    for (int i = 0; i < unit.length * copies; ++i) {
+      template[start + i] = unit[i % unit.length];
+    }
+    template[start - 1] = otherBase(unit[unit.length - 1], 1);
+    template[start + unit.length * copies] = otherBase(unit[0], 1);
+    return template;
+  }
+
+  public void testHomopolymerEquivalence() {
+    // Deletions of one base at either end of a homopolymer are equivalent
+    final byte[] template = repeatTemplate(new byte[] {1}, 10, 20);
+    final List<Variant> baseline = new ArrayList<>();
+    final List<Variant> calls = new ArrayList<>();
+    baseline.add(new MockVariant(3, 4, new byte[] {otherBase(template[2], 1)}, null, 0));
+    calls.add(new MockVariant(3, 4, new byte[] {otherBase(template[2], 1)}, null, 1));
+    calls.add(new MockVariant(13, 14, new byte[0], null, 2));
+    baseline.add(new MockVariant(26, 27, new byte[0], null, 3));
+    baseline.add(new MockVariant(60, 61, new byte[] {otherBase(template[59], 2)}, null, 4));
+    calls.add(new MockVariant(60, 61, new byte[] {otherBase(template[59], 2)}, null, 5));
+    assertEquals(3, WindowedPathFinder.windows(template, baseline, calls, 1).size());
+    checkSameAsSerial(template, baseline, calls);
+  }
+
+  public void testTandemRepeatEquivalence() {
+    // Deletions of different copies of a tandem repeat unit are equivalent
+    final byte[] unit = {3, 1, 2};
+    final byte[] template = repeatTemplate(unit, 20, 10);
+    final List<Variant> baseline = new ArrayList<>();
+    final List<Variant> calls = new ArrayList<>();
+    calls.add(new MockVariant(22, 25, new byte[0], null, 0));
+    baseline.add(new MockVariant(43, 46, new byte[0], null, 1));
+    baseline.add(new MockVariant(80, 81, new byte[] {otherBase(template[79], 1)}, null, 2));
+    calls.add(new MockVariant(80, 81, new byte[] {otherBase(template[79], 1)}, null, 3));
+    assertEquals(2, WindowedPathFinder.windows(template, baseline, calls, 1).size());
+    checkSameAsSerial(template, baseline, calls);
+  }
+
+  public void testSameAsSerial() {
+    final Random r = new Random(42);
+    final byte[] template = randomAllele(r, 5000);
+    final List<Variant> baseline = new ArrayList<>();
+    final List<Variant> calls = new ArrayList<>();
+    int id = 0;
+    for (int pos = 10; pos < template.length - 10; pos += 4 + r.nextInt(r.nextBoolean() ? 8 : 40)) {
+      final Variant v = randomVariant(r, template, pos, id++);
+      final int type = r.nextInt(4);
+      if (type != 0) {
+        baseline.add(v);
+      }
+      if (type != 1) {
+        calls.add(type == 2 ? randomVariant(r, template, pos, id++) : v);
+      }
+    }
+    final Orientor o = new PathTest.MockOrientor();
+    final PathFinder.Config config = new PathFinder.Config();
+    final Path serial = new PathFinder(template, "t", baseline, calls, o, o, config).bestPath();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final WindowedPathFinder finder = new WindowedPathFinder(template, "t", baseline, calls, o, o, config, 1, executor);
+      assertTrue(finder.numWindows() > 10);
+      final Path windowed = finder.bestPath();
+      assertEquals(summary(serial), summary(windowed));
+    } finally {
+      executor.shutdownNow();
+    }
+    final Path unthreaded = new WindowedPathFinder(template, "t", baseline, calls, o, o, config, 20, null).bestPath();
+    assertEquals(summary(serial), summary(unthreaded));
+  }
+}